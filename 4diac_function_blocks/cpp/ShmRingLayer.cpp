@@ -0,0 +1,288 @@
+/*************************************************************************
+ *** FORTE Communication Layer
+ ***
+ *** Name: ShmRingLayer
+ *** Description: Communication layer exchanging frames with Polysun via ring buffers in shared memory.
+ *** Version:
+ ***     1.0: 2026-10-17/HTW Berlin -
+ *************************************************************************/
+
+#include "ShmRingLayer.h"
+#include <commfb.h>
+#include <fcntl.h>
+#include <sched.h>
+#include <string.h>
+#include <sys/mman.h>
+#include <sys/stat.h>
+#include <time.h>
+#include <unistd.h>
+
+using namespace forte::com_infra;
+
+DEFINE_HANDLER(CShmRingHandler)
+
+CShmRingHandler::CShmRingHandler(CDeviceExecution& pa_poDeviceExecution) : CExternalEventHandler(pa_poDeviceExecution){
+}
+
+CShmRingHandler::~CShmRingHandler(){
+}
+
+namespace {
+  //! Layout of the file, must match SHMringCommLayer.java
+  const uint32_t scm_unMagic = 0x4D485346; // "FSHM"
+  const uint32_t scm_unVersion = 1;
+  const uint32_t scm_unRingCapacity = 1 << 20;
+  const size_t scm_unMagicOffset = 0;
+  const size_t scm_unVersionOffset = 4;
+  const size_t scm_unCapacityOffset = 8;
+  const size_t scm_unAttachedOffset = 12;
+  const size_t scm_unClosedOffset = 16;
+  const size_t scm_unHead0Offset = 64;
+  const size_t scm_unTail0Offset = 128;
+  const size_t scm_unHead1Offset = 192;
+  const size_t scm_unTail1Offset = 256;
+  const size_t scm_unDataOffset = 320;
+  const unsigned int scm_unLengthBytes = 4;
+  const unsigned int scm_unSpins = 1000;
+  const unsigned int scm_unYields = 2000;
+  const long scm_nSleepNs = 20000;
+
+  uint32_t *getInt(char *pa_acFile, size_t pa_unOffset){
+    return reinterpret_cast<uint32_t*>(pa_acFile + pa_unOffset);
+  }
+}
+
+CShmRingLayer::CShmRingLayer(CComLayer* pa_poUpperLayer, CBaseCommFB * pa_poComFB) :
+    CComLayer(pa_poUpperLayer, pa_poComFB), m_acFile(0), m_unFileSize(0), m_bCreator(false), m_unCapacity(0),
+    m_punSendHead(0), m_punSendTail(0), m_punRecvHead(0), m_punRecvTail(0), m_acSendData(0), m_acRecvData(0),
+    m_acRecvBuffer(0), m_unRecvSize(0), m_bFramePending(false){
+  m_acPath[0] = '\0';
+}
+
+CShmRingLayer::~CShmRingLayer(){
+  closeConnection();
+}
+
+EComResponse CShmRingLayer::openConnection(char *pa_acLayerParameter){
+  if(0 == pa_acLayerParameter || strlen(pa_acLayerParameter) >= sizeof(m_acPath)){
+    return e_InitInvalidId;
+  }
+  strcpy(m_acPath, pa_acLayerParameter);
+  bool bOk;
+  switch (m_poFb->getComServiceType()){
+    case e_Server:
+      bOk = create(m_acPath); // Frames sent before Polysun attaches stay in the ring
+      break;
+    case e_Client:
+      bOk = attach(m_acPath);
+      break;
+    default:
+      return e_InitInvalidId; // Datagrams are not supported
+  }
+  if(!bOk){
+    closeConnection();
+    return e_InitTerminated;
+  }
+  m_acRecvBuffer = new char[m_unCapacity];
+  m_eConnectionState = e_Connected;
+  start();
+  return e_InitOk;
+}
+
+void CShmRingLayer::closeConnection(){
+  if(0 != m_acFile){
+    __atomic_store_n(getInt(m_acFile, scm_unClosedOffset), 1, __ATOMIC_RELEASE);
+    end(); // Stop the polling thread
+    munmap(m_acFile, m_unFileSize);
+    m_acFile = 0;
+  }
+  if(m_bCreator){
+    unlink(m_acPath);
+    m_bCreator = false;
+  }
+  delete[] m_acRecvBuffer;
+  m_acRecvBuffer = 0;
+  m_eConnectionState = e_Disconnected;
+}
+
+EComResponse CShmRingLayer::sendData(void *pa_pvData, unsigned int pa_unSize){
+  if(0 == m_acFile || isPeerClosed()){
+    return e_ProcessDataSendFailed;
+  }
+  unsigned int unFrameSize = scm_unLengthBytes + pa_unSize;
+  if(unFrameSize > m_unCapacity){
+    return e_ProcessDataSendFailed;
+  }
+  uint64_t unHead = *m_punSendHead; // Only written by this layer
+  for(unsigned int i = 0; m_unCapacity - (unHead - __atomic_load_n(m_punSendTail, __ATOMIC_ACQUIRE)) < unFrameSize; i++){
+    if(isPeerClosed()){
+      return e_ProcessDataSendFailed;
+    }
+    backOff(i); // Wait for Polysun to read
+  }
+  char acLength[scm_unLengthBytes];
+  for(unsigned int i = 0; i < scm_unLengthBytes; i++){
+    acLength[i] = static_cast<char>(pa_unSize >> (8 * i));
+  }
+  copyToRing(unHead, acLength, scm_unLengthBytes);
+  copyToRing(unHead + scm_unLengthBytes, static_cast<const char*>(pa_pvData), pa_unSize);
+  __atomic_store_n(m_punSendHead, unHead + unFrameSize, __ATOMIC_RELEASE); // Publish the frame
+  return e_ProcessDataOk;
+}
+
+EComResponse CShmRingLayer::recvData(const void *, unsigned int){
+  return e_Nothing; // Frames are received by the polling thread
+}
+
+EComResponse CShmRingLayer::processInterrupt(){
+  EComResponse eResp = e_Nothing;
+  if(isFramePending()){
+    eResp = m_poTopLayer->recvData(m_acRecvBuffer, m_unRecvSize);
+    setFramePending(false); // The polling thread may receive the next frame
+  }
+  return eResp;
+}
+
+void CShmRingLayer::run(){
+  uint64_t unTail = *m_punRecvTail; // Only written by this layer
+  while(isAlive()){
+    if(isFramePending() || __atomic_load_n(m_punRecvHead, __ATOMIC_ACQUIRE) - unTail < scm_unLengthBytes){
+      for(unsigned int i = 0; isAlive() && (isFramePending() || __atomic_load_n(m_punRecvHead, __ATOMIC_ACQUIRE) - unTail < scm_unLengthBytes); i++){
+        if(!isFramePending() && isPeerClosed()){
+          m_eConnectionState = e_Disconnected;
+          return;
+        }
+        backOff(i);
+      }
+      continue;
+    }
+    char acLength[scm_unLengthBytes];
+    copyFromRing(unTail, acLength, scm_unLengthBytes);
+    unsigned int unSize = 0;
+    for(unsigned int i = 0; i < scm_unLengthBytes; i++){
+      unSize |= static_cast<unsigned int>(static_cast<unsigned char>(acLength[i])) << (8 * i);
+    }
+    copyFromRing(unTail + scm_unLengthBytes, m_acRecvBuffer, unSize);
+    unTail += scm_unLengthBytes + unSize;
+    __atomic_store_n(m_punRecvTail, unTail, __ATOMIC_RELEASE); // The frame has been copied, release its space
+    if(0 < unSize){
+      m_unRecvSize = unSize;
+      setFramePending(true);
+      m_poFb->interruptCommFB(this);
+      ::getExtEvHandler<CShmRingHandler>(*m_poFb).frameReceived(m_poFb);
+    }
+  }
+}
+
+bool CShmRingLayer::create(const char *pa_acPath){
+  unlink(pa_acPath); // Left behind by a previous run
+  int nFd = open(pa_acPath, O_RDWR | O_CREAT | O_EXCL, 0600);
+  if(0 > nFd){
+    return false;
+  }
+  m_bCreator = true;
+  size_t unSize = scm_unDataOffset + 2 * static_cast<size_t>(scm_unRingCapacity);
+  if(0 != ftruncate(nFd, static_cast<off_t>(unSize))){
+    close(nFd);
+    return false;
+  }
+  if(!map(nFd, unSize)){
+    return false;
+  }
+  *getInt(m_acFile, scm_unVersionOffset) = scm_unVersion;
+  *getInt(m_acFile, scm_unCapacityOffset) = scm_unRingCapacity;
+  __atomic_store_n(getInt(m_acFile, scm_unMagicOffset), scm_unMagic, __ATOMIC_RELEASE); // Polysun only attaches after the header is complete
+  setUpRings(true);
+  return true;
+}
+
+bool CShmRingLayer::attach(const char *pa_acPath){
+  int nFd = open(pa_acPath, O_RDWR);
+  if(0 > nFd){
+    return false;
+  }
+  struct stat stStat;
+  if(0 != fstat(nFd, &stStat) || static_cast<size_t>(stStat.st_size) < scm_unDataOffset){
+    close(nFd);
+    return false;
+  }
+  if(!map(nFd, static_cast<size_t>(stStat.st_size))){
+    return false;
+  }
+  if(scm_unMagic != __atomic_load_n(getInt(m_acFile, scm_unMagicOffset), __ATOMIC_ACQUIRE) || scm_unVersion != *getInt(m_acFile, scm_unVersionOffset)){
+    return false;
+  }
+  uint32_t unCapacity = *getInt(m_acFile, scm_unCapacityOffset);
+  if(0 == unCapacity || 0 != (unCapacity & (unCapacity - 1)) || m_unFileSize < scm_unDataOffset + 2 * static_cast<size_t>(unCapacity)){
+    return false;
+  }
+  setUpRings(false);
+  __atomic_store_n(getInt(m_acFile, scm_unAttachedOffset), 1, __ATOMIC_RELEASE);
+  return true;
+}
+
+bool CShmRingLayer::map(int pa_nFd, size_t pa_unSize){
+  void *pvFile = mmap(0, pa_unSize, PROT_READ | PROT_WRITE, MAP_SHARED, pa_nFd, 0);
+  close(pa_nFd); // The mapping stays valid
+  if(MAP_FAILED == pvFile){
+    return false;
+  }
+  m_acFile = static_cast<char*>(pvFile);
+  m_unFileSize = pa_unSize;
+  return true;
+}
+
+void CShmRingLayer::setUpRings(bool pa_bCreator){
+  m_unCapacity = *getInt(m_acFile, scm_unCapacityOffset);
+  uint64_t *punHead0 = reinterpret_cast<uint64_t*>(m_acFile + scm_unHead0Offset);
+  uint64_t *punTail0 = reinterpret_cast<uint64_t*>(m_acFile + scm_unTail0Offset);
+  uint64_t *punHead1 = reinterpret_cast<uint64_t*>(m_acFile + scm_unHead1Offset);
+  uint64_t *punTail1 = reinterpret_cast<uint64_t*>(m_acFile + scm_unTail1Offset);
+  char *acData0 = m_acFile + scm_unDataOffset;
+  char *acData1 = acData0 + m_unCapacity;
+  m_punSendHead = pa_bCreator ? punHead0 : punHead1;
+  m_punSendTail = pa_bCreator ? punTail0 : punTail1;
+  m_acSendData = pa_bCreator ? acData0 : acData1;
+  m_punRecvHead = pa_bCreator ? punHead1 : punHead0;
+  m_punRecvTail = pa_bCreator ? punTail1 : punTail0;
+  m_acRecvData = pa_bCreator ? acData1 : acData0;
+}
+
+bool CShmRingLayer::isPeerClosed() const{
+  return 0 != __atomic_load_n(getInt(m_acFile, scm_unClosedOffset), __ATOMIC_ACQUIRE);
+}
+
+void CShmRingLayer::copyFromRing(uint64_t pa_unPos, char *pa_acDest, unsigned int pa_unSize) const{
+  while(0 < pa_unSize){
+    unsigned int unIndex = static_cast<unsigned int>(pa_unPos & (m_unCapacity - 1));
+    unsigned int unNum = (pa_unSize < m_unCapacity - unIndex) ? pa_unSize : m_unCapacity - unIndex;
+    memcpy(pa_acDest, m_acRecvData + unIndex, unNum);
+    pa_unPos += unNum;
+    pa_acDest += unNum;
+    pa_unSize -= unNum;
+  }
+}
+
+void CShmRingLayer::copyToRing(uint64_t pa_unPos, const char *pa_acSrc, unsigned int pa_unSize){
+  while(0 < pa_unSize){
+    unsigned int unIndex = static_cast<unsigned int>(pa_unPos & (m_unCapacity - 1));
+    unsigned int unNum = (pa_unSize < m_unCapacity - unIndex) ? pa_unSize : m_unCapacity - unIndex;
+    memcpy(m_acSendData + unIndex, pa_acSrc, unNum);
+    pa_unPos += unNum;
+    pa_acSrc += unNum;
+    pa_unSize -= unNum;
+  }
+}
+
+void CShmRingLayer::backOff(unsigned int pa_unIteration){
+  if(pa_unIteration < scm_unSpins){
+    return;
+  }
+  if(pa_unIteration < scm_unYields){
+    sched_yield();
+  }
+  else{
+    struct timespec stSleep = {0, scm_nSleepNs};
+    nanosleep(&stSleep, 0);
+  }
+}
@@ -0,0 +1,95 @@
+/*************************************************************************
+ *** FORTE Communication Layer
+ ***
+ *** Name: ShmRingLayer
+ *** Description: Communication layer exchanging frames with Polysun via ring buffers in shared memory.
+ ***   Use the ID fbdk[].shm[<path>] in CLIENT or SERVER function blocks, e.g. fbdk[].shm[/dev/shm/forte_61499.shm].
+ ***   A SERVER function block creates the file, a CLIENT function block attaches to the file created by the Polysun plugin.
+ ***   The layout of the file is described in SHMringCommLayer.java. Little-endian hosts only.
+ ***   If Polysun runs on Java 8 or older, the plugin cannot use fences and the exchange is ordered on x86 (TSO) hosts only.
+ *** Version:
+ ***     1.0: 2026-10-17/HTW Berlin -
+ *************************************************************************/
+
+#ifndef _SHMRINGLAYER_H_
+#define _SHMRINGLAYER_H_
+
+#include <comlayer.h>
+#include <extevhan.h>
+#include <forte_thread.h>
+#include <stdint.h>
+
+/*! External event handler starting the event chains of function blocks that received a frame via shared memory.
+ */
+class CShmRingHandler : public CExternalEventHandler{
+  DECLARE_HANDLER(CShmRingHandler)
+
+public:
+  void frameReceived(CEventSourceFB *pa_poComFB){
+    startNewEventChain(pa_poComFB);
+  }
+
+  virtual void enableHandler(void){
+  }
+  virtual void disableHandler(void){
+  }
+  virtual void setPriority(int){
+  }
+  virtual int getPriority(void) const{
+    return 0;
+  }
+};
+
+/*! Bottom layer of CLIENT and SERVER function blocks exchanging frames with Polysun via two
+ *  single-producer/single-consumer ring buffers in a memory-mapped file.
+ *
+ *  A polling thread waits for frames from Polysun (spinning, then yielding, then sleeping for short periods)
+ *  and starts an event chain of the function block for each frame. Sending copies the frame into the ring.
+ */
+class CShmRingLayer : public forte::com_infra::CComLayer, private CThread{
+public:
+  CShmRingLayer(forte::com_infra::CComLayer* pa_poUpperLayer, forte::com_infra::CBaseCommFB * pa_poComFB);
+  virtual ~CShmRingLayer();
+
+  forte::com_infra::EComResponse sendData(void *pa_pvData, unsigned int pa_unSize);
+  forte::com_infra::EComResponse recvData(const void *pa_pvData, unsigned int pa_unSize);
+  forte::com_infra::EComResponse processInterrupt();
+
+protected:
+  virtual void run();
+
+private:
+  forte::com_infra::EComResponse openConnection(char *pa_acLayerParameter);
+  void closeConnection();
+
+  bool create(const char *pa_acPath);
+  bool attach(const char *pa_acPath);
+  bool map(int pa_nFd, size_t pa_unSize);
+  void setUpRings(bool pa_bCreator);
+  bool isPeerClosed() const;
+  void copyFromRing(uint64_t pa_unPos, char *pa_acDest, unsigned int pa_unSize) const;
+  void copyToRing(uint64_t pa_unPos, const char *pa_acSrc, unsigned int pa_unSize);
+  static void backOff(unsigned int pa_unIteration);
+
+  //! Acquire load, so that the received frame written before setFramePending(true) is visible
+  bool isFramePending() const{
+    return __atomic_load_n(&m_bFramePending, __ATOMIC_ACQUIRE);
+  }
+  //! Release store, publishes the received frame (true) or hands the receive buffer back to the polling thread (false)
+  void setFramePending(bool pa_bPending){
+    __atomic_store_n(&m_bFramePending, pa_bPending, __ATOMIC_RELEASE);
+  }
+
+  char *m_acFile; //!< mapped file (0 if not connected)
+  size_t m_unFileSize;
+  bool m_bCreator; //!< true if this layer created the file
+  char m_acPath[256];
+  uint32_t m_unCapacity; //!< capacity of each ring in bytes (power of two)
+  uint64_t *m_punSendHead, *m_punSendTail, *m_punRecvHead, *m_punRecvTail;
+  char *m_acSendData, *m_acRecvData;
+  char *m_acRecvBuffer; //!< frame handed to the upper layer
+  unsigned int m_unRecvSize;
+  bool m_bFramePending; //!< true while the upper layer has not processed the received frame, only accessed with isFramePending()/setFramePending()
+};
+
+#endif //_SHMRINGLAYER_H_
@@ -0,0 +1,89 @@
+/*************************************************************************
+ *** FORTE Library Element
+ ***
+ *** This file was generated using the 4DIAC FORTE Export Filter V1.0.x!
+ ***
+ *** Name: ValidUntil
+ *** Description: Computes the valid-until time stamp sent to Polysun plugin controllers with the valid-until lookahead enabled.
+ *** Version: 
+ ***     1.0: 2026-10-17/HTW Berlin - HTW Berlin - 
+ *************************************************************************/
+
+#include "ValidUntil.h"
+#ifdef FORTE_ENABLE_GENERATED_SOURCE_CPP
+#include "ValidUntil_gen.cpp"
+#endif
+
+DEFINE_FIRMWARE_FB(FORTE_ValidUntil, g_nStringIdValidUntil)
+
+const CStringDictionary::TStringId FORTE_ValidUntil::scm_anDataInputNames[] = {g_nStringIdQI, g_nStringIdNOW, g_nStringIdHOLD};
+
+const CStringDictionary::TStringId FORTE_ValidUntil::scm_anDataInputTypeIds[] = {g_nStringIdBOOL, g_nStringIdDATE_AND_TIME, g_nStringIdTIME};
+
+const CStringDictionary::TStringId FORTE_ValidUntil::scm_anDataOutputNames[] = {g_nStringIdQO, g_nStringIdVALID_UNTIL};
+
+const CStringDictionary::TStringId FORTE_ValidUntil::scm_anDataOutputTypeIds[] = {g_nStringIdBOOL, g_nStringIdDATE_AND_TIME};
+
+const TForteInt16 FORTE_ValidUntil::scm_anEIWithIndexes[] = {0};
+const TDataIOID FORTE_ValidUntil::scm_anEIWith[] = {0, 1, 2, 255};
+const CStringDictionary::TStringId FORTE_ValidUntil::scm_anEventInputNames[] = {g_nStringIdREQ};
+
+const TDataIOID FORTE_ValidUntil::scm_anEOWith[] = {0, 1, 255};
+const TForteInt16 FORTE_ValidUntil::scm_anEOWithIndexes[] = {0, -1};
+const CStringDictionary::TStringId FORTE_ValidUntil::scm_anEventOutputNames[] = {g_nStringIdCNF};
+
+const SFBInterfaceSpec FORTE_ValidUntil::scm_stFBInterfaceSpec = {
+  1,  scm_anEventInputNames,  scm_anEIWith,  scm_anEIWithIndexes,
+  1,  scm_anEventOutputNames,  scm_anEOWith, scm_anEOWithIndexes,  3,  scm_anDataInputNames, scm_anDataInputTypeIds,
+  2,  scm_anDataOutputNames, scm_anDataOutputTypeIds,
+  0, 0
+};
+
+void FORTE_ValidUntil::alg_REQ(void){
+QO() = QI();
+if((QI() && (HOLD() > 0))){
+  VALID_UNTIL() = ADD_DT_TIME(NOW(), HOLD());
+}
+else{
+  VALID_UNTIL() = NOW();
+};
+}
+
+
+void FORTE_ValidUntil::enterStateSTART(void){
+  m_nECCState = scm_nStateSTART;
+}
+
+void FORTE_ValidUntil::enterStateREQ(void){
+  m_nECCState = scm_nStateREQ;
+  alg_REQ();
+  sendOutputEvent( scm_nEventCNFID);
+}
+
+void FORTE_ValidUntil::executeEvent(int pa_nEIID){
+  bool bTransitionCleared;
+  do{
+    bTransitionCleared = true;
+    switch(m_nECCState){
+      case scm_nStateSTART:
+        if(scm_nEventREQID == pa_nEIID)
+          enterStateREQ();
+        else
+          bTransitionCleared  = false; //no transition cleared
+        break;
+      case scm_nStateREQ:
+        if(1)
+          enterStateSTART();
+        else
+          bTransitionCleared  = false; //no transition cleared
+        break;
+      default:
+      DEVLOG_ERROR("The state is not in the valid range! The state value is: %d. The max value can be: 1.", m_nECCState.operator TForteUInt16 ());
+        m_nECCState = 0; //0 is always the initial state
+        break;
+    }
+    pa_nEIID = cg_nInvalidEventID;  // we have to clear the event after the first check in order to ensure correct behavior
+  }while(bTransitionCleared);
+}
+
+
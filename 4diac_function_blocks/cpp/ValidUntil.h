@@ -0,0 +1,81 @@
+/*************************************************************************
+ *** FORTE Library Element
+ ***
+ *** This file was generated using the 4DIAC FORTE Export Filter V1.0.x!
+ ***
+ *** Name: ValidUntil
+ *** Description: Computes the valid-until time stamp sent to Polysun plugin controllers with the valid-until lookahead enabled.
+ *** Version: 
+ ***     1.0: 2026-10-17/HTW Berlin - HTW Berlin - 
+ *************************************************************************/
+
+#ifndef _VALIDUNTIL_H_
+#define _VALIDUNTIL_H_
+
+#include <basicfb.h>
+#include <forte_bool.h>
+#include <forte_date_and_time.h>
+#include <forte_time.h>
+
+class FORTE_ValidUntil: public CBasicFB{
+  DECLARE_FIRMWARE_FB(FORTE_ValidUntil)
+
+private:
+  static const CStringDictionary::TStringId scm_anDataInputNames[];
+  static const CStringDictionary::TStringId scm_anDataInputTypeIds[];
+  CIEC_BOOL &QI() {
+    return *static_cast<CIEC_BOOL*>(getDI(0));
+  };
+
+  CIEC_DATE_AND_TIME &NOW() {
+    return *static_cast<CIEC_DATE_AND_TIME*>(getDI(1));
+  };
+
+  CIEC_TIME &HOLD() {
+    return *static_cast<CIEC_TIME*>(getDI(2));
+  };
+
+  static const CStringDictionary::TStringId scm_anDataOutputNames[];
+  static const CStringDictionary::TStringId scm_anDataOutputTypeIds[];
+  CIEC_BOOL &QO() {
+    return *static_cast<CIEC_BOOL*>(getDO(0));
+  };
+
+  CIEC_DATE_AND_TIME &VALID_UNTIL() {
+    return *static_cast<CIEC_DATE_AND_TIME*>(getDO(1));
+  };
+
+  static const TEventID scm_nEventREQID = 0;
+  static const TForteInt16 scm_anEIWithIndexes[];
+  static const TDataIOID scm_anEIWith[];
+  static const CStringDictionary::TStringId scm_anEventInputNames[];
+
+  static const TEventID scm_nEventCNFID = 0;
+  static const TForteInt16 scm_anEOWithIndexes[];
+  static const TDataIOID scm_anEOWith[];
+  static const CStringDictionary::TStringId scm_anEventOutputNames[];
+
+  static const SFBInterfaceSpec scm_stFBInterfaceSpec;
+
+   FORTE_BASIC_FB_DATA_ARRAY(1, 3, 2, 0, 0);
+  void alg_REQ(void);
+  static const TForteInt16 scm_nStateSTART = 0;
+  static const TForteInt16 scm_nStateREQ = 1;
+
+  void enterStateSTART(void);
+  void enterStateREQ(void);
+
+  virtual void executeEvent(int pa_nEIID);
+
+public:
+  FORTE_ValidUntil(CStringDictionary::TStringId pa_nInstanceNameId, CResource *pa_poSrcRes) : 
+       CBasicFB(pa_poSrcRes, &scm_stFBInterfaceSpec, pa_nInstanceNameId,
+              0, m_anFBConnData, m_anFBVarsData) {
+  };
+
+  virtual ~FORTE_ValidUntil(){};
+
+};
+
+#endif //close the ifdef sequence from the beginning of the file
+
@@ -104,11 +104,27 @@ public abstract class AbstractCommunicationLayer implements Serializable, ICommu
 		return getBelow().readFloat();
 	}
 	
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		getBelow().readFully(b, off, len);
+	}
+	
 	@Override
 	public boolean getConnectionState() {
 		return mConnectionState;
 	}
 	
+	/**
+	 * Delegates the check to the layer below. Bottom layers that can detect a closed connection or unread bytes override this method.
+	 */
+	@Override
+	public boolean isHealthy() {
+		if (getBelow() != null) {
+			return getBelow().isHealthy();
+		}
+		return getConnectionState();
+	}
+	
 	@Override
 	public byte[] getRawBytes() {
 		return mRawBytes;
@@ -1,6 +1,7 @@
 package de.htw.berlin.polysun4diac.forte.comm;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.Iterator;
 import java.util.List;
 
@@ -21,6 +22,21 @@ public abstract class AbstractDataBufferLayer extends AbstractCommunicationLayer
 
 	@Override
 	public abstract byte[] array();
+	
+	/**
+	 * Enables or disables reading received frames with a fixed frame size at once (enabled by default).
+	 * Must be called before {@link #initialise(List, List)}.
+	 * @param buffering true to enable frame buffering
+	 * @see CommLayerParams#setFrameBuffering(boolean)
+	 */
+	public abstract void setFrameBuffering(boolean buffering);
+	
+	/**
+	 * Sets the charset used for encoding and decoding IEC 61499 STRINGs.
+	 * @param charset the charset
+	 * @see CommLayerParams#setStringCharset(Charset)
+	 */
+	public abstract void setStringCharset(Charset charset);
 
 	@Override
 	public abstract int capacity();
@@ -31,9 +47,18 @@ public abstract class AbstractDataBufferLayer extends AbstractCommunicationLayer
 	@Override
 	public abstract boolean[] getBoolArray();
 
+	@Override
+	public abstract int getBoolArray(boolean[] dst);
+
 	@Override
 	public abstract DateAndTime getDateAndTime();
 
+	@Override
+	public abstract long getDateAndTimeMillis();
+
+	@Override
+	public abstract ForteFrameView recvFrame() throws IOException;
+
 	@Override
 	public abstract DateAndTime[] getDateAndTimeArray();
 
@@ -43,24 +68,36 @@ public abstract class AbstractDataBufferLayer extends AbstractCommunicationLayer
 	@Override
 	public abstract double[] getDoubleArray();
 
+	@Override
+	public abstract int getDoubleArray(double[] dst);
+
 	@Override
 	public abstract float getFloat();
 
 	@Override
 	public abstract float[] getFloatArray();
 
+	@Override
+	public abstract int getFloatArray(float[] dst);
+
 	@Override
 	public abstract int getInt();
 
 	@Override
 	public abstract int[] getIntArray();
 
+	@Override
+	public abstract int getIntArray(int[] dst);
+
 	@Override
 	public abstract long getLong();
 
 	@Override
 	public abstract long[] getLongArray();
 
+	@Override
+	public abstract int getLongArray(long[] dst);
+
 	@Override
 	public abstract int getNumDataValues();
 
@@ -138,6 +175,9 @@ public abstract class AbstractDataBufferLayer extends AbstractCommunicationLayer
 	@Override
 	public abstract boolean put(DateAndTime value);
 
+	@Override
+	public abstract boolean putDateAndTimeMillis(long forteTime);
+
 	@Override
 	public abstract boolean put(DateAndTime[] value);
 
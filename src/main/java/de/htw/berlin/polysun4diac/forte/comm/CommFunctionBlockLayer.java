@@ -48,11 +48,21 @@ public class CommFunctionBlockLayer extends AbstractCommunicationLayer implement
 		return getOutputLayer().getBoolArray();
 	}
 
+	@Override
+	public int getBoolArray(boolean[] dst) {
+		return getOutputLayer().getBoolArray(dst);
+	}
+
 	@Override
 	public DateAndTime getDateAndTime() {
 		return getOutputLayer().getDateAndTime();
 	}
 
+	@Override
+	public long getDateAndTimeMillis() {
+		return getOutputLayer().getDateAndTimeMillis();
+	}
+
 	@Override
 	public DateAndTime[] getDateAndTimeArray() {
 		return getOutputLayer().getDateAndTimeArray();
@@ -68,6 +78,11 @@ public class CommFunctionBlockLayer extends AbstractCommunicationLayer implement
 		return getOutputLayer().getDoubleArray();
 	}
 
+	@Override
+	public int getDoubleArray(double[] dst) {
+		return getOutputLayer().getDoubleArray(dst);
+	}
+
 	@Override
 	public float getFloat() {
 		return getOutputLayer().getFloat();
@@ -78,6 +93,11 @@ public class CommFunctionBlockLayer extends AbstractCommunicationLayer implement
 		return getOutputLayer().getFloatArray();
 	}
 
+	@Override
+	public int getFloatArray(float[] dst) {
+		return getOutputLayer().getFloatArray(dst);
+	}
+
 	@Override
 	public int getInt() {
 		return getOutputLayer().getInt();
@@ -88,6 +108,11 @@ public class CommFunctionBlockLayer extends AbstractCommunicationLayer implement
 		return getOutputLayer().getIntArray();
 	}
 
+	@Override
+	public int getIntArray(int[] dst) {
+		return getOutputLayer().getIntArray(dst);
+	}
+
 	 // TODO: Re-add this feature when Polysun updates to Java 8 SE
 //	@Override
 //	public LocalDateTime getLocalDateTime() {
@@ -109,6 +134,11 @@ public class CommFunctionBlockLayer extends AbstractCommunicationLayer implement
 		return getOutputLayer().getLongArray();
 	}
 
+	@Override
+	public int getLongArray(long[] dst) {
+		return getOutputLayer().getLongArray(dst);
+	}
+
 	@Override
 	public int getNumDataValues() {
 		return getOutputLayer().getNumDataValues();
@@ -251,6 +281,11 @@ public class CommFunctionBlockLayer extends AbstractCommunicationLayer implement
 		return getInputLayer().put(value);
 	}
 
+	@Override
+	public boolean putDateAndTimeMillis(long forteTime) {
+		return getInputLayer().putDateAndTimeMillis(forteTime);
+	}
+
 	@Override
 	public boolean put(DateAndTime[] value) {
 		return getInputLayer().put(value);
@@ -362,6 +397,9 @@ public class CommFunctionBlockLayer extends AbstractCommunicationLayer implement
 			setConnectionState(getBelow().openConnection(params));
 			setIntermediateLayerConnectionstate();
 			// Initialize intermediate layers
+			getOutputLayer().setFrameBuffering(params.isFrameBuffering());
+			getInputLayer().setStringCharset(params.getStringCharset());
+			getOutputLayer().setStringCharset(params.getStringCharset());
 			getInputLayer().initialise(params.getInputs(), params.getInputArrayLengths());
 			getOutputLayer().initialise(params.getOutputs(), params.getOutputArrayLengths());
 		}
@@ -388,6 +426,11 @@ public class CommFunctionBlockLayer extends AbstractCommunicationLayer implement
 		getOutputLayer().recvData();
 	}
 	
+	@Override
+	public ForteFrameView recvFrame() throws IOException {
+		return getOutputLayer().recvFrame();
+	}
+	
 	@Override
 	public byte readByte() throws IOException {
 		return getOutputLayer().readByte();
@@ -408,11 +451,21 @@ public class CommFunctionBlockLayer extends AbstractCommunicationLayer implement
 		return getOutputLayer().readFloat();
 	}
 	
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		getOutputLayer().readFully(b, off, len);
+	}
+	
 	@Override
 	public boolean isConnected() {
 		return getConnectionState();
 	}
 	
+	@Override
+	public boolean isHealthy() {
+		return isConnected() && getOutputLayer().isHealthy(); // The output layer holds the received frames
+	}
+	
 	/**
 	 * Updates the connection state of the input/output layers 
 	 * just in case they are ever called.
@@ -1,8 +1,10 @@
 package de.htw.berlin.polysun4diac.forte.comm;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -42,6 +44,26 @@ public class CommLayerParams extends InetSocketAddress {
 	private static final ForteServiceType DEFSERVICE = ForteServiceType.CLIENT;
 	/** Default array length */
 	private static final int DEFARRAYLENGTH = 1;
+	/** Default setting for buffering received frames */
+	private static final boolean DEFFRAMEBUFFERING = true;
+	/** Default transport of TCP connections */
+	private static final ForteTransportType DEFTRANSPORT = ForteTransportType.SOCKET;
+	/** Default setting for disabling Nagle's algorithm on TCP connections */
+	private static final boolean DEFTCPNODELAY = true;
+	/** Socket buffer size indicating that the operating system's default is used */
+	private static final int DEFSOCKETBUFFERSIZE = 0;
+	/** Default setting for conflating received datagrams of subscribers */
+	private static final boolean DEFCONFLATING = false;
+	/** Timeout indicating that connecting and accepting connections block until the connection has been established */
+	private static final int DEFCONNECTTIMEOUT = 0;
+	/** Prefix of the default name of the socket file of Unix domain socket connections */
+	private static final String UNIXSOCKETPREFIX = "forte_";
+	/** Suffix of the default name of the socket file of Unix domain socket connections */
+	private static final String UNIXSOCKETSUFFIX = ".sock";
+	/** Suffix of the default name of the file of shared memory connections */
+	private static final String SHMSUFFIX = ".shm";
+	/** Directory backed by memory on Linux, preferred for the file of shared memory connections */
+	private static final String SHMDIR = "/dev/shm";
 	
 	/**
 	 * Used by the IPCommunicationLayer to determine which layer to set up below.
@@ -55,6 +77,26 @@ public class CommLayerParams extends InetSocketAddress {
 	private List<Integer> mInputArrayLengths;
 	/** Array lengths of the output data types */
 	private List<Integer> mOutputArrayLengths;
+	/** Flag indicating whether received frames are buffered by stream-based communication layers */
+	private boolean mFrameBuffering = DEFFRAMEBUFFERING;
+	/** Used by the IPCommunicationLayer to determine which TCP layer to set up below */
+	private ForteTransportType mTransportType = DEFTRANSPORT;
+	/** Flag indicating whether TCP_NODELAY is set on TCP connections */
+	private boolean mTcpNoDelay = DEFTCPNODELAY;
+	/** Size of the socket's send buffer in bytes (0 for the operating system's default) */
+	private int mSocketSendBufferSize = DEFSOCKETBUFFERSIZE;
+	/** Size of the socket's receive buffer in bytes (0 for the operating system's default) */
+	private int mSocketReceiveBufferSize = DEFSOCKETBUFFERSIZE;
+	/** Flag indicating whether subscribers only decode the newest of the received datagrams */
+	private boolean mConflating = DEFCONFLATING;
+	/** Timeout in milliseconds for establishing TCP, Unix domain socket and shared memory connections (0 for no timeout) */
+	private int mConnectTimeout = DEFCONNECTTIMEOUT;
+	/** Path of the socket file of Unix domain socket connections (null for the default path) */
+	private String mUnixSocketPath = null;
+	/** Path of the file of shared memory connections (null for the default path) */
+	private String mShmPath = null;
+	/** Name of the charset for encoding and decoding STRINGs (stored by name, because Charset is not serializable) */
+	private String mStringCharset = Charset.defaultCharset().name();
 
 	/**
 	 * Creates a set of communication layer parameters with the default address and a specified port.
@@ -104,6 +146,208 @@ public class CommLayerParams extends InetSocketAddress {
 		mServiceType = type;
 	}
 	
+	/**
+	 * @return true if received frames are buffered by stream-based (TCP) communication layers.
+	 * Always false for SUBSCRIBERs and PUBLISHERs, since a frame must not be read across the end of a datagram.
+	 */
+	public boolean isFrameBuffering() {
+		if (getServiceType() == ForteServiceType.SUBSCRIBER || getServiceType() == ForteServiceType.PUBLISHER) {
+			return false;
+		}
+		return mFrameBuffering;
+	}
+	
+	/**
+	 * Enables or disables buffering of received frames (enabled by default).
+	 * If enabled, stream-based (TCP) communication layers read FORTE frames into a buffer that is sized according to the outputs,
+	 * so that the data can be decoded from memory. The type IDs are checked while reading, so that a frame that does not match
+	 * the outputs is decoded by its type IDs instead.
+	 * If disabled, every byte is read from the socket's input stream directly.
+	 * @param buffering true to enable frame buffering
+	 */
+	public void setFrameBuffering(boolean buffering) {
+		mFrameBuffering = buffering;
+	}
+	
+	/**
+	 * @return the charset used for encoding and decoding IEC 61499 STRINGs.
+	 */
+	public Charset getStringCharset() {
+		return Charset.forName(mStringCharset);
+	}
+	
+	/**
+	 * Sets the charset used for encoding and decoding IEC 61499 STRINGs (the platform's default charset by default).
+	 * FORTE represents each character of a STRING by a single byte, so StandardCharsets.ISO_8859_1 is recommended.
+	 * @param charset the charset
+	 */
+	public void setStringCharset(Charset charset) {
+		mStringCharset = charset.name();
+	}
+	
+	/**
+	 * @return A ForteTransportType enum used by the IPCommunicationLayer to determine which TCP layer to set up below
+	 */
+	public ForteTransportType getTransportType() {
+		return mTransportType;
+	}
+	
+	/**
+	 * Sets the transport of TCP connections (ForteTransportType.SOCKET by default).
+	 * ForteTransportType.NIO uses a SocketChannel with direct ByteBuffers. It is a drop-in replacement for the socket-based layers.
+	 * For SUBSCRIBER connections, any transport other than ForteTransportType.SOCKET uses a DatagramChannel that receives
+	 * each datagram into a reusable direct ByteBuffer (see {@link NIOsubscriberCommLayer}).
+	 * For PUBLISHER connections, it uses a DatagramChannel connected to the subscribers (see {@link NIOpublisherCommLayer}).
+	 * ForteTransportType.UNIX connects CLIENT and SERVER connections via the Unix domain socket {@link #getUnixSocketPath()}.
+	 * ForteTransportType.SHM exchanges the frames of CLIENT and SERVER connections via the shared memory file {@link #getShmPath()}
+	 * and falls back to ForteTransportType.SOCKET if the file cannot be set up.
+	 * @param type the transport type
+	 */
+	public void setTransportType(ForteTransportType type) {
+		mTransportType = type;
+	}
+	
+	/**
+	 * @return true if Nagle's algorithm is disabled (TCP_NODELAY) on TCP connections.
+	 */
+	public boolean isTcpNoDelay() {
+		return mTcpNoDelay;
+	}
+	
+	/**
+	 * Enables or disables TCP_NODELAY on TCP connections (enabled by default).
+	 * Plugin controllers exchange small frames and wait for the response of FORTE in each time step. With Nagle's algorithm
+	 * and delayed acknowledgements, each exchange can be delayed by tens of milliseconds.
+	 * @param noDelay true to send small frames immediately
+	 */
+	public void setTcpNoDelay(boolean noDelay) {
+		mTcpNoDelay = noDelay;
+	}
+	
+	/**
+	 * @return the size of the socket's send buffer in bytes (0 for the operating system's default).
+	 */
+	public int getSocketSendBufferSize() {
+		return mSocketSendBufferSize;
+	}
+	
+	/**
+	 * Sets the size of the socket's send buffer (SO_SNDBUF) of TCP connections.
+	 * @param size size in bytes (0 or less for the operating system's default)
+	 */
+	public void setSocketSendBufferSize(int size) {
+		mSocketSendBufferSize = size;
+	}
+	
+	/**
+	 * @return the size of the socket's receive buffer in bytes (0 for the operating system's default).
+	 */
+	public int getSocketReceiveBufferSize() {
+		return mSocketReceiveBufferSize;
+	}
+	
+	/**
+	 * Sets the size of the socket's receive buffer (SO_RCVBUF) of TCP connections.
+	 * @param size size in bytes (0 or less for the operating system's default)
+	 */
+	public void setSocketReceiveBufferSize(int size) {
+		mSocketReceiveBufferSize = size;
+	}
+	
+	/**
+	 * @return the timeout in milliseconds for establishing TCP, Unix domain socket and shared memory connections (0 for no timeout).
+	 */
+	public int getConnectTimeout() {
+		return mConnectTimeout;
+	}
+	
+	/**
+	 * Sets the timeout for establishing TCP, Unix domain socket and shared memory connections (no timeout by default).
+	 * Clients give up connecting and servers give up waiting for FORTE to connect after the timeout
+	 * with a java.net.SocketTimeoutException, instead of blocking the simulation indefinitely.
+	 * @param timeout timeout in milliseconds (0 or less for no timeout)
+	 */
+	public void setConnectTimeout(int timeout) {
+		mConnectTimeout = Math.max(timeout, 0);
+	}
+	
+	/**
+	 * @return the path of the socket file used by the ForteTransportType.UNIX transport.
+	 * Unless set otherwise, this is the file forte_[port].sock in the temporary directory of the system.
+	 */
+	public String getUnixSocketPath() {
+		if (mUnixSocketPath == null) {
+			return new File(System.getProperty("java.io.tmpdir"), UNIXSOCKETPREFIX + getPort() + UNIXSOCKETSUFFIX).getPath();
+		}
+		return mUnixSocketPath;
+	}
+	
+	/**
+	 * Sets the path of the socket file used by the ForteTransportType.UNIX transport.
+	 * The path must match the one the FORTE runtime on the same host uses.
+	 * @param path path of the socket file (null for the default path)
+	 */
+	public void setUnixSocketPath(String path) {
+		mUnixSocketPath = path;
+	}
+	
+	/**
+	 * @return the path of the file used by the ForteTransportType.SHM transport.
+	 * Unless set otherwise, this is the file forte_[port].shm in /dev/shm or, if that does not exist, in the temporary directory of the system.
+	 */
+	public String getShmPath() {
+		if (mShmPath == null) {
+			File dir = new File(SHMDIR);
+			if (!dir.isDirectory()) {
+				dir = new File(System.getProperty("java.io.tmpdir"));
+			}
+			return new File(dir, UNIXSOCKETPREFIX + getPort() + SHMSUFFIX).getPath();
+		}
+		return mShmPath;
+	}
+	
+	/**
+	 * Sets the path of the file used by the ForteTransportType.SHM transport.
+	 * The path must match the one in the ID of the FORTE function block (e.g. "fbdk[].shm[/dev/shm/forte_61499.shm]").
+	 * @param path path of the file (null for the default path)
+	 */
+	public void setShmPath(String path) {
+		mShmPath = path;
+	}
+	
+	/**
+	 * @return true if SUBSCRIBERs only decode the newest of the datagrams received since the last frame was decoded.
+	 */
+	public boolean isConflating() {
+		return mConflating;
+	}
+	
+	/**
+	 * Enables or disables conflation of received datagrams for SUBSCRIBER connections (disabled by default).
+	 * If FORTE publishes faster than Polysun consumes, a subscriber would otherwise decode a backlog of stale datagrams, one per time step.
+	 * If enabled, all datagrams that have been received are drained from the socket without blocking and only the newest one is decoded,
+	 * so that the plugin always acts on the current values. Conflation uses a DatagramChannel regardless of the transport type
+	 * (see {@link NIOsubscriberCommLayer#getNumConflated()}).
+	 * @param conflating true to decode only the newest datagram
+	 */
+	public void setConflating(boolean conflating) {
+		mConflating = conflating;
+	}
+	
+	/**
+	 * @return true if the IPcommunicationLayer sets up a {@link NIOsubscriberCommLayer} below.
+	 */
+	boolean isDatagramChannelSubscriber() {
+		return getServiceType() == ForteServiceType.SUBSCRIBER && (getTransportType() != ForteTransportType.SOCKET || isConflating());
+	}
+	
+	/**
+	 * @return the maximum number of bytes of a frame containing the outputs to be received from FORTE.
+	 */
+	int getReceiveFrameSize() {
+		return ForteCodecPlan.getPlan(getOutputs(), getOutputArrayLengths()).getFrameSize();
+	}
+	
 	/**
 	 * @return an InetSocketAddress object with this object's IP and port settings.
 	 */
@@ -223,19 +467,68 @@ public class CommLayerParams extends InetSocketAddress {
 	 * @throws IOException 
 	 */
 	public IForteSocket makeIPSocket() throws IOException {
+		return makeSocket(new IPcommunicationLayer());
+	}
+	
+	/**
+	 * @param below the communication layer below the data buffer layers, e.g. a {@link LoopbackCommLayer}
+	 * @return a socket using the specified layer for the communication and the inputs and outputs set for this object.
+	 * The connection is opened by passing this object to the socket's openConnection() method.
+	 * @throws IOException
+	 */
+	public IForteSocket makeSocket(ICommunicationLayer below) throws IOException {
 		if (isSameInputsOutputs()) {
 			ForteDataBufferLayer socket = new ForteDataBufferLayer();
-			socket.setBelow(new IPcommunicationLayer());
-			socket.openConnection(this);
+			socket.setBelow(below);
+			openSocket(socket, below);
 			return socket;
 		}
 		// Inputs and outputs vary from one another.
 		CommFunctionBlockLayer socket = new CommFunctionBlockLayer();
-		socket.setBelow(new IPcommunicationLayer());
-		socket.openConnection(this);
+		socket.setBelow(below);
+		openSocket(socket, below);
 		return socket;
 	}
 	
+	/**
+	 * Opens the connection of a socket. If the connection cannot be opened, the layer below is closed
+	 * (e.g. the server socket of a server that timed out waiting for FORTE), so that the connection can be retried.
+	 * @param socket the socket
+	 * @param below the communication layer below the data buffer layers
+	 * @throws IOException
+	 */
+	private void openSocket(ICommunicationLayer socket, ICommunicationLayer below) throws IOException {
+		try {
+			socket.openConnection(this);
+		} catch (IOException e) {
+			try {
+				below.closeConnection();
+			} catch (IOException ignored) {
+				// Ignore. Only partially opened.
+			}
+			throw e;
+		}
+	}
+	
+	/**
+	 * @return a key identifying the connection (host, port, service type, transport) and the layout of the inputs and outputs.
+	 * Used by the {@link ForteSessionRegistry} to reuse sockets only for identical connections.
+	 */
+	String getSessionKey() {
+		StringBuilder key = new StringBuilder();
+		key.append(getHostString()).append(':').append(getPort())
+			.append('/').append(getServiceType()).append('/').append(getTransportType());
+		if (getTransportType() == ForteTransportType.UNIX) {
+			key.append('/').append(getUnixSocketPath());
+		} else if (getTransportType() == ForteTransportType.SHM) {
+			key.append('/').append(getShmPath());
+		}
+		key.append('/').append(getInputs()).append(getInputArrayLengths())
+			.append('/').append(getOutputs()).append(getOutputArrayLengths())
+			.append('/').append(getStringCharset().name());
+		return key.toString();
+	}
+	
 	/**
 	 * @return true if the inputs and outputs are the same types, false otherwise
 	 */
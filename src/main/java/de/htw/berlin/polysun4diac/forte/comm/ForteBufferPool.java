@@ -0,0 +1,105 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Size-classed pool of heap ByteBuffers used as send buffers for variable-length payloads (STRINGs).
+ * </p>
+ * The capacities of pooled buffers are powers of 2 between {@link #MINCAPACITY} and {@link #MAXCAPACITY} bytes.
+ * A send buffer that overflows is replaced by a buffer of the next larger size class and returned after the frame has been sent,
+ * so that buffers are recycled between all layers instead of being reallocated for every large frame.
+ * Larger buffers are allocated with the exact capacity and are not pooled.
+ * </p>
+ * The pool is thread-safe.
+ */
+final class ForteBufferPool {
+
+	/** Exponent of the smallest size class */
+	private static final int MINSHIFT = 8;
+	/** Exponent of the largest size class */
+	private static final int MAXSHIFT = 20;
+	/** Capacity of the smallest size class */
+	static final int MINCAPACITY = 1 << MINSHIFT;
+	/** Capacity of the largest size class */
+	static final int MAXCAPACITY = 1 << MAXSHIFT;
+	/** Maximum number of idle buffers kept per size class */
+	private static final int MAXIDLEPERCLASS = 4;
+
+	/** Idle buffers of each size class */
+	private static final Queue<?>[] IDLE = new Queue<?>[MAXSHIFT - MINSHIFT + 1];
+	/** Number of idle buffers of each size class */
+	private static final AtomicIntegerArray NUMIDLE = new AtomicIntegerArray(IDLE.length);
+
+	static {
+		for (int i = 0; i < IDLE.length; i++) {
+			IDLE[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+		}
+	}
+
+	private ForteBufferPool() {
+		// Static methods only
+	}
+
+	/**
+	 * Takes a cleared buffer with at least the specified capacity from the pool.
+	 * A new buffer is allocated if there is no idle buffer of the matching size class.
+	 * @param minCapacity minimum number of bytes the buffer must hold
+	 * @return a cleared buffer
+	 */
+	static ByteBuffer acquire(int minCapacity) {
+		int cls = sizeClass(minCapacity);
+		if (cls < 0) {
+			return ByteBuffer.allocate(minCapacity);
+		}
+		ByteBuffer buffer = idle(cls).poll();
+		if (buffer == null) {
+			return ByteBuffer.allocate(MINCAPACITY << cls);
+		}
+		NUMIDLE.decrementAndGet(cls);
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * Returns a buffer to the pool. Buffers that do not match a size class or that exceed the number of idle buffers
+	 * of their size class are left to the garbage collector. The buffer must not be used after it has been released.
+	 * @param buffer buffer to return
+	 */
+	static void release(ByteBuffer buffer) {
+		if (buffer == null || !buffer.hasArray()) {
+			return;
+		}
+		int capacity = buffer.capacity();
+		int cls = sizeClass(capacity);
+		if (cls < 0 || (MINCAPACITY << cls) != capacity) {
+			return;
+		}
+		if (NUMIDLE.incrementAndGet(cls) > MAXIDLEPERCLASS) {
+			NUMIDLE.decrementAndGet(cls);
+			return;
+		}
+		idle(cls).offer(buffer);
+	}
+
+	/**
+	 * @param capacity number of bytes
+	 * @return the index of the smallest size class that can hold the number of bytes or -1 if it exceeds {@link #MAXCAPACITY}
+	 */
+	static int sizeClass(int capacity) {
+		if (capacity > MAXCAPACITY) {
+			return -1;
+		}
+		if (capacity <= MINCAPACITY) {
+			return 0;
+		}
+		return (Integer.SIZE - Integer.numberOfLeadingZeros(capacity - 1)) - MINSHIFT;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Queue<ByteBuffer> idle(int cls) {
+		return (Queue<ByteBuffer>) IDLE[cls];
+	}
+}
@@ -0,0 +1,172 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free single-producer/single-consumer byte queue connecting the two endpoints of a {@link LoopbackCommLayer}.
+ * </p>
+ * The bytes are stored in a ring of fixed capacity. The writer and the reader each own a position counter that the other side
+ * only reads, so no locks or compare-and-set operations are needed. A writer waits while the ring is full, a reader waits while
+ * it is empty. Waiting threads spin, then yield and finally park for short periods.
+ */
+final class ForteByteQueue {
+
+	/** Minimum capacity of the ring in bytes (enough for any value that is read at once) */
+	private static final int MINCAPACITY = 16;
+	/** Number of polls before a waiting thread yields */
+	private static final int SPINS = 100;
+	/** Number of polls before a waiting thread parks */
+	private static final int YIELDS = 1000;
+	/** Time a waiting thread parks between polls (in ns) */
+	private static final long PARK_NS = 10000;
+
+	/** The ring */
+	private final byte[] mRing;
+	/** Mask for converting a position to an index of the ring */
+	private final int mMask;
+	/** Number of bytes written (only written by the writer) */
+	private final AtomicLong mHead = new AtomicLong();
+	/** Number of bytes read (only written by the reader) */
+	private final AtomicLong mTail = new AtomicLong();
+	/** Flag indicating whether the queue has been closed */
+	private volatile boolean mClosed = false;
+
+	/**
+	 * Constructor.
+	 * @param capacity capacity of the ring in bytes (rounded up to the next power of two)
+	 */
+	ForteByteQueue(int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity, MINCAPACITY) - 1) << 1;
+		mRing = new byte[size];
+		mMask = size - 1;
+	}
+
+	/**
+	 * Writes bytes to the queue. Blocks while the ring is full.
+	 * @throws IOException if the queue has been closed
+	 */
+	void write(byte[] data, int off, int len) throws IOException {
+		long head = mHead.get();
+		while (len > 0) {
+			long tail = mTail.get();
+			for (int i = 0; head - tail == mRing.length; i++) {
+				checkClosed();
+				backOff(i); // Wait for the reader
+				tail = mTail.get();
+			}
+			checkClosed();
+			int index = (int) (head & mMask);
+			int n = (int) Math.min(len, Math.min(mRing.length - (head - tail), mRing.length - index));
+			System.arraycopy(data, off, mRing, index, n);
+			head += n;
+			off += n;
+			len -= n;
+			mHead.lazySet(head); // Ordered store publishing the bytes
+		}
+	}
+
+	/**
+	 * Reads a byte from the queue. Blocks while the ring is empty.
+	 * @throws EOFException if the queue has been closed and all bytes have been read
+	 */
+	byte read() throws IOException {
+		long tail = mTail.get();
+		awaitBytes(tail);
+		byte b = mRing[(int) (tail & mMask)];
+		mTail.lazySet(tail + 1);
+		return b;
+	}
+
+	/**
+	 * Reads the specified number of bytes (big-endian) into a long value. Blocks until all bytes have been written.
+	 * @param n number of bytes (up to 8)
+	 * @throws EOFException if the queue has been closed and all bytes have been read
+	 */
+	long read(int n) throws IOException {
+		long tail = mTail.get();
+		long value = 0;
+		for (int i = 0; i < n; i++) {
+			awaitBytes(tail);
+			value = (value << Byte.SIZE) | (mRing[(int) (tail & mMask)] & 0xFF);
+			tail++;
+		}
+		mTail.lazySet(tail);
+		return value;
+	}
+
+	/**
+	 * Reads bytes from the queue. Blocks until all bytes have been written.
+	 * @throws EOFException if the queue has been closed and all bytes have been read
+	 */
+	void read(byte[] b, int off, int len) throws IOException {
+		long tail = mTail.get();
+		while (len > 0) {
+			long available = awaitBytes(tail);
+			int index = (int) (tail & mMask);
+			int n = (int) Math.min(len, Math.min(available, mRing.length - index));
+			System.arraycopy(mRing, index, b, off, n);
+			tail += n;
+			off += n;
+			len -= n;
+			mTail.lazySet(tail); // Free the space for the writer
+		}
+	}
+
+	/**
+	 * @return true if the queue is open and all bytes written have been read
+	 */
+	boolean isIdle() {
+		return !mClosed && mHead.get() == mTail.get();
+	}
+
+	/**
+	 * Closes the queue. The reader can read the bytes that have been written before.
+	 */
+	void close() {
+		mClosed = true;
+	}
+
+	/**
+	 * Waits until bytes are available.
+	 * @param tail current read position
+	 * @return the number of bytes available
+	 * @throws EOFException if the queue has been closed and all bytes have been read
+	 */
+	private long awaitBytes(long tail) throws EOFException {
+		long available;
+		for (int i = 0; (available = mHead.get() - tail) == 0; i++) {
+			if (mClosed && mHead.get() == tail) {
+				throw new EOFException("Loopback connection closed by peer.");
+			}
+			backOff(i); // Wait for the writer
+		}
+		return available;
+	}
+
+	/**
+	 * @throws IOException if the queue has been closed
+	 */
+	private void checkClosed() throws IOException {
+		if (mClosed) {
+			throw new IOException("Loopback connection closed.");
+		}
+	}
+
+	/**
+	 * Waits before polling the positions again.
+	 * @param iteration number of polls so far
+	 */
+	private static void backOff(int iteration) {
+		if (iteration < SPINS) {
+			return;
+		}
+		if (iteration < YIELDS) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(PARK_NS);
+		}
+	}
+}
@@ -0,0 +1,472 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import static de.htw.berlin.polysun4diac.forte.datatypes.ForteTypeIDs.*;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.InputMismatchException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import de.htw.berlin.polysun4diac.forte.datatypes.DateAndTime;
+import de.htw.berlin.polysun4diac.forte.datatypes.ForteDataType;
+
+/**
+ * Precompiled encoder/decoder plan for a fixed layout of FORTE data types (e.g. the inputs or outputs of a CommLayerParams object).
+ * </p>
+ * The plan resolves everything that only depends on the layout once: the codec of each slot, the type ID and number of data bytes
+ * written per value and the size of the byte buffer needed to hold a frame. A {@link ForteDataBufferLayer} executes one specialized
+ * {@link SlotCodec} per slot, so that no type dispatch is necessary when sending or receiving data.
+ * </p>
+ * Plans are immutable and are shared between all buffer layers with identical layouts (see {@link #getPlan(List, List)}).
+ */
+final class ForteCodecPlan implements Serializable {
+
+	private static final long serialVersionUID = 2281914564227216745L;
+
+	/** Cache of the plans that have been compiled so far (key: data types followed by array sizes) */
+	private static final ConcurrentMap<List<Object>, ForteCodecPlan> PLANS = new ConcurrentHashMap<>();
+
+	/** IEC 61499 data type at each position */
+	private final ForteDataType[] mTypes;
+	/** Indicates whether type at position is an array or not */
+	private final boolean[] mArrayFlags;
+	/** Array sizes as specified in the layout (1 for non-arrays) */
+	private final int[] mArraySizes;
+	/** Codec at each position */
+	private final SlotCodec[] mCodecs;
+	/** Offset of the type ID of each position within a frame (only valid for layouts with a fixed frame size) */
+	private final int[] mSlotOffsets;
+	/** Number of bytes needed to hold a frame with this layout */
+	private final int mFrameSize;
+	/** Flag indicating whether every frame with this layout has exactly {@link #mFrameSize} bytes */
+	private final boolean mFixedFrameSize;
+	/** Initial capacity of the send buffer (STRINGs are accounted for with {@link #STRINGALLOWANCE} bytes) */
+	private final int mSendBufferSize;
+	/** Flag indicating whether the number of bytes sent with this layout depends on the values (STRINGs) */
+	private final boolean mVariableLength;
+
+	/** Number of bytes initially reserved for the data of a STRING in the send buffer (the buffer grows on demand) */
+	static final int STRINGALLOWANCE = 62;
+
+	/**
+	 * Constructor
+	 * @param dataTypes List containing the ForteDataType enumerations.
+	 * @param arraySizes List containing the corresponding array sizes (1 for non-arrays)
+	 */
+	private ForteCodecPlan(List<Enum<?>> dataTypes, List<Integer> arraySizes) {
+		int numDataValues = dataTypes.size();
+		mTypes = new ForteDataType[numDataValues];
+		mArrayFlags = new boolean[numDataValues];
+		mArraySizes = new int[numDataValues];
+		mCodecs = new SlotCodec[numDataValues];
+		mSlotOffsets = new int[numDataValues];
+		int numBytes = 0;
+		int sendBytes = 0;
+		int ct = 0;
+		boolean fixedFrameSize = true;
+		boolean variableLength = false;
+		Iterator<Enum<?>> dataIt = dataTypes.iterator();
+		Iterator<Integer> arrSizeIt = arraySizes.iterator();
+		while (dataIt.hasNext() && arrSizeIt.hasNext()) {
+			int arrSize = arrSizeIt.next();
+			ForteDataType type = (ForteDataType) dataIt.next();
+			int bytes = type.getNumBytes();
+			mSlotOffsets[ct] = numBytes;
+			// STRINGs are sent with the type ID, the 2 byte length header and the encoded characters
+			int sendElementBytes = ForteDataType.STRING.equals(type) ? 3 + STRINGALLOWANCE : bytes;
+			if (arrSize > 1) { // Array
+				// 4 elements added for headers + array size (2 bytes) + number of bytes of array data
+				numBytes += 4 + ((bytes - 1 < 1) ? 1 : bytes - 1) * arrSize; // Limit to [1, inf]
+				sendBytes += 4 + ((sendElementBytes - 1 < 1) ? 1 : sendElementBytes - 1) * arrSize;
+				mArrayFlags[ct] = true;
+				fixedFrameSize = false; // The number of elements received is determined by the length header
+			} else { // Not an array
+				numBytes += bytes;
+				sendBytes += sendElementBytes;
+				mArrayFlags[ct] = false;
+			}
+			mTypes[ct] = type;
+			mArraySizes[ct] = arrSize;
+			mCodecs[ct] = SlotCodec.forType(type);
+			if (ForteDataType.STRING.equals(type) || ForteDataType.NONE.equals(type)) {
+				fixedFrameSize = false; // Variable length or response only
+			}
+			if (ForteDataType.STRING.equals(type)) {
+				variableLength = true;
+			}
+			ct++;
+		}
+		mFrameSize = numBytes;
+		mFixedFrameSize = fixedFrameSize && numDataValues > 0;
+		mSendBufferSize = sendBytes;
+		mVariableLength = variableLength;
+	}
+
+	/**
+	 * Returns the plan for the specified layout. The plan is compiled on the first request and reused for all layouts with
+	 * the same data types and array sizes.
+	 * @param dataTypes List containing the ForteDataType enumerations.
+	 * This could be the inputs of outputs set in a CommLayerParams object.
+	 * @param arraySizes List containing the corresponding array sizes (1 for non-arrays)
+	 * This could be the array sizes set in a CommLayerParams object.
+	 * @return the codec plan
+	 */
+	static ForteCodecPlan getPlan(List<Enum<?>> dataTypes, List<Integer> arraySizes) {
+		if (dataTypes.size() != arraySizes.size()) {
+			throw new InputMismatchException("The sizes of the inputs do not match.");
+		}
+		List<Object> key = new ArrayList<Object>(dataTypes.size() + arraySizes.size());
+		key.addAll(dataTypes);
+		key.addAll(arraySizes);
+		ForteCodecPlan plan = PLANS.get(key);
+		if (plan == null) {
+			plan = new ForteCodecPlan(dataTypes, arraySizes);
+			ForteCodecPlan existing = PLANS.putIfAbsent(key, plan);
+			if (existing != null) {
+				plan = existing;
+			}
+		}
+		return plan;
+	}
+
+	/** @return the number of data values (slots) in this layout */
+	int getNumDataValues() {
+		return mTypes.length;
+	}
+
+	/** @return the IEC 61499 data type at the specified position */
+	ForteDataType getType(int position) {
+		return mTypes[position];
+	}
+
+	/** @return the FORTE type ID at the specified position */
+	byte getTypeID(int position) {
+		return mTypes[position].getTypeID();
+	}
+
+	/** @return the codec at the specified position */
+	SlotCodec getCodec(int position) {
+		return mCodecs[position];
+	}
+
+	/** @return true if the specified position holds an array */
+	boolean isArray(int position) {
+		return mArrayFlags[position];
+	}
+
+	/** @return the array size specified for the position (1 for non-arrays) */
+	int getArraySize(int position) {
+		return mArraySizes[position];
+	}
+
+	/** @return the number of bytes needed to hold a frame with this layout */
+	int getFrameSize() {
+		return mFrameSize;
+	}
+
+	/**
+	 * @return true if every frame with this layout has exactly {@link #getFrameSize()} bytes,
+	 * i.e., the layout contains neither arrays nor STRINGs and is not a response-only layout.
+	 */
+	boolean hasFixedFrameSize() {
+		return mFixedFrameSize;
+	}
+
+	/**
+	 * @param position position of the value
+	 * @return the offset of the type ID of the value within a frame. Only valid if {@link #hasFixedFrameSize()} is true.
+	 */
+	int getSlotOffset(int position) {
+		return mSlotOffsets[position];
+	}
+
+	/**
+	 * @return the initial capacity of the send buffer. This equals {@link #getFrameSize()} unless the layout contains STRINGs,
+	 * which are accounted for with {@link #STRINGALLOWANCE} bytes instead of their maximum length.
+	 */
+	int getSendBufferSize() {
+		return mSendBufferSize;
+	}
+
+	/** @return true if the number of bytes sent with this layout depends on the values, i.e., the layout contains STRINGs */
+	boolean hasVariableLength() {
+		return mVariableLength;
+	}
+
+	/**
+	 * Specialized decoder for a single slot. Each IEC 61499 data type maps to exactly one codec.
+	 */
+	enum SlotCodec {
+		/** Decodes BOOL values (the value is encoded in the type ID) */
+		BOOL(JavaType.BOOL, 0, TBOOLID) {
+			@Override
+			boolean accepts(byte typeID) {
+				return typeID == TBOOLID || typeID == FBOOLID;
+			}
+			@Override
+			void decode(ForteDataBufferLayer layer, ForteDataSlots slots, int position, byte typeID) {
+				slots.setBool(position, typeID == TBOOLID);
+			}
+			@Override
+			void decodeArray(ForteDataBufferLayer layer, ForteDataSlots slots, int position, int length, byte typeID) throws IOException {
+				boolean[] boolArray = slots.reuseBoolArray(position, length);
+				// BOOL array elements consist of their type IDs only, so the type ID that has been read is the first element
+				ByteBuffer bulk = layer.readBulk(Math.max(length - 1, 0));
+				for (int i = 0; i < length; i++) {
+					boolArray[i] = ((i == 0) ? typeID : bulk.get()) == TBOOLID;
+				}
+			}
+		},
+		/** Decodes 1 byte integers */
+		SINT(JavaType.INT, SINTBN - 1, SINTID, USINTID),
+		/** Decodes 2 byte integers */
+		INT(JavaType.INT, INTBN - 1, INTID, UINTID),
+		/** Decodes 4 byte integers */
+		DINT(JavaType.INT, DINTBN - 1, DINTID, UDINTID),
+		/** Decodes 8 byte integers */
+		LINT(JavaType.LONG, LINTBN - 1, LINTID, ULINTID) {
+			@Override
+			void decode(ForteDataBufferLayer layer, ForteDataSlots slots, int position, byte typeID) throws IOException {
+				slots.setLong(position, layer.readLong());
+			}
+			@Override
+			void decodeArray(ForteDataBufferLayer layer, ForteDataSlots slots, int position, int length, byte typeID) throws IOException {
+				long[] longArray = slots.reuseLongArray(position, length);
+				layer.readBulk(length * getDataWidth()).asLongBuffer().get(longArray);
+			}
+		},
+		/** Decodes REAL values */
+		REAL(JavaType.FLOAT, REALBN - 1, REALID) {
+			@Override
+			void decode(ForteDataBufferLayer layer, ForteDataSlots slots, int position, byte typeID) throws IOException {
+				slots.setFloat(position, layer.readFloat());
+			}
+			@Override
+			void decodeArray(ForteDataBufferLayer layer, ForteDataSlots slots, int position, int length, byte typeID) throws IOException {
+				float[] floatArray = slots.reuseFloatArray(position, length);
+				layer.readBulk(length * getDataWidth()).asFloatBuffer().get(floatArray);
+			}
+		},
+		/** Decodes LREAL values */
+		LREAL(JavaType.DOUBLE, LREALBN - 1, LREALID) {
+			@Override
+			void decode(ForteDataBufferLayer layer, ForteDataSlots slots, int position, byte typeID) throws IOException {
+				slots.setDouble(position, layer.readDouble());
+			}
+			@Override
+			void decodeArray(ForteDataBufferLayer layer, ForteDataSlots slots, int position, int length, byte typeID) throws IOException {
+				double[] doubleArray = slots.reuseDoubleArray(position, length);
+				layer.readBulk(length * getDataWidth()).asDoubleBuffer().get(doubleArray);
+			}
+		},
+		/** Decodes DATE_AND_TIME values */
+		DATE_AND_TIME(JavaType.DATE_AND_TIME, DTBN - 1, DTID) {
+			@Override
+			void decode(ForteDataBufferLayer layer, ForteDataSlots slots, int position, byte typeID) throws IOException {
+				slots.setDateAndTime(position, layer.readLong()); // Stored as a primitive, DateAndTime objects are created on demand
+			}
+			@Override
+			void decodeArray(ForteDataBufferLayer layer, ForteDataSlots slots, int position, int length, byte typeID) throws IOException {
+				DateAndTime[] dt = new DateAndTime[length];
+				for (int i = 0; i < length; i++) {
+					dt[i] = layer.readDateAndTime();
+				}
+				slots.setObject(position, dt);
+			}
+		},
+		/** Decodes STRING values */
+		STRING(JavaType.STRING, 0, STRINGID) {
+			@Override
+			void decode(ForteDataBufferLayer layer, ForteDataSlots slots, int position, byte typeID) throws IOException {
+				slots.setObject(position, layer.readString());
+			}
+			@Override
+			void decodeArray(ForteDataBufferLayer layer, ForteDataSlots slots, int position, int length, byte typeID) throws IOException {
+				String[] s = new String[length];
+				for (int i = 0; i < length; i++) {
+					s[i] = layer.readString();
+				}
+				slots.setObject(position, s);
+			}
+		},
+		/** Placeholder for layouts that only send/receive responses. Does not accept any data. */
+		NONE(JavaType.NONE, 0) {
+			@Override
+			boolean accepts(byte typeID) {
+				return false;
+			}
+		};
+
+		/** JAVA type the values are decoded to */
+		private final JavaType mJavaType;
+		/** Number of data bytes (excluding the type ID) of a single value (0 for variable-length or header-only values) */
+		private final int mDataWidth;
+		/** Type IDs accepted by this codec */
+		private final byte[] mTypeIDs;
+
+		/**
+		 * Constructor
+		 * @param javaType JAVA type the values are decoded to
+		 * @param dataWidth number of data bytes (excluding the type ID) of a single value
+		 * @param typeIDs type IDs accepted by this codec
+		 */
+		SlotCodec(JavaType javaType, int dataWidth, byte... typeIDs) {
+			mJavaType = javaType;
+			mDataWidth = dataWidth;
+			mTypeIDs = typeIDs;
+		}
+
+		/**
+		 * @param typeID FORTE type ID received in the frame
+		 * @return true if this codec can decode values with the type ID
+		 */
+		boolean accepts(byte typeID) {
+			for (byte id : mTypeIDs) {
+				if (id == typeID) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Decodes a single value (the type ID has already been read) and stores it at the specified position.
+		 * The default implementation decodes a big endian integer with {@link #getDataWidth()} bytes.
+		 * @param layer layer to read the data bytes from
+		 * @param slots slot storage to write to
+		 * @param position position of the value
+		 * @param typeID the type ID that has been read
+		 * @throws IOException
+		 */
+		void decode(ForteDataBufferLayer layer, ForteDataSlots slots, int position, byte typeID) throws IOException {
+			slots.setInt(position, readInteger(layer, getDataWidth()));
+		}
+
+		/**
+		 * Decodes an array (the array header, length and element type ID have already been read) and stores it at the specified position.
+		 * The default implementation reads all elements at once and decodes big endian integers with {@link #getDataWidth()} bytes each.
+		 * @param layer layer to read the data bytes from
+		 * @param slots slot storage to write to
+		 * @param position position of the array
+		 * @param length number of array elements
+		 * @param typeID the element type ID that has been read
+		 * @throws IOException
+		 */
+		void decodeArray(ForteDataBufferLayer layer, ForteDataSlots slots, int position, int length, byte typeID) throws IOException {
+			int[] intArray = slots.reuseIntArray(position, length);
+			ByteBuffer bulk = layer.readBulk(length * getDataWidth());
+			if (getDataWidth() == Integer.SIZE / Byte.SIZE) {
+				bulk.asIntBuffer().get(intArray);
+			} else {
+				for (int i = 0; i < length; i++) {
+					intArray[i] = (getDataWidth() == 1) ? bulk.get() : bulk.getShort();
+				}
+			}
+		}
+
+		/** @return the JAVA type the values are decoded to */
+		JavaType getJavaType() {
+			return mJavaType;
+		}
+
+		/** @return the number of data bytes (excluding the type ID) of a single value */
+		int getDataWidth() {
+			return mDataWidth;
+		}
+
+		/**
+		 * Reads a big endian integer with up to 4 bytes. The most significant byte is sign-extended.
+		 * @param layer layer to read the bytes from
+		 * @param numBytes number of bytes
+		 * @return the integer
+		 * @throws IOException
+		 */
+		private static int readInteger(ForteDataBufferLayer layer, int numBytes) throws IOException {
+			int res = layer.readByte();
+			for (int i = 1; i < numBytes; i++) {
+				res = (res << 8) | (layer.readByte() & 0xFF);
+			}
+			return res;
+		}
+
+		/**
+		 * @param typeID FORTE type ID received in a frame
+		 * @return the codec that accepts the type ID or null if the type ID is not supported
+		 */
+		static SlotCodec forTypeID(byte typeID) {
+			switch (typeID) {
+			case FBOOLID:
+			case TBOOLID:
+				return BOOL;
+			case SINTID:
+			case USINTID:
+				return SINT;
+			case INTID:
+			case UINTID:
+				return INT;
+			case DINTID:
+			case UDINTID:
+				return DINT;
+			case LINTID:
+			case ULINTID:
+				return LINT;
+			case REALID:
+				return REAL;
+			case LREALID:
+				return LREAL;
+			case DTID:
+				return DATE_AND_TIME;
+			case STRINGID:
+				return STRING;
+			default:
+				return null;
+			}
+		}
+
+		/**
+		 * @param type IEC 61499 data type
+		 * @return the codec for the data type
+		 */
+		static SlotCodec forType(ForteDataType type) {
+			switch (type) {
+			case BOOL:
+				return BOOL;
+			case SINT:
+			case USINT:
+				return SINT;
+			case INT:
+			case UINT:
+				return INT;
+			case DINT:
+			case UDINT:
+				return DINT;
+			case LINT:
+			case ULINT:
+				return LINT;
+			case REAL:
+				return REAL;
+			case LREAL:
+				return LREAL;
+			case DATE_AND_TIME:
+				return DATE_AND_TIME;
+			case STRING:
+				return STRING;
+			case NONE:
+			default:
+				return NONE;
+			}
+		}
+	}
+
+	/**
+	 * JAVA types the IEC 61499 data types are converted to.
+	 */
+	enum JavaType {
+		BOOL, INT, LONG, FLOAT, DOUBLE, DATE_AND_TIME, STRING, NONE
+	}
+}
@@ -5,15 +5,18 @@ import static de.htw.berlin.polysun4diac.CommonFunctionsAndConstants.*;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.lang.reflect.Array;
 import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 //import java.time.LocalDateTime;  // TODO: Re-add this feature when Polysun updates to Java 8 SE
-import java.util.Arrays;
 import java.util.InputMismatchException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 
 import de.htw.berlin.polysun4diac.exception.UnsupportedForteDataTypeException;
+import de.htw.berlin.polysun4diac.forte.comm.ForteCodecPlan.JavaType;
+import de.htw.berlin.polysun4diac.forte.comm.ForteCodecPlan.SlotCodec;
 import de.htw.berlin.polysun4diac.forte.datatypes.DateAndTime;
 import de.htw.berlin.polysun4diac.forte.datatypes.ForteDataType;
 
@@ -71,23 +74,48 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	private static final int POSITION_INIT = -1;
 	/** Amount at which to increment {@link #mPosition} */
 	private static final int POSITION_INCREMENT = 1;
+	/** Number of bytes of a long or double value */
+	private static final int LONGNUMBYTES = Long.SIZE / Byte.SIZE;
+	/** Number of bytes of an int or float value */
+	private static final int INTNUMBYTES = Integer.SIZE / Byte.SIZE;
+	/** Maximum number of array elements that can be indicated in the 2 byte length header of a FORTE array */
+	private static final int MAXARRAYLENGTH = 0xFFFF;
+	/** Number of bytes of a FORTE array header (array type ID + 2 byte length + element type ID) */
+	private static final int ARRAYHEADERNUM = 2 + LENGTHHEADERNUM;
 	/** Message for NuSuchElementException */
 	private static final String NOMOREELEMENTSMSG = "No more elements to access.";
 	
 	/** Number of data values in {@link #mDataValues} */
 	private int mNumDataValues;
 	/** 
-	 * Fixed-size List of data values to be sent/received </p>
-	 * WARNING: The add() method throws an exception on this member.
+	 * Fixed-size primitive-specialized storage of the received data values </p>
+	 * Scalar values (including DATE_AND_TIME) are stored without boxing, only arrays and Strings are stored as Objects.
 	 * */
-	private List<Object> mDataValues;
-	/** Indicates whether type at position is an array or not */
-	private boolean[] mArrayFlags;
+	private ForteDataSlots mDataValues;
+	/** Precompiled codec plan of the data types, array sizes and codecs at each position */
+	private ForteCodecPlan mPlan;
 	
 	/** ByteBuffer member that holds the bytes */
 	private ByteBuffer mBuffer;
-	/** Indicates which IEC 61499 data type is at which position */
-	private ForteDataType[] mTypes;
+	/** 
+	 * Send buffer allocated for the layout. If a frame does not fit, {@link #mBuffer} is replaced by a larger buffer from the
+	 * {@link ForteBufferPool}, which is returned to the pool after the frame has been sent.
+	 */
+	private ByteBuffer mBaseBuffer;
+	/** 
+	 * ByteBuffer holding a received frame for layouts with a fixed frame size if frame buffering is enabled (null otherwise).
+	 * Bytes that remain in the buffer after decoding a frame (if FORTE sent a larger frame than specified by the layout)
+	 * are decoded before reading from the layer below.
+	 */
+	private ByteBuffer mRecvFrame;
+	/** Flag indicating whether received frames with a fixed frame size are read at once */
+	private boolean mFrameBuffering = true;
+	/** Flyweight view of the last frame received via {@link #recvFrame()} (created on demand) */
+	private ForteFrameView mFrameView;
+	/** Reusable ByteBuffer for converting received arrays in bulk */
+	private ByteBuffer mBulkBuffer;
+	/** Encodes and decodes STRINGs with the configured charset */
+	private ForteStringCodec mStringCodec = new ForteStringCodec(Charset.defaultCharset());
 	/** Current position of stored JAVA data types */
 	private int mPosition = POSITION_INIT;
 	/** Reference time for receiving DateAndTime objects */
@@ -100,6 +128,8 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 		if (!isInitialized()) { // Object has not yet been initialized
 			// --> This is the top layer with the same inputs as outputs.
 			// Initialize with inputs defined in params
+			setFrameBuffering(params.isFrameBuffering());
+			setStringCharset(params.getStringCharset());
 			initialise(params.getInputs(), params.getInputArrayLengths());
 		}
 		return super.openConnection(params);
@@ -118,35 +148,25 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 		if (dataTypes.size() != arraySizes.size()) {
 			throw new InputMismatchException("The sizes of the inputs do not match.");
 		}
-		mNumDataValues = dataTypes.size();
+		// Layouts are compiled once and shared between all layers with the same data types and array sizes
+		setPlan(ForteCodecPlan.getPlan(dataTypes, arraySizes));
+		mNumDataValues = getPlan().getNumDataValues();
 		mDataValues = initializeDataValues(mNumDataValues);
-		mArrayFlags = new boolean[mNumDataValues];
-		int numBytes = 0;
-		int ct = 0;
-		mTypes = new ForteDataType[mNumDataValues];
-		Iterator<Enum<?>> dataIt = dataTypes.iterator();
-		Iterator<Integer> arrSizeIt = arraySizes.iterator();
-		while (dataIt.hasNext() && arrSizeIt.hasNext()) {
-			int arrSize = arrSizeIt.next();
-			ForteDataType type = (ForteDataType) dataIt.next();
-			int bytes = type.getNumBytes();
-			if (arrSize > 1) { // Array
-				// 4 elements added for headers + array size (2 bytes) + number of bytes of array data
-				numBytes += 4 + ((bytes - 1 < 1) ? 1 : bytes - 1) * arrSize; // Limit to [1, inf]
-				mArrayFlags[ct] = true;
-			} else { // Not an array
-				numBytes += bytes;
-				mArrayFlags[ct] = false;
-			}
-			mTypes[ct] = type;
-			ct++;
+		mDataValues.setDateAndTimeReference(getDateAndTimeReference());
+		initialize(getPlan());
+		setRecvFrame(null);
+		mFrameView = null;
+		if (isFrameBuffering() && getPlan().hasFixedFrameSize()) {
+			ByteBuffer frame = ByteBuffer.allocate(getPlan().getFrameSize());
+			frame.limit(0); // No bytes to decode yet
+			setRecvFrame(frame);
 		}
-		initialize(numBytes);
 		setInitialized();
 	}
 	
 	@Override
 	public boolean put(float value) {
+		ensureRemaining(1 + INTNUMBYTES);
 		getBuffer().put(REALID);
 		getBuffer().putFloat(value);
 		return incrementPosition();
@@ -154,15 +174,16 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	
 	@Override
 	public boolean put(float[] value) {
+		ensureRemaining(ARRAYHEADERNUM + value.length * INTNUMBYTES);
 		putArrayHeader(REALID, value.length);
-		for (float val : value) {
-			getBuffer().putFloat(val);
-		}
+		getBuffer().asFloatBuffer().put(value); // Bulk copy, REAL array elements are sent without header bytes
+		skipBytes(value.length * INTNUMBYTES);
 		return incrementPosition();
 	}
 	
 	@Override
 	public boolean put(double value) {
+		ensureRemaining(1 + LONGNUMBYTES);
 		getBuffer().put(LREALID);
 		getBuffer().putDouble(value);
 		return incrementPosition();
@@ -170,85 +191,112 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	
 	@Override
 	public boolean put(double[] value) {
+		ensureRemaining(ARRAYHEADERNUM + value.length * LONGNUMBYTES);
 		putArrayHeader(LREALID, value.length);
-		for (double val : value) {
-			getBuffer().putDouble(val);
-		}
+		getBuffer().asDoubleBuffer().put(value); // Bulk copy, LREAL array elements are sent without header bytes
+		skipBytes(value.length * LONGNUMBYTES);
 		return incrementPosition();
 	}
 	
 	@Override
 	public boolean put(int value) {
-		put(getTypeAtNextPosition().getTypeID());
-		put32bitInteger(value, getTypeAtNextPosition().getNumBytes() - 1); // Exclude header byte
+		int next = getNextPosition();
+		int width = getPlan().getCodec(next).getDataWidth(); // Exclude header byte
+		ensureRemaining(1 + width);
+		put(getPlan().getTypeID(next));
+		put32bitInteger(value, width);
 		return incrementPosition();
 	}
 	
 	@Override
 	public boolean put(int[] value) {
-		putArrayHeader(getTypeAtNextPosition().getTypeID(), value.length);
-		for (int val : value) {
-			put32bitInteger(val, getTypeAtNextPosition().getNumBytes());
+		int next = getNextPosition();
+		int width = getPlan().getCodec(next).getDataWidth(); // Array elements are sent without header bytes
+		ensureRemaining(ARRAYHEADERNUM + value.length * width);
+		putArrayHeader(getPlan().getTypeID(next), value.length);
+		if (width == INTNUMBYTES) {
+			getBuffer().asIntBuffer().put(value); // Bulk copy of DINT/UDINT elements
+			skipBytes(value.length * INTNUMBYTES);
+		} else {
+			for (int val : value) {
+				put32bitInteger(val, width);
+			}
 		}
 		return incrementPosition();
 	}
 	
 	@Override
 	public boolean put(long value) {
-		put(getTypeAtNextPosition().getTypeID());
+		ensureRemaining(1 + LONGNUMBYTES);
+		put(getPlan().getTypeID(getNextPosition()));
 		getBuffer().putLong(value);
 		return incrementPosition();
 	}
 	
 	@Override
 	public boolean put(long[] value) {
-		putArrayHeader(getTypeAtNextPosition().getTypeID(), value.length);
-		for (long val : value) {
-			getBuffer().putLong(val);
-		}
+		ensureRemaining(ARRAYHEADERNUM + value.length * LONGNUMBYTES);
+		putArrayHeader(getPlan().getTypeID(getNextPosition()), value.length);
+		getBuffer().asLongBuffer().put(value); // Bulk copy, LINT array elements are sent without header bytes
+		skipBytes(value.length * LONGNUMBYTES);
 		return incrementPosition();
 	}
 	
 	@Override
 	public boolean put(boolean value) {
+		ensureRemaining(1);
 		put(bool2forteID(value));
 		return incrementPosition();
 	}
 	
 	@Override
 	public boolean put(boolean[] value) {
+		ensureRemaining(ARRAYHEADERNUM - 1 + value.length); // BOOL arrays have no element type ID
 		putArrayHeader(value.length);
 		for (boolean val : value) {
-			put(val);
+			put(bool2forteID(val)); // Elements consist of their type IDs only
 		}
 		return incrementPosition();
 	}
 	
 	@Override
 	public boolean put(String value) {
+		ensureRemaining(1 + getStringCodec().maxEncodedLength(value));
 		put(STRINGID);
-		put(string2ForteBytes(value));
+		getStringCodec().encode(value, getBuffer());
 		return incrementPosition();
 	}
 	
 	@Override
 	public boolean put(String[] value) {
+		ensureRemaining(ARRAYHEADERNUM);
 		putArrayHeader(STRINGID, value.length);
 		for (String val : value) {
-			put(string2ForteBytes(val));
+			ensureRemaining(getStringCodec().maxEncodedLength(val));
+			getStringCodec().encode(val, getBuffer());
 		}
 		return incrementPosition();
 	}
 	
 	@Override
 	public boolean put(DateAndTime value) {
+		ensureRemaining(1 + LONGNUMBYTES);
 		put(DTID);
 		putDateAndTime(value);
 		return incrementPosition();
 	}
 	
+	@Override
+	public boolean putDateAndTimeMillis(long forteTime) {
+		ensureRemaining(1 + LONGNUMBYTES);
+		put(DTID);
+		getBuffer().putLong(forteTime);
+		return incrementPosition();
+	}
+	
 	@Override
 	public boolean put(DateAndTime[] value) {
+		ensureRemaining(ARRAYHEADERNUM + value.length * LONGNUMBYTES);
 		putArrayHeader(DTID, value.length);
 		for (DateAndTime val : value) {
 			putDateAndTime(val);
@@ -284,7 +332,7 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	public boolean getBool() {
 		if (isBool()) {
 			if (incrementPosition()) {
-				return (boolean) getDataValues().get(getPosition());
+				return getDataValues().getBool(getPosition());
 			}
 			throw new NoSuchElementException(NOMOREELEMENTSMSG);
 		}
@@ -295,7 +343,7 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	public long getLong() {
 		if (isLong()) {
 			if (incrementPosition()) {
-				return (long) getDataValues().get(getPosition());
+				return getDataValues().getLong(getPosition());
 			}
 			throw new NoSuchElementException(NOMOREELEMENTSMSG);
 		}
@@ -306,7 +354,7 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	public int getInt() {
 		if (isInt()) {
 			if (incrementPosition()) {
-				return (int) getDataValues().get(getPosition());
+				return getDataValues().getInt(getPosition());
 			}
 			throw new NoSuchElementException(NOMOREELEMENTSMSG);
 		}
@@ -317,7 +365,7 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	public float getFloat() {
 		if (isFloat()) {
 			if (incrementPosition()) {
-				return (float) getDataValues().get(getPosition());
+				return getDataValues().getFloat(getPosition());
 			}
 			throw new NoSuchElementException(NOMOREELEMENTSMSG);
 		}
@@ -328,7 +376,7 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	public double getDouble() {
 		if (isDouble()) {
 			if (incrementPosition()) {
-				return (double) getDataValues().get(getPosition());
+				return getDataValues().getDouble(getPosition());
 			}
 			throw new NoSuchElementException(NOMOREELEMENTSMSG);
 		}
@@ -339,7 +387,18 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	public DateAndTime getDateAndTime() {
 		if (isDateAndTime()) {
 			if (incrementPosition()) {
-				return (DateAndTime) getDataValues().get(getPosition());
+				return toDateAndTime(getDataValues().getLong(getPosition()));
+			}
+			throw new NoSuchElementException(NOMOREELEMENTSMSG);
+		}
+		throw new NoSuchElementException(typeIDtoBadAccessMessage(ForteDataType.DATE_AND_TIME));
+	}
+	
+	@Override
+	public long getDateAndTimeMillis() {
+		if (isDateAndTime()) {
+			if (incrementPosition()) {
+				return getDataValues().getLong(getPosition());
 			}
 			throw new NoSuchElementException(NOMOREELEMENTSMSG);
 		}
@@ -362,7 +421,7 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	public String getString() {
 		if (isString()) {
 			if (incrementPosition()) {
-				return (String) getDataValues().get(getPosition());
+				return (String) getDataValues().getObject(getPosition());
 			}
 			throw new NoSuchElementException(NOMOREELEMENTSMSG);
 		}
@@ -373,7 +432,18 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	public boolean[] getBoolArray() {
 		if (isBoolArray()) {
 			if (incrementPosition()) {
-				return (boolean[]) getDataValues().get(getPosition());
+				return ((boolean[]) getDataValues().getObject(getPosition())).clone(); // The stored array is reused by the next recvData()
+			}
+			throw new NoSuchElementException(NOMOREELEMENTSMSG);
+		}
+		throw new NoSuchElementException(typeIDtoBadArrayAccessMessage(ForteDataType.BOOL));
+	}
+	
+	@Override
+	public int getBoolArray(boolean[] dst) {
+		if (isBoolArray()) {
+			if (incrementPosition()) {
+				return copyArray((boolean[]) getDataValues().getObject(getPosition()), dst);
 			}
 			throw new NoSuchElementException(NOMOREELEMENTSMSG);
 		}
@@ -384,7 +454,18 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	public long[] getLongArray() {
 		if (isLongArray()) {
 			if (incrementPosition()) {
-				return (long[]) getDataValues().get(getPosition());
+				return ((long[]) getDataValues().getObject(getPosition())).clone(); // The stored array is reused by the next recvData()
+			}
+			throw new NoSuchElementException(NOMOREELEMENTSMSG);
+		}
+		throw new NoSuchElementException(typeIDtoBadArrayAccessMessage(ForteDataType.LINT));
+	}
+	
+	@Override
+	public int getLongArray(long[] dst) {
+		if (isLongArray()) {
+			if (incrementPosition()) {
+				return copyArray((long[]) getDataValues().getObject(getPosition()), dst);
 			}
 			throw new NoSuchElementException(NOMOREELEMENTSMSG);
 		}
@@ -395,7 +476,18 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	public int[] getIntArray() {
 		if (isIntArray()) {
 			if (incrementPosition()) {
-				return (int[]) getDataValues().get(getPosition());
+				return ((int[]) getDataValues().getObject(getPosition())).clone(); // The stored array is reused by the next recvData()
+			}
+			throw new NoSuchElementException(NOMOREELEMENTSMSG);
+		}
+		throw new NoSuchElementException(typeIDtoBadArrayAccessMessage(ForteDataType.INT));
+	}
+	
+	@Override
+	public int getIntArray(int[] dst) {
+		if (isIntArray()) {
+			if (incrementPosition()) {
+				return copyArray((int[]) getDataValues().getObject(getPosition()), dst);
 			}
 			throw new NoSuchElementException(NOMOREELEMENTSMSG);
 		}
@@ -406,7 +498,18 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	public float[] getFloatArray() {
 		if (isFloatArray()) {
 			if (incrementPosition()) {
-				return (float[]) getDataValues().get(getPosition());
+				return ((float[]) getDataValues().getObject(getPosition())).clone(); // The stored array is reused by the next recvData()
+			}
+			throw new NoSuchElementException(NOMOREELEMENTSMSG);
+		}
+		throw new NoSuchElementException(typeIDtoBadArrayAccessMessage(ForteDataType.REAL));
+	}
+	
+	@Override
+	public int getFloatArray(float[] dst) {
+		if (isFloatArray()) {
+			if (incrementPosition()) {
+				return copyArray((float[]) getDataValues().getObject(getPosition()), dst);
 			}
 			throw new NoSuchElementException(NOMOREELEMENTSMSG);
 		}
@@ -417,7 +520,18 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	public double[] getDoubleArray() {
 		if (isDoubleArray()) {
 			if (incrementPosition()) {
-				return (double[]) getDataValues().get(getPosition());
+				return ((double[]) getDataValues().getObject(getPosition())).clone(); // The stored array is reused by the next recvData()
+			}
+			throw new NoSuchElementException(NOMOREELEMENTSMSG);
+		}
+		throw new NoSuchElementException(typeIDtoBadArrayAccessMessage(ForteDataType.LREAL));
+	}
+	
+	@Override
+	public int getDoubleArray(double[] dst) {
+		if (isDoubleArray()) {
+			if (incrementPosition()) {
+				return copyArray((double[]) getDataValues().getObject(getPosition()), dst);
 			}
 			throw new NoSuchElementException(NOMOREELEMENTSMSG);
 		}
@@ -428,7 +542,7 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	public DateAndTime[] getDateAndTimeArray() {
 		if (isDateAndTimeArray()) {
 			if (incrementPosition()) {
-				return (DateAndTime[]) getDataValues().get(getPosition());
+				return (DateAndTime[]) getDataValues().getObject(getPosition());
 			}
 			throw new NoSuchElementException(NOMOREELEMENTSMSG);
 		}
@@ -457,7 +571,7 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	public String[] getStringArray() {
 		if (isStringArray()) {
 			if (incrementPosition()) {
-				return (String[]) getDataValues().get(getPosition());
+				return (String[]) getDataValues().getObject(getPosition());
 			}
 			throw new NoSuchElementException(NOMOREELEMENTSMSG);
 		}
@@ -599,12 +713,95 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 		// Wait for data from stream, write to internal byte array and set maximum number of bytes allowed to be read
 		// Clear buffer and pass received bytes to it
 		rewind(); // Reset data position to -1
-		// Convert byte buffer data into List entries
+		ForteCodecPlan plan = getPlan();
+		ForteDataSlots slots = getDataValues();
+		ByteBuffer frame = getRecvFrame();
+		if (frame != null && !fillRecvFrame(frame)) {
+			reset();
+			return; // FORTE response without data inputs
+		}
+		decodeSlots(plan, slots);
+		// Reset data position and clear byte buffer
+		reset();
+	}
+	
+	@Override
+	public ForteFrameView recvFrame() throws IOException {
+		rewind();
+		ForteCodecPlan plan = getPlan();
+		ForteFrameView view = getFrameView();
+		ByteBuffer frame = getRecvFrame();
+		if (frame == null) {
+			view.scan(this, plan.getNumDataValues(), getStringCodec());
+		} else if (!fillRecvFrame(frame)) {
+			view.clear(); // FORTE response without data inputs
+		} else if (frame.limit() == plan.getFrameSize() && view.wrap(frame.array(), plan, getStringCodec())) {
+			frame.position(frame.limit()); // The view uses the frame with the offsets precomputed by the plan
+		} else {
+			view.scan(this, plan.getNumDataValues(), getStringCodec()); // Type IDs do not match the layout
+		}
+		reset();
+		return view;
+	}
+	
+	/**
+	 * Reads a frame into the buffer for received frames, which is used for layouts with a fixed frame size.
+	 * Bytes that have not been decoded yet are kept at the beginning of the buffer.
+	 * </p>
+	 * Each value is read together with the type ID of the next value, and reading stops at the first type ID that does not match the layout.
+	 * A frame that is shorter than the layout (e.g. an INT instead of a DINT) is therefore never read beyond its end, and the remaining
+	 * values are decoded by their type IDs from the layer below.
+	 * @param frame buffer for received frames
+	 * @return false if FORTE sent a response without data inputs
+	 * @throws IOException
+	 */
+	private boolean fillRecvFrame(ByteBuffer frame) throws IOException {
+		frame.compact(); // Keep bytes that have not been decoded yet
+		if (frame.position() == 0) {
+			frame.put(getBelow().readByte());
+		}
+		if (frame.get(0) == RESPONSEID) {
+			frame.flip();
+			frame.get();
+			return false;
+		}
+		ForteCodecPlan plan = getPlan();
+		byte[] bytes = frame.array();
+		int numSlots = plan.getNumDataValues();
+		for (int i = 0; i < numSlots; i++) {
+			if (!plan.getCodec(i).accepts(bytes[plan.getSlotOffset(i)])) {
+				break; // The frame does not match the layout
+			}
+			int end = (i + 1 < numSlots) ? plan.getSlotOffset(i + 1) + 1 : plan.getFrameSize();
+			if (end > frame.position()) {
+				getBelow().readFully(bytes, frame.position(), end - frame.position());
+				frame.position(end);
+			}
+		}
+		frame.flip();
+		return true;
+	}
+	
+	/**
+	 * Decodes the received byte data into the slots using the codec planned for each position.
+	 * @param plan the codec plan
+	 * @param slots the slots to decode the data into
+	 * @throws IOException
+	 */
+	private void decodeSlots(ForteCodecPlan plan, ForteDataSlots slots) throws IOException {
 		while(incrementPosition()) {
-			if (isArrayAtPosition(getPosition())) {
+			int position = getPosition();
+			SlotCodec codec = plan.getCodec(position);
+			if (plan.isArray(position)) {
 				readByte(); // Skip array header
 				// Next two bytes are array size
-				addArray(readLengthHeader());
+				int arrayLength = readLengthHeader();
+				byte typeID = readByte();
+				if (codec.accepts(typeID)) {
+					codec.decodeArray(this, slots, position, arrayLength, typeID);
+				} else {
+					addArray(arrayLength, typeID);
+				}
 			}
 			else { // Not an array
 				byte typeID = readByte();
@@ -612,20 +809,23 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 					reset();
 					return; // FORTE response without data inputs
 				}
-				addValue(typeID);
+				if (codec.accepts(typeID)) {
+					codec.decode(this, slots, position, typeID);
+				} else {
+					addValue(typeID);
+				}
 			}
 		}
-		// Reset data position and clear byte buffer
-		reset();
 	}
 	
 	@Override
 	public void sendData() throws IOException {
 		if (isResponse()) {
+			ensureRemaining(1);
 			put(RESPONSEID);
 		}
 		sendData(array(), 0, getBuffer().position());
-		reset();
+		reset(); // Returns a grown send buffer to the pool
 	}
 	
 	@Override
@@ -647,9 +847,7 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	
 	@Override
 	public ForteDataType getTypeAtPosition(int position) {
-		position = (position < 0) ? 0 : position; // Lower limit
-		position = (position > getNumDataValues() - 1) ? getNumDataValues() - 1 : position; // Upper limit
-		return getForteType()[position];
+		return getPlan().getType(limitPosition(position));
 	}
 	
 	@Override
@@ -659,9 +857,7 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	
 	@Override
 	public boolean isArrayAtPosition(int position) {
-		position = (position < 0) ? 0 : position; // Lower limit
-		position = (position > getNumDataValues() - 1) ? getNumDataValues() - 1 : position; // Upper limit
-		return mArrayFlags[position];
+		return getPlan().isArray(limitPosition(position));
 	}
 	
 	@Override
@@ -679,32 +875,67 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 		return getConnectionState();
 	}
 	
+	@Override
+	public boolean isHealthy() {
+		return isConnected() && getFrameBytesRemaining() == 0 && super.isHealthy();
+	}
+	
 	/**
 	 * Clears the internal byte buffer and sets its position to 0.
+	 * If the send buffer has grown, the larger buffer is returned to the pool and the buffer allocated for the layout is used again.
 	 */
 	private void clearByteBuffer() {
+		if (getBuffer() != mBaseBuffer) {
+			ForteBufferPool.release(getBuffer());
+			setBuffer(mBaseBuffer);
+		}
 		getBuffer().clear();
 	}
 	
+	/**
+	 * Makes sure that the send buffer can hold the specified number of bytes after its current position.
+	 * Otherwise, the bytes written so far are copied to a larger buffer from the {@link ForteBufferPool}.
+	 * @param numBytes number of bytes to be written
+	 */
+	private void ensureRemaining(int numBytes) {
+		ByteBuffer current = getBuffer();
+		if (current.remaining() >= numBytes) {
+			return;
+		}
+		int minCapacity = current.position() + numBytes;
+		// Grow at least by a factor of 2, so that a frame with many long STRINGs does not copy the buffer for every value
+		ByteBuffer grown = ForteBufferPool.acquire(Math.max(minCapacity, 2 * current.capacity()));
+		current.flip();
+		grown.put(current);
+		if (current != mBaseBuffer) {
+			ForteBufferPool.release(current);
+		}
+		setBuffer(grown);
+	}
+	
 	/** 
 	 * Reads the next byte data sequences determined according to the FORTE typeID and the specified array length.
 	 * The bytes are translated to the corresponding JAVA types, which are stored in an internal buffer {@link #mDataValues}.
+	 * </p>
+	 * This is the fallback for arrays whose element type ID does not match the codec planned for the position.
 	 * @param arrayLength length of the array.
+	 * @param typeID FORTE type ID of the array elements.
 	 * @throws UnsupportedForteDataTypeException 
 	 * @throws IOException 
 	 */
-	private void addArray(int arrayLength) throws UnsupportedForteDataTypeException, IOException {
+	private void addArray(int arrayLength, byte typeID) throws UnsupportedForteDataTypeException, IOException {
 		byte[] manualRead; // Bytes to be manually read by methods implemented in this class (int & long types)
 		int manualReadLengh = POSITION_INIT; // Length of manualRead array initialized to -1 so that adding BN constants results in number of bytes excluding header
 		boolean manualReadLengthSet = false;
-		switch (readByte()) { // typeID
+		switch (typeID) {
 		case TBOOLID:
 		case FBOOLID:
 			boolean[] boolArray = new boolean[arrayLength];
 			for (int i = 0; i < arrayLength; i++) {
-				boolArray[i] = readByte() == TBOOLID;
+				// The elements of BOOL arrays consist of their type IDs only, so the type ID that has been read is the first element
+				boolArray[i] = ((i == 0) ? typeID : readByte()) == TBOOLID;
 			}
-			getDataValues().set(getPosition(), boolArray);
+			getDataValues().setObject(getPosition(), boolArray);
 			return;
 		case SINTID: // Fall through IEC 61499 data types that are interpreted as int
 		case USINTID:
@@ -730,7 +961,7 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 				}
 				intArray[i] = bytes2limitedShortInteger(manualRead);
 			}
-			getDataValues().set(getPosition(), intArray);
+			getDataValues().setObject(getPosition(), intArray);
 			return;
 		case LINTID: // Fall through IEC 61499 long integer types
 		case ULINTID:
@@ -738,35 +969,35 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 			for (int i = 0; i < arrayLength; i++) {
 				longArray[i] = readLong();
 			}
-			getDataValues().set(getPosition(), longArray);
+			getDataValues().setObject(getPosition(), longArray);
 			return;
 		case REALID:
 			float[] floatArray = new float[arrayLength];
 			for (int i = 0; i < arrayLength; i++) {
 				floatArray[i] = readFloat();
 			}
-			getDataValues().set(getPosition(), floatArray);
+			getDataValues().setObject(getPosition(), floatArray);
 			return;
 		case LREALID:
 			double[] doubleArray = new double[arrayLength];
 			for (int i = 0; i < arrayLength; i++) {
 				doubleArray[i] = readDouble();
 			}
-			getDataValues().set(getPosition(), doubleArray);
+			getDataValues().setObject(getPosition(), doubleArray);
 			return;
 		case DTID:
 			DateAndTime[] dt = new DateAndTime[arrayLength];
 			for (int i = 0; i < arrayLength; i++) {
 				dt[i] = readDateAndTime();
 			}
-			getDataValues().set(getPosition(), dt);
+			getDataValues().setObject(getPosition(), dt);
 			return;
 		case STRINGID:
 			String[] s = new String[arrayLength];
 			for (int i = 0; i < arrayLength; i++) {
 				s[i] = readString();
 			}
-			getDataValues().set(getPosition(), s);
+			getDataValues().setObject(getPosition(), s);
 			return;
 		default:
 			throw new UnsupportedForteDataTypeException("Unsupported FORTE data type received.");
@@ -776,6 +1007,8 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	/**
 	 * Reads the next byte data sequence determined according to the FORTE typeID and translates it to the corresponding JAVA type.
 	 * The data is stored in an internal buffer {@link #mDataValues}.
+	 * </p>
+	 * This is the fallback for type IDs that do not match the codec planned for the position.
 	 * @param typeID FORTE type ID used to identify FORTE data type.
 	 * @throws UnsupportedForteDataTypeException
 	 * @throws IOException 
@@ -787,7 +1020,7 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 		switch (typeID) {
 		case TBOOLID:
 		case FBOOLID:
-			getDataValues().set(getPosition(), typeID == TBOOLID);
+			getDataValues().setBool(getPosition(), typeID == TBOOLID);
 			return;
 		case SINTID: // Fall through IEC 61499 data types that are interpreted as int
 		case USINTID:
@@ -809,24 +1042,23 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 			for (int j = 0; j < manualReadLengh; j++) {
 				manualRead[j] = readByte();
 			}
-			getDataValues().set(getPosition(), bytes2limitedShortInteger(manualRead));
+			getDataValues().setInt(getPosition(), bytes2limitedShortInteger(manualRead));
 			return;
 		case LINTID: // Fall through IEC 61499 long integer types
 		case ULINTID:
-			getDataValues().set(getPosition(), readLong());
+			getDataValues().setLong(getPosition(), readLong());
 			return;
 		case REALID:
-			getDataValues().set(getPosition(), readFloat());
+			getDataValues().setFloat(getPosition(), readFloat());
 			return;
 		case LREALID:
-			getDataValues().set(getPosition(), readDouble());
+			getDataValues().setDouble(getPosition(), readDouble());
 			return;
 		case DTID:
-			// Initialize with reference value and set time according to FORTE value
-			getDataValues().set(getPosition(), readDateAndTime());
+			getDataValues().setDateAndTime(getPosition(), readLong());
 			return;
 		case STRINGID:
-			getDataValues().set(getPosition(), readString());
+			getDataValues().setObject(getPosition(), readString());
 			return;
 		default:
 			throw new UnsupportedForteDataTypeException("Unsupported FORTE data type received.");
@@ -845,11 +1077,17 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	 * @return a corresponding DateAndTime object with it's SimulationStarteTime set to the reference value
 	 * @throws IOException 
 	 */
-	private DateAndTime readDateAndTime() throws IOException {
-		long simulationStartms = getDateAndTimeReference();
-		DateAndTime dt = new DateAndTime(simulationStartms); 
-		dt.setSimulationTimeS((int) ((readLong() - simulationStartms) / KILOTOSI));
-		return dt;
+	DateAndTime readDateAndTime() throws IOException {
+		return toDateAndTime(readLong());
+	}
+	
+	/**
+	 * Converts a received FORTE time to a DateAndTime object
+	 * @param forteTime number of ms since 1st January 1970, 01:00:00.000
+	 * @return a corresponding DateAndTime object with it's SimulationStarteTime set to the reference value
+	 */
+	private DateAndTime toDateAndTime(long forteTime) {
+		return ForteDataSlots.toDateAndTime(forteTime, getDateAndTimeReference());
 	}
 	
 	/**
@@ -857,25 +1095,41 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	 * @return a corresponding String object
 	 * @throws IOException 
 	 */
-	private String readString() throws IOException {
-		byte[] b = new byte[readLengthHeader()];
-		for (int i = 0; i < b.length; i++) {
-			b[i] = readByte();
-		}
-		return new String(b);
+	String readString() throws IOException {
+		int length = readLengthHeader();
+		return getStringCodec().decode(readBulk(length).array(), 0, length);
 	}
 	
 	/**
-	 * Reads two bytes indicating the length of a String or an array and converts them to an integer
-	 * @return length of a String or array
+	 * Reads two bytes indicating the length of a String or an array and converts them to an unsigned integer
+	 * @return length of a String or array [0, 65535]
 	 * @throws IOException 
 	 */
 	private int readLengthHeader() throws IOException {
-		byte[] lengthHeader = new byte[LENGTHHEADERNUM];
+		int res = ZERO_INIT;
 		for (int i = 0; i < LENGTHHEADERNUM; i++) {
-			lengthHeader[i] = readByte();
+			res = (res << Byte.SIZE) | (readByte() & 0xFF);
 		}
-		return bytes2limitedShortInteger(lengthHeader);
+		return res;
+	}
+	
+	/**
+	 * Reads a block of bytes at once (e.g., the elements of an array) into a reusable buffer,
+	 * so that the bytes can be converted in bulk (e.g., via {@link ByteBuffer#asDoubleBuffer()}).
+	 * @param numBytes number of bytes to read
+	 * @return a big endian buffer with position 0 and limit numBytes. The buffer is reused by subsequent calls.
+	 * @throws IOException
+	 */
+	ByteBuffer readBulk(int numBytes) throws IOException {
+		ByteBuffer bulk = getBulkBuffer();
+		if (bulk == null || bulk.capacity() < numBytes) {
+			bulk = ByteBuffer.allocate(numBytes);
+			setBulkBuffer(bulk);
+		}
+		readFully(bulk.array(), 0, numBytes);
+		bulk.clear();
+		bulk.limit(numBytes);
+		return bulk;
 	}
 	
 	
@@ -914,13 +1168,99 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	}
 	
 	/** 
-	 * @return The next byte from the .
+	 * @return The next byte from the received frame or from the layer below.
 	 * @throws IOException 
 	 */
 	public byte readByte() throws IOException {
+		if (getFrameBytesRemaining() > 0) {
+			return getRecvFrame().get();
+		}
 		return getBelow().readByte();
 	}
 	
+	@Override
+	public long readLong() throws IOException {
+		int remaining = getFrameBytesRemaining();
+		if (remaining >= LONGNUMBYTES) {
+			return getRecvFrame().getLong();
+		} else if (remaining > 0) {
+			return readSplitBytes(LONGNUMBYTES);
+		}
+		return getBelow().readLong();
+	}
+	
+	@Override
+	public double readDouble() throws IOException {
+		int remaining = getFrameBytesRemaining();
+		if (remaining >= LONGNUMBYTES) {
+			return getRecvFrame().getDouble();
+		} else if (remaining > 0) {
+			return Double.longBitsToDouble(readSplitBytes(LONGNUMBYTES));
+		}
+		return getBelow().readDouble();
+	}
+	
+	@Override
+	public float readFloat() throws IOException {
+		int remaining = getFrameBytesRemaining();
+		if (remaining >= INTNUMBYTES) {
+			return getRecvFrame().getFloat();
+		} else if (remaining > 0) {
+			return Float.intBitsToFloat((int) readSplitBytes(INTNUMBYTES));
+		}
+		return getBelow().readFloat();
+	}
+	
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		int fromFrame = Math.min(getFrameBytesRemaining(), len);
+		if (fromFrame > 0) {
+			getRecvFrame().get(b, off, fromFrame);
+		}
+		if (fromFrame < len) {
+			getBelow().readFully(b, off + fromFrame, len - fromFrame);
+		}
+	}
+	
+	/**
+	 * Copies a received array into a caller-supplied destination array.
+	 * If the destination array is too short, the position is reset to the previous position.
+	 * @param src received array
+	 * @param dst destination array
+	 * @return the number of elements copied
+	 * @throws InputMismatchException if dst is shorter than src
+	 */
+	private int copyArray(Object src, Object dst) {
+		int length = Array.getLength(src);
+		if (Array.getLength(dst) < length) {
+			setPosition(getPosition() - POSITION_INCREMENT);
+			throw new InputMismatchException("The destination array is too short. Received " + length + " elements.");
+		}
+		System.arraycopy(src, 0, dst, 0, length);
+		return length;
+	}
+	
+	/**
+	 * @return the number of bytes of the received frame that have not been decoded yet.
+	 */
+	private int getFrameBytesRemaining() {
+		return (getRecvFrame() == null) ? 0 : getRecvFrame().remaining();
+	}
+	
+	/**
+	 * Reads a big endian value whose bytes are split between the received frame and the layer below.
+	 * @param numBytes number of bytes to read (maximum of 8)
+	 * @return the value as a long
+	 * @throws IOException
+	 */
+	private long readSplitBytes(int numBytes) throws IOException {
+		long res = 0;
+		for (int i = 0; i < numBytes; i++) {
+			res = (res << 8) | (readByte() & 0xFF);
+		}
+		return res;
+	}
+	
 	/**
 	 * Adds a DateAndTime to buffer without any headers
 	 * @param value
@@ -937,16 +1277,6 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 		getBuffer().put(value);
 	}
 	
-	/**
-	 * Adds byte array to buffer
-	 * @param value
-	 */
-	private void put(byte[] value) {
-		for (byte b : value) {
-			put(b);
-		}
-	}
-	
 	/**
 	 * Adds a FORTE array header to the buffer
 	 * @param typeID
@@ -962,36 +1292,31 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	 * @param arraySize
 	 */
 	private void putArrayHeader(int arraySize) {
+		if (arraySize > MAXARRAYLENGTH) {
+			throw new InputMismatchException("FORTE arrays are limited to " + MAXARRAYLENGTH + " elements.");
+		}
 		put(ARRAYID);
-		put(limitedShortInteger2Bytes(arraySize, 2)); // Maximum of 2 bytes permitted for array size in FORTE header
+		put32bitInteger(arraySize, LENGTHHEADERNUM); // Maximum of 2 bytes permitted for array size in FORTE header
 	}
 	
 	/**
-	 * Converts an integer and a typeID to a FORTE byte array with a certain number of bytes.
-	 * @param typeID
-	 * @param value
-	 * @param maxNumBytes
+	 * Advances the position of the byte buffer after a bulk copy via a view buffer.
+	 * @param numBytes number of bytes written to the view buffer
 	 */
-	private void put32bitInteger(int value, int maxNumBytes) {
-		byte[] out = limitedShortInteger2Bytes(value, maxNumBytes);
-		put(out);
+	private void skipBytes(int numBytes) {
+		getBuffer().position(getBuffer().position() + numBytes);
 	}
 	
 	/**
-	 * Converts short integer to byte[] array
+	 * Adds an integer to the buffer as a big endian FORTE integer with a certain number of bytes.
+	 * Bytes beyond the 4 bytes of a JAVA int are filled with zeros.
 	 * @param value
 	 * @param maxNumBytes
-	 * @return
 	 */
-	private static byte[] limitedShortInteger2Bytes(int value, int maxNumBytes) {
-		int ct = ZERO_INIT;
-		byte[] res = new byte[maxNumBytes];
-		// Note: It appears that only 4 byte integers are supported in Java. So the loop executes a maximum of 4 times.
-		for (int i = maxNumBytes - 1; i >= 0 & ct < 4; i--) {
-			res[i] = (byte) (value >> BYTEPOS[ct]);
-			ct++;
+	private void put32bitInteger(int value, int maxNumBytes) {
+		for (int i = maxNumBytes - 1; i >= 0; i--) {
+			put((i < 4) ? (byte) (value >> BYTEPOS[i]) : 0);
 		}
-		return res;
 	}
 	
 	/**
@@ -1021,20 +1346,28 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	}
 	
 	/**
-	 * Initializes the ForteByteBuffer's internal properties
-	 * @param size
+	 * Initializes the ForteByteBuffer's internal properties.
+	 * Layouts with STRINGs take their send buffer from the {@link ForteBufferPool}, other layouts use a buffer with the exact frame size.
+	 * The send buffers of a previous layout are returned to the pool.
+	 * @param plan codec plan of the layout
 	 */
-	private void initialize(int size) {
-		setBuffer(ByteBuffer.allocate(size));
+	private void initialize(ForteCodecPlan plan) {
+		if (getBuffer() != mBaseBuffer) {
+			ForteBufferPool.release(getBuffer());
+		}
+		ForteBufferPool.release(mBaseBuffer);
+		int size = plan.getSendBufferSize();
+		mBaseBuffer = plan.hasVariableLength() ? ForteBufferPool.acquire(size) : ByteBuffer.allocate(size);
+		setBuffer(mBaseBuffer);
 	}
 	
 	/**
-	 * Initializes {@link #mDataValues} to a fixed-sized List.
+	 * Initializes {@link #mDataValues} to a fixed-sized slot storage.
 	 * @param numDataValues
 	 * @return
 	 */
-	private List<Object> initializeDataValues(int numDataValues) {
-		return Arrays.asList(new Object[(numDataValues < DEFNUMDATAVALUES) ? DEFNUMDATAVALUES : numDataValues]);
+	private ForteDataSlots initializeDataValues(int numDataValues) {
+		return new ForteDataSlots((numDataValues < DEFNUMDATAVALUES) ? DEFNUMDATAVALUES : numDataValues);
 	}
 	
 	@Override
@@ -1054,7 +1387,7 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	 * If the position is at the end of the data buffer, the current position is checked.
 	 */
 	private boolean chkBool() {
-		return ForteDataType.BOOL.equals(getTypeAtNextPosition());
+		return chkJavaType(JavaType.BOOL);
 	}
 	
 	/**
@@ -1062,9 +1395,7 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	 * If the position is at the end of the data buffer, the current position is checked.
 	 */
 	private boolean chkLong() {
-		ForteDataType type = getTypeAtNextPosition();
-		return ForteDataType.LINT.equals(type)
-				|| ForteDataType.ULINT.equals(type);
+		return chkJavaType(JavaType.LONG);
 	}
 	
 	/**
@@ -1072,13 +1403,7 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	 * If the position is at the end of the data buffer, the current position is checked.
 	 */
 	private boolean chkInt() {
-		ForteDataType type = getTypeAtNextPosition();
-		return ForteDataType.SINT.equals(type)
-				|| ForteDataType.USINT.equals(type)
-				|| ForteDataType.INT.equals(type)
-				|| ForteDataType.UINT.equals(type)
-				|| ForteDataType.DINT.equals(type)
-				|| ForteDataType.UDINT.equals(type);
+		return chkJavaType(JavaType.INT);
 	}
 	
 	/**
@@ -1086,7 +1411,7 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	 * If the position is at the end of the data buffer, the current position is checked.
 	 */
 	private boolean chkFloat() {
-		return ForteDataType.REAL.equals(getTypeAtNextPosition());
+		return chkJavaType(JavaType.FLOAT);
 	}
 	
 	/**
@@ -1094,7 +1419,7 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	 * If the position is at the end of the data buffer, the current position is checked.
 	 */
 	private boolean chkDouble() {
-		return ForteDataType.LREAL.equals(getTypeAtNextPosition());
+		return chkJavaType(JavaType.DOUBLE);
 	}
 	
 	/**
@@ -1102,7 +1427,7 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	 * If the position is at the end of the data buffer, the current position is checked.
 	 */
 	private boolean chkDateAndTime() {
-		return ForteDataType.DATE_AND_TIME.equals(getTypeAtNextPosition());
+		return chkJavaType(JavaType.DATE_AND_TIME);
 	}
 	
 	// TODO: Re-add this feature when Polysun updates to Java 8 SE
@@ -1119,11 +1444,20 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	 * If the position is at the end of the data buffer, the current position is checked.
 	 */
 	private boolean chkString() {
-		return ForteDataType.STRING.equals(getTypeAtNextPosition());
+		return chkJavaType(JavaType.STRING);
+	}
+	
+	/**
+	 * @param javaType JAVA type to check for
+	 * @return true if the codec planned for the next position decodes values of the specified JAVA type.
+	 * If the position is at the end of the data buffer, the current position is checked.
+	 */
+	private boolean chkJavaType(JavaType javaType) {
+		return getPlan().getCodec(getNextPosition()).getJavaType() == javaType;
 	}
 	
 	/** Returns {@link mDataValues} */
-	private List<Object> getDataValues() {
+	private ForteDataSlots getDataValues() {
 		return mDataValues;
 	}
 	
@@ -1132,9 +1466,31 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 		return mNumDataValues;
 	}
 	
-	/** Returns {@link #mTypes} */
-	private ForteDataType[] getForteType() {
-		return mTypes;
+	/** Returns {@link #mPlan} */
+	ForteCodecPlan getPlan() {
+		return mPlan;
+	}
+	
+	/** Sets {@link #mPlan} */
+	private void setPlan(ForteCodecPlan plan) {
+		mPlan = plan;
+	}
+	
+	/**
+	 * @return the position after the current one, limited to the number of data values.
+	 */
+	private int getNextPosition() {
+		return limitPosition(getPosition() + 1);
+	}
+	
+	/**
+	 * Limits a position to the range of valid positions [0, number of data values - 1]
+	 * @param position
+	 * @return the limited position
+	 */
+	private int limitPosition(int position) {
+		position = (position < 0) ? 0 : position; // Lower limit
+		return (position > getNumDataValues() - 1) ? getNumDataValues() - 1 : position; // Upper limit
 	}
 	
 	@Override
@@ -1147,6 +1503,9 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	@Override
 	public void setDateAndTimeReference(DateAndTime dt) {
 		mDTreference = dt.getForteSimulationStart();
+		if (getDataValues() != null) {
+			getDataValues().setDateAndTimeReference(mDTreference);
+		}
 	}
 	
 	@Override
@@ -1177,6 +1536,56 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 		return mBuffer;
 	}
 	
+	/** Returns {@link #mFrameView} and creates it if necessary */
+	private ForteFrameView getFrameView() {
+		if (mFrameView == null) {
+			mFrameView = new ForteFrameView(getPlan().getNumDataValues());
+		}
+		return mFrameView;
+	}
+	
+	/** Sets {@link #mRecvFrame} */
+	private void setRecvFrame(ByteBuffer b) {
+		mRecvFrame = b;
+	}
+	
+	/** Returns {@link #mRecvFrame} */
+	private ByteBuffer getRecvFrame() {
+		return mRecvFrame;
+	}
+	
+	@Override
+	public void setStringCharset(Charset charset) {
+		if (!charset.equals(getStringCodec().getCharset())) {
+			mStringCodec = new ForteStringCodec(charset);
+		}
+	}
+	
+	/** Returns {@link #mStringCodec} */
+	private ForteStringCodec getStringCodec() {
+		return mStringCodec;
+	}
+	
+	/** Sets {@link #mBulkBuffer} */
+	private void setBulkBuffer(ByteBuffer b) {
+		mBulkBuffer = b;
+	}
+	
+	/** Returns {@link #mBulkBuffer} */
+	private ByteBuffer getBulkBuffer() {
+		return mBulkBuffer;
+	}
+	
+	/** @return true if received frames with a fixed frame size are read at once */
+	private boolean isFrameBuffering() {
+		return mFrameBuffering;
+	}
+	
+	@Override
+	public void setFrameBuffering(boolean buffering) {
+		mFrameBuffering = buffering;
+	}
+	
 	/**
 	 * @return flag to determine whether this object is initialized (true if initialized)
 	 */
@@ -1188,26 +1597,4 @@ public class ForteDataBufferLayer extends AbstractDataBufferLayer implements IFo
 	private void setInitialized() {
 		mIsInitialized = true;
 	}
-	
-	/**
-	 * Converts a String to bytes expected by FORTE
-	 * @param s String object
-	 * @return The bytes representing an equivalent STRING in FORTE (excluding the type ID)
-	 */
-	private static byte[] string2ForteBytes(String s) {
-		byte[] stringAsBytes = s.getBytes();
-		// Add the length of the string to the header
-		byte[] lengthHeader = limitedShortInteger2Bytes(stringAsBytes.length, LENGTHHEADERNUM);
-		byte[] out = new byte[stringAsBytes.length + LENGTHHEADERNUM];
-		int ct = 0;
-		for (byte l : lengthHeader) {
-			out[ct] = l;
-			ct++;
-		}
-		for (byte b : stringAsBytes) {
-			out[ct] = b;
-			ct++;
-		}
-		return out;
-	}
 }
\ No newline at end of file
@@ -0,0 +1,256 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import static de.htw.berlin.polysun4diac.CommonFunctionsAndConstants.KILOTOSI;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import de.htw.berlin.polysun4diac.forte.datatypes.DateAndTime;
+
+/**
+ * Primitive-specialized storage for the data values received by a {@link ForteDataBufferLayer}.
+ * Scalar values (BOOL, integers, REAL, LREAL, DATE_AND_TIME) are stored as raw bits in a long[] slot array indexed by position,
+ * so that storing and retrieving them does not box. Only arrays and Strings are stored in
+ * the parallel Object[] slot array. Primitive arrays can be reused between frames if their length does not change.
+ * </p>
+ * The {@link #iterator()} boxes the values lazily on access and is intended for debugging/testing purposes only.
+ */
+final class ForteDataSlots implements Iterable<Object>, Serializable {
+
+	private static final long serialVersionUID = -3641256640460419232L;
+
+	/** Slot does not contain a value */
+	private static final byte EMPTY = 0;
+	/** Slot contains a boolean */
+	private static final byte BOOL = 1;
+	/** Slot contains an int */
+	private static final byte INT = 2;
+	/** Slot contains a long */
+	private static final byte LONG = 3;
+	/** Slot contains the raw bits of a float */
+	private static final byte FLOAT = 4;
+	/** Slot contains the raw bits of a double */
+	private static final byte DOUBLE = 5;
+	/** Slot contains an Object (array, String or DateAndTime[]) */
+	private static final byte OBJECT = 6;
+	/** Slot contains a DATE_AND_TIME value in ms since 1st January 1970, 01:00:00.000 */
+	private static final byte DATE_AND_TIME = 7;
+
+	/** Raw bits of the primitive values */
+	private final long[] mPrimitives;
+	/** Object values (arrays, Strings, DateAndTime) */
+	private final Object[] mObjects;
+	/** Kind of value stored at each position */
+	private final byte[] mKinds;
+	/** Reference time for converting DATE_AND_TIME values to DateAndTime objects (see {@link #toDateAndTime(long, long)}) */
+	private long mDTreference = 0;
+
+	/**
+	 * Constructor
+	 * @param numSlots number of data values that can be stored
+	 */
+	ForteDataSlots(int numSlots) {
+		mPrimitives = new long[numSlots];
+		mObjects = new Object[numSlots];
+		mKinds = new byte[numSlots];
+	}
+
+	/** Stores a boolean value at the specified position */
+	void setBool(int position, boolean value) {
+		mPrimitives[position] = value ? 1L : 0L;
+		mKinds[position] = BOOL;
+	}
+
+	/** Stores an int value at the specified position */
+	void setInt(int position, int value) {
+		mPrimitives[position] = value;
+		mKinds[position] = INT;
+	}
+
+	/** Stores a long value at the specified position */
+	void setLong(int position, long value) {
+		mPrimitives[position] = value;
+		mKinds[position] = LONG;
+	}
+
+	/** Stores a float value at the specified position */
+	void setFloat(int position, float value) {
+		mPrimitives[position] = Float.floatToRawIntBits(value);
+		mKinds[position] = FLOAT;
+	}
+
+	/** Stores a double value at the specified position */
+	void setDouble(int position, double value) {
+		mPrimitives[position] = Double.doubleToRawLongBits(value);
+		mKinds[position] = DOUBLE;
+	}
+
+	/** Stores a DATE_AND_TIME value (FORTE time in ms) at the specified position. Retrieve it with {@link #getLong(int)}. */
+	void setDateAndTime(int position, long forteTime) {
+		mPrimitives[position] = forteTime;
+		mKinds[position] = DATE_AND_TIME;
+	}
+
+	/** Stores an Object (array, String or DateAndTime) at the specified position */
+	void setObject(int position, Object value) {
+		mObjects[position] = value;
+		mKinds[position] = OBJECT;
+	}
+
+	/** @return the boolean[] stored at the specified position if it has the specified length, otherwise a new boolean[] that is stored at the position */
+	boolean[] reuseBoolArray(int position, int length) {
+		Object current = mObjects[position];
+		if (!(current instanceof boolean[]) || ((boolean[]) current).length != length) {
+			current = new boolean[length];
+		}
+		setObject(position, current);
+		return (boolean[]) current;
+	}
+
+	/** @return the int[] stored at the specified position if it has the specified length, otherwise a new int[] that is stored at the position */
+	int[] reuseIntArray(int position, int length) {
+		Object current = mObjects[position];
+		if (!(current instanceof int[]) || ((int[]) current).length != length) {
+			current = new int[length];
+		}
+		setObject(position, current);
+		return (int[]) current;
+	}
+
+	/** @return the long[] stored at the specified position if it has the specified length, otherwise a new long[] that is stored at the position */
+	long[] reuseLongArray(int position, int length) {
+		Object current = mObjects[position];
+		if (!(current instanceof long[]) || ((long[]) current).length != length) {
+			current = new long[length];
+		}
+		setObject(position, current);
+		return (long[]) current;
+	}
+
+	/** @return the float[] stored at the specified position if it has the specified length, otherwise a new float[] that is stored at the position */
+	float[] reuseFloatArray(int position, int length) {
+		Object current = mObjects[position];
+		if (!(current instanceof float[]) || ((float[]) current).length != length) {
+			current = new float[length];
+		}
+		setObject(position, current);
+		return (float[]) current;
+	}
+
+	/** @return the double[] stored at the specified position if it has the specified length, otherwise a new double[] that is stored at the position */
+	double[] reuseDoubleArray(int position, int length) {
+		Object current = mObjects[position];
+		if (!(current instanceof double[]) || ((double[]) current).length != length) {
+			current = new double[length];
+		}
+		setObject(position, current);
+		return (double[]) current;
+	}
+
+	/** @return the boolean value at the specified position */
+	boolean getBool(int position) {
+		return mPrimitives[position] != 0L;
+	}
+
+	/** @return the int value at the specified position */
+	int getInt(int position) {
+		return (int) mPrimitives[position];
+	}
+
+	/** @return the long value at the specified position */
+	long getLong(int position) {
+		return mPrimitives[position];
+	}
+
+	/** @return the float value at the specified position */
+	float getFloat(int position) {
+		return Float.intBitsToFloat((int) mPrimitives[position]);
+	}
+
+	/** @return the double value at the specified position */
+	double getDouble(int position) {
+		return Double.longBitsToDouble(mPrimitives[position]);
+	}
+
+	/** @return the Object (array, String or DateAndTime) at the specified position */
+	Object getObject(int position) {
+		return mObjects[position];
+	}
+
+	/** Sets the simulation start in ms used as the reference for DateAndTime objects returned by {@link #get(int)} */
+	void setDateAndTimeReference(long simulationStartms) {
+		mDTreference = simulationStartms;
+	}
+
+	/**
+	 * Converts a received FORTE time to a DateAndTime object
+	 * @param forteTime number of ms since 1st January 1970, 01:00:00.000
+	 * @param simulationStartms reference time (simulation start) in ms
+	 * @return a corresponding DateAndTime object with it's SimulationStarteTime set to the reference value
+	 */
+	static DateAndTime toDateAndTime(long forteTime, long simulationStartms) {
+		DateAndTime dt = new DateAndTime(simulationStartms);
+		dt.setSimulationTimeS((int) ((forteTime - simulationStartms) / KILOTOSI));
+		return dt;
+	}
+
+	/** @return the number of slots */
+	int size() {
+		return mKinds.length;
+	}
+
+	/**
+	 * Returns the value at the specified position as an Object. Primitive values are boxed.
+	 * DATE_AND_TIME values are returned as DateAndTime objects with the reference time of the layer.
+	 * @param position position of the value
+	 * @return the (boxed) value or <code>null</code> if no value has been stored at the position.
+	 */
+	Object get(int position) {
+		switch (mKinds[position]) {
+		case BOOL:
+			return getBool(position);
+		case INT:
+			return getInt(position);
+		case LONG:
+			return getLong(position);
+		case FLOAT:
+			return getFloat(position);
+		case DOUBLE:
+			return getDouble(position);
+		case OBJECT:
+			return getObject(position);
+		case DATE_AND_TIME:
+			return toDateAndTime(getLong(position), mDTreference);
+		case EMPTY:
+		default:
+			return null;
+		}
+	}
+
+	@Override
+	public Iterator<Object> iterator() {
+		return new Iterator<Object>() {
+
+			private int mNext = 0;
+
+			@Override
+			public boolean hasNext() {
+				return mNext < size();
+			}
+
+			@Override
+			public Object next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return get(mNext++);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
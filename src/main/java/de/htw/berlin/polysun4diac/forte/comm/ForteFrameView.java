@@ -0,0 +1,476 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import static de.htw.berlin.polysun4diac.forte.datatypes.ForteTypeIDs.*;
+import static de.htw.berlin.polysun4diac.CommonFunctionsAndConstants.*;
+
+import java.io.IOException;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+
+import de.htw.berlin.polysun4diac.exception.UnsupportedForteDataTypeException;
+import de.htw.berlin.polysun4diac.forte.comm.ForteCodecPlan.JavaType;
+import de.htw.berlin.polysun4diac.forte.comm.ForteCodecPlan.SlotCodec;
+
+/**
+ * Flyweight view of a frame received by a {@link ForteDataBufferLayer} (see {@link IForteSocket#recvFrame()}).
+ * </p>
+ * Unlike {@link IForteSocket#recvData()}, receiving a frame does not decode any values. The view only keeps the received bytes
+ * and the offset of each value, so that values are decoded on access by their index (position). Values that are not accessed
+ * are never decoded, and accessing primitive values or array elements does not create any objects.
+ * For layouts with a fixed frame size, the offsets are precomputed by the codec plan and the view uses the received frame directly.
+ * </p>
+ * The view is reused by the layer: Its contents are only valid until the next frame is received.
+ */
+public final class ForteFrameView {
+
+	/** Message for NoSuchElementException */
+	private static final String NOMOREELEMENTSMSG = "No such element in the received frame.";
+	/** Initial capacity of the byte array for frames that are scanned */
+	private static final int DEFCAPACITY = 64;
+
+	/** Bytes of frames that are scanned */
+	private byte[] mScanBytes = new byte[DEFCAPACITY];
+	/** Received bytes (either {@link #mScanBytes} or a wrapped frame) */
+	private byte[] mBytes = mScanBytes;
+	/** Number of valid bytes in {@link #mBytes} */
+	private int mLength;
+	/** Number of values in the received frame */
+	private int mSize;
+	/** Offset of the data bytes of each value (for BOOLs and BOOL arrays, the offset of the first type ID) */
+	private final int[] mOffsets;
+	/** Received type ID of each value (the element type ID for arrays) */
+	private final byte[] mTypeIDs;
+	/** Codec of the received type ID of each value */
+	private final SlotCodec[] mCodecs;
+	/** Number of elements of each array (-1 for values that are not arrays) */
+	private final int[] mArrayLengths;
+	/** Codec for decoding STRINGs */
+	private ForteStringCodec mStringCodec;
+
+	/**
+	 * Constructor
+	 * @param numSlots maximum number of values in a frame
+	 */
+	ForteFrameView(int numSlots) {
+		mOffsets = new int[numSlots];
+		mTypeIDs = new byte[numSlots];
+		mCodecs = new SlotCodec[numSlots];
+		mArrayLengths = new int[numSlots];
+	}
+
+	/**
+	 * Uses a received frame of a layout with a fixed frame size directly, with the offsets precomputed by the plan.
+	 * @param frame bytes of the frame, starting at index 0
+	 * @param plan codec plan of the layout
+	 * @param stringCodec codec for decoding STRINGs
+	 * @return false if a received type ID does not match the layout. In this case, the frame must be scanned instead.
+	 */
+	boolean wrap(byte[] frame, ForteCodecPlan plan, ForteStringCodec stringCodec) {
+		int numSlots = plan.getNumDataValues();
+		for (int i = 0; i < numSlots; i++) {
+			int offset = plan.getSlotOffset(i);
+			byte typeID = frame[offset];
+			SlotCodec codec = plan.getCodec(i);
+			if (!codec.accepts(typeID)) {
+				return false;
+			}
+			mTypeIDs[i] = typeID;
+			mCodecs[i] = codec;
+			mArrayLengths[i] = -1;
+			mOffsets[i] = (codec == SlotCodec.BOOL) ? offset : offset + 1;
+		}
+		mBytes = frame;
+		mLength = plan.getFrameSize();
+		mSize = numSlots;
+		mStringCodec = stringCodec;
+		return true;
+	}
+
+	/**
+	 * Clears the view (e.g., if FORTE sent a response without data).
+	 */
+	void clear() {
+		mBytes = mScanBytes;
+		mLength = 0;
+		mSize = 0;
+	}
+
+	/**
+	 * Reads a frame from the layer and records the offset of each value. Only the headers are interpreted while reading.
+	 * @param layer layer to read the bytes from
+	 * @param numSlots number of values in the layout
+	 * @param stringCodec codec for decoding STRINGs
+	 * @throws IOException
+	 * @throws UnsupportedForteDataTypeException if a received type ID is not supported
+	 */
+	void scan(ForteDataBufferLayer layer, int numSlots, ForteStringCodec stringCodec) throws IOException {
+		mBytes = mScanBytes;
+		mLength = 0;
+		mSize = 0;
+		mStringCodec = stringCodec;
+		for (int i = 0; i < numSlots; i++) {
+			byte typeID = read(layer, 1);
+			if (typeID == RESPONSEID) {
+				return; // FORTE response without (further) data
+			}
+			int length = -1;
+			if (typeID == ARRAYID) {
+				read(layer, LENGTHHEADERNUM);
+				length = getLengthHeader(mLength - LENGTHHEADERNUM);
+				typeID = read(layer, 1);
+			}
+			SlotCodec codec = SlotCodec.forTypeID(typeID);
+			if (codec == null) {
+				throw new UnsupportedForteDataTypeException("Unsupported FORTE type ID received: " + typeID);
+			}
+			mTypeIDs[i] = typeID;
+			mCodecs[i] = codec;
+			mArrayLengths[i] = length;
+			int numElements = (length < 0) ? 1 : length;
+			if (codec == SlotCodec.BOOL) {
+				mOffsets[i] = mLength - 1; // The type ID is the (first) value
+				if (length > 1) {
+					read(layer, length - 1);
+				}
+			} else {
+				mOffsets[i] = mLength;
+				if (codec == SlotCodec.STRING) {
+					for (int j = 0; j < numElements; j++) {
+						read(layer, LENGTHHEADERNUM);
+						read(layer, getLengthHeader(mLength - LENGTHHEADERNUM));
+					}
+				} else {
+					read(layer, codec.getDataWidth() * numElements);
+				}
+			}
+			mSize = i + 1;
+		}
+	}
+
+	/** @return the number of values in the received frame (0 for a FORTE response without data) */
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * @param position position of the value
+	 * @return true if the value at the position is an array
+	 * @throws NoSuchElementException if the frame does not contain the position
+	 */
+	public boolean isArray(int position) {
+		return mArrayLengths[checkPosition(position)] >= 0;
+	}
+
+	/**
+	 * @param position position of the value
+	 * @return the number of elements of the array at the position
+	 * @throws NoSuchElementException if the frame does not contain an array at the position
+	 */
+	public int getArrayLength(int position) {
+		if (!isArray(position)) {
+			throw new NoSuchElementException("No array received at position " + position);
+		}
+		return mArrayLengths[position];
+	}
+
+	/**
+	 * @param position position of the value
+	 * @return the received FORTE type ID (the element type ID for arrays other than BOOL arrays)
+	 * @throws NoSuchElementException if the frame does not contain the position
+	 */
+	public byte getTypeID(int position) {
+		return mTypeIDs[checkPosition(position)];
+	}
+
+	/** @return true if the value at the position is a BOOL */
+	public boolean isBool(int position) {
+		return hasJavaType(position, JavaType.BOOL);
+	}
+
+	/** @return true if the value at the position is a SINT, INT, DINT, USINT, UINT or UDINT */
+	public boolean isInt(int position) {
+		return hasJavaType(position, JavaType.INT);
+	}
+
+	/** @return true if the value at the position is a LINT or ULINT */
+	public boolean isLong(int position) {
+		return hasJavaType(position, JavaType.LONG);
+	}
+
+	/** @return true if the value at the position is a REAL */
+	public boolean isFloat(int position) {
+		return hasJavaType(position, JavaType.FLOAT);
+	}
+
+	/** @return true if the value at the position is an LREAL */
+	public boolean isDouble(int position) {
+		return hasJavaType(position, JavaType.DOUBLE);
+	}
+
+	/** @return true if the value at the position is a DATE_AND_TIME */
+	public boolean isDateAndTime(int position) {
+		return hasJavaType(position, JavaType.DATE_AND_TIME);
+	}
+
+	/** @return true if the value at the position is a STRING */
+	public boolean isString(int position) {
+		return hasJavaType(position, JavaType.STRING);
+	}
+
+	/**
+	 * @param position position of the value
+	 * @return the BOOL value at the position
+	 * @throws NoSuchElementException if the frame does not contain a BOOL at the position
+	 */
+	public boolean getBool(int position) {
+		return mBytes[offset(position, JavaType.BOOL, -1)] == TBOOLID;
+	}
+
+	/**
+	 * @param position position of the array
+	 * @param index index of the array element
+	 * @return the element of the BOOL array at the position
+	 * @throws NoSuchElementException if the frame does not contain a BOOL array with the element at the position
+	 */
+	public boolean getBool(int position, int index) {
+		return mBytes[offset(position, JavaType.BOOL, index) + index] == TBOOLID;
+	}
+
+	/**
+	 * @param position position of the value
+	 * @return the (SINT, INT, DINT, USINT, UINT or UDINT) value at the position
+	 * @throws NoSuchElementException if the frame does not contain an integer at the position
+	 */
+	public int getInt(int position) {
+		return getInteger(offset(position, JavaType.INT, -1), mCodecs[position].getDataWidth());
+	}
+
+	/**
+	 * @param position position of the array
+	 * @param index index of the array element
+	 * @return the element of the integer array at the position
+	 * @throws NoSuchElementException if the frame does not contain an integer array with the element at the position
+	 */
+	public int getInt(int position, int index) {
+		int width = mCodecs[checkPosition(position)].getDataWidth();
+		return getInteger(offset(position, JavaType.INT, index) + index * width, width);
+	}
+
+	/**
+	 * @param position position of the value
+	 * @return the LINT/ULINT value at the position
+	 * @throws NoSuchElementException if the frame does not contain a LINT at the position
+	 */
+	public long getLong(int position) {
+		return getLongAt(offset(position, JavaType.LONG, -1));
+	}
+
+	/**
+	 * @param position position of the array
+	 * @param index index of the array element
+	 * @return the element of the LINT array at the position
+	 * @throws NoSuchElementException if the frame does not contain a LINT array with the element at the position
+	 */
+	public long getLong(int position, int index) {
+		return getLongAt(offset(position, JavaType.LONG, index) + index * (LINTBN - 1));
+	}
+
+	/**
+	 * @param position position of the value
+	 * @return the REAL value at the position
+	 * @throws NoSuchElementException if the frame does not contain a REAL at the position
+	 */
+	public float getFloat(int position) {
+		return Float.intBitsToFloat(getInteger(offset(position, JavaType.FLOAT, -1), REALBN - 1));
+	}
+
+	/**
+	 * @param position position of the array
+	 * @param index index of the array element
+	 * @return the element of the REAL array at the position
+	 * @throws NoSuchElementException if the frame does not contain a REAL array with the element at the position
+	 */
+	public float getFloat(int position, int index) {
+		return Float.intBitsToFloat(getInteger(offset(position, JavaType.FLOAT, index) + index * (REALBN - 1), REALBN - 1));
+	}
+
+	/**
+	 * @param position position of the value
+	 * @return the LREAL value at the position
+	 * @throws NoSuchElementException if the frame does not contain an LREAL at the position
+	 */
+	public double getDouble(int position) {
+		return Double.longBitsToDouble(getLongAt(offset(position, JavaType.DOUBLE, -1)));
+	}
+
+	/**
+	 * @param position position of the array
+	 * @param index index of the array element
+	 * @return the element of the LREAL array at the position
+	 * @throws NoSuchElementException if the frame does not contain an LREAL array with the element at the position
+	 */
+	public double getDouble(int position, int index) {
+		return Double.longBitsToDouble(getLongAt(offset(position, JavaType.DOUBLE, index) + index * (LREALBN - 1)));
+	}
+
+	/**
+	 * @param position position of the value
+	 * @return the DATE_AND_TIME value at the position as the number of ms since 1st January 1970, 01:00:00.000
+	 * @throws NoSuchElementException if the frame does not contain a DATE_AND_TIME at the position
+	 */
+	public long getDateAndTimeMillis(int position) {
+		return getLongAt(offset(position, JavaType.DATE_AND_TIME, -1));
+	}
+
+	/**
+	 * @param position position of the array
+	 * @param index index of the array element
+	 * @return the element of the DATE_AND_TIME array at the position as the number of ms since 1st January 1970, 01:00:00.000
+	 * @throws NoSuchElementException if the frame does not contain a DATE_AND_TIME array with the element at the position
+	 */
+	public long getDateAndTimeMillis(int position, int index) {
+		return getLongAt(offset(position, JavaType.DATE_AND_TIME, index) + index * (DTBN - 1));
+	}
+
+	/**
+	 * Decodes the STRING at the position. Short STRINGs are taken from the layer's cache of decoded STRINGs.
+	 * @param position position of the value
+	 * @return the STRING value at the position
+	 * @throws NoSuchElementException if the frame does not contain a STRING at the position
+	 */
+	public String getString(int position) {
+		return decodeString(offset(position, JavaType.STRING, -1));
+	}
+
+	/**
+	 * Decodes an element of the STRING array at the position. The preceding elements are skipped, but not decoded.
+	 * @param position position of the array
+	 * @param index index of the array element
+	 * @return the element of the STRING array at the position
+	 * @throws NoSuchElementException if the frame does not contain a STRING array with the element at the position
+	 */
+	public String getString(int position, int index) {
+		int offset = offset(position, JavaType.STRING, index);
+		for (int i = 0; i < index; i++) {
+			offset += LENGTHHEADERNUM + getLengthHeader(offset);
+		}
+		return decodeString(offset);
+	}
+
+	/**
+	 * Copies the elements of the LREAL array at the position into a caller-supplied array.
+	 * @param position position of the array
+	 * @param dst destination array
+	 * @return the number of elements copied
+	 * @throws NoSuchElementException if the frame does not contain an LREAL array at the position
+	 * @throws InputMismatchException if dst is shorter than the array
+	 */
+	public int getDoubleArray(int position, double[] dst) {
+		int length = getArrayLength(position);
+		if (dst.length < length) {
+			throw new InputMismatchException("The destination array is too short. Received " + length + " elements.");
+		}
+		for (int i = 0; i < length; i++) {
+			dst[i] = getDouble(position, i);
+		}
+		return length;
+	}
+
+	/**
+	 * Copies the elements of the REAL array at the position into a caller-supplied array.
+	 * @param position position of the array
+	 * @param dst destination array
+	 * @return the number of elements copied
+	 * @throws NoSuchElementException if the frame does not contain a REAL array at the position
+	 * @throws InputMismatchException if dst is shorter than the array
+	 */
+	public int getFloatArray(int position, float[] dst) {
+		int length = getArrayLength(position);
+		if (dst.length < length) {
+			throw new InputMismatchException("The destination array is too short. Received " + length + " elements.");
+		}
+		for (int i = 0; i < length; i++) {
+			dst[i] = getFloat(position, i);
+		}
+		return length;
+	}
+
+	/**
+	 * Appends bytes read from the layer to {@link #mBytes}.
+	 * @return the last byte read
+	 */
+	private byte read(ForteDataBufferLayer layer, int numBytes) throws IOException {
+		if (mLength + numBytes > mBytes.length) {
+			byte[] grown = new byte[Math.max(mLength + numBytes, 2 * mBytes.length)];
+			System.arraycopy(mBytes, 0, grown, 0, mLength);
+			mScanBytes = grown;
+			mBytes = grown;
+		}
+		if (numBytes == 1) {
+			mBytes[mLength] = layer.readByte();
+		} else if (numBytes > 1) {
+			layer.readFully(mBytes, mLength, numBytes);
+		}
+		mLength += numBytes;
+		return (numBytes > 0) ? mBytes[mLength - 1] : 0;
+	}
+
+	/** @return the position if the frame contains it */
+	private int checkPosition(int position) {
+		if (position < 0 || position >= mSize) {
+			throw new NoSuchElementException(NOMOREELEMENTSMSG);
+		}
+		return position;
+	}
+
+	/** @return true if the value at the position is converted to the JAVA type */
+	private boolean hasJavaType(int position, JavaType type) {
+		return position >= 0 && position < mSize && mCodecs[position].getJavaType() == type;
+	}
+
+	/**
+	 * @param position position of the value
+	 * @param type expected JAVA type
+	 * @param index index of the array element or -1 for values that are not arrays
+	 * @return the offset of the value or of the first array element
+	 */
+	private int offset(int position, JavaType type, int index) {
+		checkPosition(position);
+		if (mCodecs[position].getJavaType() != type) {
+			throw new NoSuchElementException("Attemted to access " + type + " where " + mCodecs[position].getJavaType() + " is stored");
+		}
+		int length = mArrayLengths[position];
+		if (index < 0) {
+			if (length >= 0) {
+				throw new NoSuchElementException("Attemted to access a single value where an array is stored");
+			}
+		} else if (index >= length) {
+			throw new NoSuchElementException(NOMOREELEMENTSMSG);
+		}
+		return mOffsets[position];
+	}
+
+	/** @return the big endian integer with the specified number of bytes at the offset. The most significant byte is sign-extended. */
+	private int getInteger(int offset, int numBytes) {
+		int res = mBytes[offset];
+		for (int i = 1; i < numBytes; i++) {
+			res = (res << 8) | (mBytes[offset + i] & 0xFF);
+		}
+		return res;
+	}
+
+	/** @return the big endian long at the offset */
+	private long getLongAt(int offset) {
+		return ((long) getInteger(offset, 4) << 32) | (getInteger(offset + 4, 4) & 0xFFFFFFFFL);
+	}
+
+	/** @return the unsigned 2 byte length header at the offset */
+	private int getLengthHeader(int offset) {
+		return ((mBytes[offset] & 0xFF) << 8) | (mBytes[offset + 1] & 0xFF);
+	}
+
+	/** @return the STRING whose length header is at the offset */
+	private String decodeString(int offset) {
+		return mStringCodec.decode(mBytes, offset + LENGTHHEADERNUM, getLengthHeader(offset));
+	}
+}
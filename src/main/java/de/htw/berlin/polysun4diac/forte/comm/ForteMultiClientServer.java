@@ -0,0 +1,196 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import de.htw.berlin.polysun4diac.exception.UnsupportedForteDataTypeException;
+
+/**
+ * Non-blocking TCP server that accepts connections from many FORTE CLIENT function blocks on a single port,
+ * e.g. one FORTE runtime per simulated household.
+ * </p>
+ * In contrast to the TCPserverCommLayer, which blocks until a single client has connected, clients are accepted without blocking
+ * whenever {@link #acceptClients(long)} is called, so that runtimes can join during the simulation. Each accepted client gets its own
+ * IForteSocket with the inputs and outputs of the parameters, i.e. its own receive buffer and decode state. The channels of all clients
+ * are served by the shared I/O thread of the ForteTransportType.SELECTOR transport, so that the frames of all clients are received
+ * in parallel and {@link #recvAll()} only waits for the slowest client.
+ * </p>
+ * The server is not thread-safe and should only be used by the thread of the plugin controller.
+ */
+public class ForteMultiClientServer {
+
+	/** Connection parameters of the clients */
+	private final CommLayerParams mParams;
+	/** Sockets of the connected clients in the order they connected */
+	private final List<IForteSocket> mClients = new ArrayList<IForteSocket>();
+	/** Read-only view of {@link #mClients} */
+	private final List<IForteSocket> mClientsView = Collections.unmodifiableList(mClients);
+	/** Server channel (null if not open) */
+	private ServerSocketChannel mServer;
+	/** Selector waiting for clients to connect */
+	private Selector mAcceptSelector;
+	/** Number of clients that have been dropped because their connection was closed */
+	private int mNumDropped = 0;
+
+	/**
+	 * Constructor.
+	 * @param params address to listen on and the inputs and outputs of every client
+	 */
+	public ForteMultiClientServer(CommLayerParams params) {
+		mParams = params;
+	}
+
+	/**
+	 * Binds the server to the address of the parameters. Does not wait for clients.
+	 * @throws IOException if the server cannot be bound
+	 */
+	public void open() throws IOException {
+		ServerSocketChannel server = ServerSocketChannel.open();
+		try {
+			if (mParams.getSocketReceiveBufferSize() > 0) {
+				server.socket().setReceiveBufferSize(mParams.getSocketReceiveBufferSize()); // Inherited by accepted channels
+			}
+			server.socket().bind(mParams); // Open service on IP & port
+			server.configureBlocking(false);
+			mAcceptSelector = Selector.open();
+			server.register(mAcceptSelector, SelectionKey.OP_ACCEPT);
+		} catch (IOException e) {
+			server.close();
+			if (mAcceptSelector != null) {
+				mAcceptSelector.close();
+				mAcceptSelector = null;
+			}
+			throw e;
+		}
+		mServer = server;
+	}
+
+	/**
+	 * Accepts the clients that have connected since the last call.
+	 * @param timeoutMs maximum time to wait for a client if none is pending (0 to return immediately)
+	 * @return the number of clients accepted by this call
+	 * @throws IOException if the server is not open or a client could not be set up
+	 */
+	public int acceptClients(long timeoutMs) throws IOException {
+		if (mServer == null) {
+			throw new IOException("Server is not open.");
+		}
+		if (timeoutMs > 0) {
+			mAcceptSelector.select(timeoutMs);
+		} else {
+			mAcceptSelector.selectNow();
+		}
+		mAcceptSelector.selectedKeys().clear();
+		int num = 0;
+		SocketChannel channel;
+		while ((channel = mServer.accept()) != null) {
+			try {
+				mClients.add(mParams.makeSocket(new NIOselectorCommLayer(channel)));
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+			num++;
+		}
+		return num;
+	}
+
+	/**
+	 * Waits until the specified number of clients is connected.
+	 * @param numClients number of clients
+	 * @param timeoutMs maximum time to wait in milliseconds (0 for no timeout)
+	 * @return true if the clients are connected, false if the timeout has elapsed
+	 * @throws IOException if the server is not open or a client could not be set up
+	 */
+	public boolean awaitClients(int numClients, long timeoutMs) throws IOException {
+		long deadline = System.currentTimeMillis() + timeoutMs;
+		acceptClients(0);
+		while (mClients.size() < numClients) {
+			long remaining = timeoutMs > 0 ? deadline - System.currentTimeMillis() : Long.MAX_VALUE;
+			if (remaining <= 0) {
+				return false;
+			}
+			acceptClients(remaining);
+		}
+		return true;
+	}
+
+	/**
+	 * Receives one frame from every connected client. Clients whose connection has been closed or failed are dropped.
+	 * After this call, the values of each client can be read with the get methods of its socket (see {@link #getClients()}).
+	 * @return the number of clients a frame has been received from
+	 * @throws UnsupportedForteDataTypeException if a client sent a data type that is not supported
+	 */
+	public int recvAll() throws UnsupportedForteDataTypeException {
+		Iterator<IForteSocket> clients = mClients.iterator();
+		while (clients.hasNext()) {
+			IForteSocket client = clients.next();
+			try {
+				client.recvData(); // Bytes of all clients arrive on the I/O thread in the meantime
+			} catch (IOException e) {
+				// FORTE runtime stopped or disconnected. The remaining clients are still served.
+				clients.remove();
+				mNumDropped++;
+				disconnect(client);
+			}
+		}
+		return mClients.size();
+	}
+
+	/**
+	 * @return the sockets of the connected clients in the order they connected (read-only)
+	 */
+	public List<IForteSocket> getClients() {
+		return mClientsView;
+	}
+
+	/**
+	 * @return the number of connected clients
+	 */
+	public int getNumClients() {
+		return mClients.size();
+	}
+
+	/**
+	 * @return the number of clients that have been dropped because their connection was closed
+	 */
+	public int getNumDropped() {
+		return mNumDropped;
+	}
+
+	/**
+	 * Closes the connections of all clients and the server.
+	 * @throws IOException if the server could not be closed
+	 */
+	public void close() throws IOException {
+		for (IForteSocket client : mClients) {
+			disconnect(client);
+		}
+		mClients.clear();
+		if (mServer != null) {
+			mAcceptSelector.close();
+			mServer.close();
+			mAcceptSelector = null;
+			mServer = null;
+		}
+	}
+
+	/**
+	 * Closes the connection of a client, ignoring errors.
+	 * @param client the socket of the client
+	 */
+	private static void disconnect(IForteSocket client) {
+		try {
+			client.disconnect();
+		} catch (IOException e) {
+			// Ignore. Probably already disconnected.
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registry of open connections to FORTE that are kept alive between simulations.
+ * </p>
+ * Parameter sweeps run many short simulations back to back. Instead of closing the socket at the end of a simulation and
+ * connecting again at the beginning of the next one (which also makes FORTE re-initialise the CSIFB), a plugin controller
+ * can {@link #release(CommLayerParams, IForteSocket) release} its socket to this registry and {@link #acquire(CommLayerParams) acquire}
+ * it again. Sockets are keyed by host, port, service type, transport and the layout of the inputs and outputs, so a socket
+ * is only reused for an identical connection. Before a socket is reused, it is checked with {@link IForteSocket#isHealthy()}
+ * and only its codec state is reset. Unhealthy sockets are closed and replaced by a new connection.
+ * </p>
+ * All idle sockets are closed when the JVM shuts down. The registry is thread-safe.
+ */
+public final class ForteSessionRegistry {
+
+	/** Idle sockets by session key */
+	private static final Map<String, Deque<IForteSocket>> IDLE = new HashMap<String, Deque<IForteSocket>>();
+	/** Flag indicating whether the shutdown hook closing the idle sockets has been registered */
+	private static boolean sShutdownHookRegistered = false;
+
+	private ForteSessionRegistry() {
+		// Static methods only
+	}
+
+	/**
+	 * Takes an idle socket matching the parameters from the registry, or opens a new connection if there is none.
+	 * @param params the connection parameters
+	 * @return a connected socket with reset codec state
+	 * @throws IOException if a new connection cannot be opened
+	 */
+	public static IForteSocket acquire(CommLayerParams params) throws IOException {
+		String key = params.getSessionKey();
+		IForteSocket socket;
+		while ((socket = poll(key)) != null) {
+			if (socket.isHealthy()) {
+				socket.reset();
+				return socket;
+			}
+			close(socket); // Closed by FORTE or holding stale data
+		}
+		return params.makeIPSocket();
+	}
+
+	/**
+	 * Keeps a socket open for a later {@link #acquire(CommLayerParams)} with the same parameters.
+	 * A socket that is not connected is discarded.
+	 * @param params the parameters the socket has been acquired with
+	 * @param socket the socket
+	 */
+	public static void release(CommLayerParams params, IForteSocket socket) {
+		if (socket == null) {
+			return;
+		}
+		if (!socket.isConnected()) {
+			close(socket);
+			return;
+		}
+		synchronized (IDLE) {
+			Deque<IForteSocket> sockets = IDLE.get(params.getSessionKey());
+			if (sockets == null) {
+				sockets = new ArrayDeque<IForteSocket>();
+				IDLE.put(params.getSessionKey(), sockets);
+			}
+			sockets.push(socket);
+			registerShutdownHook();
+		}
+	}
+
+	/**
+	 * Closes all idle sockets.
+	 */
+	public static void closeAll() {
+		synchronized (IDLE) {
+			for (Deque<IForteSocket> sockets : IDLE.values()) {
+				for (IForteSocket socket : sockets) {
+					close(socket);
+				}
+			}
+			IDLE.clear();
+		}
+	}
+
+	/**
+	 * @return the number of idle sockets in the registry
+	 */
+	public static int getNumIdle() {
+		synchronized (IDLE) {
+			int num = 0;
+			for (Deque<IForteSocket> sockets : IDLE.values()) {
+				num += sockets.size();
+			}
+			return num;
+		}
+	}
+
+	/**
+	 * Removes an idle socket from the registry.
+	 * @param key session key
+	 * @return the socket that was released last, or null if there is none
+	 */
+	private static IForteSocket poll(String key) {
+		synchronized (IDLE) {
+			Deque<IForteSocket> sockets = IDLE.get(key);
+			if (sockets == null) {
+				return null;
+			}
+			IForteSocket socket = sockets.poll();
+			if (sockets.isEmpty()) {
+				IDLE.remove(key);
+			}
+			return socket;
+		}
+	}
+
+	/**
+	 * Closes a socket, ignoring errors.
+	 * @param socket the socket
+	 */
+	private static void close(IForteSocket socket) {
+		try {
+			socket.disconnect();
+		} catch (IOException e) {
+			// Ignore. Probably already disconnected.
+		}
+	}
+
+	/**
+	 * Registers the shutdown hook closing the idle sockets. Must be called while holding the lock of {@link #IDLE}.
+	 */
+	private static void registerShutdownHook() {
+		if (!sShutdownHookRegistered) {
+			sShutdownHookRegistered = true;
+			Runtime.getRuntime().addShutdownHook(new Thread("FORTE session registry shutdown") {
+				@Override
+				public void run() {
+					closeAll();
+				}
+			});
+		}
+	}
+}
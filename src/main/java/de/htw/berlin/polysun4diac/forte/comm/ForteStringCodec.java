@@ -0,0 +1,160 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import static de.htw.berlin.polysun4diac.CommonFunctionsAndConstants.*;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.InputMismatchException;
+
+/**
+ * Encodes Strings to and decodes Strings from the bytes of IEC 61499 STRINGs with a fixed charset.
+ * </p>
+ * Strings are encoded directly into the send buffer (including the 2 byte length header), so no intermediate
+ * byte arrays are allocated. Decoded Strings are kept in a small cache, so that repeatedly received values
+ * (e.g., status messages) are not decoded and allocated again.
+ * </p>
+ * Instances are not thread-safe. Each ForteDataBufferLayer uses its own instance.
+ */
+final class ForteStringCodec {
+
+	/** Number of cached Strings (must be a power of 2) */
+	private static final int CACHESIZE = 16;
+	/** Maximum number of bytes of a cached String */
+	private static final int MAXCACHEDLENGTH = 64;
+	/** Maximum number of bytes of a STRING that can be indicated in the 2 byte length header */
+	private static final int MAXLENGTH = 0xFFFF;
+
+	/** Charset used for encoding and decoding */
+	private final Charset mCharset;
+	/** True if each char is encoded as a single byte with the same value (or '?' if it cannot be mapped) */
+	private final boolean mSingleByte;
+	/** Maximum char value that can be mapped by a single byte charset */
+	private final char mMaxSingleByteChar;
+	/** Encoder for multi byte charsets (null for single byte charsets) */
+	private final CharsetEncoder mEncoder;
+	/** Bytes of the cached Strings */
+	private final byte[][] mCachedBytes = new byte[CACHESIZE][];
+	/** Cached Strings */
+	private final String[] mCachedStrings = new String[CACHESIZE];
+
+	/**
+	 * Constructor
+	 * @param charset charset used for encoding and decoding
+	 */
+	ForteStringCodec(Charset charset) {
+		mCharset = charset;
+		mSingleByte = StandardCharsets.ISO_8859_1.equals(charset) || StandardCharsets.US_ASCII.equals(charset);
+		mMaxSingleByteChar = StandardCharsets.US_ASCII.equals(charset) ? '\u007F' : '\u00FF';
+		// Replace characters that cannot be encoded, as String.getBytes() does
+		mEncoder = mSingleByte ? null : charset.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	/** @return the charset used for encoding and decoding */
+	Charset getCharset() {
+		return mCharset;
+	}
+
+	/**
+	 * @param s String to encode
+	 * @return the maximum number of bytes written by {@link #encode(String, ByteBuffer)}, including the 2 byte length header
+	 */
+	int maxEncodedLength(String s) {
+		if (mSingleByte) {
+			return LENGTHHEADERNUM + s.length();
+		}
+		return LENGTHHEADERNUM + (int) Math.ceil(s.length() * (double) mEncoder.maxBytesPerChar());
+	}
+
+	/**
+	 * Encodes a String into the buffer, preceded by its 2 byte length header (excluding the type ID).
+	 * @param s String to encode
+	 * @param buffer buffer to encode the String into
+	 * @throws BufferOverflowException if the buffer is too small
+	 * @throws InputMismatchException if the encoded String is longer than 65535 bytes
+	 */
+	void encode(String s, ByteBuffer buffer) {
+		int headerPosition = buffer.position();
+		buffer.position(headerPosition + LENGTHHEADERNUM); // Length is written after encoding
+		if (mSingleByte) {
+			if (buffer.remaining() < s.length()) {
+				throw new BufferOverflowException();
+			}
+			for (int i = 0; i < s.length(); i++) {
+				char c = s.charAt(i);
+				if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+					i++; // A surrogate pair represents a single (unmappable) character
+				}
+				buffer.put((c <= mMaxSingleByteChar) ? (byte) c : (byte) '?');
+			}
+		} else {
+			mEncoder.reset();
+			CharBuffer chars = CharBuffer.wrap(s);
+			CoderResult result = mEncoder.encode(chars, buffer, true);
+			if (!result.isUnderflow()) {
+				throw new BufferOverflowException();
+			}
+			if (!mEncoder.flush(buffer).isUnderflow()) {
+				throw new BufferOverflowException();
+			}
+		}
+		int length = buffer.position() - headerPosition - LENGTHHEADERNUM;
+		if (length > MAXLENGTH) {
+			buffer.position(headerPosition);
+			throw new InputMismatchException("FORTE STRINGs are limited to " + MAXLENGTH + " bytes.");
+		}
+		buffer.putShort(headerPosition, (short) length);
+	}
+
+	/**
+	 * Decodes the bytes of a STRING (excluding the length header).
+	 * Short Strings are looked up in the cache first.
+	 * @param b array containing the bytes
+	 * @param off offset of the first byte
+	 * @param len number of bytes
+	 * @return the decoded String
+	 */
+	String decode(byte[] b, int off, int len) {
+		if (len == 0) {
+			return "";
+		}
+		if (len > MAXCACHEDLENGTH) {
+			return new String(b, off, len, mCharset);
+		}
+		int hash = 1;
+		for (int i = off; i < off + len; i++) {
+			hash = 31 * hash + b[i];
+		}
+		int idx = (hash ^ (hash >>> 16)) & (CACHESIZE - 1);
+		byte[] cached = mCachedBytes[idx];
+		if (cached != null && isEqual(cached, b, off, len)) {
+			return mCachedStrings[idx];
+		}
+		String s = new String(b, off, len, mCharset);
+		byte[] copy = new byte[len];
+		System.arraycopy(b, off, copy, 0, len);
+		mCachedBytes[idx] = copy;
+		mCachedStrings[idx] = s;
+		return s;
+	}
+
+	/** @return true if the cached bytes equal the specified range of b */
+	private static boolean isEqual(byte[] cached, byte[] b, int off, int len) {
+		if (cached.length != len) {
+			return false;
+		}
+		for (int i = 0; i < len; i++) {
+			if (cached[i] != b[off + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,21 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+/**
+ * Enumeration used to set the transport implementation of TCP connections (CLIENT and SERVER service types).
+ * For PUBLISHER and SUBSCRIBER connections, NIO and SELECTOR both select a DatagramChannel
+ * (see {@link NIOpublisherCommLayer} and {@link NIOsubscriberCommLayer}).
+ * The following types exist:</p>
+ * ForteTransportType.SOCKET: Blocking java.net.Socket with stream-based I/O (default)</p>
+ * ForteTransportType.NIO: Blocking java.nio SocketChannel with direct ByteBuffer I/O</p>
+ * ForteTransportType.SELECTOR: Non-blocking SocketChannel served by an I/O thread shared by all connections</p>
+ * ForteTransportType.UNIX: Unix domain socket for FORTE running on the same host (Java 16 or later, see {@link UNIXcommunicationLayer})</p>
+ * ForteTransportType.SHM: Ring buffers in shared memory for FORTE running on the same host, falling back to SOCKET (see {@link SHMringCommLayer})</p>
+ * @see CommLayerParams#setTransportType(ForteTransportType)
+ */
+public enum ForteTransportType {
+	SOCKET,
+	NIO,
+	SELECTOR,
+	UNIX,
+	SHM;
+}
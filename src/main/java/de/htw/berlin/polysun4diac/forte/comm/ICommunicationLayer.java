@@ -90,11 +90,27 @@ public interface ICommunicationLayer {
 	 */
 	public float readFloat() throws IOException;
 	
+	/**
+	 * Reads len bytes from the communication layer below or the connected device if this layer is the bottom layer.
+	 * Blocks until all of the bytes have been read.
+	 * @param b the buffer into which the bytes are read
+	 * @param off start offset in b
+	 * @param len number of bytes to read
+	 * @throws IOException
+	 */
+	public void readFully(byte[] b, int off, int len) throws IOException;
+	
 	/**
 	 * @return true if the layer is connected, false otherwise.
 	 */
 	public boolean getConnectionState();
 	
+	/**
+	 * Checks whether the connection can be reused. May briefly poll the connection.
+	 * @return true if the layer is connected, the connection has not been closed by the peer and no received bytes are left unread.
+	 */
+	public boolean isHealthy();
+	
 	/**
 	 * @return a byte array holding the raw data retrieved by calling {@link #recvData()}
 	 */
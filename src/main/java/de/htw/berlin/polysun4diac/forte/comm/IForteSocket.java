@@ -2,6 +2,7 @@ package de.htw.berlin.polysun4diac.forte.comm;
 
 import java.io.IOException;
 //import java.time.LocalDateTime;  // TODO: Re-add this feature when Polysun updates to Java 8 SE
+import java.util.InputMismatchException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -78,6 +79,17 @@ public interface IForteSocket {
 	 */
 	public boolean[] getBoolArray();
 	
+	/**
+	 * Increments the position by one and copies the boolean[] value at the next position into a caller-supplied array,
+	 * so that no array is allocated. </p>
+	 * Use {@link #isBoolArray()} to determine whether the correct data type is at the next position.
+	 * @param dst destination array. Must be at least as long as the received array.
+	 * @return the number of elements copied to dst.
+	 * @throws NoSuchElementException
+	 * @throws InputMismatchException if dst is shorter than the received array. The position is not incremented in this case.
+	 */
+	public int getBoolArray(boolean[] dst);
+	
 	/**
 	 * Increments the position by one. </p>
 	 * Use {@link #isDateAndTime()} to determine whether the correct data type is at the next position.
@@ -86,6 +98,15 @@ public interface IForteSocket {
 	 */
 	public DateAndTime getDateAndTime();
 	
+	/**
+	 * Increments the position by one. </p>
+	 * Use {@link #isDateAndTime()} to determine whether the correct data type is at the next position.
+	 * Unlike {@link #getDateAndTime()}, this method does not create a DateAndTime object.
+	 * @return DATE_AND_TIME value at the next position as the number of ms since 1st January 1970, 01:00:00.000
+	 * @throws NoSuchElementException
+	 */
+	public long getDateAndTimeMillis();
+	
 	/**
 	 * Increments the position by one. </p>
 	 * Use {@link #isDateAndTimeArray()} to determine whether the correct data type is at the next position.
@@ -110,6 +131,17 @@ public interface IForteSocket {
 	 */
 	public double[] getDoubleArray();
 	
+	/**
+	 * Increments the position by one and copies the double[] value at the next position into a caller-supplied array,
+	 * so that no array is allocated. </p>
+	 * Use {@link #isDoubleArray()} to determine whether the correct data type is at the next position.
+	 * @param dst destination array. Must be at least as long as the received array.
+	 * @return the number of elements copied to dst.
+	 * @throws NoSuchElementException
+	 * @throws InputMismatchException if dst is shorter than the received array. The position is not incremented in this case.
+	 */
+	public int getDoubleArray(double[] dst);
+	
 	/**
 	 * Increments the position by one. </p>
 	 * Use {@link #isFloat()} to determine whether the correct data type is at the next position.
@@ -126,6 +158,17 @@ public interface IForteSocket {
 	 */
 	public float[] getFloatArray();
 	
+	/**
+	 * Increments the position by one and copies the float[] value at the next position into a caller-supplied array,
+	 * so that no array is allocated. </p>
+	 * Use {@link #isFloatArray()} to determine whether the correct data type is at the next position.
+	 * @param dst destination array. Must be at least as long as the received array.
+	 * @return the number of elements copied to dst.
+	 * @throws NoSuchElementException
+	 * @throws InputMismatchException if dst is shorter than the received array. The position is not incremented in this case.
+	 */
+	public int getFloatArray(float[] dst);
+	
 	/**
 	 * Increments the position by one. </p>
 	 * Use {@link #isInt()} to determine whether the correct data type is at the next position.
@@ -142,6 +185,17 @@ public interface IForteSocket {
 	 */
 	public int[] getIntArray();
 	
+	/**
+	 * Increments the position by one and copies the int[] value at the next position into a caller-supplied array,
+	 * so that no array is allocated. </p>
+	 * Use {@link #isIntArray()} to determine whether the correct data type is at the next position.
+	 * @param dst destination array. Must be at least as long as the received array.
+	 * @return the number of elements copied to dst.
+	 * @throws NoSuchElementException
+	 * @throws InputMismatchException if dst is shorter than the received array. The position is not incremented in this case.
+	 */
+	public int getIntArray(int[] dst);
+	
 	 // TODO: Re-add this feature when Polysun updates to Java 8 SE
 //	/**
 //	 * Increments the position by one. </p>
@@ -176,6 +230,17 @@ public interface IForteSocket {
 	 */
 	public long[] getLongArray();
 	
+	/**
+	 * Increments the position by one and copies the long[] value at the next position into a caller-supplied array,
+	 * so that no array is allocated. </p>
+	 * Use {@link #isLongArray()} to determine whether the correct data type is at the next position.
+	 * @param dst destination array. Must be at least as long as the received array.
+	 * @return the number of elements copied to dst.
+	 * @throws NoSuchElementException
+	 * @throws InputMismatchException if dst is shorter than the received array. The position is not incremented in this case.
+	 */
+	public int getLongArray(long[] dst);
+	
 	/**
 	 * @return The number of data values that can be stored within this buffer.
 	 */
@@ -361,6 +426,14 @@ public interface IForteSocket {
 	 */
 	public boolean put(DateAndTime value);
 	
+	/**
+	 * Adds a time stamp to be sent to FORTE as IEC 61499 DATE_AND_TIME data to buffer without using a DateAndTime object
+	 * @param forteTime number of ms since 1st January 1970, 01:00:00.000
+	 * @return true if more data can be added, false if not
+	 * @see DateAndTime#toForteTime(long, int)
+	 */
+	public boolean putDateAndTimeMillis(long forteTime);
+	
 	/**
 	 * Adds a DateAndTime[] array to be sent to FORTE as an IEC 61499 DATE_AND_TIME array to buffer
 	 * @param value
@@ -463,6 +536,16 @@ public interface IForteSocket {
 	 */
 	public void recvData() throws IOException, UnsupportedForteDataTypeException;
 	
+	/**
+	 * Receives a frame without decoding it. This is an alternative to {@link #recvData()} for reading only some of the received values.
+	 * The returned view decodes the values on access by their position, without creating intermediate objects.
+	 * The view is reused and is only valid until the next call of {@link #recvData()} or {@link #recvFrame()}.
+	 * @return a view of the received frame (with a size of 0 if FORTE sent a response without data)
+	 * @throws IOException
+	 * @throws UnsupportedForteDataTypeException
+	 */
+	public ForteFrameView recvFrame() throws IOException, UnsupportedForteDataTypeException;
+	
 	/**
 	 * Resets the position to its initialized state and clears the internal byte buffer. 
 	 */
@@ -505,4 +588,11 @@ public interface IForteSocket {
 	 * @return true if the socket is connected, false otherwise.
 	 */
 	public boolean isConnected();
+	
+	/**
+	 * Checks whether the connection can be reused, e.g. by the {@link ForteSessionRegistry}.
+	 * May briefly poll the connection. Should only be called while no data is expected from FORTE.
+	 * @return true if the socket is connected, the connection has not been closed by FORTE and no received data is left unread.
+	 */
+	public boolean isHealthy();
 }
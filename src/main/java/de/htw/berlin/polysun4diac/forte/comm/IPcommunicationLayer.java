@@ -13,24 +13,108 @@ public class IPcommunicationLayer extends AbstractCommunicationLayer {
 	
 	
 	private static final long serialVersionUID = 7413689289580274445L;
+	/** Error that made the shared memory transport fall back to TCP (null if it did not fall back) */
+	private IOException mFallbackCause = null;
 
 	@Override
 	public boolean openConnection(CommLayerParams params) throws IOException {
 		switch (params.getServiceType()) {
 		case CLIENT:
-			setBelow(new TCPclientCommLayer());
+			setBelow(makeClientLayer(params.getTransportType()));
 			break;
 		case SERVER:
-			setBelow(new TCPserverCommLayer());
+			setBelow(makeServerLayer(params.getTransportType()));
 			break;
 		case PUBLISHER:
-			setBelow(new UDPpublisherCommLayer());
+			setBelow(makePublisherLayer(params.getTransportType()));
 			break;
 		case SUBSCRIBER:
-			setBelow(new UDPsubscriberCommLayer());
+			if (params.isDatagramChannelSubscriber()) {
+				setBelow(new NIOsubscriberCommLayer()); // Datagrams are not multiplexed by the selector loop
+			} else {
+				setBelow(new UDPsubscriberCommLayer());
+			}
 			break;
 		}
-		setConnectionState(getBelow().openConnection(params));
+		mFallbackCause = null;
+		if (getBelow() instanceof SHMringCommLayer) {
+			try {
+				setConnectionState(getBelow().openConnection(params));
+				return getConnectionState();
+			} catch (IOException e) {
+				// No FORTE runtime on this host uses the shared memory file
+				mFallbackCause = e;
+				getBelow().closeConnection();
+				setBelow(params.getServiceType() == ForteServiceType.SERVER ? makeServerLayer(ForteTransportType.SOCKET) : makeClientLayer(ForteTransportType.SOCKET));
+			}
+		}
+		try {
+			setConnectionState(getBelow().openConnection(params));
+		} catch (IOException e) {
+			if (mFallbackCause != null) {
+				e.addSuppressed(mFallbackCause); // Report why the shared memory transport has not been used
+			}
+			throw e;
+		}
 		return getConnectionState();
 	}
+	
+	/**
+	 * @return the error that made the ForteTransportType.SHM transport fall back to TCP when the connection was opened last,
+	 * or null if the shared memory transport has been used or has not been requested
+	 */
+	public IOException getFallbackCause() {
+		return mFallbackCause;
+	}
+	
+	/**
+	 * @param transport the transport type set in the parameters
+	 * @return the TCP client layer to set up below
+	 */
+	private static AbstractCommunicationLayer makeClientLayer(ForteTransportType transport) {
+		switch (transport) {
+		case NIO:
+			return new NIOclientCommLayer();
+		case SELECTOR:
+			return new NIOselectorCommLayer();
+		case UNIX:
+			return new UNIXclientCommLayer();
+		case SHM:
+			return new SHMringCommLayer();
+		case SOCKET:
+		default:
+			return new TCPclientCommLayer();
+		}
+	}
+	
+	/**
+	 * @param transport the transport type set in the parameters
+	 * @return the TCP server layer to set up below
+	 */
+	private static AbstractCommunicationLayer makeServerLayer(ForteTransportType transport) {
+		switch (transport) {
+		case NIO:
+			return new NIOserverCommLayer();
+		case SELECTOR:
+			return new NIOselectorCommLayer();
+		case UNIX:
+			return new UNIXserverCommLayer();
+		case SHM:
+			return new SHMringCommLayer();
+		case SOCKET:
+		default:
+			return new TCPserverCommLayer();
+		}
+	}
+	
+	/**
+	 * @param transport the transport type set in the parameters
+	 * @return the UDP publisher layer to set up below
+	 */
+	private static AbstractCommunicationLayer makePublisherLayer(ForteTransportType transport) {
+		if (transport == ForteTransportType.SOCKET) {
+			return new UDPpublisherCommLayer();
+		}
+		return new NIOpublisherCommLayer();
+	}
 }
@@ -0,0 +1,122 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import java.io.IOException;
+
+/**
+ * Bottom OSI layer connecting two endpoints in the same process without kernel networking.
+ * </p>
+ * A LoopbackCommLayer and its {@link #getPeer() peer} are connected by two lock-free byte queues, one per direction.
+ * The bytes sent by one endpoint are read by the other one like from a TCP stream. The endpoints can be placed below
+ * a ForteDataBufferLayer or a CommFunctionBlockLayer (see {@link CommLayerParams#makeSocket(ICommunicationLayer)}),
+ * so that the encoding, the decoding and the plugin controllers can be benchmarked and tested without sockets.
+ * </p>
+ * Each endpoint must only be used by one thread at a time. Since sending blocks while the queue is full,
+ * frames larger than the capacity of the queues can only be sent if the peer reads them on another thread.
+ */
+public class LoopbackCommLayer extends AbstractCommunicationLayer {
+
+	private static final long serialVersionUID = 6157339530838014129L;
+	/** Default capacity of each queue in bytes */
+	private static final int DEFCAPACITY = 1 << 16;
+
+	/** The other endpoint */
+	private final LoopbackCommLayer mPeer;
+	/** Queue of the bytes sent by this endpoint */
+	private final transient ForteByteQueue mSendQueue;
+	/** Queue of the bytes sent by the peer */
+	private final transient ForteByteQueue mRecvQueue;
+
+	/**
+	 * Creates an endpoint and its peer with queues of the default capacity (64 KiB).
+	 */
+	public LoopbackCommLayer() {
+		this(DEFCAPACITY);
+	}
+
+	/**
+	 * Creates an endpoint and its peer.
+	 * @param capacity capacity of each queue in bytes (rounded up to the next power of two)
+	 */
+	public LoopbackCommLayer(int capacity) {
+		mSendQueue = new ForteByteQueue(capacity);
+		mRecvQueue = new ForteByteQueue(capacity);
+		mPeer = new LoopbackCommLayer(this);
+	}
+
+	/**
+	 * Creates the peer of an endpoint.
+	 * @param peer the endpoint
+	 */
+	private LoopbackCommLayer(LoopbackCommLayer peer) {
+		mSendQueue = peer.mRecvQueue;
+		mRecvQueue = peer.mSendQueue;
+		mPeer = peer;
+	}
+
+	/**
+	 * @return the endpoint connected to this endpoint
+	 */
+	public LoopbackCommLayer getPeer() {
+		return mPeer;
+	}
+
+	/**
+	 * Opens this endpoint. The parameters are ignored.
+	 */
+	@Override
+	public boolean openConnection(CommLayerParams params) throws IOException {
+		setConnectionState(true);
+		return getConnectionState();
+	}
+
+	/**
+	 * Closes both directions. The peer can still read the bytes sent before.
+	 */
+	@Override
+	public boolean closeConnection() throws IOException {
+		mSendQueue.close();
+		mRecvQueue.close();
+		setConnectionState(false);
+		return getConnectionState();
+	}
+
+	@Override
+	public void sendData(byte[] data, int off, int len) throws IOException {
+		mSendQueue.write(data, off, len);
+	}
+
+	@Override
+	public boolean isHealthy() {
+		return getConnectionState() && mRecvQueue.isIdle(); // Both queues are closed if either endpoint is closed
+	}
+
+	@Override
+	public void recvData() throws IOException {
+		throw new IOException("recvData not supported for loopback communication. Use the read methods instead.");
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		return mRecvQueue.read();
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		return mRecvQueue.read(Long.SIZE / Byte.SIZE);
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		return Double.longBitsToDouble(readLong());
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		return Float.intBitsToFloat((int) mRecvQueue.read(Float.SIZE / Byte.SIZE));
+	}
+
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		mRecvQueue.read(b, off, len);
+	}
+}
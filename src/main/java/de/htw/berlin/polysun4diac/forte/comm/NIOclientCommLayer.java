@@ -0,0 +1,29 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Bottom OSI layer for handling TCP/IP communication of a client with a java.nio SocketChannel.
+ * Intended for communication with FORTE SERVER function blocks.
+ * @see <a href="https://www.eclipse.org/4diac/documentation/html/development/forte_communicationArchitecture.html">FORTE communication architecture</a>
+ */
+public class NIOclientCommLayer extends NIOcommunicationLayer {
+
+	private static final long serialVersionUID = -3303873387563530437L;
+
+	@Override
+	public boolean openConnection(CommLayerParams params) throws IOException {
+		SocketChannel channel = SocketChannel.open();
+		try {
+			// Options are applied before connecting, so that the socket buffer sizes are considered for the TCP handshake
+			TCPcommunicationLayer.configureSocket(channel.socket(), params);
+			TCPcommunicationLayer.connect(channel, params); // Connect to IP and port
+			openChannel(channel, params);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		return getConnectionState();
+	}
+}
@@ -0,0 +1,189 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Abstract bottom OSI layer for handling TCP/IP communication with a java.nio SocketChannel.
+ * </p>
+ * Unlike the {@link TCPcommunicationLayer}, data is received into and sent from direct ByteBuffers, so the bytes are transferred
+ * to and from the socket without intermediate copies by the JVM. Received values are decoded from the receive buffer,
+ * which is refilled with a single read whenever it runs out of bytes.
+ * The channel is used in blocking mode, so this layer is a drop-in replacement for the socket-based layers.
+ * @see CommLayerParams#setTransportType(ForteTransportType)
+ */
+public abstract class NIOcommunicationLayer extends AbstractCommunicationLayer {
+
+	private static final long serialVersionUID = -6172533094419373641L;
+	/** Size of the direct send buffer */
+	private static final int SEND_BUFFER_SIZE = 8192;
+
+	/** Connected channel */
+	private transient SocketChannel mChannel;
+	/** Direct buffer holding received bytes that have not been read yet (in read mode) */
+	private transient ByteBuffer mRecvBuffer;
+	/** Direct buffer for sending data */
+	private transient ByteBuffer mSendBuffer;
+
+	@Override
+	public boolean closeConnection() throws IOException {
+		if (getChannel() != null) {
+			getChannel().close();
+		}
+		return getConnectionState();
+	}
+
+	@Override
+	public void recvData() throws IOException {
+		throw new IOException("recvData not supported for TCP communication. Use the read methods instead.");
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		return fill(1).get();
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		return fill(Long.SIZE / Byte.SIZE).getLong();
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		return fill(Long.SIZE / Byte.SIZE).getDouble();
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		return fill(Float.SIZE / Byte.SIZE).getFloat();
+	}
+
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		ByteBuffer buffer = getRecvBuffer();
+		while (len > 0) {
+			if (!buffer.hasRemaining()) {
+				fill(1);
+			}
+			int n = Math.min(len, buffer.remaining());
+			buffer.get(b, off, n);
+			off += n;
+			len -= n;
+		}
+	}
+
+	@Override
+	public boolean getConnectionState() {
+		return getChannel() != null && getChannel().isConnected();
+	}
+
+	@Override
+	public void sendData(byte[] data, int off, int len) throws IOException {
+		ByteBuffer buffer = getSendBuffer();
+		while (len > 0) {
+			int n = Math.min(len, buffer.capacity());
+			buffer.clear();
+			buffer.put(data, off, n);
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				getChannel().write(buffer);
+			}
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Polls the channel once without blocking. The connection is healthy if no bytes are available,
+	 * i.e. if FORTE has neither closed the connection nor sent bytes that have not been read.
+	 */
+	@Override
+	public boolean isHealthy() {
+		if (!getConnectionState() || getRecvBuffer().hasRemaining()) {
+			return false;
+		}
+		ByteBuffer buffer = getRecvBuffer();
+		try {
+			getChannel().configureBlocking(false);
+			buffer.clear();
+			try {
+				return getChannel().read(buffer) == 0; // Closed (-1) or unread data
+			} finally {
+				buffer.flip();
+				getChannel().configureBlocking(true);
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Sets up the connected channel: Applies the socket options set in the parameters and allocates the direct buffers.
+	 * The receive buffer can hold at least one complete frame (within the limits of the {@link TCPcommunicationLayer}).
+	 * @param channel the connected channel
+	 * @param params the parameters used to open the connection
+	 * @throws IOException
+	 */
+	protected void openChannel(SocketChannel channel, CommLayerParams params) throws IOException {
+		TCPcommunicationLayer.configureSocket(channel.socket(), params);
+		initChannel(channel, params);
+	}
+
+	/**
+	 * Sets up the connected channel without applying TCP socket options (e.g., for channels that are not TCP channels):
+	 * Switches the channel to blocking mode and allocates the direct buffers.
+	 * @param channel the connected channel
+	 * @param params the parameters used to open the connection
+	 * @throws IOException
+	 */
+	protected void initChannel(SocketChannel channel, CommLayerParams params) throws IOException {
+		channel.configureBlocking(true);
+		mChannel = channel;
+		mRecvBuffer = ByteBuffer.allocateDirect(TCPcommunicationLayer.getReceiveBufferSize(params));
+		mRecvBuffer.limit(0); // No bytes received yet
+		mSendBuffer = ByteBuffer.allocateDirect(SEND_BUFFER_SIZE);
+	}
+
+	/**
+	 * Makes sure that the receive buffer holds at least the specified number of bytes.
+	 * Blocks until the bytes have been received.
+	 * @param numBytes number of bytes (not more than the capacity of the receive buffer)
+	 * @return the receive buffer
+	 * @throws IOException
+	 * @throws EOFException if the connection has been closed by the peer
+	 */
+	private ByteBuffer fill(int numBytes) throws IOException {
+		ByteBuffer buffer = getRecvBuffer();
+		if (buffer.remaining() >= numBytes) {
+			return buffer;
+		}
+		buffer.compact(); // Keep bytes that have not been read yet
+		try {
+			while (buffer.position() < numBytes) {
+				if (getChannel().read(buffer) < 0) {
+					throw new EOFException("Connection closed by FORTE.");
+				}
+			}
+		} finally {
+			buffer.flip();
+		}
+		return buffer;
+	}
+
+	/** @return the connected channel */
+	protected SocketChannel getChannel() {
+		return mChannel;
+	}
+
+	/** @return {@link #mRecvBuffer} */
+	private ByteBuffer getRecvBuffer() {
+		return mRecvBuffer;
+	}
+
+	/** @return {@link #mSendBuffer} */
+	private ByteBuffer getSendBuffer() {
+		return mSendBuffer;
+	}
+}
@@ -0,0 +1,122 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.Inet6Address;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Bottom OSI layer for handling UDP/IP communication of a publisher with a connected java.nio DatagramChannel.
+ * Intended for communication with FORTE SUBSCRIBER function blocks.
+ * </p>
+ * Unlike the {@link UDPpublisherCommLayer}, the frame is neither copied nor wrapped into a new DatagramPacket for every send:
+ * The byte array of the encoder is wrapped by a ByteBuffer once and written to the channel as it is. Since the channel is connected
+ * to the subscribers' address, the destination is only checked once when the connection is opened.
+ * @see CommLayerParams#setTransportType(ForteTransportType)
+ * @see <a href="https://www.eclipse.org/4diac/documentation/html/development/forte_communicationArchitecture.html">FORTE communication architecture</a>
+ */
+public class NIOpublisherCommLayer extends UDPcommunicationLayer {
+
+	private static final long serialVersionUID = -825148823493373081L;
+	/** Error message for attempted read/receipt operations */
+	private static final String RECVERRMSG = "Publishers cannot receive data.";
+
+	/** Datagram channel connected to the subscribers */
+	private transient DatagramChannel mChannel;
+	/** Address of the subscribers */
+	private InetSocketAddress mParams;
+	/** ByteBuffer wrapping the byte array of the last frame sent (reused as long as the encoder uses the same array) */
+	private transient ByteBuffer mFrame;
+
+	@Override
+	public boolean openConnection(CommLayerParams params) throws IOException {
+		setParams(params);
+		makeSocket(params.getPort());
+		if (params.getSocketSendBufferSize() > 0) {
+			getChannel().setOption(StandardSocketOptions.SO_SNDBUF, params.getSocketSendBufferSize());
+		}
+		getChannel().connect(params);
+		setConnectionState(true);
+		return getConnectionState();
+	}
+
+	@Override
+	public void sendData(byte[] data, int off, int len) throws IOException  {
+		ByteBuffer frame = mFrame;
+		if (frame == null || frame.array() != data) {
+			frame = ByteBuffer.wrap(data);
+			mFrame = frame;
+		}
+		frame.limit(off + len);
+		frame.position(off);
+		getChannel().write(frame); // A datagram is always sent as a whole
+	}
+
+	@Override
+	public void recvData() throws IOException {
+		throw new IOException(RECVERRMSG);
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		throw new IOException(RECVERRMSG);
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		throw new IOException(RECVERRMSG);
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		throw new IOException(RECVERRMSG);
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		throw new IOException(RECVERRMSG);
+	}
+
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		throw new IOException(RECVERRMSG);
+	}
+
+	@Override
+	protected DatagramSocket getSocket() {
+		if (getChannel() == null) {
+			return null;
+		}
+		return getChannel().socket();
+	}
+
+	/**
+	 * Opens the channel. The port is ignored, since a publisher only sends to the port of the subscribers.
+	 */
+	@Override
+	protected void makeSocket(int port) throws IOException {
+		StandardProtocolFamily family = getParams().getAddress() instanceof Inet6Address ? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET;
+		mChannel = DatagramChannel.open(family);
+		mChannel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true); // Subscribers may run on the same host
+		mChannel.configureBlocking(true);
+	}
+
+	/** @return the datagram channel */
+	protected DatagramChannel getChannel() {
+		return mChannel;
+	}
+
+	/** Sets the address of the subscribers */
+	private void setParams(InetSocketAddress params) {
+		mParams = params;
+	}
+
+	/** @return the address of the subscribers */
+	private InetSocketAddress getParams() {
+		return mParams;
+	}
+}
@@ -0,0 +1,390 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Bottom OSI layer for handling TCP/IP communication of a client or a server via the shared {@link NIOselectorLoop}.
+ * </p>
+ * Sending data does not block: The frame is written immediately if the socket accepts it, otherwise it is queued and written by the
+ * I/O thread of the loop. Received bytes are collected by the I/O thread, and the read methods only block until enough bytes
+ * for the requested value have arrived. Since a single thread serves all connections, the responses of independent FORTE connections
+ * are received while the plugin controllers are still busy with other connections.
+ * @see CommLayerParams#setTransportType(ForteTransportType)
+ */
+public class NIOselectorCommLayer extends AbstractCommunicationLayer {
+
+	private static final long serialVersionUID = -1407926151622963434L;
+	/** Initial capacity of the buffer of received bytes */
+	private static final int INIT_INBOUND_SIZE = 8192;
+	/** Number of buffered received bytes at which the I/O thread stops reading from the channel until bytes are consumed */
+	private static final int MAX_INBOUND_SIZE = 1 << 22;
+	/** Maximum time to wait for queued frames to be sent when closing the connection (in ms) */
+	private static final long CLOSE_TIMEOUT_MS = 1000;
+
+	/** Lock protecting the buffers and the channel state */
+	private final transient Object mLock = new Object();
+	/** Loop that owns the channel (null if not connected, guarded by {@link #mLock}) */
+	private transient NIOselectorLoop mLoop;
+	/** Connected channel */
+	private transient SocketChannel mChannel;
+	/** Selection key of the channel */
+	private transient SelectionKey mKey;
+	/** Received bytes that have not been read yet (in write mode) */
+	private transient ByteBuffer mInbound = ByteBuffer.allocate(INIT_INBOUND_SIZE);
+	/** Frames that have not been written completely yet (from the {@link ForteBufferPool}, in read mode) */
+	private final transient Queue<ByteBuffer> mOutbound = new ArrayDeque<ByteBuffer>();
+	/** Flag indicating whether the I/O thread has stopped reading because too many bytes are buffered */
+	private transient boolean mReadSuspended = false;
+	/** Flag indicating whether the connection has been closed by the peer or due to an error */
+	private transient boolean mClosed = false;
+	/** Error that closed the connection (null if none) */
+	private transient IOException mError;
+	/** Channel accepted by a {@link ForteMultiClientServer} (null if the connection is established by {@link #openConnection(CommLayerParams)}) */
+	private transient SocketChannel mAccepted;
+
+	/**
+	 * Default constructor.
+	 */
+	public NIOselectorCommLayer() {
+		mAccepted = null;
+	}
+
+	/**
+	 * Creates a layer for a channel that has already been accepted. Opening the connection only registers the channel with the loop.
+	 * @param accepted the accepted channel
+	 */
+	NIOselectorCommLayer(SocketChannel accepted) {
+		mAccepted = accepted;
+	}
+
+	@Override
+	public boolean openConnection(CommLayerParams params) throws IOException {
+		SocketChannel channel;
+		if (mAccepted != null) {
+			channel = mAccepted;
+			mAccepted = null;
+			TCPcommunicationLayer.configureSocket(channel.socket(), params);
+		} else if (ForteServiceType.SERVER.equals(params.getServiceType())) {
+			ServerSocketChannel server = ServerSocketChannel.open();
+			try {
+				if (params.getSocketReceiveBufferSize() > 0) {
+					server.socket().setReceiveBufferSize(params.getSocketReceiveBufferSize()); // Inherited by accepted channels
+				}
+				server.socket().bind(params); // Open service on IP & port
+				channel = TCPcommunicationLayer.accept(server, params); // Listen for connection to be made and accept
+			} finally {
+				server.close(); // Only a single connection is accepted
+			}
+			TCPcommunicationLayer.configureSocket(channel.socket(), params);
+		} else {
+			channel = SocketChannel.open();
+			TCPcommunicationLayer.configureSocket(channel.socket(), params);
+			try {
+				TCPcommunicationLayer.connect(channel, params); // Connect to IP and port
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+		}
+		channel.configureBlocking(false);
+		NIOselectorLoop loop = NIOselectorLoop.acquire();
+		synchronized (mLock) {
+			mChannel = channel; // Set before registering, since the peer may already have sent data
+			mLoop = loop;
+		}
+		try {
+			mKey = loop.register(channel, this);
+		} catch (IOException e) {
+			synchronized (mLock) {
+				mChannel = null;
+				mLoop = null;
+			}
+			NIOselectorLoop.release();
+			channel.close();
+			throw e;
+		}
+		return getConnectionState();
+	}
+
+	@Override
+	public boolean closeConnection() throws IOException {
+		synchronized (mLock) {
+			if (mLoop == null) {
+				return getConnectionState();
+			}
+			// Give the I/O thread the chance to send frames that are still queued
+			long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT_MS;
+			while (!mOutbound.isEmpty() && !mClosed) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					break;
+				}
+				waitOnLock(remaining);
+			}
+			releaseOutbound();
+			mClosed = true;
+			mLoop = null; // The I/O thread may still be inside a callback of this connection
+			mLock.notifyAll();
+		}
+		mKey.cancel();
+		mChannel.close();
+		NIOselectorLoop.release();
+		return getConnectionState();
+	}
+
+	@Override
+	public void recvData() throws IOException {
+		throw new IOException("recvData not supported for TCP communication. Use the read methods instead.");
+	}
+
+	@Override
+	public void sendData(byte[] data, int off, int len) throws IOException {
+		ByteBuffer frame = ForteBufferPool.acquire(len);
+		frame.put(data, off, len);
+		frame.flip();
+		synchronized (mLock) {
+			checkOpen();
+			if (mOutbound.isEmpty()) {
+				mChannel.write(frame); // Usually, the socket accepts the whole frame at once
+				if (!frame.hasRemaining()) {
+					ForteBufferPool.release(frame);
+					return;
+				}
+				setInterest(interestOps(true));
+			}
+			mOutbound.add(frame); // Written by the I/O thread
+		}
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		synchronized (mLock) {
+			ByteBuffer inbound = await(1);
+			byte b = inbound.get();
+			consumed();
+			return b;
+		}
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		synchronized (mLock) {
+			ByteBuffer inbound = await(Long.SIZE / Byte.SIZE);
+			long l = inbound.getLong();
+			consumed();
+			return l;
+		}
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		return Double.longBitsToDouble(readLong());
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		synchronized (mLock) {
+			ByteBuffer inbound = await(Float.SIZE / Byte.SIZE);
+			float f = inbound.getFloat();
+			consumed();
+			return f;
+		}
+	}
+
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		synchronized (mLock) {
+			while (len > 0) {
+				ByteBuffer inbound = await(1);
+				int n = Math.min(len, inbound.remaining());
+				inbound.get(b, off, n);
+				consumed();
+				off += n;
+				len -= n;
+			}
+		}
+	}
+
+	@Override
+	public boolean getConnectionState() {
+		synchronized (mLock) {
+			return mChannel != null && mChannel.isConnected() && !mClosed;
+		}
+	}
+
+	/**
+	 * The I/O thread keeps reading the channel, so the connection is healthy if it has not been closed and no received bytes are buffered.
+	 */
+	@Override
+	public boolean isHealthy() {
+		synchronized (mLock) {
+			return getConnectionState() && mInbound.position() == 0;
+		}
+	}
+
+	/**
+	 * Called by the I/O thread when the channel has been registered.
+	 * @param key selection key of the channel
+	 */
+	void onRegistered(SelectionKey key) {
+		synchronized (mLock) {
+			mKey = key;
+		}
+	}
+
+	/**
+	 * Called by the I/O thread if the channel is readable.
+	 * @param readBuffer direct buffer of the I/O thread
+	 * @throws IOException
+	 */
+	void onReadable(ByteBuffer readBuffer) throws IOException {
+		readBuffer.clear();
+		int n = mChannel.read(readBuffer);
+		synchronized (mLock) {
+			if (n < 0) {
+				mClosed = true;
+				mKey.cancel();
+			} else if (n > 0) {
+				readBuffer.flip();
+				if (mInbound.remaining() < n) {
+					ByteBuffer grown = ByteBuffer.allocate(Math.max(mInbound.position() + n, 2 * mInbound.capacity()));
+					mInbound.flip();
+					grown.put(mInbound);
+					mInbound = grown;
+				}
+				mInbound.put(readBuffer);
+				if (mInbound.position() >= MAX_INBOUND_SIZE) {
+					mReadSuspended = true; // Resumed when the bytes are consumed
+					setInterest(interestOps(!mOutbound.isEmpty()));
+				}
+			}
+			mLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Called by the I/O thread if the channel is writable. Writes the queued frames.
+	 * @throws IOException
+	 */
+	void onWritable() throws IOException {
+		synchronized (mLock) {
+			ByteBuffer frame;
+			while ((frame = mOutbound.peek()) != null) {
+				mChannel.write(frame);
+				if (frame.hasRemaining()) {
+					return; // Socket buffer is full, wait for the next writable event
+				}
+				ForteBufferPool.release(mOutbound.poll());
+			}
+			setInterest(interestOps(false));
+			mLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Called by the I/O thread if the connection was closed due to an error.
+	 * @param e the error (null if the channel has been closed)
+	 */
+	void onClosed(IOException e) {
+		synchronized (mLock) {
+			mClosed = true;
+			mError = e;
+			mLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Waits until the specified number of received bytes is available. Must be called while holding {@link #mLock}.
+	 * The returned buffer is in read mode and must be returned to write mode by calling {@link #consumed()}.
+	 * @param numBytes number of bytes
+	 * @return the buffer of received bytes in read mode
+	 * @throws IOException if the connection has been closed before the bytes arrived
+	 */
+	private ByteBuffer await(int numBytes) throws IOException {
+		while (mInbound.position() < numBytes) {
+			if (mClosed) {
+				if (mError != null) {
+					throw mError;
+				}
+				throw new EOFException("Connection closed by FORTE.");
+			}
+			waitOnLock(0);
+		}
+		mInbound.flip();
+		return mInbound;
+	}
+
+	/**
+	 * Returns the buffer of received bytes to write mode after reading and resumes reading from the channel if it has been suspended.
+	 * Must be called while holding {@link #mLock}.
+	 */
+	private void consumed() {
+		mInbound.compact();
+		if (mReadSuspended && mInbound.position() < MAX_INBOUND_SIZE) {
+			mReadSuspended = false;
+			setInterest(interestOps(!mOutbound.isEmpty()));
+		}
+	}
+
+	/**
+	 * Changes the operations the I/O thread waits for on the channel, unless the connection has been closed.
+	 * Must be called while holding {@link #mLock}.
+	 * @param ops interest set (see {@link SelectionKey})
+	 */
+	private void setInterest(int ops) {
+		if (mLoop != null && mKey != null) {
+			mLoop.setInterest(mKey, ops);
+		}
+	}
+
+	/**
+	 * @param write true if there are frames to be written
+	 * @return the operations the I/O thread should wait for
+	 */
+	private int interestOps(boolean write) {
+		int ops = mReadSuspended ? 0 : SelectionKey.OP_READ;
+		return write ? ops | SelectionKey.OP_WRITE : ops;
+	}
+
+	/**
+	 * @throws IOException if the connection is not open
+	 */
+	private void checkOpen() throws IOException {
+		if (mLoop == null || mClosed) {
+			if (mError != null) {
+				throw mError;
+			}
+			throw new IOException("Connection to FORTE is closed.");
+		}
+	}
+
+	/** Returns the queued frames to the pool */
+	private void releaseOutbound() {
+		ByteBuffer frame;
+		while ((frame = mOutbound.poll()) != null) {
+			ForteBufferPool.release(frame);
+		}
+	}
+
+	/**
+	 * Waits on {@link #mLock}. Must be called while holding the lock.
+	 * @param timeoutMs maximum time to wait (0 to wait until notified)
+	 * @throws IOException if the thread is interrupted
+	 */
+	private void waitOnLock(long timeoutMs) throws IOException {
+		try {
+			mLock.wait(timeoutMs);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SocketTimeoutException("Interrupted while waiting for FORTE.");
+		}
+	}
+}
@@ -0,0 +1,240 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared I/O loop that owns the channels of all {@link NIOselectorCommLayer} connections.
+ * </p>
+ * A single daemon thread waits on a java.nio Selector for all registered connections. Received bytes are handed to the
+ * connection they belong to, and frames submitted by the connections are written as soon as the socket accepts them.
+ * The threads calling the plugin controllers therefore never block on sending, and the responses of independent FORTE
+ * connections are received while other connections are still being served, so that exchanges overlap on the wire.
+ * </p>
+ * The loop is started by the first connection that is opened and stopped when the last connection is closed
+ * (see {@link #acquire()} and {@link #release()}).
+ */
+final class NIOselectorLoop implements Runnable {
+
+	/** Name of the I/O thread */
+	private static final String THREADNAME = "FORTE I/O";
+	/** Size of the direct buffer used for reading from the channels */
+	private static final int READ_BUFFER_SIZE = 65536;
+	/** Interval in ms in which a thread waiting for the registration of its channel checks whether the I/O thread is still alive */
+	private static final long REGISTER_POLL_MS = 100;
+
+	/** Loop shared by all connections (null if no connection is open) */
+	private static NIOselectorLoop sShared = null;
+	/** Number of open connections using {@link #sShared} */
+	private static int sNumUsers = 0;
+
+	/** Selector of the registered channels */
+	private final Selector mSelector;
+	/** Tasks to be executed on the I/O thread (e.g., registering channels) */
+	private final Queue<Runnable> mTasks = new ConcurrentLinkedQueue<Runnable>();
+	/** Direct buffer used for reading from the channels */
+	private final ByteBuffer mReadBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+	/** I/O thread */
+	private final Thread mThread;
+	/** Flag indicating whether the loop is running */
+	private volatile boolean mRunning = true;
+
+	/**
+	 * Constructor. Opens the selector and starts the I/O thread.
+	 * @throws IOException if the selector cannot be opened
+	 */
+	private NIOselectorLoop() throws IOException {
+		mSelector = Selector.open();
+		mThread = new Thread(this, THREADNAME);
+		mThread.setDaemon(true); // Do not keep Polysun alive if a connection is left open
+		mThread.start();
+	}
+
+	/**
+	 * Returns the shared loop and starts it if necessary. Each call must be followed by a call of {@link #release()}.
+	 * @return the shared loop
+	 * @throws IOException if the selector cannot be opened
+	 */
+	static synchronized NIOselectorLoop acquire() throws IOException {
+		if (sShared == null) {
+			sShared = new NIOselectorLoop();
+		}
+		sNumUsers++;
+		return sShared;
+	}
+
+	/**
+	 * Releases the shared loop. The loop is stopped when it has been released by all connections.
+	 */
+	static synchronized void release() {
+		if (sNumUsers > 0 && --sNumUsers == 0) {
+			sShared.shutdown();
+			sShared = null;
+		}
+	}
+
+	/**
+	 * Registers a connected channel for reading. Blocks until the channel has been registered by the I/O thread.
+	 * @param channel connected channel in non-blocking mode
+	 * @param connection connection the channel belongs to
+	 * @return the selection key of the channel
+	 * @throws IOException if the channel could not be registered
+	 */
+	SelectionKey register(final SocketChannel channel, final NIOselectorCommLayer connection) throws IOException {
+		final SelectionKey[] key = new SelectionKey[1];
+		final IOException[] error = new IOException[1];
+		final CountDownLatch registered = new CountDownLatch(1);
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					key[0] = channel.register(mSelector, SelectionKey.OP_READ, connection);
+					connection.onRegistered(key[0]); // Before the first readable event
+				} catch (ClosedChannelException e) {
+					error[0] = e;
+				} catch (RuntimeException e) {
+					error[0] = new IOException("Unable to register the channel.", e);
+				} finally {
+					registered.countDown();
+				}
+			}
+		});
+		try {
+			while (!registered.await(REGISTER_POLL_MS, TimeUnit.MILLISECONDS)) {
+				if (!mThread.isAlive()) {
+					throw new IOException("The I/O thread has stopped.");
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while registering the channel.", e);
+		}
+		if (error[0] != null) {
+			throw error[0];
+		}
+		return key[0];
+	}
+
+	/**
+	 * Changes the operations the I/O thread waits for on a channel.
+	 * @param key selection key of the channel
+	 * @param ops interest set (see {@link SelectionKey})
+	 */
+	void setInterest(SelectionKey key, int ops) {
+		try {
+			key.interestOps(ops);
+			mSelector.wakeup();
+		} catch (CancelledKeyException e) {
+			// Ignore. The connection has been closed.
+		}
+	}
+
+	/**
+	 * Executes a task on the I/O thread.
+	 * @param task task to execute
+	 */
+	void execute(Runnable task) {
+		mTasks.add(task);
+		mSelector.wakeup();
+	}
+
+	/**
+	 * Serves the registered connections until the loop is stopped. An error of a single connection only closes that connection.
+	 * If the loop ends for any other reason, all connections that are still registered are closed,
+	 * so that threads waiting for received bytes fail instead of waiting forever.
+	 */
+	@Override
+	public void run() {
+		try {
+			while (mRunning) {
+				try {
+					mSelector.select();
+				} catch (IOException e) {
+					e.printStackTrace();
+					break;
+				}
+				Runnable task;
+				while ((task = mTasks.poll()) != null) {
+					try {
+						task.run();
+					} catch (RuntimeException e) {
+						e.printStackTrace(); // Do not stop serving the other connections
+					}
+				}
+				Iterator<SelectionKey> keys = mSelector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					NIOselectorCommLayer connection = (NIOselectorCommLayer) key.attachment();
+					try {
+						if (key.isReadable()) {
+							connection.onReadable(mReadBuffer);
+						}
+						if (key.isValid() && key.isWritable()) {
+							connection.onWritable();
+						}
+					} catch (CancelledKeyException e) {
+						connection.onClosed(null);
+					} catch (IOException e) {
+						key.cancel();
+						connection.onClosed(e);
+					} catch (RuntimeException e) {
+						close(key);
+						connection.onClosed(new IOException("Error while serving the connection to FORTE.", e));
+					}
+				}
+			}
+		} finally {
+			closeAll();
+		}
+	}
+
+	/**
+	 * Cancels the key and closes its channel.
+	 * @param key selection key of the channel
+	 */
+	private static void close(SelectionKey key) {
+		key.cancel();
+		try {
+			key.channel().close();
+		} catch (IOException e) {
+			// Ignore. The connection is closed anyway.
+		}
+	}
+
+	/**
+	 * Closes the connections that are still registered and the selector. Called by the I/O thread when the loop ends.
+	 */
+	private void closeAll() {
+		mRunning = false;
+		if (mSelector.isOpen()) {
+			for (SelectionKey key : mSelector.keys()) {
+				if (key.isValid()) {
+					close(key);
+					((NIOselectorCommLayer) key.attachment()).onClosed(new IOException("The I/O thread has stopped."));
+				}
+			}
+		}
+		try {
+			mSelector.close();
+		} catch (IOException e) {
+			// Ignore. The loop is stopped anyway.
+		}
+	}
+
+	/** Stops the I/O thread */
+	private void shutdown() {
+		mRunning = false;
+		mSelector.wakeup();
+	}
+}
@@ -0,0 +1,37 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import java.io.IOException;
+import java.nio.channels.ServerSocketChannel;
+
+/**
+ * Bottom OSI layer for handling TCP/IP communication of a server with a java.nio ServerSocketChannel.
+ * Intended for communication with FORTE CLIENT function blocks.
+ * @see <a href="https://www.eclipse.org/4diac/documentation/html/development/forte_communicationArchitecture.html">FORTE communication architecture</a>
+ */
+public class NIOserverCommLayer extends NIOcommunicationLayer {
+
+	private static final long serialVersionUID = 2385101484406339563L;
+
+	/** Server channel */
+	private transient ServerSocketChannel mServer = null;
+
+	@Override
+	public boolean openConnection(CommLayerParams params) throws IOException {
+		mServer = ServerSocketChannel.open();
+		if (params.getSocketReceiveBufferSize() > 0) {
+			mServer.socket().setReceiveBufferSize(params.getSocketReceiveBufferSize()); // Inherited by accepted channels
+		}
+		mServer.socket().bind(params); // Open service on IP & port
+		openChannel(TCPcommunicationLayer.accept(mServer, params), params); // Listen for connection to be made and accept
+		return getConnectionState();
+	}
+
+	@Override
+	public boolean closeConnection() throws IOException {
+		super.closeConnection();
+		if (mServer != null) {
+			mServer.close();
+		}
+		return getConnectionState();
+	}
+}
@@ -0,0 +1,307 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Enumeration;
+
+/**
+ * Bottom OSI layer for handling UDP/IP communication of a subscriber with a java.nio DatagramChannel.
+ * Intended for communication with FORTE PUBLISHER function blocks.
+ * </p>
+ * Unlike the {@link UDPsubscriberCommLayer}, each datagram is received straight into a single direct ByteBuffer that is allocated once
+ * and reused for every packet. The values are decoded from that buffer in place, so receiving a packet neither allocates memory
+ * nor copies the received bytes. Since a datagram always holds a whole frame, the data buffer layers above do not buffer frames
+ * (see {@link CommLayerParams#isFrameBuffering()}).
+ * </p>
+ * If conflation is enabled, the channel is used in non-blocking mode: All datagrams that have arrived are drained from the socket
+ * and only the newest one is decoded. The number of received and conflated (skipped) datagrams is counted.
+ * @see CommLayerParams#setTransportType(ForteTransportType)
+ * @see <a href="https://www.eclipse.org/4diac/documentation/html/development/forte_communicationArchitecture.html">FORTE communication architecture</a>
+ */
+public class NIOsubscriberCommLayer extends UDPcommunicationLayer {
+
+	private static final long serialVersionUID = -3300960367812813394L;
+	/** Error message for attempted send operations */
+	private static final String SENDERRMSG = "Subscribers cannot send data.";
+	/** Maximum number of bytes of a UDP datagram */
+	private static final int MAXBYTES = 65507;
+
+	/** Datagram channel */
+	private transient DatagramChannel mChannel;
+	/** Membership of the multicast group (null if listening on a unicast address) */
+	private transient MembershipKey mMembership;
+	/** IP address to listen on */
+	private InetAddress mAddress;
+	/** Direct buffer holding the last received datagram (in read mode) */
+	private transient ByteBuffer mRecvBuffer;
+	/** Direct buffer for draining the channel when conflating (swapped with {@link #mRecvBuffer} if a newer datagram arrived) */
+	private transient ByteBuffer mDrainBuffer;
+	/** Selector for waiting for datagrams when conflating (null if conflation is disabled) */
+	private transient Selector mSelector;
+	/** Number of datagrams received */
+	private long mNumReceived = 0;
+	/** Number of datagrams that were skipped, because a newer datagram had been received */
+	private long mNumConflated = 0;
+
+	@Override
+	public boolean openConnection(CommLayerParams params) throws IOException {
+		setAddress(params.getAddress());
+		makeSocket(params.getPort());
+		if (params.getSocketReceiveBufferSize() > 0) {
+			getChannel().setOption(StandardSocketOptions.SO_RCVBUF, params.getSocketReceiveBufferSize());
+		}
+		if (getAddress().isMulticastAddress()) {
+			mMembership = getChannel().join(getAddress(), getMulticastInterface(getAddress()));
+		}
+		mRecvBuffer = ByteBuffer.allocateDirect(MAXBYTES);
+		mRecvBuffer.limit(0); // No datagram received yet
+		if (params.isConflating()) {
+			mDrainBuffer = ByteBuffer.allocateDirect(MAXBYTES);
+			mSelector = Selector.open();
+			getChannel().configureBlocking(false);
+			getChannel().register(mSelector, SelectionKey.OP_READ);
+		}
+		setConnectionState(true);
+		return getConnectionState();
+	}
+
+	@Override
+	public boolean closeConnection() throws IOException {
+		if (mMembership != null) {
+			mMembership.drop();
+			mMembership = null;
+		}
+		if (mSelector != null) {
+			mSelector.close();
+		}
+		return super.closeConnection();
+	}
+
+	@Override
+	public void recvData() throws IOException {
+		if (isConflating()) {
+			recvNewest();
+			return;
+		}
+		ByteBuffer buffer = getRecvBuffer();
+		buffer.clear();
+		getChannel().receive(buffer); // Blocks until a datagram has been received
+		buffer.flip();
+		mNumReceived++;
+	}
+
+	@Override
+	public void sendData(byte[] data, int off, int len) throws IOException  {
+		throw new IOException(SENDERRMSG);
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		return recvDataIfIsLastPosition().get();
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		return recvDataIfIsLastPosition().getLong();
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		return recvDataIfIsLastPosition().getDouble();
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		return recvDataIfIsLastPosition().getFloat();
+	}
+
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		recvDataIfIsLastPosition().get(b, off, len);
+	}
+
+	@Override
+	protected DatagramSocket getSocket() {
+		if (getChannel() == null) {
+			return null;
+		}
+		return getChannel().socket();
+	}
+
+	@Override
+	protected void makeSocket(int port) throws IOException {
+		StandardProtocolFamily family = getAddress() instanceof Inet6Address ? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET;
+		mChannel = DatagramChannel.open(family);
+		mChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true); // Like MulticastSocket, allow several subscribers on one port
+		mChannel.bind(new InetSocketAddress(port));
+		mChannel.configureBlocking(true);
+	}
+
+	/** @return the datagram channel */
+	protected DatagramChannel getChannel() {
+		return mChannel;
+	}
+
+	/** @return true if only the newest of the received datagrams is decoded */
+	public boolean isConflating() {
+		return mSelector != null;
+	}
+
+	/** @return the number of datagrams received since the connection was opened */
+	public long getNumReceived() {
+		return mNumReceived;
+	}
+
+	/** @return the number of datagrams that were dropped without being decoded, because a newer datagram had been received */
+	public long getNumConflated() {
+		return mNumConflated;
+	}
+
+	/**
+	 * Drains all datagrams that have arrived from the channel and keeps the newest one.
+	 * Blocks until at least one datagram has been received.
+	 * @throws IOException
+	 */
+	private void recvNewest() throws IOException {
+		boolean received = false;
+		while (true) {
+			ByteBuffer drain = mDrainBuffer;
+			drain.clear();
+			if (getChannel().receive(drain) != null) {
+				mNumReceived++;
+				if (received) {
+					mNumConflated++; // The previous datagram is outdated
+				}
+				received = true;
+				mDrainBuffer = mRecvBuffer;
+				mRecvBuffer = drain;
+			} else if (received) {
+				break; // The socket has been drained
+			} else {
+				mSelector.select(); // Wait for the next datagram
+				mSelector.selectedKeys().clear();
+			}
+		}
+		mRecvBuffer.flip();
+	}
+
+	/**
+	 * Receives the next datagram if all bytes of the last one have been read.
+	 * @return the buffer holding the received datagram
+	 * @throws IOException
+	 */
+	private ByteBuffer recvDataIfIsLastPosition() throws IOException {
+		if (!getRecvBuffer().hasRemaining()) {
+			recvData();
+		}
+		return getRecvBuffer();
+	}
+
+	/**
+	 * Returns the network interface used for receiving multicast datagrams.
+	 * This is the operating system's default, i.e. the interface its routing table selects for the group
+	 * (the interface publishers on this host send on). If there is no route to the group, the interface of the
+	 * local host's address is used. Only if neither supports multicast, the first interface that is up and supports multicast is used,
+	 * preferring interfaces other than the loopback interface.
+	 * @param group multicast group address
+	 * @return the network interface
+	 * @throws SocketException if no interface supports multicast
+	 */
+	private static NetworkInterface getMulticastInterface(InetAddress group) throws SocketException {
+		NetworkInterface ni = getRoutedInterface(group);
+		if (isMulticastCapable(ni)) {
+			return ni;
+		}
+		try {
+			ni = NetworkInterface.getByInetAddress(InetAddress.getLocalHost());
+		} catch (IOException e) {
+			ni = null; // The host name cannot be resolved
+		}
+		if (isMulticastCapable(ni)) {
+			return ni;
+		}
+		return getFirstMulticastInterface();
+	}
+
+	/**
+	 * Looks up the interface the operating system routes datagrams to the specified address through.
+	 * Connecting a datagram socket does not send any packets.
+	 * @param addr destination address
+	 * @return the network interface or <code>null</code> if there is no route to the address
+	 */
+	private static NetworkInterface getRoutedInterface(InetAddress addr) {
+		DatagramSocket probe = null;
+		try {
+			probe = new DatagramSocket();
+			probe.connect(addr, 9); // Any port will do, the discard port is used
+			InetAddress local = probe.getLocalAddress();
+			return (local == null || local.isAnyLocalAddress()) ? null : NetworkInterface.getByInetAddress(local);
+		} catch (IOException e) {
+			return null;
+		} finally {
+			if (probe != null) {
+				probe.close();
+			}
+		}
+	}
+
+	/**
+	 * @param ni network interface, may be <code>null</code>
+	 * @return true if the interface is up and supports multicast
+	 * @throws SocketException
+	 */
+	private static boolean isMulticastCapable(NetworkInterface ni) throws SocketException {
+		return ni != null && ni.isUp() && ni.supportsMulticast();
+	}
+
+	/**
+	 * Returns the first interface that is up and supports multicast, preferring interfaces other than the loopback interface.
+	 * @return the network interface
+	 * @throws SocketException if no interface supports multicast
+	 */
+	private static NetworkInterface getFirstMulticastInterface() throws SocketException {
+		NetworkInterface loopback = null;
+		Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+		while (interfaces != null && interfaces.hasMoreElements()) {
+			NetworkInterface ni = interfaces.nextElement();
+			if (!ni.isUp() || !ni.supportsMulticast()) {
+				continue;
+			}
+			if (!ni.isLoopback()) {
+				return ni;
+			}
+			loopback = ni;
+		}
+		if (loopback == null) {
+			throw new SocketException("No network interface supports multicast.");
+		}
+		return loopback;
+	}
+
+	/** Sets the IP address to listen on */
+	private void setAddress(InetAddress addr) {
+		mAddress = addr;
+	}
+
+	/** @return the IP address this object listens on */
+	private InetAddress getAddress() {
+		return mAddress;
+	}
+
+	/** @return {@link #mRecvBuffer} */
+	private ByteBuffer getRecvBuffer() {
+		return mRecvBuffer;
+	}
+}
@@ -0,0 +1,463 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bottom OSI layer for exchanging FORTE frames with a FORTE runtime on the same host via two single-producer/single-consumer
+ * ring buffers in a memory-mapped file.
+ * </p>
+ * Once the connection is open, frames cross the process boundary without system calls: The sender copies the frame into the ring
+ * and publishes the new write position, the receiver polls the write position and reads the frame from the same memory.
+ * While waiting, the threads spin, then yield and finally park for short periods, so that an idle connection does not occupy a core.
+ * The FORTE side is implemented by the CShmRingLayer communication layer in 4diac_function_blocks/cpp (ID "fbdk[].shm[path]").
+ * </p>
+ * The plugin creates the file if it is a SERVER and waits for the FORTE CLIENT function block to attach, within the connect timeout
+ * set in the parameters. As a CLIENT, it attaches to the file created by the FORTE SERVER function block.
+ * If the file cannot be set up, the IPcommunicationLayer falls back to TCP (see {@link IPcommunicationLayer#getFallbackCause()}).
+ * </p>
+ * Layout of the file (all numbers little-endian):</p>
+ * 0: magic number "FSHM", 4: version, 8: capacity of each ring in bytes (power of two), 12: attached flag (set by the attaching side),
+ * 16: closed flag (set by the side closing the connection)</p>
+ * 64/128: write/read position of ring 0 (creator to attaching side), 192/256: write/read position of ring 1 (attaching side to creator),
+ * each a 64 bit byte counter in its own cache line</p>
+ * 320: data of ring 0, followed by the data of ring 1</p>
+ * Each frame is stored as a 32 bit length followed by the bytes of the frame and may wrap around the end of the ring.
+ * </p>
+ * The accesses to the positions are ordered by the acquire and release fences of java.lang.invoke.VarHandle (Java 9 or later),
+ * which are looked up via reflection since the plugin is compiled for older Java versions. On older JVMs, only the volatile
+ * accesses of {@link #mFence} are available, which order the accesses to the mapped file on x86 (TSO) hosts only.
+ * @see CommLayerParams#setShmPath(String)
+ * @see CommLayerParams#setTransportType(ForteTransportType)
+ */
+public class SHMringCommLayer extends AbstractCommunicationLayer {
+
+	private static final long serialVersionUID = -4903216437190542066L;
+	/** Magic number identifying the file ("FSHM") */
+	static final int MAGIC = 0x4D485346;
+	/** Version of the layout */
+	static final int VERSION = 1;
+	/** Capacity of each ring in bytes (power of two) */
+	static final int RING_CAPACITY = 1 << 20;
+	/** Offset of the magic number */
+	private static final int MAGIC_OFFSET = 0;
+	/** Offset of the version */
+	private static final int VERSION_OFFSET = 4;
+	/** Offset of the capacity of the rings */
+	private static final int CAPACITY_OFFSET = 8;
+	/** Offset of the attached flag */
+	private static final int ATTACHED_OFFSET = 12;
+	/** Offset of the closed flag */
+	private static final int CLOSED_OFFSET = 16;
+	/** Size of a cache line in bytes, used to keep the positions of the sender and the receiver apart */
+	private static final int CACHE_LINE = 64;
+	/** Offset of the write position of ring 0 */
+	private static final int HEAD0_OFFSET = CACHE_LINE;
+	/** Offset of the read position of ring 0 */
+	private static final int TAIL0_OFFSET = 2 * CACHE_LINE;
+	/** Offset of the write position of ring 1 */
+	private static final int HEAD1_OFFSET = 3 * CACHE_LINE;
+	/** Offset of the read position of ring 1 */
+	private static final int TAIL1_OFFSET = 4 * CACHE_LINE;
+	/** Offset of the data of ring 0 */
+	private static final int DATA_OFFSET = 5 * CACHE_LINE;
+	/** Number of bytes of the length preceding each frame */
+	private static final int LENGTHBYTES = Integer.SIZE / Byte.SIZE;
+	/** Number of polls before a waiting thread yields */
+	private static final int SPINS = 1000;
+	/** Number of polls before a waiting thread parks */
+	private static final int YIELDS = 2000;
+	/** Time a waiting thread parks between polls (in ns) */
+	private static final long PARK_NS = 20000;
+	/** VarHandle.acquireFence() (null before Java 9) */
+	private static final MethodHandle ACQUIRE_FENCE = findFence("acquireFence");
+	/** VarHandle.releaseFence() (null before Java 9) */
+	private static final MethodHandle RELEASE_FENCE = findFence("releaseFence");
+
+	/** Socket file (null if not connected) */
+	private File mFile;
+	/** Flag indicating whether this side created the file */
+	private boolean mCreator;
+	/** The mapped file (little-endian) */
+	private transient ByteBuffer mBuffer;
+	/** View of {@link #mBuffer} for bulk copies into the sending ring */
+	private transient ByteBuffer mSendView;
+	/** View of {@link #mBuffer} for bulk copies from the receiving ring */
+	private transient ByteBuffer mRecvView;
+	/** Capacity of each ring */
+	private int mCapacity;
+	/** Offsets of the write position, the read position and the data of the ring this side sends on */
+	private int mSendHead, mSendTail, mSendData;
+	/** Offsets of the write position, the read position and the data of the ring this side receives from */
+	private int mRecvHead, mRecvTail, mRecvData;
+	/** Write position of the sending ring */
+	private long mSendPos;
+	/** Read position of the receiving ring */
+	private long mRecvPos;
+	/** Number of bytes of the current received frame that have not been read yet */
+	private int mFrameRemaining = 0;
+	/**
+	 * Field accessed to order the accesses to the mapped file if the JVM does not offer fences. The Java memory model does not
+	 * cover memory shared with another process, so this relies on the fences the JVM emits for volatile accesses, which suffice
+	 * on x86 (TSO) hosts only.
+	 */
+	private volatile int mFence;
+
+	@Override
+	public boolean openConnection(CommLayerParams params) throws IOException {
+		File file = new File(params.getShmPath());
+		if (ForteServiceType.SERVER.equals(params.getServiceType())) {
+			create(file, params);
+		} else {
+			attach(file);
+		}
+		mFile = file;
+		setConnectionState(true);
+		return getConnectionState();
+	}
+
+	@Override
+	public boolean closeConnection() throws IOException {
+		if (mFile != null) {
+			mBuffer.putInt(CLOSED_OFFSET, 1);
+			if (mCreator) {
+				mFile.delete();
+			}
+			mFile = null;
+		}
+		setConnectionState(false);
+		return getConnectionState();
+	}
+
+	@Override
+	public boolean isHealthy() {
+		return mFile != null && mBuffer.getInt(CLOSED_OFFSET) == 0 && mFrameRemaining == 0 && mBuffer.getLong(mRecvHead) == mRecvPos;
+	}
+
+	@Override
+	public void recvData() throws IOException {
+		throw new IOException("recvData not supported for shared memory communication. Use the read methods instead.");
+	}
+
+	@Override
+	public void sendData(byte[] data, int off, int len) throws IOException {
+		checkOpen();
+		int frameSize = LENGTHBYTES + len;
+		if (frameSize > mCapacity) {
+			throw new IOException("The frame of " + len + " bytes exceeds the shared memory ring of " + mCapacity + " bytes.");
+		}
+		long head = mSendPos;
+		for (int i = 0; mCapacity - (head - mBuffer.getLong(mSendTail)) < frameSize; i++) {
+			checkPeer();
+			backOff(i); // Wait for the peer to read
+		}
+		acquire();
+		long pos = putRing(head, lengthBytes(len), 0, LENGTHBYTES);
+		mSendPos = putRing(pos, data, off, len);
+		release();
+		mBuffer.putLong(mSendHead, mSendPos); // Publish the frame
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		return nextByte();
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		long l = 0;
+		for (int i = 0; i < Long.SIZE / Byte.SIZE; i++) {
+			l = (l << Byte.SIZE) | (nextByte() & 0xFF);
+		}
+		return l;
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		return Double.longBitsToDouble(readLong());
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		int bits = 0;
+		for (int i = 0; i < Float.SIZE / Byte.SIZE; i++) {
+			bits = (bits << Byte.SIZE) | (nextByte() & 0xFF);
+		}
+		return Float.intBitsToFloat(bits);
+	}
+
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (mFrameRemaining == 0) {
+				beginFrame();
+			}
+			int index = (int) (mRecvPos & (mCapacity - 1));
+			int n = Math.min(len, Math.min(mFrameRemaining, mCapacity - index));
+			mRecvView.position(mRecvData + index);
+			mRecvView.get(b, off, n);
+			consumed(n);
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Creates the file, initialises the rings and waits for the peer to attach, within the connect timeout set in the parameters.
+	 * @param file the file
+	 * @param params the parameters used to open the connection
+	 * @throws IOException
+	 * @throws SocketTimeoutException if the peer did not attach in time
+	 * @throws InterruptedIOException if the thread has been interrupted while waiting
+	 */
+	private void create(File file, CommLayerParams params) throws IOException {
+		file.delete(); // Left behind by a previous run
+		map(file, DATA_OFFSET + 2 * RING_CAPACITY);
+		mBuffer.putInt(VERSION_OFFSET, VERSION);
+		mBuffer.putInt(CAPACITY_OFFSET, RING_CAPACITY);
+		release();
+		mBuffer.putInt(MAGIC_OFFSET, MAGIC); // The peer only attaches after the header is complete
+		setUpRings(true, RING_CAPACITY);
+		long deadline = (params.getConnectTimeout() > 0) ? System.currentTimeMillis() + params.getConnectTimeout() : 0;
+		for (int i = 0; mBuffer.getInt(ATTACHED_OFFSET) == 0; i++) {
+			if (deadline != 0 && System.currentTimeMillis() > deadline) {
+				file.delete();
+				throw new SocketTimeoutException("No FORTE runtime attached to " + file.getPath() + ".");
+			}
+			if (Thread.currentThread().isInterrupted()) {
+				file.delete();
+				throw new InterruptedIOException("Interrupted while waiting for FORTE to attach to " + file.getPath() + ".");
+			}
+			backOff(i);
+		}
+		acquire();
+	}
+
+	/**
+	 * Attaches to the file created by the peer.
+	 * @param file the file
+	 * @throws IOException
+	 * @throws FileNotFoundException if the peer has not created the file
+	 */
+	private void attach(File file) throws IOException {
+		if (!file.isFile()) {
+			throw new FileNotFoundException("No shared memory ring at " + file.getPath() + ".");
+		}
+		map(file, file.length());
+		if (mBuffer.getInt(MAGIC_OFFSET) != MAGIC || mBuffer.getInt(VERSION_OFFSET) != VERSION) {
+			throw new IOException(file.getPath() + " is not a shared memory ring of version " + VERSION + ".");
+		}
+		acquire();
+		int capacity = mBuffer.getInt(CAPACITY_OFFSET);
+		if (Integer.bitCount(capacity) != 1 || file.length() < DATA_OFFSET + 2L * capacity) {
+			throw new IOException(file.getPath() + " has an invalid ring capacity.");
+		}
+		setUpRings(false, capacity);
+		mBuffer.putInt(ATTACHED_OFFSET, 1);
+	}
+
+	/**
+	 * Maps the file into memory.
+	 * @param file the file
+	 * @param size size of the file in bytes
+	 * @throws IOException
+	 */
+	private void map(File file, long size) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(size);
+			MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+			mBuffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+		} finally {
+			raf.close(); // The mapping stays valid
+		}
+		mSendView = mBuffer.duplicate();
+		mRecvView = mBuffer.duplicate();
+	}
+
+	/**
+	 * Sets the offsets of the rings according to the role of this side.
+	 * @param creator true if this side created the file
+	 * @param capacity capacity of each ring
+	 */
+	private void setUpRings(boolean creator, int capacity) {
+		mCreator = creator;
+		mCapacity = capacity;
+		int data0 = DATA_OFFSET;
+		int data1 = DATA_OFFSET + capacity;
+		mSendHead = creator ? HEAD0_OFFSET : HEAD1_OFFSET;
+		mSendTail = creator ? TAIL0_OFFSET : TAIL1_OFFSET;
+		mSendData = creator ? data0 : data1;
+		mRecvHead = creator ? HEAD1_OFFSET : HEAD0_OFFSET;
+		mRecvTail = creator ? TAIL1_OFFSET : TAIL0_OFFSET;
+		mRecvData = creator ? data1 : data0;
+		mSendPos = mBuffer.getLong(mSendHead);
+		mRecvPos = mBuffer.getLong(mRecvTail);
+		mFrameRemaining = 0;
+	}
+
+	/**
+	 * Copies bytes into the sending ring, wrapping around its end.
+	 * @param pos write position
+	 * @return the write position after the bytes
+	 */
+	private long putRing(long pos, byte[] data, int off, int len) {
+		while (len > 0) {
+			int index = (int) (pos & (mCapacity - 1));
+			int n = Math.min(len, mCapacity - index);
+			mSendView.position(mSendData + index);
+			mSendView.put(data, off, n);
+			pos += n;
+			off += n;
+			len -= n;
+		}
+		return pos;
+	}
+
+	/**
+	 * @return the next byte of the received frames
+	 * @throws IOException
+	 */
+	private byte nextByte() throws IOException {
+		if (mFrameRemaining == 0) {
+			beginFrame();
+		}
+		byte b = mBuffer.get(mRecvData + (int) (mRecvPos & (mCapacity - 1)));
+		consumed(1);
+		return b;
+	}
+
+	/**
+	 * Waits for the next frame and reads its length.
+	 * @throws IOException
+	 * @throws EOFException if the peer closed the connection
+	 */
+	private void beginFrame() throws IOException {
+		checkOpen();
+		do {
+			for (int i = 0; mBuffer.getLong(mRecvHead) - mRecvPos < LENGTHBYTES; i++) {
+				checkPeer();
+				backOff(i); // Wait for the peer to send
+			}
+			acquire();
+			int length = 0;
+			for (int i = 0; i < LENGTHBYTES; i++) {
+				length |= (mBuffer.get(mRecvData + (int) ((mRecvPos + i) & (mCapacity - 1))) & 0xFF) << (Byte.SIZE * i);
+			}
+			mRecvPos += LENGTHBYTES;
+			mFrameRemaining = length;
+			if (length == 0) {
+				consumed(0);
+			}
+		} while (mFrameRemaining == 0);
+	}
+
+	/**
+	 * Advances the read position. The space of a frame is released to the peer once the frame has been read completely.
+	 * @param n number of bytes read
+	 */
+	private void consumed(int n) {
+		mRecvPos += n;
+		mFrameRemaining -= n;
+		if (mFrameRemaining == 0) {
+			release();
+			mBuffer.putLong(mRecvTail, mRecvPos);
+		}
+	}
+
+	/**
+	 * @throws EOFException if the peer closed the connection
+	 */
+	private void checkPeer() throws EOFException {
+		if (mBuffer.getInt(CLOSED_OFFSET) != 0) {
+			throw new EOFException("Connection closed by FORTE.");
+		}
+	}
+
+	/**
+	 * @throws IOException if the connection is not open
+	 */
+	private void checkOpen() throws IOException {
+		if (mFile == null) {
+			throw new IOException("Connection to FORTE is closed.");
+		}
+	}
+
+	/** Makes the preceding writes to the mapped file visible before the following ones */
+	private void release() {
+		if (RELEASE_FENCE != null) {
+			fence(RELEASE_FENCE);
+		} else {
+			mFence = 0;
+		}
+	}
+
+	/** Prevents the following reads from the mapped file from being performed before the preceding ones */
+	private void acquire() {
+		if (ACQUIRE_FENCE != null) {
+			fence(ACQUIRE_FENCE);
+		} else if (mFence != 0) {
+			mFence = 0;
+		}
+	}
+
+	/**
+	 * @param fence one of the fences found by {@link #findFence(String)}
+	 */
+	private static void fence(MethodHandle fence) {
+		try {
+			fence.invokeExact(); // Inlined by the JIT compiler, since the handle is a constant
+		} catch (Throwable e) {
+			throw new IllegalStateException("Fence failed.", e); // Fences do not throw
+		}
+	}
+
+	/**
+	 * Looks up a static fence method of java.lang.invoke.VarHandle.
+	 * @param name name of the method
+	 * @return the method handle or null if the JVM does not offer the fence (before Java 9)
+	 */
+	private static MethodHandle findFence(String name) {
+		try {
+			return MethodHandles.publicLookup().findStatic(Class.forName("java.lang.invoke.VarHandle"), name, MethodType.methodType(void.class));
+		} catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Waits before polling the rings again.
+	 * @param iteration number of polls so far
+	 */
+	private static void backOff(int iteration) {
+		if (iteration < SPINS) {
+			return;
+		}
+		if (iteration < YIELDS) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(PARK_NS);
+		}
+	}
+
+	/**
+	 * @param len length of a frame
+	 * @return the little-endian bytes of the length
+	 */
+	private static byte[] lengthBytes(int len) {
+		return new byte[] { (byte) len, (byte) (len >> 8), (byte) (len >> 16), (byte) (len >> 24) };
+	}
+}
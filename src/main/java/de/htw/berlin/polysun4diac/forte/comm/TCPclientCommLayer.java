@@ -1,7 +1,5 @@
 package de.htw.berlin.polysun4diac.forte.comm;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 
 /**
@@ -16,9 +14,9 @@ public class TCPclientCommLayer extends TCPcommunicationLayer {
 	
 	@Override
 	public boolean openConnection(CommLayerParams params) throws IOException {
-		getSocket().connect(params); // Connect to IP and port
-		setInputStream(new DataInputStream(getSocket().getInputStream()));
-		setOutputStream(new DataOutputStream(getSocket().getOutputStream()));
+		configureSocket(getSocket(), params);
+		connect(getSocket(), params); // Connect to IP and port
+		openStreams(params);
 		return getConnectionState();
 	}
 }
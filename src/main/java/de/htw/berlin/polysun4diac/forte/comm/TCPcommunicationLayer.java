@@ -1,9 +1,15 @@
 package de.htw.berlin.polysun4diac.forte.comm;
 
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 
 /**
  * Abstract bottom OSI layer for handling TCP/IP communication.
@@ -13,6 +19,12 @@ import java.net.Socket;
 public abstract class TCPcommunicationLayer extends AbstractCommunicationLayer {
 
 	private static final long serialVersionUID = 4329823111612210389L;
+	/** Minimum size of the receive buffer */
+	private static final int MIN_RECV_BUFFER_SIZE = 8192;
+	/** Maximum size of the receive buffer */
+	private static final int MAX_RECV_BUFFER_SIZE = 65536;
+	/** Time the health check waits for the socket to report a closed connection or unread bytes (in ms) */
+	private static final int HEALTH_PROBE_TIMEOUT_MS = 1;
 	
 	/** Client/Server socket */
 	private Socket mSocket = new Socket();
@@ -23,9 +35,15 @@ public abstract class TCPcommunicationLayer extends AbstractCommunicationLayer {
 	
 	@Override
 	public boolean closeConnection() throws IOException {
-		getInputStream().close();
-		getOutputStream().close();
-		getSocket().close();
+		if (getInputStream() != null) {
+			getInputStream().close();
+		}
+		if (getOutputStream() != null) {
+			getOutputStream().close();
+		}
+		if (getSocket() != null) {
+			getSocket().close(); // Also closes a socket that has not been connected, e.g. after a connect timeout
+		}
 		return getConnectionState();
 	}
 	
@@ -74,9 +92,14 @@ public abstract class TCPcommunicationLayer extends AbstractCommunicationLayer {
 		return getInputStream().readFloat();
 	}
 	
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		getInputStream().readFully(b, off, len);
+	}
+	
 	@Override
 	public boolean getConnectionState() {
-		return getSocket().isConnected();
+		return getSocket() != null && getSocket().isConnected() && !getSocket().isClosed();
 	}
 	
 	@Override
@@ -84,6 +107,130 @@ public abstract class TCPcommunicationLayer extends AbstractCommunicationLayer {
 		getOutputStream().write(data, off, len);
 	}
 	
+	/**
+	 * Probes the socket with a short read timeout. The connection is healthy if the read times out,
+	 * i.e. if FORTE has neither closed the connection nor sent bytes that have not been read.
+	 */
+	@Override
+	public boolean isHealthy() {
+		Socket socket = getSocket();
+		if (!getConnectionState() || socket.isInputShutdown() || getInputStream() == null) {
+			return false;
+		}
+		try {
+			if (getInputStream().available() > 0) {
+				return false;
+			}
+			int timeout = socket.getSoTimeout();
+			socket.setSoTimeout(HEALTH_PROBE_TIMEOUT_MS);
+			try {
+				getInputStream().read();
+				return false; // Closed (-1) or unread data
+			} catch (SocketTimeoutException e) {
+				return true;
+			} finally {
+				socket.setSoTimeout(timeout);
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Sets up the input and output streams of the connected socket.
+	 * If frame buffering is enabled in the parameters, the input stream is buffered with a buffer that can hold at least one complete frame,
+	 * so that a frame is usually retrieved from the socket with a single read and the data is decoded from memory.
+	 * @param params the parameters used to open the connection
+	 * @throws IOException
+	 */
+	protected void openStreams(CommLayerParams params) throws IOException {
+		InputStream in = getSocket().getInputStream();
+		if (params.isFrameBuffering()) {
+			in = new BufferedInputStream(in, getReceiveBufferSize(params));
+		}
+		setInputStream(new DataInputStream(in));
+		setOutputStream(new DataOutputStream(getSocket().getOutputStream()));
+	}
+	
+	/**
+	 * @param params the parameters used to open the connection
+	 * @return the size of the receive buffer, limited to [{@link #MIN_RECV_BUFFER_SIZE}, {@link #MAX_RECV_BUFFER_SIZE}]
+	 */
+	static int getReceiveBufferSize(CommLayerParams params) {
+		int size = params.getReceiveFrameSize();
+		size = (size < MIN_RECV_BUFFER_SIZE) ? MIN_RECV_BUFFER_SIZE : size; // Lower limit
+		return (size > MAX_RECV_BUFFER_SIZE) ? MAX_RECV_BUFFER_SIZE : size; // Upper limit
+	}
+	
+	/**
+	 * Applies the socket options set in the parameters (TCP_NODELAY and the sizes of the socket buffers) to the socket.
+	 * @param socket the socket
+	 * @param params the parameters used to open the connection
+	 * @throws IOException
+	 */
+	static void configureSocket(Socket socket, CommLayerParams params) throws IOException {
+		socket.setTcpNoDelay(params.isTcpNoDelay());
+		if (params.getSocketSendBufferSize() > 0) {
+			socket.setSendBufferSize(params.getSocketSendBufferSize());
+		}
+		if (params.getSocketReceiveBufferSize() > 0) {
+			socket.setReceiveBufferSize(params.getSocketReceiveBufferSize());
+		}
+	}
+	
+	/**
+	 * Connects a socket to the address in the parameters, within the connect timeout set in the parameters.
+	 * @param socket the socket
+	 * @param params the parameters used to open the connection
+	 * @throws IOException
+	 */
+	static void connect(Socket socket, CommLayerParams params) throws IOException {
+		socket.connect(params, params.getConnectTimeout());
+	}
+	
+	/**
+	 * Waits for a connection to the server socket, within the connect timeout set in the parameters.
+	 * @param server the bound server socket
+	 * @param params the parameters used to open the connection
+	 * @return the accepted socket
+	 * @throws SocketTimeoutException if no connection has been made within the timeout
+	 * @throws IOException
+	 */
+	static Socket accept(ServerSocket server, CommLayerParams params) throws IOException {
+		server.setSoTimeout(params.getConnectTimeout());
+		return server.accept();
+	}
+	
+	/**
+	 * Connects a blocking socket channel to the address in the parameters, within the connect timeout set in the parameters.
+	 * @param channel the socket channel
+	 * @param params the parameters used to open the connection
+	 * @throws IOException
+	 */
+	static void connect(SocketChannel channel, CommLayerParams params) throws IOException {
+		if (params.getConnectTimeout() > 0) {
+			channel.socket().connect(params, params.getConnectTimeout()); // Only the socket adaptor supports a timeout
+		} else {
+			channel.connect(params);
+		}
+	}
+	
+	/**
+	 * Waits for a connection to the blocking server socket channel, within the connect timeout set in the parameters.
+	 * @param server the bound server socket channel
+	 * @param params the parameters used to open the connection
+	 * @return the accepted socket channel
+	 * @throws SocketTimeoutException if no connection has been made within the timeout
+	 * @throws IOException
+	 */
+	static SocketChannel accept(ServerSocketChannel server, CommLayerParams params) throws IOException {
+		if (params.getConnectTimeout() > 0) {
+			server.socket().setSoTimeout(params.getConnectTimeout()); // Only the socket adaptor supports a timeout
+			return server.socket().accept().getChannel();
+		}
+		return server.accept();
+	}
+	
 	/**
 	 * @return the internal client Socket
 	 */
@@ -1,7 +1,5 @@
 package de.htw.berlin.polysun4diac.forte.comm;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.ServerSocket;
 
@@ -31,10 +29,13 @@ public class TCPserverCommLayer extends TCPcommunicationLayer {
 	
 	@Override
 	public boolean openConnection(CommLayerParams params) throws IOException {
+		if (params.getSocketReceiveBufferSize() > 0) {
+			getServer().setReceiveBufferSize(params.getSocketReceiveBufferSize()); // Inherited by accepted sockets
+		}
 		getServer().bind(params); // Open service on IP & port
-		setSocket(getServer().accept()); // Listen for connection to be made and accept
-		setInputStream(new DataInputStream(getSocket().getInputStream()));
-		setOutputStream(new DataOutputStream(getSocket().getOutputStream()));
+		setSocket(accept(getServer(), params)); // Listen for connection to be made and accept
+		configureSocket(getSocket(), params);
+		openStreams(params);
 		return getConnectionState();
 	}
 	
@@ -71,6 +71,11 @@ public class UDPpublisherCommLayer extends UDPcommunicationLayer {
 		throw new IOException(RECVERRMSG);
 	}
 	
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		throw new IOException(RECVERRMSG);
+	}
+	
 	@Override
 	protected MulticastSocket getSocket() {
 		return mSocket;
@@ -86,6 +86,12 @@ public class UDPsubscriberCommLayer extends UDPcommunicationLayer {
 		return getBuffer().getFloat();
 	}
 	
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		recvDataIfIsLastPosition();
+		getBuffer().get(b, off, len);
+	}
+	
 	@Override
 	protected MulticastSocket getSocket() {
 		return mSocket;
@@ -0,0 +1,27 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Bottom OSI layer for handling communication of a client with a FORTE runtime on the same host via a Unix domain socket.
+ * Takes the place of the {@link TCPclientCommLayer} for communication with FORTE SERVER function blocks.
+ */
+public class UNIXclientCommLayer extends UNIXcommunicationLayer {
+
+	private static final long serialVersionUID = 4421017045651870392L;
+
+	@Override
+	public boolean openConnection(CommLayerParams params) throws IOException {
+		SocketChannel channel = openSocketChannel();
+		try {
+			configureChannel(channel, params);
+			connect(channel, getAddress(params.getUnixSocketPath()), params); // Connect to the socket file within the timeout
+			initChannel(channel, params);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		return getConnectionState();
+	}
+}
@@ -0,0 +1,216 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.channels.NetworkChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Abstract bottom OSI layer for handling communication with a FORTE runtime on the same host via Unix domain sockets.
+ * </p>
+ * The FORTE frames are exchanged exactly as over TCP, but the bytes do not pass through the TCP/IP stack of the operating system,
+ * which lowers the latency of each message compared to the loopback interface. The socket is a file, whose path is set by
+ * {@link CommLayerParams#setUnixSocketPath(String)}.
+ * </p>
+ * Unix domain socket channels are available in Java 16 or later. Since the plugin is compiled for older Java versions,
+ * they are created via reflection. An IOException is thrown when opening the connection if the JVM does not support them.
+ * @see CommLayerParams#setTransportType(ForteTransportType)
+ */
+public abstract class UNIXcommunicationLayer extends NIOcommunicationLayer {
+
+	private static final long serialVersionUID = 7779620203009808391L;
+	/** Name of the Unix protocol family (see StandardProtocolFamily) */
+	private static final String UNIXFAMILY = "UNIX";
+	/** Name of the class of Unix domain socket addresses */
+	private static final String ADDRESSCLASS = "java.net.UnixDomainSocketAddress";
+
+	/**
+	 * @return true if the JVM supports Unix domain socket channels
+	 */
+	public static boolean isSupported() {
+		try {
+			getProtocolFamily();
+			getAddress("");
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Applies the socket buffer sizes set in the parameters to the channel.
+	 * @param channel the channel
+	 * @param params the parameters used to open the connection
+	 * @throws IOException
+	 */
+	static void configureChannel(NetworkChannel channel, CommLayerParams params) throws IOException {
+		if (params.getSocketSendBufferSize() > 0 && channel.supportedOptions().contains(StandardSocketOptions.SO_SNDBUF)) {
+			channel.setOption(StandardSocketOptions.SO_SNDBUF, params.getSocketSendBufferSize());
+		}
+		if (params.getSocketReceiveBufferSize() > 0 && channel.supportedOptions().contains(StandardSocketOptions.SO_RCVBUF)) {
+			channel.setOption(StandardSocketOptions.SO_RCVBUF, params.getSocketReceiveBufferSize());
+		}
+	}
+
+	/**
+	 * Connects the socket channel to the socket file, within the connect timeout set in the parameters.
+	 * Unlike TCP channels, Unix domain socket channels have no socket adaptor supporting a timeout,
+	 * so the channel is connected in non-blocking mode and a selector waits for the connection to be made.
+	 * @param channel the unconnected socket channel
+	 * @param address address of the socket file
+	 * @param params the parameters used to open the connection
+	 * @throws SocketTimeoutException if the connection has not been made within the timeout
+	 * @throws IOException
+	 */
+	static void connect(SocketChannel channel, SocketAddress address, CommLayerParams params) throws IOException {
+		long deadline = getDeadline(params);
+		channel.configureBlocking(false);
+		Selector selector = Selector.open();
+		try {
+			channel.register(selector, SelectionKey.OP_CONNECT);
+			boolean connected = channel.connect(address);
+			while (!connected) {
+				select(selector, deadline, "Connect timed out");
+				connected = channel.finishConnect();
+			}
+		} finally {
+			selector.close(); // Deregisters the channel, so that it can be switched back to blocking mode
+		}
+		channel.configureBlocking(true);
+	}
+
+	/**
+	 * Waits for a connection to the bound server socket channel, within the connect timeout set in the parameters.
+	 * The server channel is switched to non-blocking mode and a selector waits for the connection (see {@link #connect(SocketChannel, SocketAddress, CommLayerParams)}).
+	 * @param server the bound server socket channel
+	 * @param params the parameters used to open the connection
+	 * @return the accepted socket channel
+	 * @throws SocketTimeoutException if no connection has been made within the timeout
+	 * @throws IOException
+	 */
+	static SocketChannel accept(ServerSocketChannel server, CommLayerParams params) throws IOException {
+		long deadline = getDeadline(params);
+		server.configureBlocking(false);
+		Selector selector = Selector.open();
+		try {
+			server.register(selector, SelectionKey.OP_ACCEPT);
+			SocketChannel channel = server.accept();
+			while (channel == null) {
+				select(selector, deadline, "Accept timed out");
+				channel = server.accept();
+			}
+			return channel;
+		} finally {
+			selector.close();
+		}
+	}
+
+	/**
+	 * @param params the parameters used to open the connection
+	 * @return the time in ms (see System.currentTimeMillis()) after which connecting times out or 0 for no timeout
+	 */
+	private static long getDeadline(CommLayerParams params) {
+		return (params.getConnectTimeout() > 0) ? System.currentTimeMillis() + params.getConnectTimeout() : 0;
+	}
+
+	/**
+	 * Waits for the channel registered with the selector to become ready.
+	 * @param selector the selector
+	 * @param deadline see {@link #getDeadline(CommLayerParams)}
+	 * @param message message of the exception thrown after the deadline
+	 * @throws SocketTimeoutException if the deadline has passed
+	 * @throws IOException
+	 */
+	private static void select(Selector selector, long deadline, String message) throws IOException {
+		long timeout = 0;
+		if (deadline != 0) {
+			timeout = deadline - System.currentTimeMillis();
+			if (timeout <= 0) {
+				throw new SocketTimeoutException(message);
+			}
+		}
+		selector.select(timeout);
+		selector.selectedKeys().clear();
+	}
+
+	/**
+	 * @return a new, unconnected Unix domain socket channel
+	 * @throws IOException if the JVM does not support Unix domain sockets
+	 */
+	static SocketChannel openSocketChannel() throws IOException {
+		return (SocketChannel) open(SocketChannel.class);
+	}
+
+	/**
+	 * @return a new, unbound Unix domain server socket channel
+	 * @throws IOException if the JVM does not support Unix domain sockets
+	 */
+	static ServerSocketChannel openServerSocketChannel() throws IOException {
+		return (ServerSocketChannel) open(ServerSocketChannel.class);
+	}
+
+	/**
+	 * @param path path of the socket file
+	 * @return the Unix domain socket address of the file
+	 * @throws IOException if the JVM does not support Unix domain sockets
+	 */
+	static SocketAddress getAddress(String path) throws IOException {
+		try {
+			Method of = Class.forName(ADDRESSCLASS).getMethod("of", String.class);
+			return (SocketAddress) of.invoke(null, path);
+		} catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+			throw unsupported(e);
+		} catch (InvocationTargetException e) {
+			throw new IOException("Invalid Unix domain socket path: " + path, e.getCause());
+		}
+	}
+
+	/**
+	 * Calls the static open(ProtocolFamily) method of a channel class.
+	 * @param channelClass SocketChannel or ServerSocketChannel
+	 * @return the channel
+	 * @throws IOException
+	 */
+	private static Object open(Class<?> channelClass) throws IOException {
+		ProtocolFamily family = getProtocolFamily();
+		try {
+			return channelClass.getMethod("open", ProtocolFamily.class).invoke(null, family);
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			throw unsupported(e);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw unsupported(e.getCause());
+		}
+	}
+
+	/**
+	 * @return the Unix protocol family
+	 * @throws IOException if the JVM does not support Unix domain sockets
+	 */
+	private static ProtocolFamily getProtocolFamily() throws IOException {
+		try {
+			return StandardProtocolFamily.valueOf(UNIXFAMILY);
+		} catch (IllegalArgumentException e) {
+			throw unsupported(e);
+		}
+	}
+
+	/**
+	 * @param cause the reflection error
+	 * @return the exception indicating that the JVM does not support Unix domain sockets
+	 */
+	private static IOException unsupported(Throwable cause) {
+		return new IOException("Unix domain sockets are not supported by this JVM (Java 16 or later is required).", cause);
+	}
+}
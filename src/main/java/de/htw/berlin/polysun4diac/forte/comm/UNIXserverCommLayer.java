@@ -0,0 +1,45 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.ServerSocketChannel;
+
+/**
+ * Bottom OSI layer for handling communication of a server with a FORTE runtime on the same host via a Unix domain socket.
+ * Takes the place of the {@link TCPserverCommLayer} for communication with FORTE CLIENT function blocks.
+ * </p>
+ * The socket file is created when the connection is opened (replacing a file left behind by a previous run) and deleted when
+ * the connection is closed.
+ */
+public class UNIXserverCommLayer extends UNIXcommunicationLayer {
+
+	private static final long serialVersionUID = -2286016305335740216L;
+
+	/** Server channel */
+	private transient ServerSocketChannel mServer = null;
+	/** Socket file */
+	private File mSocketFile = null;
+
+	@Override
+	public boolean openConnection(CommLayerParams params) throws IOException {
+		mSocketFile = new File(params.getUnixSocketPath());
+		mSocketFile.delete(); // Binding fails if the file exists
+		mServer = openServerSocketChannel();
+		configureChannel(mServer, params); // Inherited by accepted channels
+		mServer.bind(getAddress(mSocketFile.getPath())); // Create the socket file
+		initChannel(accept(mServer, params), params); // Listen for connection to be made and accept within the timeout
+		return getConnectionState();
+	}
+
+	@Override
+	public boolean closeConnection() throws IOException {
+		super.closeConnection();
+		if (mServer != null) {
+			mServer.close();
+		}
+		if (mSocketFile != null) {
+			mSocketFile.delete();
+		}
+		return getConnectionState();
+	}
+}
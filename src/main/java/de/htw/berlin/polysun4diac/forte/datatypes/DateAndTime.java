@@ -1,7 +1,6 @@
 package de.htw.berlin.polysun4diac.forte.datatypes;
 
 import static de.htw.berlin.polysun4diac.CommonFunctionsAndConstants.*;
-import static java.util.Calendar.*;
 
 import java.io.Serializable;
 import java.text.ParseException;
@@ -9,6 +8,7 @@ import java.text.SimpleDateFormat;
 //import java.time.LocalDateTime; // Polysun is not yet compatible with LocalDateTime. TODO: Re-add this feature when Polysun updates to Java 8 SE
 //import java.time.temporal.ChronoUnit; // TODO: Re-add this feature when Polysun updates to Java 8 SE
 import java.util.Calendar;
+import java.util.TimeZone;
 
 /**
  * Class for representing time stamps in the IEC 61499 DATE_AND_TIME format as represented in 4diac-RTE (FORTE).
@@ -57,11 +57,33 @@ public class DateAndTime implements Serializable, Comparable<DateAndTime> {
 	public static final int REFMS = 0;
 	/** String representing the date and time format */
 	public static final String DATEFORMATSTR = "dd.MM.yyyy HH:mm:ss";
-	/** Date format used for this class */
+	/** 
+	 * Date format used for this class.
+	 * Note that SimpleDateFormat is not thread-safe. DateAndTime objects format and parse Strings without using this instance.
+	 */
 	public static final SimpleDateFormat DATEFORMAT = new SimpleDateFormat(DATEFORMATSTR);
+	/** Number of ms per second */
+	private static final long MS_PER_SECOND = KILOTOSI;
+	/** Number of ms per minute */
+	private static final long MS_PER_MINUTE = 60 * MS_PER_SECOND;
+	/** Number of ms per hour */
+	private static final long MS_PER_HOUR = 60 * MS_PER_MINUTE;
+	/** Number of ms per day */
+	private static final long MS_PER_DAY = 24 * MS_PER_HOUR;
+	/** Number of months per year */
+	private static final int MONTHS_PER_YEAR = 12;
+	/** Number of days per 400 year cycle of the Gregorian calendar */
+	private static final long DAYS_PER_ERA = 146097;
+	/** Number of days between 1st March 0000 and 1st January 1970 */
+	private static final long DAYS_0000_TO_1970 = 719468;
+	/** Per-thread parser for Strings that do not strictly match {@link #DATEFORMATSTR} (e.g., "1.1.2017 0:00:00") */
+	private static final ThreadLocal<SimpleDateFormat> LENIENT_PARSER = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return new SimpleDateFormat(DATEFORMATSTR);
+		}
+	};
 	
-	/** Reference time as LocalDateTime */
-	private Calendar refCalendar = Calendar.getInstance(); //LocalDateTime.of(REFYEAR, REFMONTH, REFDAY, REFHOUR, REFMIN, REFSEC, REFNS);
 	/** 
 	 * Internal FORTE representation of a DateAndTime object's time value.
 	 * Number of ms since {@link #MINTIME}
@@ -130,17 +152,14 @@ public class DateAndTime implements Serializable, Comparable<DateAndTime> {
 	 * Constructs a DateAndTime object and initializes the simulation start (simulationTime = 0) according to the inputs.
 	 */
 	public DateAndTime(int year, int month, int day, int hour, int minute, int second, int millisecond) {
-		Calendar thisTime = Calendar.getInstance();
-		thisTime.set(year, month, day, hour, minute, second);
-		thisTime.set(MILLISECOND, millisecond);
-		setSimulationTime(thisTime);
+		setSimulationTime(toEpochMillis(year, month, day, hour, minute, second, millisecond));
 	}
 	
 	/**
 	 * Constructs a DateAndTime object and initializes the simulation start (simulationTime = 0) according to a Calendar object.
 	 */
 	public DateAndTime(Calendar inCalendar) {
-		setSimulationTime(inCalendar);
+		setSimulationTime(inCalendar.getTimeInMillis());
 	}
 	
 	 // TODO: Re-add this feature when Polysun updates to Java 8 SE
@@ -157,9 +176,7 @@ public class DateAndTime implements Serializable, Comparable<DateAndTime> {
 	 * @throws ParseException 
 	 */
 	public DateAndTime(String dateStr) throws ParseException {
-		Calendar cal = Calendar.getInstance();
-		cal.setTime(DATEFORMAT.parse(dateStr));
-		setSimulationTime(cal);
+		setSimulationTime(parse(dateStr));
 	}
 	
 	/**
@@ -170,10 +187,8 @@ public class DateAndTime implements Serializable, Comparable<DateAndTime> {
 	 * @see SimpleDateFormat
 	 */
 	public DateAndTime(String dateStr, String format) throws ParseException {
-		Calendar cal = Calendar.getInstance();
 		SimpleDateFormat f = new SimpleDateFormat(format);
-		cal.setTime(f.parse(dateStr));
-		setSimulationTime(cal);
+		setSimulationTime(f.parse(dateStr).getTime());
 	}
 
 	/**
@@ -181,7 +196,19 @@ public class DateAndTime implements Serializable, Comparable<DateAndTime> {
 	 * @param simulationTime number of seconds since the beginning of the simulation.
 	 */
 	public void setSimulationTimeS(int simulationTime) {
-		setForteTime(getForteSimulationStart() + (long) simulationTime * KILOTOSI);
+		setForteTime(toForteTime(getForteSimulationStart(), simulationTime));
+	}
+	
+	/**
+	 * Converts a simulation time to the internal FORTE representation without creating or modifying a DateAndTime object.
+	 * @param simulationStartInms FORTE time at beginning of simulation in ms since 1st January 1970, 01:00:00.000
+	 * @param simulationTime number of seconds since the beginning of the simulation.
+	 * @return number of ms since 1st January 1970, 01:00:00.000 (limited to {@link #MINTIME})
+	 * @see #getForteSimulationStart()
+	 */
+	public static long toForteTime(long simulationStartInms, int simulationTime) {
+		long value = simulationStartInms + (long) simulationTime * KILOTOSI;
+		return (value > MINTIME) ? value : MINTIME;
 	}
 	
 	/**
@@ -214,11 +241,19 @@ public class DateAndTime implements Serializable, Comparable<DateAndTime> {
 	 */
 	public Calendar toCalendar() {
 		Calendar cal = Calendar.getInstance();
-		refCalendar.set(MONTH, 0); // If this is not done, the month is offset for some reason
-		cal.setTimeInMillis(refCalendar.getTimeInMillis() + getForteTime());
+		cal.setTimeInMillis(toEpochMillis());
 		return cal;
 	}
 	
+	/**
+	 * @return the current set value of the internal FORTE clock as the number of ms since 1st January 1970, 00:00:00.000 UTC,
+	 * i.e., as represented by {@link #toCalendar()} and {@link #toString()}.
+	 */
+	private long toEpochMillis() {
+		// The String representation is relative to 1st January (not REFMONTH)
+		return toEpochMillis(REFYEAR, 0, REFDAY, REFHOUR, REFMIN, REFSEC, REFMS) + getForteTime();
+	}
+	
 	 // TODO: Re-add this feature when Polysun updates to Java 8 SE
 //	/** 
 //	 * @return LocalDateTime object that represents the current set value of the internal FORTE clock.
@@ -229,11 +264,129 @@ public class DateAndTime implements Serializable, Comparable<DateAndTime> {
 //		return getRefLocalDateTime().plusNanos(getForteTime() * (long) KILOTOSI * (long) KILOTOSI);
 //	}
 
-	/** Sets the internal simulation time */
-	private void setSimulationTime(Calendar inCalendar) {
-		refCalendar.set(REFYEAR,  REFMONTH, REFDAY, REFHOUR, REFMIN, REFSEC);
-		refCalendar.set(MILLISECOND, REFMS);
-		setSimulationTimeMS((inCalendar.before(refCalendar) ? 0 : inCalendar.getTimeInMillis() - refCalendar.getTimeInMillis()));
+	/** 
+	 * Sets the internal simulation time 
+	 * @param epochMillis simulation start as the number of ms since 1st January 1970, 00:00:00.000 UTC
+	 */
+	private void setSimulationTime(long epochMillis) {
+		long reference = toEpochMillis(REFYEAR, REFMONTH, REFDAY, REFHOUR, REFMIN, REFSEC, REFMS);
+		setSimulationTimeMS((epochMillis < reference) ? 0 : epochMillis - reference);
+	}
+	
+	/**
+	 * Converts local date and time fields to the number of ms since 1st January 1970, 00:00:00.000 UTC using the default time zone.
+	 * The fields are interpreted leniently (as by a Calendar), i.e., values out of range are carried over to the next field.
+	 * @param month month of the year (0 = January, as in Calendar)
+	 * @return number of ms since 1st January 1970, 00:00:00.000 UTC
+	 */
+	private static long toEpochMillis(int year, int month, int day, int hour, int minute, int second, int millisecond) {
+		long y = year + floorDiv(month, MONTHS_PER_YEAR);
+		int m = (int) (month - floorDiv(month, MONTHS_PER_YEAR) * MONTHS_PER_YEAR);
+		long localMillis = (daysFromCivil(y, m + 1, 1) + day - 1) * MS_PER_DAY + hour * MS_PER_HOUR
+				+ minute * MS_PER_MINUTE + second * MS_PER_SECOND + millisecond;
+		TimeZone zone = TimeZone.getDefault();
+		int offset = zone.getOffset(localMillis - zone.getRawOffset());
+		int offsetAtResult = zone.getOffset(localMillis - offset);
+		// A local time that is skipped by a daylight saving time transition is interpreted with the offset before the transition (as by a Calendar)
+		return localMillis - ((offsetAtResult != offset) ? offsetAtResult : offset);
+	}
+	
+	/**
+	 * @param y year
+	 * @param m month of the year [1, 12]
+	 * @param d day of the month [1, 31]
+	 * @return number of days since 1st January 1970 in the proleptic Gregorian calendar
+	 */
+	private static long daysFromCivil(long y, int m, int d) {
+		y -= (m <= 2) ? 1 : 0; // Years start in March
+		long era = floorDiv(y, 400);
+		long yearOfEra = y - era * 400;
+		long dayOfYear = (153 * (m + ((m > 2) ? -3 : 9)) + 2) / 5 + d - 1;
+		long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * DAYS_PER_ERA + dayOfEra - DAYS_0000_TO_1970;
+	}
+	
+	/**
+	 * Formats a point in time according to {@link #DATEFORMATSTR} in the default time zone.
+	 * @param epochMillis number of ms since 1st January 1970, 00:00:00.000 UTC
+	 * @return String of the format dd.MM.yyyy HH:mm:ss
+	 */
+	private static String format(long epochMillis) {
+		long localMillis = epochMillis + TimeZone.getDefault().getOffset(epochMillis);
+		long days = floorDiv(localMillis, MS_PER_DAY);
+		long msOfDay = localMillis - days * MS_PER_DAY;
+		// Convert the number of days to year, month and day
+		days += DAYS_0000_TO_1970;
+		long era = floorDiv(days, DAYS_PER_ERA);
+		long dayOfEra = days - era * DAYS_PER_ERA;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		long mp = (5 * dayOfYear + 2) / 153;
+		long day = dayOfYear - (153 * mp + 2) / 5 + 1;
+		long month = (mp < 10) ? mp + 3 : mp - 9;
+		long year = yearOfEra + era * 400 + ((month <= 2) ? 1 : 0);
+		StringBuilder sb = new StringBuilder(DATEFORMATSTR.length());
+		appendPadded(sb, day, 2).append('.');
+		appendPadded(sb, month, 2).append('.');
+		appendPadded(sb, year, 4).append(' ');
+		appendPadded(sb, msOfDay / MS_PER_HOUR, 2).append(':');
+		appendPadded(sb, (msOfDay % MS_PER_HOUR) / MS_PER_MINUTE, 2).append(':');
+		appendPadded(sb, (msOfDay % MS_PER_MINUTE) / MS_PER_SECOND, 2);
+		return sb.toString();
+	}
+	
+	/**
+	 * Parses a String of the format {@link #DATEFORMATSTR}.
+	 * Strings that do not strictly match the format are parsed leniently by a SimpleDateFormat.
+	 * @param dateStr String representing the date and time
+	 * @return number of ms since 1st January 1970, 00:00:00.000 UTC
+	 * @throws ParseException
+	 */
+	private static long parse(String dateStr) throws ParseException {
+		if (dateStr.length() == DATEFORMATSTR.length()) {
+			int day = parseDigits(dateStr, 0, 2);
+			int month = parseDigits(dateStr, 3, 2);
+			int year = parseDigits(dateStr, 6, 4);
+			int hour = parseDigits(dateStr, 11, 2);
+			int minute = parseDigits(dateStr, 14, 2);
+			int second = parseDigits(dateStr, 17, 2);
+			if (day >= 0 && month >= 0 && year >= 0 && hour >= 0 && minute >= 0 && second >= 0
+					&& dateStr.charAt(2) == '.' && dateStr.charAt(5) == '.' && dateStr.charAt(10) == ' '
+					&& dateStr.charAt(13) == ':' && dateStr.charAt(16) == ':') {
+				return toEpochMillis(year, month - 1, day, hour, minute, second, 0);
+			}
+		}
+		return LENIENT_PARSER.get().parse(dateStr).getTime();
+	}
+	
+	/**
+	 * @return the decimal number represented by the characters or -1 if any of the characters is not a digit
+	 */
+	private static int parseDigits(String s, int start, int length) {
+		int res = 0;
+		for (int i = start; i < start + length; i++) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			res = res * 10 + (c - '0');
+		}
+		return res;
+	}
+	
+	/** Appends a non-negative number padded with leading zeros to the specified number of digits */
+	private static StringBuilder appendPadded(StringBuilder sb, long value, int digits) {
+		String s = Long.toString(value);
+		for (int i = s.length(); i < digits; i++) {
+			sb.append('0');
+		}
+		return sb.append(s);
+	}
+	
+	/** Floor division (Math.floorDiv() is not available in Java 7) */
+	private static long floorDiv(long x, long y) {
+		long q = x / y;
+		return ((x % y != 0) && ((x ^ y) < 0)) ? q - 1 : q;
 	}
 	
 	/** Sets the internal simulation time */
@@ -260,6 +413,6 @@ public class DateAndTime implements Serializable, Comparable<DateAndTime> {
 	
 	@Override
 	public String toString() {
-		return DATEFORMAT.format(toCalendar().getTime()).toString();
+		return format(toEpochMillis());
 	}
 }
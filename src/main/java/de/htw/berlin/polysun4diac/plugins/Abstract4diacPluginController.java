@@ -218,4 +218,13 @@ public abstract class Abstract4diacPluginController extends AbstractPluginContro
 	protected DateAndTime getForteTimestamp() {
 		return mForteTimestamp;
 	}
+	
+	/**
+	 * Converts the simulation time to the FORTE time stamp without modifying {@link #getForteTimestamp()}.
+	 * @param simulationTime number of seconds since the beginning of the simulation.
+	 * @return number of ms since 1st January 1970, 01:00:00.000, e.g. for IForteSocket.putDateAndTimeMillis(long)
+	 */
+	protected long getForteTime(int simulationTime) {
+		return DateAndTime.toForteTime(getForteTimestamp().getForteSimulationStart(), simulationTime);
+	}
 }
@@ -5,6 +5,7 @@ import java.util.Map;
 
 import com.velasolaris.plugin.controller.spi.PluginControllerException;
 import com.velasolaris.plugin.controller.spi.PolysunSettings;
+import com.velasolaris.plugin.controller.spi.PluginControllerConfiguration.Property;
 
 
 /**
@@ -15,23 +16,47 @@ public abstract class AbstractActorController extends AbstractSingleComponentCon
 
 	/** Index of the SUBSCRIBER service type in the {@link #SERVICETYPE_KEY} property. */
 	protected static final int SUBSCRIBER_IDX = 2;
+	/** Key for the option to receive the data from FORTE in the background */
+	protected static final String PREFETCH_KEY = "Prefetch received data";
+	/** Integer indicating not to receive the data from FORTE in the background */
+	protected static final int DONTPREFETCH = 0;
 	
 	public AbstractActorController() throws PluginControllerException {
 		super();
 		setSendTimestamp(false); // Disable time stamp option, since actor plugins only receive data from FORTE.
 	}
 
+	@Override
+	public void initialiseSimulation(Map<String, Object> parameters) throws PluginControllerException {
+		super.initialiseSimulation(parameters);
+		initialiseReceiving(getControlSignals().size(), getProp(PREFETCH_KEY) != null && getProp(PREFETCH_KEY).getInt() != DONTPREFETCH);
+	}
+
 	@Override
 	public int[] control(int simulationTime, boolean status, float[] sensors, float[] controlSignals, float[] logValues,
 			boolean preRun, Map<String, Object> parameters) throws PluginControllerException {
 		if (!status) {
 			return null;
 		}
-		recvData();
-		populateControlSignals(controlSignals);
+		awaitConnection(); // Established in the background since initialiseSimulation
+		receiveControlSignals(controlSignals); // Holds the previous control signals if the receive deadline is missed
 		return null;
 	}
 	
+	@Override
+	protected List<Property> initialisePropertyList() {
+		List<Property> properties = super.initialisePropertyList();
+		properties.add(new Property(PREFETCH_KEY, new String[] { "no" , "yes" }, DONTPREFETCH, "If yes is selected, the data sent by FORTE is received and decoded in the background, "
+				+ "while Polysun computes the other components."));
+		properties.add(new Property(RECVDEADLINE_KEY, NODEADLINE, NODEADLINE, MAXDEADLINE, RECVDEADLINE_TOOLTIP));
+		return properties;
+	}
+	
+	@Override
+	protected void decodeControlSignals(float[] controlSignals) throws PluginControllerException {
+		populateControlSignals(controlSignals);
+	}
+	
 	@Override
 	public List<String> getPropertiesToHide(PolysunSettings propertyValues, Map<String, Object> parameters) {
 		List<String> propertiesToHide = super.getPropertiesToHide(propertyValues, parameters);
@@ -41,6 +66,7 @@ public abstract class AbstractActorController extends AbstractSingleComponentCon
 	
 	/**
 	 * Receives the data from FORTE and populates the control signals with the received data.
+	 * If {@link #PREFETCH_KEY} is enabled or a receive deadline is set, this method is called by the background reader after the data has been received.
 	 * @param controlSignals The control signals set by this plugin controller (Output parameter).
 	 * @throws PluginControllerException
 	 */
@@ -2,21 +2,150 @@ package de.htw.berlin.polysun4diac.plugins;
 
 import static de.htw.berlin.polysun4diac.CommonFunctionsAndConstants.*;
 
+import java.util.List;
 import java.util.Map;
 
 import com.velasolaris.plugin.controller.spi.PluginControllerConfiguration;
 import com.velasolaris.plugin.controller.spi.PluginControllerException;
+import com.velasolaris.plugin.controller.spi.PluginControllerConfiguration.Property;
+import com.velasolaris.plugin.controller.spi.PluginControllerConfiguration.Sensor;
 
 /**
  * Defines the default behaviour of a FORTE sensor plugin controller for sending data to IEC 61499 applications running on 4diac-RTE (FORTE).
+ * </p>
+ * If an absolute or relative deadband is set, the sensor values are only sent if at least one of them has changed by more than the deadband
+ * since it was sent last, or if nothing has been sent for the maximum silence. Otherwise FORTE keeps the values received last.
+ * </p>
+ * As the sensors are measured in different units, each sensor has its own absolute deadband. Subclasses with a fixed set of sensors
+ * return them by {@link #getFixedSensors()} and get one property per sensor; otherwise the absolute deadbands of all sensors are
+ * configured as a list. The relative deadband is unitless and applies to all sensors.
  * @author Marc Jakobi</p>HTW Berlin</p>July 2017
  */
 public abstract class AbstractSensorController extends AbstractSingleComponentController {
 	
+	/** Key prefix for the minimum absolute change of a fixed sensor's value that is sent to FORTE (see {@link #getDeadbandKey(String)}) */
+	protected static final String DEADBAND_ABS_KEY = "Absolute deadband";
+	/** Key for the list of the minimum absolute changes of the sensor values that are sent to FORTE (if there are no fixed sensors) */
+	protected static final String DEADBANDS_ABS_KEY = "Absolute deadbands";
+	/** Separator of the values of {@link #DEADBANDS_ABS_KEY} */
+	private static final String DEADBANDS_SEPARATOR = ";";
+	/** Key for the minimum change of a sensor value relative to the value sent last that is sent to FORTE */
+	protected static final String DEADBAND_REL_KEY = "Relative deadband";
+	/** Key for the maximum simulation time in s without sending the sensor values to FORTE */
+	protected static final String MAXSILENCE_KEY = "Maximum silence (s)";
+	/** Value of the absolute deadbands and {@link #DEADBAND_REL_KEY} that disables the deadband */
+	protected static final float NODEADBAND = 0;
+	/** Upper limit of the absolute deadbands */
+	private static final float MAXDEADBAND_ABS = 1000000;
+	/** Upper limit of {@link #DEADBAND_REL_KEY} in % */
+	private static final float MAXDEADBAND_REL = 100;
+	/** Default value of {@link #MAXSILENCE_KEY} (one hour) */
+	protected static final int DEFMAXSILENCE = 3600;
+	/** Value of {@link #MAXSILENCE_KEY} that disables the heartbeat */
+	protected static final int NOHEARTBEAT = 0;
+	
+	/** Absolute deadband of each sensor in the unit of the sensor (null if none is set) */
+	private float[] mDeadbandsAbs;
+	/** Relative deadband as a fraction of the value sent last */
+	private float mDeadbandRel = NODEADBAND;
+	/** Maximum simulation time in s between two frames (0 for no heartbeat) */
+	private int mMaxSilence = NOHEARTBEAT;
+	/** Sensor values sent last (null if none have been sent) */
+	private float[] mSentSensors;
+	/** Simulation time at which the sensor values have been sent last */
+	private int mSentTime;
+	/** Number of time steps in which the sensor values have not been sent because of the deadband */
+	private int mNumSuppressed = 0;
+	
 	public AbstractSensorController() throws PluginControllerException {
 		super();
 	}
 	
+	@Override
+	public void initialiseSimulation(Map<String, Object> parameters) throws PluginControllerException {
+		mDeadbandsAbs = readDeadbandsAbs(); // Before connecting to FORTE in the background
+		super.initialiseSimulation(parameters);
+		mDeadbandRel = getProp(DEADBAND_REL_KEY) != null ? getProp(DEADBAND_REL_KEY).getFloat() / 100 : NODEADBAND;
+		mMaxSilence = getProp(MAXSILENCE_KEY) != null ? getProp(MAXSILENCE_KEY).getInt() : NOHEARTBEAT;
+		mSentSensors = null;
+		mNumSuppressed = 0;
+	}
+	
+	@Override
+	protected List<Property> initialisePropertyList() {
+		List<Property> properties = super.initialisePropertyList();
+		List<Sensor> sensors = getFixedSensors();
+		if (sensors != null) {
+			for (Sensor s : sensors) {
+				properties.add(new Property(getDeadbandKey(s.getName()), NODEADBAND, NODEADBAND, MAXDEADBAND_ABS, s.getUnit(), "If greater than 0, "
+						+ "the sensor values are only sent if at least one of them has changed by more than its deadband since it was sent last."));
+			}
+		} else {
+			properties.add(new Property(DEADBANDS_ABS_KEY, "", "Absolute deadbands of all sensors in the order of the sensors, each in the unit "
+					+ "of its sensor and separated by '" + DEADBANDS_SEPARATOR + "'. If set, the sensor values are only sent if at least one of them "
+					+ "has changed by more than its deadband since it was sent last. Empty disables the absolute deadbands."));
+		}
+		properties.add(new Property(DEADBAND_REL_KEY, NODEADBAND, NODEADBAND, MAXDEADBAND_REL, "%", "If greater than 0, the sensor values are only sent "
+				+ "if at least one of them has changed by more than this percentage of the value sent last. The larger of both deadbands applies."));
+		properties.add(new Property(MAXSILENCE_KEY, DEFMAXSILENCE, NOHEARTBEAT, NUM_SECONDS_PER_YEAR, "If a deadband is set, the sensor values are sent "
+				+ "at least once within this simulation time, even if they have not changed. 0 disables this heartbeat."));
+		return properties;
+	}
+	
+	/**
+	 * Returns the sensors of controllers with a fixed set of sensors, which get one absolute deadband property each.
+	 * This method is called before the simulation settings are available and must not depend on them.
+	 * @return the fixed sensors or null if the sensors are configured by the user
+	 */
+	protected List<Sensor> getFixedSensors() {
+		return null;
+	}
+	
+	/**
+	 * @param sensorName name of a fixed sensor
+	 * @return the key of the absolute deadband property of the sensor
+	 */
+	protected static String getDeadbandKey(String sensorName) {
+		return DEADBAND_ABS_KEY + " (" + sensorName + ")";
+	}
+	
+	/**
+	 * Reads the absolute deadbands of the sensors from the properties.
+	 * @return the absolute deadband of each sensor in the order of {@link #getSensors()}, or null if none is set
+	 * @throws PluginControllerException if the list of deadbands does not match the sensors
+	 */
+	private float[] readDeadbandsAbs() throws PluginControllerException {
+		List<Sensor> sensors = getSensors();
+		float[] deadbands = new float[sensors.size()];
+		boolean isSet = false;
+		if (getFixedSensors() != null) {
+			for (int i = 0; i < deadbands.length; i++) {
+				String key = getDeadbandKey(sensors.get(i).getName());
+				deadbands[i] = getProp(key) != null ? getProp(key).getFloat() : NODEADBAND;
+				isSet |= deadbands[i] > NODEADBAND;
+			}
+		} else if (getProp(DEADBANDS_ABS_KEY) != null && !getProp(DEADBANDS_ABS_KEY).getString().trim().isEmpty()) {
+			String[] values = getProp(DEADBANDS_ABS_KEY).getString().split(DEADBANDS_SEPARATOR);
+			if (values.length != deadbands.length) {
+				throw new PluginControllerException(getName() + ": " + values.length + " absolute deadbands are set for "
+						+ deadbands.length + " sensors.");
+			}
+			for (int i = 0; i < deadbands.length; i++) {
+				try {
+					deadbands[i] = Float.parseFloat(values[i].trim());
+				} catch (NumberFormatException e) {
+					throw new PluginControllerException(getName() + ": Invalid absolute deadband '" + values[i].trim() + "'.");
+				}
+				if (deadbands[i] < NODEADBAND || deadbands[i] > MAXDEADBAND_ABS) {
+					throw new PluginControllerException(getName() + ": The absolute deadband of sensor " + (i + 1) + " must be between "
+							+ NODEADBAND + " and " + MAXDEADBAND_ABS + ".");
+				}
+				isSet |= deadbands[i] > NODEADBAND;
+			}
+		}
+		return isSet ? deadbands : null;
+	}
+	
 	@Override
 	public PluginControllerConfiguration getConfiguration(Map<String, Object> parameters)
 			throws PluginControllerException {
@@ -30,20 +159,26 @@ public abstract class AbstractSensorController extends AbstractSingleComponentCo
 			if (!status) {
 				return null;
 			}
+			awaitConnection(); // Established in the background since initialiseSimulation
+			awaitPendingResponse();
+			if (!isSendRequired(simulationTime, sensors)) {
+				mNumSuppressed++;
+				return null; // FORTE keeps the values sent last
+			}
 			// Buffer inputs
 			putSensors(sensors);
 			if (sendTimestamp()) {
 				if (preRun) {
-					getForteTimestamp().setSimulationTimeS(simulationTime - NUM_SECONDS_PER_YEAR);
+					getSocket().putDateAndTimeMillis(getForteTime(simulationTime - NUM_SECONDS_PER_YEAR));
 				} else {
-					getForteTimestamp().setSimulationTimeS(simulationTime);
+					getSocket().putDateAndTimeMillis(getForteTime(simulationTime));
 				}
-				getSocket().put(getForteTimestamp());
 			}
 			sendData();
+			setSentSensors(simulationTime, sensors);
 			// Wait for response from FORTE if specified so by user.
 			if (getProp(WAITFORRSP_KEY).getInt() != DONTWAITFORRSP) {
-				recvData();
+				recvResponse();
 			}
 			return null;
 		} catch (PluginControllerException e) {
@@ -53,6 +188,48 @@ public abstract class AbstractSensorController extends AbstractSingleComponentCo
 		}
 	}
 	
+	/**
+	 * Checks whether the sensor values must be sent to FORTE in this time step.
+	 * @param simulationTime number of seconds since the beginning of the simulation
+	 * @param sensors The values of the sensors configured by the user.
+	 * @return false if a deadband is set, all sensor values are within the deadband and the maximum silence has not elapsed
+	 */
+	private boolean isSendRequired(int simulationTime, float[] sensors) {
+		if (mDeadbandsAbs == null && mDeadbandRel <= NODEADBAND) {
+			return true;
+		}
+		if (mSentSensors == null || mSentSensors.length != sensors.length
+				|| simulationTime < mSentTime // Main simulation after the pre-run
+				|| mMaxSilence > NOHEARTBEAT && simulationTime - mSentTime >= mMaxSilence) {
+			return true;
+		}
+		for (int i = 0; i < sensors.length; i++) {
+			float deadbandAbs = mDeadbandsAbs != null && i < mDeadbandsAbs.length ? mDeadbandsAbs[i] : NODEADBAND;
+			if (Math.abs(sensors[i] - mSentSensors[i]) > Math.max(deadbandAbs, mDeadbandRel * Math.abs(mSentSensors[i]))) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Stores the sensor values that have been sent for {@link #isSendRequired(int, float[])}.
+	 * @param simulationTime number of seconds since the beginning of the simulation
+	 * @param sensors The values of the sensors sent to FORTE.
+	 */
+	private void setSentSensors(int simulationTime, float[] sensors) {
+		if (mSentSensors == null || mSentSensors.length != sensors.length) {
+			mSentSensors = new float[sensors.length];
+		}
+		System.arraycopy(sensors, 0, mSentSensors, 0, sensors.length);
+		mSentTime = simulationTime;
+	}
+	
+	/** @return the number of time steps in which the sensor values have not been sent because of the deadband */
+	protected int getNumSuppressed() {
+		return mNumSuppressed;
+	}
+	
 	/** 
 	 * Method for buffering the sensor data 
 	 * @param sensors The values of the sensors configured by the user (Input parameter).
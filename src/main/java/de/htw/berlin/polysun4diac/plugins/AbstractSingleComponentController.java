@@ -2,12 +2,17 @@ package de.htw.berlin.polysun4diac.plugins;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import com.velasolaris.plugin.controller.spi.PluginControllerException;
 import com.velasolaris.plugin.controller.spi.PluginControllerConfiguration.Property;
+import com.velasolaris.plugin.controller.spi.PolysunSettings.PropertyValue;
 
 import de.htw.berlin.polysun4diac.exception.UnsupportedForteDataTypeException;
 import de.htw.berlin.polysun4diac.forte.comm.CommLayerParams;
+import de.htw.berlin.polysun4diac.forte.comm.ForteSessionRegistry;
+import de.htw.berlin.polysun4diac.forte.comm.ForteTransportType;
 import de.htw.berlin.polysun4diac.forte.comm.IForteSocket;
 
 /**
@@ -25,9 +30,54 @@ public abstract class AbstractSingleComponentController extends Abstract4diacPlu
 	protected static final String WAITFORRSP_KEY = "Wait for response";
 	/** Integer indicating not to wait for a response from FORTE */
 	protected static final int DONTWAITFORRSP = 0;
+	/** Integer indicating to wait for the response from FORTE before the next exchange, so that the exchanges of several plugins overlap */
+	protected static final int OVERLAPPEDRSP = 2;
+	/** Key for the option to keep the connection to FORTE open for the next simulation */
+	protected static final String KEEPSESSION_KEY = "Keep connection between simulations";
+	/** Integer indicating to close the connection to FORTE at the end of the simulation */
+	protected static final int DONTKEEPSESSION = 0;
+	/** Timeout in milliseconds for each attempt to connect to FORTE, unless set otherwise in the connection parameters */
+	protected static final int CONNECTTIMEOUT = 10000;
+	/** Key for the maximum time in milliseconds to wait for the control signals from FORTE in each time step */
+	protected static final String RECVDEADLINE_KEY = "Receive deadline (ms)";
+	/** Tool tip for {@link #RECVDEADLINE_KEY} */
+	protected static final String RECVDEADLINE_TOOLTIP = "If greater than 0, the control signals received last are held if FORTE does not respond within this time, "
+			+ "so that a slow FORTE application cannot stall the simulation. 0 waits for every response.";
+	/** Integer indicating to wait for the control signals from FORTE without a deadline */
+	protected static final int NODEADLINE = 0;
+	/** Maximum value of {@link #RECVDEADLINE_KEY} (one hour) */
+	protected static final int MAXDEADLINE = 3600000;
+	/** Key for the option to receive a valid-until time stamp from FORTE and to skip the exchanges until then */
+	protected static final String LOOKAHEAD_KEY = "Valid-until lookahead";
+	/** Integer indicating that FORTE does not send a valid-until time stamp */
+	protected static final int NOLOOKAHEAD = 0;
 	
 	/** Socket for communicating with FORTE */
 	private IForteSocket mSocket;
+	/** Flag indicating whether a response from FORTE is awaited before the next exchange */
+	private boolean mResponsePending = false;
+	/** Parameters the socket has been acquired with from the {@link ForteSessionRegistry} (null if the connection is not kept) */
+	private CommLayerParams mSessionParams;
+	/** Connection being established in the background (null once the socket has been obtained) */
+	private volatile ForteConnectionTask mConnectionTask;
+	/** Background reader of the frames sent by FORTE (null if the frames are received in {@link #receiveControlSignals(float[])}) */
+	private ForteReceivePrefetcher mPrefetcher;
+	/** Receive deadline in nanoseconds (0 for no deadline) */
+	private long mDeadlineNanos = 0;
+	/** Number of time steps in which the control signals have not been received before the deadline */
+	private int mNumMissedDeadlines = 0;
+	/** Number of late frames the background reader has skipped, kept after the reader has been stopped */
+	private long mNumLateFrames = 0;
+	/** Control signals of the response received last (null if none has been received) */
+	private float[] mHeldSignals;
+	/** FORTE time stamp until which the response received last is valid (see {@link #getForteTime(int)}) */
+	private long mValidUntil;
+	/** Simulation time of the exchange with FORTE the held control signals have been received in */
+	private int mExchangeTime;
+	/** Flag indicating whether the held control signals have been received in the pre-run */
+	private boolean mExchangePreRun;
+	/** Number of time steps in which the exchange with FORTE has been skipped */
+	private int mNumSkippedExchanges = 0;
 	
 	/**
 	 * Default constructor.
@@ -36,8 +86,45 @@ public abstract class AbstractSingleComponentController extends Abstract4diacPlu
 		super();
 	}
 
+	@Override
+	public void initialiseSimulation(Map<String, Object> parameters) throws PluginControllerException {
+		mNumMissedDeadlines = 0;
+		mNumLateFrames = 0;
+		mHeldSignals = null;
+		mNumSkippedExchanges = 0;
+		super.initialiseSimulation(parameters);
+	}
+
+	@Override
+	public void terminateSimulation(Map<String, Object> parameters) {
+		try {
+			awaitPendingResponse(); // Do not close the connection before FORTE has processed the last frame
+			if (mSessionParams != null && isSessionReusable()) {
+				// Keep the connection open for the next simulation
+				ForteSessionRegistry.release(mSessionParams, getSocket());
+				setSocket(null);
+			}
+		} catch (PluginControllerException e) {
+			// Ignore. The connection is closed anyway.
+		}
+		if (mPrefetcher != null) {
+			mNumLateFrames = mPrefetcher.getNumSuperseded(); // The reader is stopped when disconnecting
+		}
+		super.terminateSimulation(parameters);
+	}
+	
 	@Override
 	public void disconnect() {
+		mResponsePending = false;
+		mSessionParams = null;
+		cancelConnection();
+		if (mPrefetcher != null) {
+			mPrefetcher.stop(); // The reader is released by closing the socket
+			mPrefetcher = null;
+		}
+		if (getSocket() == null) {
+			return; // Released to the session registry
+		}
 		try {
 			getSocket().disconnect();
 		} catch (IOException e) {
@@ -56,25 +143,70 @@ public abstract class AbstractSingleComponentController extends Abstract4diacPlu
 	@Override
 	protected List<Property> initialisePropertyList() {
 		List<Property> properties = super.initialisePropertyList();
-		properties.add(new Property(WAITFORRSP_KEY, new String[] { "no" , "yes" }, DONTWAITFORRSP, "If yes is selected, the simulation is paused until a response (RSP) event is received from FORTE."));
+		properties.add(new Property(WAITFORRSP_KEY, new String[] { "no" , "yes", "overlapped" }, DONTWAITFORRSP, "If yes is selected, the simulation is paused until a response (RSP) event is received from FORTE. "
+				+ "If overlapped is selected, the response is awaited before the next exchange of this plugin, so that the exchanges of several plugins overlap."));
+		properties.add(new Property(KEEPSESSION_KEY, new String[] { "no" , "yes" }, DONTKEEPSESSION, "If yes is selected, the connection to FORTE is kept open at the end of the simulation "
+				+ "and reused by the next simulation with the same connection settings, e.g. for parameter sweeps."));
 		return properties;
 	}
 	
 	/**
-	 * Calls the CommLayerParams's makeIPSocket() method and sets the internal IForteSocket to communicate with FORTE
+	 * Starts establishing the connection to FORTE in the background, so that the connections of all plugin controllers are established in parallel.
+	 * The connection is awaited by {@link #awaitConnection()}, which must be called before the socket is used.
+	 * Each attempt to connect is bounded by {@link #CONNECTTIMEOUT}, unless a connect timeout is set in the parameters.
 	 * @param params used to create the IForteSocket.
 	 * @throws PluginControllerException
+	 * @see ForteConnectionTask
 	 */
 	protected void makeIPSocket(CommLayerParams params) throws PluginControllerException {
-		try {
-			setSocket(params.makeIPSocket());
-		} catch (IOException e) {
-			e.printStackTrace();
-			throw new PluginControllerException(getName() + ": Unable to connect to FORTE.", e);
+		if (isOverlappedResponse()) {
+			// All connections are served by a shared I/O thread, so that responses are received while other plugins are busy
+			params.setTransportType(ForteTransportType.SELECTOR);
+		}
+		if (params.getConnectTimeout() == 0) {
+			params.setConnectTimeout(CONNECTTIMEOUT);
+		}
+		cancelConnection(); // Left over by an aborted simulation
+		if (isKeepSession()) {
+			mSessionParams = params; // The connection of a previous simulation is reused if possible
+		}
+		ForteConnectionTask task = new ForteConnectionTask(getName(), params, isKeepSession());
+		mConnectionTask = task;
+		task.start();
+	}
+	
+	/**
+	 * Waits for the connection started by {@link #makeIPSocket(CommLayerParams)} to be established and sets the internal IForteSocket.
+	 * Returns immediately once the connection has been established.
+	 * @return the socket for communicating with FORTE
+	 * @throws PluginControllerException if the connection could not be established
+	 */
+	protected IForteSocket awaitConnection() throws PluginControllerException {
+		ForteConnectionTask task = mConnectionTask;
+		if (task != null) {
+			try {
+				setSocket(task.await());
+			} catch (IOException e) {
+				e.printStackTrace();
+				throw new PluginControllerException(getName() + ": Unable to connect to FORTE.", e);
+			}
+			mConnectionTask = null; // Publishes the socket to threads calling this method concurrently
 		}
+		return getSocket();
 	}
 	
-	/** @return the socket for communicating with FORTE */
+	/**
+	 * Cancels a connection that is being established in the background.
+	 */
+	private void cancelConnection() {
+		ForteConnectionTask task = mConnectionTask;
+		if (task != null) {
+			mConnectionTask = null;
+			task.cancel();
+		}
+	}
+	
+	/** @return the socket for communicating with FORTE (null until {@link #awaitConnection()} has returned) */
 	protected IForteSocket getSocket() {
 		return mSocket;
 	}
@@ -100,6 +232,167 @@ public abstract class AbstractSingleComponentController extends Abstract4diacPlu
 		}
 	}
 	
+	/**
+	 * Receives the response (RSP) from FORTE after sending data.
+	 * If the overlapped option is selected, the response is only marked as pending and received by {@link #awaitPendingResponse()}.
+	 * @throws PluginControllerException
+	 */
+	protected void recvResponse() throws PluginControllerException {
+		if (isOverlappedResponse()) {
+			mResponsePending = true;
+		} else {
+			recvData();
+		}
+	}
+	
+	/**
+	 * Receives a pending response from FORTE (see {@link #recvResponse()}). Must be called before the next frame is buffered.
+	 * @throws PluginControllerException
+	 */
+	protected void awaitPendingResponse() throws PluginControllerException {
+		if (mResponsePending) {
+			mResponsePending = false;
+			recvData();
+		}
+	}
+	
+	/** @return true if yes is selected for {@link #KEEPSESSION_KEY} */
+	protected boolean isKeepSession() {
+		PropertyValue keepSession = getProp(KEEPSESSION_KEY);
+		return keepSession != null && keepSession.getInt() != DONTKEEPSESSION;
+	}
+	
+	/**
+	 * @return true if the connection can be kept open for the next simulation.
+	 * Subclasses that read from the socket in the background return false.
+	 */
+	protected boolean isSessionReusable() {
+		return mPrefetcher == null; // The background reader is only released by closing the socket
+	}
+	
+	/**
+	 * Sets up how the control signals are received by {@link #receiveControlSignals(float[])}. Must be called in initialiseSimulation()
+	 * after the connection has been initialised. If a deadline is set in {@link #RECVDEADLINE_KEY} or prefetching is requested,
+	 * the frames are received and decoded by a background reader.
+	 * @param numControlSignals number of control signals decoded from each frame
+	 * @param prefetch true to receive the frames in the background even without a deadline
+	 */
+	protected void initialiseReceiving(int numControlSignals, boolean prefetch) {
+		PropertyValue deadline = getProp(RECVDEADLINE_KEY);
+		mDeadlineNanos = deadline != null && deadline.getInt() > NODEADLINE ? TimeUnit.MILLISECONDS.toNanos(deadline.getInt()) : 0;
+		mNumMissedDeadlines = 0;
+		if (mDeadlineNanos > 0 || prefetch) {
+			mPrefetcher = new ForteReceivePrefetcher(this, numControlSignals, mDeadlineNanos > 0);
+			mPrefetcher.start();
+		}
+	}
+	
+	/**
+	 * Receives the frame of the current time step from FORTE and decodes it with {@link #decodeControlSignals(float[])}.
+	 * If a receive deadline is set and the frame does not arrive in time, the control signals received last are held.
+	 * @param controlSignals the decoded control signals (Output parameter)
+	 * @return true if the frame of the current time step has been received, false if the deadline has been missed
+	 * @throws PluginControllerException
+	 */
+	protected boolean receiveControlSignals(float[] controlSignals) throws PluginControllerException {
+		if (mPrefetcher == null) {
+			recvData();
+			decodeControlSignals(controlSignals);
+		} else if (mDeadlineNanos > 0) {
+			if (!mPrefetcher.take(controlSignals, mDeadlineNanos)) {
+				mNumMissedDeadlines++;
+				return false;
+			}
+		} else {
+			mPrefetcher.take(controlSignals); // Decoded while Polysun was busy with other components
+		}
+		return true;
+	}
+	
+	/**
+	 * Decodes the control signals from the frame received last. Subclasses that receive control signals
+	 * with {@link #receiveControlSignals(float[])} must override this method. It may be called by the background reader.
+	 * @param controlSignals the decoded control signals (Output parameter)
+	 * @throws PluginControllerException
+	 */
+	protected void decodeControlSignals(float[] controlSignals) throws PluginControllerException {
+		throw new PluginControllerException(getName() + ": Receiving control signals is not supported.");
+	}
+	
+	/** @return the number of time steps in which the control signals have not been received before the deadline */
+	protected int getNumMissedDeadlines() {
+		return mNumMissedDeadlines;
+	}
+	
+	/** @return the number of frames that arrived after the deadline and have been skipped in favour of a newer frame */
+	protected long getNumLateFrames() {
+		return (mPrefetcher != null) ? mPrefetcher.getNumSuperseded() : mNumLateFrames;
+	}
+	
+	/** @return true if yes is selected for {@link #LOOKAHEAD_KEY} */
+	protected boolean isLookahead() {
+		PropertyValue lookahead = getProp(LOOKAHEAD_KEY);
+		return lookahead != null && lookahead.getInt() != NOLOOKAHEAD;
+	}
+	
+	/**
+	 * Reads the valid-until time stamp that FORTE sends as a DATE_AND_TIME after the control signals, if {@link #LOOKAHEAD_KEY} is enabled.
+	 * Until the simulation time reaches the time stamp, FORTE guarantees that its outputs do not change, so that
+	 * {@link #holdValidResponse(int, boolean, float[])} can reuse the control signals without an exchange.
+	 * A time stamp that is not later than the current simulation time disables the lookahead for the next time step.
+	 * @param controlSignals the control signals decoded from the same response
+	 * @throws PluginControllerException if FORTE did not send a DATE_AND_TIME
+	 */
+	protected void decodeValidUntil(float[] controlSignals) throws PluginControllerException {
+		if (!isLookahead()) {
+			return;
+		}
+		if (!getSocket().isDateAndTime()) {
+			throw new PluginControllerException(getName() + ": The FORTE CSIFB should send the valid-until time stamp as DATE_AND_TIME after the control signals.");
+		}
+		mValidUntil = getSocket().getDateAndTimeMillis();
+		if (mHeldSignals == null || mHeldSignals.length != controlSignals.length) {
+			mHeldSignals = new float[controlSignals.length];
+		}
+		System.arraycopy(controlSignals, 0, mHeldSignals, 0, controlSignals.length);
+	}
+	
+	/**
+	 * Sets the control signals of the response received last if it is still valid at the current simulation time.
+	 * In this case, neither the sensors are sent to FORTE nor a response is received.
+	 * The response is discarded if the simulation time has been reset since it was received, i.e. when the main simulation
+	 * starts after the pre-run or Polysun restarts the simulation.
+	 * @param simulationTime number of seconds since the beginning of the simulation
+	 * @param preRun true if the time step belongs to the pre-run
+	 * @param controlSignals the held control signals (Output parameter)
+	 * @return true if the exchange with FORTE can be skipped in this time step
+	 * @see #decodeValidUntil(float[])
+	 */
+	protected boolean holdValidResponse(int simulationTime, boolean preRun, float[] controlSignals) {
+		if (mHeldSignals != null && (preRun != mExchangePreRun || simulationTime < mExchangeTime)) {
+			mHeldSignals = null;
+		}
+		if (mHeldSignals == null || getForteTime(simulationTime) >= mValidUntil) {
+			mExchangeTime = simulationTime; // FORTE is asked for a new response
+			mExchangePreRun = preRun;
+			return false;
+		}
+		System.arraycopy(mHeldSignals, 0, controlSignals, 0, Math.min(mHeldSignals.length, controlSignals.length));
+		mNumSkippedExchanges++;
+		return true;
+	}
+	
+	/** @return the number of time steps in which the exchange with FORTE has been skipped by {@link #holdValidResponse(int, boolean, float[])} */
+	protected int getNumSkippedExchanges() {
+		return mNumSkippedExchanges;
+	}
+	
+	/** @return true if the overlapped option is selected for {@link #WAITFORRSP_KEY} */
+	protected boolean isOverlappedResponse() {
+		PropertyValue waitForRsp = getProp(WAITFORRSP_KEY);
+		return waitForRsp != null && waitForRsp.getInt() == OVERLAPPEDRSP;
+	}
+	
 	/**
 	 * Attempts to call the socket's sendData() method.
 	 * @throws PluginControllerException
@@ -41,10 +41,15 @@ public class BatterySensorController extends AbstractSensorController {
 
 	@Override
 	public PluginControllerConfiguration getConfiguration(Map<String, Object> parameters) throws PluginControllerException {
+		return new PluginControllerConfiguration(initialisePropertyList(), getFixedSensors(), null, null, 0, 0, 0, getPluginIconResource(), null);
+	}
+	
+	@Override
+	protected List<Sensor> getFixedSensors() {
 		List<Sensor> sensors = new ArrayList<>();
 		sensors.add(new Sensor(SENSOR1, "", true, false, "The battery's SoC.")); // Sensor 1
 		sensors.add(new Sensor(SENSOR2, "W", true, false, "The power used to charge (positive) / discharge (negative) the battery with.")); // Sensor 2
-		return new PluginControllerConfiguration(initialisePropertyList(), sensors, null, null, 0, 0, 0, getPluginIconResource(), null);
+		return sensors;
 	}
 	
 	@Override
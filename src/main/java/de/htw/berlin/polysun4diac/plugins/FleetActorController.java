@@ -0,0 +1,209 @@
+package de.htw.berlin.polysun4diac.plugins;
+
+import static de.htw.berlin.polysun4diac.CommonFunctionsAndConstants.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.velasolaris.plugin.controller.spi.PluginControllerConfiguration;
+import com.velasolaris.plugin.controller.spi.PluginControllerException;
+import com.velasolaris.plugin.controller.spi.PluginControllerConfiguration.ControlSignal;
+import com.velasolaris.plugin.controller.spi.PluginControllerConfiguration.Log;
+import com.velasolaris.plugin.controller.spi.PluginControllerConfiguration.Property;
+
+import de.htw.berlin.polysun4diac.exception.UnsupportedForteDataTypeException;
+import de.htw.berlin.polysun4diac.forte.comm.CommLayerParams;
+import de.htw.berlin.polysun4diac.forte.comm.ForteMultiClientServer;
+import de.htw.berlin.polysun4diac.forte.comm.ForteServiceType;
+import de.htw.berlin.polysun4diac.forte.comm.IForteSocket;
+import de.htw.berlin.polysun4diac.forte.datatypes.ForteDataType;
+
+/**
+ * Plugin controller for receiving data from many IEC 61499 applications running on separate 4diac-RTE (FORTE) instances,
+ * e.g. one per simulated household of a fleet.
+ * </p>
+ * The plugin acts as a server that all FORTE CLIENT function blocks connect to on the same port (see {@link ForteMultiClientServer}).
+ * In each time step, one frame of REAL values is received from every connected runtime and the values are aggregated
+ * (sum, mean, minimum or maximum) into the control signals. Runtimes can connect during the simulation and are dropped if they disconnect.
+ * @see de.htw.berlin.polysun4diac.forte.comm.ForteMultiClientServer
+ * @see com.velasolaris.plugin.controller.spi.IPluginController
+ */
+public class FleetActorController extends Abstract4diacPluginController {
+
+	/** Key for the number of FORTE runtimes to wait for before the first time step */
+	protected static final String NUMCLIENTS_KEY = "Number of FORTE runtimes";
+	/** Key for the aggregation of the values received from the FORTE runtimes */
+	protected static final String AGGREGATION_KEY = "Aggregation";
+	/** Default number of FORTE runtimes */
+	private static final int DEFNUMCLIENTS = 1;
+	/** Maximum number of FORTE runtimes to wait for */
+	private static final int MAXNUMCLIENTS = 10000;
+	/** Integer indicating to sum up the received values */
+	protected static final int SUM = 0;
+	/** Integer indicating to average the received values */
+	protected static final int MEAN = 1;
+	/** Integer indicating to use the minimum of the received values */
+	protected static final int MIN = 2;
+	/** Integer indicating to use the maximum of the received values */
+	protected static final int MAX = 3;
+	/** Name of the log of the number of connected runtimes */
+	private static final String NUMCLIENTS_LOG = "Connected FORTE runtimes";
+	/** Maximum time to wait for the FORTE runtimes before the first time step in milliseconds */
+	private static final long ACCEPTTIMEOUT = 30000;
+
+	/** Server accepting the FORTE runtimes (null if not connected) */
+	private ForteMultiClientServer mServer;
+	/** Number of control signals received from each runtime */
+	private int mNumSignals;
+	/** Flag indicating whether the runtimes have been awaited */
+	private boolean mClientsAwaited = false;
+
+	public FleetActorController() throws PluginControllerException {
+		super();
+		setSendTimestamp(false); // Actor plugins only receive data from FORTE.
+	}
+
+	@Override
+	public String getName() {
+		return "Fleet Actor";
+	}
+
+	@Override
+	public String getDescription() {
+		return "Actor for receiving set values from many 4diac-RTE (FORTE) instances that connect to the same port, e.g. one per household. "
+				+ "The values of all instances are aggregated. The digital signals received must be of type REAL.";
+	}
+
+	@Override
+	public PluginControllerConfiguration getConfiguration(Map<String, Object> parameters)
+			throws PluginControllerException {
+		List<Log> logs = new ArrayList<>();
+		logs.add(new Log(NUMCLIENTS_LOG));
+		return new PluginControllerConfiguration(initialisePropertyList(), null, null, logs, 0, 0, MAX_NUM_GENERIC_SIGNALS, getPluginIconResource(), null);
+	}
+
+	@Override
+	protected List<Property> initialisePropertyList() {
+		List<Property> properties = super.initialisePropertyList();
+		properties.add(new Property(NUMCLIENTS_KEY, DEFNUMCLIENTS, 1, MAXNUMCLIENTS, "The number of FORTE runtimes to wait for before the simulation starts. "
+				+ "Further runtimes can connect during the simulation."));
+		properties.add(new Property(AGGREGATION_KEY, new String[] { "sum" , "mean", "minimum", "maximum" }, SUM, "How the values received from the FORTE runtimes are combined into each control signal."));
+		return properties;
+	}
+
+	@Override
+	public int[] control(int simulationTime, boolean status, float[] sensors, float[] controlSignals, float[] logValues,
+			boolean preRun, Map<String, Object> parameters) throws PluginControllerException {
+		if (!status) {
+			return null;
+		}
+		try {
+			if (!mClientsAwaited) {
+				mClientsAwaited = true;
+				if (!mServer.awaitClients(getProp(NUMCLIENTS_KEY).getInt(), ACCEPTTIMEOUT)) {
+					throw new PluginControllerException(getName() + ": Only " + mServer.getNumClients() + " of " + getProp(NUMCLIENTS_KEY).getInt()
+							+ " FORTE runtimes connected.");
+				}
+			} else {
+				mServer.acceptClients(0); // Runtimes that joined during the simulation
+			}
+			mServer.recvAll();
+		} catch (UnsupportedForteDataTypeException e) {
+			e.printStackTrace();
+			throw new PluginControllerException(getName() + ": Unsupported FORTE data type.", e);
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new PluginControllerException(getName() + ": Error receiving data from the FORTE runtimes.", e);
+		}
+		aggregate(mServer.getClients(), controlSignals);
+		if (logValues.length > 0) {
+			logValues[0] = mServer.getNumClients();
+		}
+		return null;
+	}
+
+	/**
+	 * Decodes the frames received from the FORTE runtimes and aggregates them into the control signals.
+	 * If no runtime is connected, the control signals are set to zero.
+	 * @param clients sockets of the runtimes a frame has been received from
+	 * @param controlSignals The control signals set by this plugin controller (Output parameter).
+	 * @throws PluginControllerException if a runtime sent other data than REAL
+	 */
+	private void aggregate(List<IForteSocket> clients, float[] controlSignals) throws PluginControllerException {
+		int aggregation = getProp(AGGREGATION_KEY).getInt();
+		int numSignals = Math.min(mNumSignals, controlSignals.length);
+		for (int i = 0; i < numSignals; i++) {
+			controlSignals[i] = ZERO_INIT;
+		}
+		boolean first = true;
+		for (IForteSocket client : clients) {
+			for (int i = 0; i < numSignals; i++) {
+				if (!client.isFloat()) {
+					throw new PluginControllerException(getName() + ": The FORTE runtimes should only send REAL data.");
+				}
+				float value = client.getFloat();
+				if (first) {
+					controlSignals[i] = value;
+				} else if (aggregation == MIN) {
+					controlSignals[i] = Math.min(controlSignals[i], value);
+				} else if (aggregation == MAX) {
+					controlSignals[i] = Math.max(controlSignals[i], value);
+				} else {
+					controlSignals[i] += value;
+				}
+			}
+			first = false;
+		}
+		if (aggregation == MEAN && !clients.isEmpty()) {
+			for (int i = 0; i < numSignals; i++) {
+				controlSignals[i] /= clients.size();
+			}
+		}
+	}
+
+	@Override
+	protected void initialiseConnection(String address, int port) throws PluginControllerException {
+		CommLayerParams params = new CommLayerParams(address, port);
+		params.setServiceType(ForteServiceType.SERVER);
+		List<ControlSignal> controlSignals = getControlSignals();
+		mNumSignals = ZERO_INIT;
+		for (ControlSignal c : controlSignals) {
+			if (c.isUsed()) {
+				params.addOutput(ForteDataType.REAL);
+				mNumSignals++;
+			}
+		}
+		if (mNumSignals == ZERO_INIT) {
+			throw new PluginControllerException(getName() + ": At least one control signal must be used.");
+		}
+		mServer = new ForteMultiClientServer(params);
+		mClientsAwaited = false;
+		try {
+			mServer.open(); // The runtimes are accepted in the first time step, so that other plugins can connect in the meantime
+		} catch (IOException e) {
+			mServer = null;
+			e.printStackTrace();
+			throw new PluginControllerException(getName() + ": Unable to open port " + port + " for the FORTE runtimes.", e);
+		}
+	}
+
+	@Override
+	protected void disconnect() {
+		if (mServer == null) {
+			return;
+		}
+		try {
+			mServer.close();
+		} catch (IOException e) {
+			// Ignore. Probably already disconnected.
+		}
+		mServer = null;
+	}
+
+	@Override
+	protected boolean isConnected() {
+		return mServer != null;
+	}
+}
@@ -28,6 +28,7 @@ public class ForteActorSensorPlugin extends AbstractControllerPlugin {
 		controllers.add(GenericActorController.class);
 		controllers.add(GenericSensorController.class);
 		controllers.add(GenericForteController.class);
+		controllers.add(FleetActorController.class);
 		return controllers;
 	}
 
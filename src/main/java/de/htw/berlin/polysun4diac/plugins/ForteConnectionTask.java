@@ -0,0 +1,165 @@
+package de.htw.berlin.polysun4diac.plugins;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+
+import de.htw.berlin.polysun4diac.forte.comm.CommLayerParams;
+import de.htw.berlin.polysun4diac.forte.comm.ForteSessionRegistry;
+import de.htw.berlin.polysun4diac.forte.comm.IForteSocket;
+
+/**
+ * Background task that establishes the connection of a plugin controller to FORTE.
+ * </p>
+ * Polysun initialises the plugin controllers one after another. If each of them connected in initialiseSimulation(),
+ * the start of the simulation would take the sum of all connect and accept latencies, and a plugin set up as a server
+ * would block the other plugins until FORTE connects. Instead, each controller starts a task on its own daemon thread
+ * and only awaits the connection when the socket is first needed, so that all connections are established in parallel.
+ * </p>
+ * Failed attempts (e.g. FORTE is not running yet or did not connect within the connect timeout of the parameters)
+ * are retried with an exponential backoff, up to {@link #MAXATTEMPTS} attempts.
+ * @see AbstractSingleComponentController#awaitConnection()
+ */
+final class ForteConnectionTask implements Runnable {
+
+	/** Prefix of the name of the connecting thread */
+	private static final String THREADNAME = "FORTE connect ";
+	/** Maximum number of connection attempts */
+	static final int MAXATTEMPTS = 3;
+	/** Delay before the second attempt in milliseconds. The delay doubles with each further attempt. */
+	private static final long INITIALBACKOFF = 200;
+	/** Maximum delay between two attempts in milliseconds */
+	private static final long MAXBACKOFF = 2000;
+
+	/** Name of the plugin controller */
+	private final String mName;
+	/** Parameters of the connection */
+	private final CommLayerParams mParams;
+	/** Flag indicating whether the socket is acquired from the {@link ForteSessionRegistry} */
+	private final boolean mKeepSession;
+	/** Released when the task has completed or has been cancelled */
+	private final CountDownLatch mDone = new CountDownLatch(1);
+	/** Connecting thread */
+	private Thread mThread;
+	/** The connected socket (null until connected) */
+	private IForteSocket mSocket;
+	/** Error of the last attempt (null if none) */
+	private IOException mError;
+	/** Flag indicating whether the task has been cancelled */
+	private boolean mCancelled = false;
+
+	/**
+	 * Constructor.
+	 * @param name name of the plugin controller (used for the thread name and error messages)
+	 * @param params parameters of the connection
+	 * @param keepSession true to reuse a connection kept open by a previous simulation (see {@link ForteSessionRegistry#acquire(CommLayerParams)})
+	 */
+	ForteConnectionTask(String name, CommLayerParams params, boolean keepSession) {
+		mName = name;
+		mParams = params;
+		mKeepSession = keepSession;
+	}
+
+	/**
+	 * Starts connecting on a daemon thread.
+	 */
+	synchronized void start() {
+		mThread = new Thread(this, THREADNAME + mName);
+		mThread.setDaemon(true); // Do not keep Polysun alive if the simulation is aborted
+		mThread.start();
+	}
+
+	/**
+	 * Waits for the connection to be established.
+	 * @return the connected socket
+	 * @throws InterruptedIOException if the waiting thread has been interrupted
+	 * @throws IOException if all attempts have failed or the task has been cancelled
+	 */
+	IForteSocket await() throws IOException {
+		try {
+			mDone.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(mName + ": Interrupted while connecting to FORTE.");
+		}
+		synchronized (this) {
+			if (mCancelled) {
+				throw new IOException(mName + ": Connecting to FORTE has been cancelled.");
+			}
+			if (mSocket == null) {
+				throw new IOException(mName + ": Unable to connect to FORTE after " + MAXATTEMPTS + " attempts.", mError);
+			}
+			return mSocket;
+		}
+	}
+
+	/**
+	 * Cancels the task and releases threads waiting in {@link #await()}. A socket that has already been connected is closed.
+	 * An attempt in progress is interrupted if its channel is interruptible, or otherwise closed as soon as it completes.
+	 */
+	void cancel() {
+		IForteSocket socket;
+		synchronized (this) {
+			if (mCancelled) {
+				return;
+			}
+			mCancelled = true;
+			socket = mSocket;
+			mSocket = null;
+			if (mThread != null) {
+				mThread.interrupt(); // Ends the backoff and aborts java.nio connects
+			}
+		}
+		mDone.countDown();
+		close(socket);
+	}
+
+	@Override
+	public void run() {
+		long backoff = INITIALBACKOFF;
+		for (int attempt = 1; attempt <= MAXATTEMPTS; attempt++) {
+			try {
+				IForteSocket socket = mKeepSession ? ForteSessionRegistry.acquire(mParams) : mParams.makeIPSocket();
+				synchronized (this) {
+					if (!mCancelled) {
+						mSocket = socket;
+						socket = null;
+					}
+				}
+				close(socket); // Connected after cancelling
+				break;
+			} catch (IOException e) {
+				synchronized (this) {
+					mError = e;
+					if (mCancelled) {
+						break;
+					}
+				}
+			}
+			if (attempt < MAXATTEMPTS) {
+				try {
+					Thread.sleep(backoff);
+				} catch (InterruptedException e) {
+					break; // Cancelled
+				}
+				backoff = Math.min(2 * backoff, MAXBACKOFF);
+			}
+		}
+		mDone.countDown();
+	}
+
+	/**
+	 * Closes a socket, ignoring errors.
+	 * @param socket the socket (may be null)
+	 */
+	private static void close(IForteSocket socket) {
+		if (socket == null) {
+			return;
+		}
+		try {
+			socket.disconnect();
+		} catch (IOException e) {
+			// Ignore. Probably already disconnected.
+		}
+	}
+}
@@ -0,0 +1,238 @@
+package de.htw.berlin.polysun4diac.plugins;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import com.velasolaris.plugin.controller.spi.PluginControllerException;
+
+import de.htw.berlin.polysun4diac.exception.UnsupportedForteDataTypeException;
+import de.htw.berlin.polysun4diac.forte.comm.IForteSocket;
+
+/**
+ * Background reader that receives the frames sent by FORTE to a plugin controller ahead of time.
+ * </p>
+ * The reader thread waits for the next frame, decodes it into control signals and hands them over to the controller through a
+ * single-slot, lock-free handoff. It then immediately waits for the following frame, so that the network wait overlaps with the
+ * computation of the other Polysun components. The reader never runs more than one frame ahead: It does not receive the next
+ * frame before the controller has taken the previous one.
+ * </p>
+ * With a receive deadline ({@link #take(float[], long)}), the reader does not wait for the controller. Each frame replaces
+ * the one in the slot, so a frame that arrives after the deadline of its time step is superseded by the next one instead of
+ * delaying all following time steps.
+ * </p>
+ * A virtual thread is used if the JVM supports it (Java 21 or later), a daemon thread otherwise.
+ * @see AbstractSingleComponentController#receiveControlSignals(float[])
+ */
+final class ForteReceivePrefetcher implements Runnable {
+
+	/** Prefix of the name of the reader thread */
+	private static final String THREADNAME = "FORTE prefetch ";
+
+	/** Controller the frames are decoded for */
+	private final AbstractSingleComponentController mController;
+	/** Flag indicating whether each frame replaces the one in the slot instead of waiting for the controller to take it */
+	private final boolean mLatestOnly;
+	/** Number of frames decoded by the reader */
+	private final AtomicLong mNumDecoded = new AtomicLong();
+	/** Number of frames the controller has waited for */
+	private long mNumExpected = 0;
+	/** Number of frames that have been replaced before the controller took them */
+	private final AtomicLong mNumSuperseded = new AtomicLong();
+	/** Control signals of the frame taken last (held if a deadline is missed) */
+	private final float[] mLast;
+	/** Socket the frames are received from (obtained by the reader thread once the connection has been established) */
+	private IForteSocket mSocket;
+	/** Control signals decoded by the reader. Signals that are not sent by FORTE keep the value of the previous frame. */
+	private final float[] mSignals;
+	/** Single-slot handoff of the decoded control signals (null if no frame is ready) */
+	private final AtomicReference<float[]> mSlot = new AtomicReference<float[]>();
+	/** Reader thread */
+	private volatile Thread mReader;
+	/** Thread waiting in {@link #take()} (null if none) */
+	private volatile Thread mConsumer;
+	/** Error that stopped the reader (null if none) */
+	private volatile PluginControllerException mError;
+	/** Flag indicating whether the reader has been stopped */
+	private volatile boolean mStopped = false;
+
+	/**
+	 * Constructor.
+	 * @param controller plugin controller the frames are decoded for
+	 * @param numControlSignals number of control signals of the controller
+	 * @param latestOnly true if each frame replaces the one in the slot (required for {@link #take(float[], long)})
+	 */
+	ForteReceivePrefetcher(AbstractSingleComponentController controller, int numControlSignals, boolean latestOnly) {
+		mController = controller;
+		mSignals = new float[numControlSignals];
+		mLast = new float[numControlSignals];
+		mLatestOnly = latestOnly;
+	}
+
+	/**
+	 * Starts the reader thread.
+	 */
+	void start() {
+		Thread reader = startVirtualThread(this);
+		if (reader == null) {
+			reader = new Thread(this, THREADNAME + mController.getName());
+			reader.setDaemon(true); // Do not keep Polysun alive if the simulation is aborted
+			reader.start();
+		}
+		mReader = reader;
+		LockSupport.unpark(reader); // The reader may have parked before mReader was set
+	}
+
+	/**
+	 * Stops the reader thread. A reader that is waiting for data is released when the socket is closed.
+	 */
+	void stop() {
+		mStopped = true;
+		LockSupport.unpark(mReader);
+		LockSupport.unpark(mConsumer);
+	}
+
+	/**
+	 * Takes the next frame decoded by the reader. Blocks until a frame is ready.
+	 * @param controlSignals the control signals set by the plugin controller (Output parameter)
+	 * @throws PluginControllerException if the reader failed to receive or decode a frame
+	 */
+	void take(float[] controlSignals) throws PluginControllerException {
+		float[] frame;
+		while ((frame = mSlot.getAndSet(null)) == null) {
+			if (mError != null) {
+				throw mError;
+			}
+			if (mStopped) {
+				throw new PluginControllerException(mController.getName() + ": Receiving data from FORTE has been stopped.");
+			}
+			mConsumer = Thread.currentThread();
+			if (mSlot.get() == null && mError == null) {
+				LockSupport.park(this);
+			}
+			mConsumer = null;
+		}
+		LockSupport.unpark(mReader); // The slot is free for the next frame
+		System.arraycopy(frame, 0, controlSignals, 0, Math.min(frame.length, controlSignals.length));
+	}
+
+	/**
+	 * Takes the frame of the current time step, waiting at most until the deadline.
+	 * Frames that arrived late for a previous time step are skipped. If the frame of the current time step has not been decoded
+	 * in time, the newest frame decoded so far is taken instead, or the control signals of the last frame are held if there is none.
+	 * @param controlSignals the control signals set by the plugin controller (Output parameter)
+	 * @param timeoutNanos maximum time to wait for the frame in nanoseconds
+	 * @return true if the frame of the current time step has been taken, false if the deadline has been missed
+	 * @throws PluginControllerException if the reader failed to receive or decode a frame
+	 */
+	boolean take(float[] controlSignals, long timeoutNanos) throws PluginControllerException {
+		long expected = ++mNumExpected;
+		long deadline = System.nanoTime() + timeoutNanos;
+		boolean inTime;
+		while (!(inTime = mNumDecoded.get() >= expected && mSlot.get() != null)) {
+			if (mError != null) {
+				throw mError;
+			}
+			if (mStopped) {
+				throw new PluginControllerException(mController.getName() + ": Receiving data from FORTE has been stopped.");
+			}
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				break;
+			}
+			mConsumer = Thread.currentThread();
+			if ((mNumDecoded.get() < expected || mSlot.get() == null) && mError == null) {
+				LockSupport.parkNanos(this, remaining);
+			}
+			mConsumer = null;
+		}
+		float[] frame = mSlot.getAndSet(null); // Newest frame, even if it is late
+		if (frame != null) {
+			System.arraycopy(frame, 0, mLast, 0, mLast.length);
+		}
+		System.arraycopy(mLast, 0, controlSignals, 0, Math.min(mLast.length, controlSignals.length));
+		return inTime;
+	}
+
+	/**
+	 * @return the number of frames that were replaced by a newer frame before the controller took them
+	 */
+	long getNumSuperseded() {
+		return mNumSuperseded.get();
+	}
+
+	@Override
+	public void run() {
+		try {
+			mSocket = mController.awaitConnection(); // Established in the background
+		} catch (PluginControllerException e) {
+			fail(e);
+			return;
+		}
+		while (!mStopped) {
+			try {
+				mSocket.recvData(); // Wait for input from FORTE
+				mController.decodeControlSignals(mSignals);
+			} catch (UnsupportedForteDataTypeException e) {
+				fail(new PluginControllerException(mController.getName() + ": Unsupported FORTE data type.", e));
+				return;
+			} catch (IOException e) {
+				fail(new PluginControllerException(mController.getName() + ": Error receiving data from FORTE CSIFB.", e));
+				return;
+			} catch (PluginControllerException e) {
+				fail(e);
+				return;
+			}
+			float[] frame = mSignals.clone();
+			if (mLatestOnly) {
+				if (mSlot.getAndSet(frame) != null) {
+					mNumSuperseded.incrementAndGet();
+				}
+				mNumDecoded.incrementAndGet();
+				LockSupport.unpark(mConsumer);
+				continue;
+			}
+			while (!mSlot.compareAndSet(null, frame)) {
+				if (mStopped) {
+					return;
+				}
+				LockSupport.park(this); // Wait for the controller to take the previous frame
+			}
+			LockSupport.unpark(mConsumer);
+		}
+	}
+
+	/**
+	 * Stores the error that stopped the reader and releases a waiting controller.
+	 * Errors caused by closing the socket when stopping the reader are ignored.
+	 * @param e the error
+	 */
+	private void fail(PluginControllerException e) {
+		if (!mStopped) {
+			e.printStackTrace();
+			mError = e;
+		}
+		LockSupport.unpark(mConsumer);
+	}
+
+	/**
+	 * Starts a virtual thread via reflection, since the plugin is compiled for Java versions without virtual threads.
+	 * @param task task to run
+	 * @return the started thread, or null if virtual threads are not supported by the JVM
+	 */
+	private static Thread startVirtualThread(Runnable task) {
+		Method start;
+		try {
+			start = Thread.class.getMethod("startVirtualThread", Runnable.class);
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+		try {
+			return (Thread) start.invoke(null, task);
+		} catch (ReflectiveOperationException e) {
+			return null; // Virtual threads are disabled (e.g. preview feature in Java 19 and 20)
+		}
+	}
+}
@@ -31,6 +31,10 @@ public class GenericForteController extends AbstractSingleComponentController {
 	private static final int SUBSCRIBER_IDX = 2;
 	/** Index of the PUBLISHER service type in the {@link #SERVICETYPE_KEY} property. */
 	private static final int PUBLISHER_IDX = 3;
+	/** Key for the option to decode only the newest datagram received by a SUBSCRIBER */
+	private static final String CONFLATE_KEY = "Receive latest value only";
+	/** Integer indicating to decode every datagram received by a SUBSCRIBER */
+	private static final int DONTCONFLATE = 0;
 	
 	public GenericForteController() throws PluginControllerException {
 		super();
@@ -58,6 +62,11 @@ public class GenericForteController extends AbstractSingleComponentController {
 	protected List<Property> initialisePropertyList() {
 		List<Property> properties = super.initialisePropertyList();
 		properties.add(new Property(SERVICETYPE_KEY, new String[] { "CLIENT" , "SERVER", "SUBSCRIBER", "PUBLISHER" }, CLIENT_IDX, SERVICETYPE_TOOLTIP));
+		properties.add(new Property(CONFLATE_KEY, new String[] { "no" , "yes" }, DONTCONFLATE, "If yes is selected, a SUBSCRIBER skips outdated values "
+				+ "if FORTE publishes faster than the simulation proceeds."));
+		properties.add(new Property(LOOKAHEAD_KEY, new String[] { "no" , "yes" }, NOLOOKAHEAD, "If yes is selected, FORTE sends a DATE_AND_TIME after the control signals "
+				+ "until which its outputs do not change, e.g. the end of a tariff period. Until the simulation time reaches it, the sensors are not sent "
+				+ "and the control signals received last are reused. Requires the time stamp."));
 		return properties;
 	}
 	
@@ -96,6 +105,12 @@ public class GenericForteController extends AbstractSingleComponentController {
 				|| getProp(SERVICETYPE_KEY).getInt() == PUBLISHER_IDX) {
 			propertiesToHide.add(WAITFORRSP_KEY);
 		}
+		if (getProp(SERVICETYPE_KEY).getInt() != SUBSCRIBER_IDX) {
+			propertiesToHide.add(CONFLATE_KEY);
+		}
+		if (getProp(SERVICETYPE_KEY).getInt() == SUBSCRIBER_IDX || getProp(SERVICETYPE_KEY).getInt() == PUBLISHER_IDX) {
+			propertiesToHide.add(LOOKAHEAD_KEY);
+		}
 		return propertiesToHide;
 	}
 	
@@ -106,13 +121,17 @@ public class GenericForteController extends AbstractSingleComponentController {
 			if (!status) {
 				return null;
 			}
+			awaitConnection(); // Established in the background since initialiseSimulation
+			awaitPendingResponse();
+			if (controlSignals.length > 0 && holdValidResponse(simulationTime, preRun, controlSignals)) {
+				return null; // The outputs of FORTE cannot change before the valid-until time stamp
+			}
 			// Buffer inputs
 			for (float s : sensors) {
 				getSocket().put(s);
 			}
 			if (sendTimestamp()) {
-				getForteTimestamp().setSimulationTimeS(simulationTime);
-				getSocket().put(getForteTimestamp());
+				getSocket().putDateAndTimeMillis(getForteTime(simulationTime));
 			}
 			sendData();
 			if (controlSignals.length > 0) {
@@ -123,8 +142,9 @@ public class GenericForteController extends AbstractSingleComponentController {
 					}
 					controlSignals[i] = getSocket().getFloat();
 				}
+				decodeValidUntil(controlSignals);
 			} else if (getProp(WAITFORRSP_KEY).getInt() != DONTWAITFORRSP) {
-				recvData();
+				recvResponse();
 			}
 			return null;
 		} catch (PluginControllerException e) {
@@ -144,6 +164,8 @@ public class GenericForteController extends AbstractSingleComponentController {
 			break;
 		case SUBSCRIBER_IDX:
 			params.setServiceType(ForteServiceType.SUBSCRIBER);
+			PropertyValue conflate = getProp(CONFLATE_KEY);
+			params.setConflating(conflate != null && conflate.getInt() != DONTCONFLATE);
 			break;
 		case PUBLISHER_IDX:
 			params.setServiceType(ForteServiceType.PUBLISHER);
@@ -167,6 +189,12 @@ public class GenericForteController extends AbstractSingleComponentController {
 			params.addInput(ForteDataType.DATE_AND_TIME);
 			numUsed++;
 		}
+		if (isLookahead()) {
+			if (!sendTimestamp() || !isAnyControlSignalUsed()) {
+				throw new PluginControllerException(getName() + ": The valid-until lookahead requires the time stamp and at least one control signal.");
+			}
+			params.addOutput(ForteDataType.DATE_AND_TIME); // Valid-until time stamp
+		}
 		if (numUsed == ZERO_INIT) {
 			throw new PluginControllerException(getName() + ": At least one sensor or control signal must be used"
 					+ " or sending the time stamp must be enabled if none is used.");
@@ -40,9 +40,14 @@ public class LoadSensorController extends AbstractSensorController {
 
 	@Override
 	public PluginControllerConfiguration getConfiguration(Map<String, Object> parameters) {
+		return new PluginControllerConfiguration(initialisePropertyList(), getFixedSensors(), null, null, 0, 0, 0, getPluginIconResource(), null);
+	}
+	
+	@Override
+	protected List<Sensor> getFixedSensors() {
 		List<Sensor> sensors = new ArrayList<>();
 		sensors.add(new Sensor(SENSOR1, "W", true, true, "The electricity consumption of profiles and/or thermal components."));
-		return new PluginControllerConfiguration(initialisePropertyList(), sensors, null, null, 0, 0, 0, getPluginIconResource(), null);
+		return sensors;
 	}
 	
 	@Override
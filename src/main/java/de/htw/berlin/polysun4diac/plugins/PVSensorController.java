@@ -41,10 +41,15 @@ public class PVSensorController extends AbstractSensorController {
 
 	@Override
 	public PluginControllerConfiguration getConfiguration(Map<String, Object> parameters) {
+		return new PluginControllerConfiguration(initialisePropertyList(), getFixedSensors(), null, null, 0, 0, 0, getPluginIconResource(), null);
+	}
+	
+	@Override
+	protected List<Sensor> getFixedSensors() {
 		List<Sensor> sensors = new ArrayList<>();
 		sensors.add(new Sensor(SENSOR1, "W", true, false, "The AC power output of the PV field."));
 		sensors.add(new Sensor(SENSOR2, "", true, false, "The feed-in limit as set by the internal grid."));
-		return new PluginControllerConfiguration(initialisePropertyList(), sensors, null, null, 0, 0, 0, getPluginIconResource(), null);
+		return sensors;
 	}
 	
 	@Override
@@ -123,6 +123,8 @@ public class SGReadyHeatPumpController extends AbstractSingleComponentController
 	private boolean mForcedNormalOperation = false;
 	/** Flag indicating that normal operation has been forced even though control mode 1 was set. */
 	private boolean mForcedOnOperation = false;
+	/** SG Ready relay signals received from FORTE (1 for true, 0 for false). Held if the receive deadline is missed. */
+	private float[] mRelaySignals = new float[NUM_RELAYS];
 
 	public SGReadyHeatPumpController() throws PluginControllerException {
 		super();
@@ -165,6 +167,7 @@ public class SGReadyHeatPumpController extends AbstractSingleComponentController
 		properties.add(new Property(TEMP_THRESHOLD4_KEY, DEF_TEMP_THRESHOLDS[1], TEMP_THRESHOLD_LIMITS[0], TEMP_THRESHOLD_LIMITS[1], "C", "The temperature threshold at which the heat pump switches from SG Ready mode 4 to 2."));
 		properties.add(new Property(HEATING_ELEMENT4_KEY, new String[] { "no" , "yes" }, HAS_HEATING_ELEMENT, "Does the SG Ready control mode 4 use a heating element?"));
 		properties.add(new Property(TEMP_HYSTERESIS_KEY, DEF_TEMP_HYSTERESIS, TEMP_THRESHOLD_LIMITS[0], TEMP_THRESHOLD_LIMITS[1], "K", "Temperature hysteresis in K for automatic SG Ready control modes 3 and 4. If the temperature falls below the threshold minus the hysteresis, the normal control mode is no longer forced."));
+		properties.add(new Property(RECVDEADLINE_KEY, NODEADLINE, NODEADLINE, MAXDEADLINE, RECVDEADLINE_TOOLTIP));
 		return properties;
 	}
 
@@ -196,6 +199,8 @@ public class SGReadyHeatPumpController extends AbstractSingleComponentController
 		}
 		setTempThresholds(getProperty(TEMP_THRESHOLD3_KEY).getFloat(), getProperty(TEMP_THRESHOLD4_KEY).getFloat());
 		setTempHysteresis(getProperty(TEMP_HYSTERESIS_KEY).getFloat());
+		mRelaySignals = new float[NUM_RELAYS];
+		initialiseReceiving(NUM_RELAYS, false);
 	}
 
 	@Override
@@ -216,15 +221,11 @@ public class SGReadyHeatPumpController extends AbstractSingleComponentController
 			return null;
 		}
 		try {
-			recvData();
-			// Read control signals from buffer
-			boolean[] sgReadySignals = new boolean[2];
+			awaitConnection(); // Established in the background since initialiseSimulation
+			receiveControlSignals(mRelaySignals); // Holds the previous SG Ready mode if the receive deadline is missed
+			boolean[] sgReadySignals = new boolean[NUM_RELAYS];
 			for (int i = 0; i < NUM_RELAYS; i++) {
-				if (getSocket().isBool()) {
-					sgReadySignals[i] = getSocket().getBool();
-				} else {
-					throw new PluginControllerException(getName() + ": The battery actor function block should send BOOL data as a " + CSIGNAL1 + " control signal.");
-				}
+				sgReadySignals[i] = mRelaySignals[i] != 0.0f;
 			}
 			// Allow OFF operation again if cool down time for disallowing OFF operation has been exceeded.
 			if (isForcedOnOperation() && simulationTime - getOffOperationBeginTimeS() >= OFF_TIME_LIM_S + OFF_TIME_HYSTERESIS_S) {
@@ -255,6 +256,18 @@ public class SGReadyHeatPumpController extends AbstractSingleComponentController
 		}
 	}
 
+	@Override
+	protected void decodeControlSignals(float[] controlSignals) throws PluginControllerException {
+		// Read control signals from buffer
+		for (int i = 0; i < NUM_RELAYS; i++) {
+			if (getSocket().isBool()) {
+				controlSignals[i] = getSocket().getBool() ? 1.0f : 0.0f;
+			} else {
+				throw new PluginControllerException(getName() + ": The battery actor function block should send BOOL data as a " + CSIGNAL1 + " control signal.");
+			}
+		}
+	}
+
 	/**
 	 * Simulates the heat pump control of the SG Ready operation mode 1. If the {@link #OFF_OPERATION} lasts for longer than 2 hours, {@link #NORMAL_OPERATION} is forced.
 	 * @param simulationTime The simulation time in [s] beginning from the 1. January 00:00 (no leap year) taken from the {@link #control(int, boolean, float[], float[], float[], boolean, Map)} method 
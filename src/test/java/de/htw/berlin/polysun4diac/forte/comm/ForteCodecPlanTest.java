@@ -0,0 +1,441 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import static de.htw.berlin.polysun4diac.forte.datatypes.ForteTypeIDs.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.htw.berlin.polysun4diac.forte.datatypes.DateAndTime;
+import de.htw.berlin.polysun4diac.forte.datatypes.ForteDataType;
+
+/**
+ * JUnit test cases for the ForteCodecPlan class and the encoding/decoding of the ForteDataBufferLayer.
+ * The frames are sent to an in-memory layer and decoded again, so no FORTE runtime is needed.
+ */
+public class ForteCodecPlanTest {
+
+	/** Testing tolerance for doubles and floats */
+	private static final float TEST_TOLERANCE = 0.0f;
+
+	ByteEcho echo;
+
+	@Before
+	public void setUp() throws Exception {
+		echo = new ByteEcho();
+	}
+
+	@Test
+	public void testPlanSharing() {
+		List<Enum<?>> types = types(ForteDataType.LREAL, ForteDataType.BOOL);
+		List<Integer> sizes = Arrays.asList(1, 1);
+		ForteCodecPlan plan = ForteCodecPlan.getPlan(types, sizes);
+		assertSame("Identical layouts share a plan", plan, ForteCodecPlan.getPlan(types(ForteDataType.LREAL, ForteDataType.BOOL), Arrays.asList(1, 1)));
+		assertNotSame("Different array sizes", plan, ForteCodecPlan.getPlan(types, Arrays.asList(2, 1)));
+		assertEquals("Frame size", LREALBN + BOOLBN, plan.getFrameSize());
+		assertEquals("Codec", ForteCodecPlan.SlotCodec.LREAL, plan.getCodec(0));
+		assertEquals("Codec", ForteCodecPlan.SlotCodec.BOOL, plan.getCodec(1));
+	}
+
+	@Test
+	public void testScalarRoundTrip() throws Exception {
+		DateAndTime dt = new DateAndTime(2017);
+		dt.setSimulationTimeS(3600);
+		ForteDataBufferLayer layer = makeLayer(types(ForteDataType.REAL, ForteDataType.SINT, ForteDataType.INT,
+				ForteDataType.UDINT, ForteDataType.LINT, ForteDataType.LREAL, ForteDataType.BOOL,
+				ForteDataType.STRING, ForteDataType.DATE_AND_TIME),
+				Arrays.asList(1, 1, 1, 1, 1, 1, 1, 1, 1));
+		layer.setDateAndTimeReference(dt);
+		for (int i = 0; i < 2; i++) {
+			layer.put(1.5f);
+			layer.put(-5);
+			layer.put(-300);
+			layer.put(70000);
+			layer.put(Long.MAX_VALUE);
+			layer.put(2.25);
+			layer.put(i == 0);
+			layer.put("five");
+			layer.put(dt);
+			layer.sendData();
+			layer.recvData();
+			assertTrue(layer.isFloat());
+			assertEquals("REAL", 1.5f, layer.getFloat(), TEST_TOLERANCE);
+			assertTrue(layer.isInt());
+			assertEquals("SINT", -5, layer.getInt());
+			assertEquals("INT", -300, layer.getInt());
+			assertEquals("UDINT", 70000, layer.getInt());
+			assertTrue(layer.isLong());
+			assertEquals("LINT", Long.MAX_VALUE, layer.getLong());
+			assertTrue(layer.isDouble());
+			assertEquals("LREAL", 2.25, layer.getDouble(), TEST_TOLERANCE);
+			assertTrue(layer.isBool());
+			assertEquals("BOOL", i == 0, layer.getBool());
+			assertTrue(layer.isString());
+			assertEquals("STRING", "five", layer.getString());
+			assertTrue(layer.isDateAndTime());
+			assertEquals("DATE_AND_TIME", dt.getForteTime(), layer.getDateAndTime().getForteTime());
+		}
+	}
+
+	@Test
+	public void testDateAndTimeMillisRoundTrip() throws Exception {
+		DateAndTime dt = new DateAndTime(2017);
+		ForteDataBufferLayer layer = makeLayer(types(ForteDataType.DATE_AND_TIME, ForteDataType.DATE_AND_TIME), Arrays.asList(1, 1));
+		layer.setDateAndTimeReference(dt);
+		long forteTime = DateAndTime.toForteTime(dt.getForteSimulationStart(), 7200);
+		layer.putDateAndTimeMillis(forteTime);
+		layer.putDateAndTimeMillis(DateAndTime.toForteTime(dt.getForteSimulationStart(), -Integer.MAX_VALUE));
+		layer.sendData();
+		layer.recvData();
+		assertTrue(layer.isDateAndTime());
+		assertEquals("DATE_AND_TIME as ms", forteTime, layer.getDateAndTimeMillis());
+		assertEquals("Limited to minimum time", DateAndTime.MINTIME, layer.getDateAndTimeMillis());
+		layer.rewind();
+		assertEquals("DATE_AND_TIME as object", 7200, layer.getDateAndTime().getSimulationTimeS());
+		DateAndTime iterated = (DateAndTime) layer.iterator().next();
+		assertEquals("Iterated DATE_AND_TIME uses the reference time", dt.getForteSimulationStart(), iterated.getForteSimulationStart());
+		assertEquals("Iterated DATE_AND_TIME", 7200, iterated.getSimulationTimeS());
+	}
+
+	@Test
+	public void testStringCharsetAndCache() throws Exception {
+		ForteDataBufferLayer layer = makeLayer(types(ForteDataType.STRING, ForteDataType.STRING), Arrays.asList(1, 1));
+		layer.setStringCharset(StandardCharsets.ISO_8859_1);
+		layer.put("Status: \u00e4\u20ac");
+		layer.put("");
+		layer.sendData();
+		assertEquals("Length header", 10, echo.mBytes.getShort(echo.mBytes.position() + 1));
+		layer.recvData();
+		String status = layer.getString();
+		assertEquals("Unmappable characters are replaced", "Status: \u00e4?", status);
+		assertEquals("Empty STRING", "", layer.getString());
+		layer.reset();
+		layer.put("Status: \u00e4\u20ac");
+		layer.put("");
+		layer.sendData();
+		layer.recvData();
+		assertSame("Repeated STRING is taken from the cache", status, layer.getString());
+	}
+
+	@Test
+	public void testLongStringsGrowSendBuffer() throws Exception {
+		ForteDataBufferLayer layer = makeLayer(types(ForteDataType.STRING, ForteDataType.STRING), Arrays.asList(3, 1));
+		layer.setStringCharset(StandardCharsets.ISO_8859_1);
+		int initialCapacity = layer.capacity();
+		assertTrue("STRINGs are not sized with their maximum length", initialCapacity < 65535);
+		String[] strings = {repeat('a', 20000), "", repeat('b', 30000)};
+		String longest = repeat('c', 65535);
+		for (int i = 0; i < 2; i++) {
+			layer.reset();
+			layer.put(strings);
+			layer.put(longest);
+			layer.sendData();
+			assertEquals("Grown send buffer is returned after sending", initialCapacity, layer.capacity());
+			layer.recvData();
+			String[] received = layer.getStringArray();
+			assertArrayEquals("STRING array", strings, received);
+			assertEquals("STRING with maximum length", longest, layer.getString());
+		}
+	}
+
+	@Test
+	public void testStringArrayHeaderGrowsSendBuffer() throws Exception {
+		ForteDataBufferLayer layer = makeLayer(types(ForteDataType.STRING, ForteDataType.STRING), Arrays.asList(1, 2));
+		layer.setStringCharset(StandardCharsets.ISO_8859_1);
+		// The first STRING fills the grown send buffer completely, so the array header needs another buffer
+		String filling = repeat('a', 2 * layer.capacity() - 1 - 2);
+		String[] strings = {"a", "b"};
+		layer.put(filling);
+		layer.put(strings);
+		layer.sendData();
+		layer.recvData();
+		assertEquals("STRING", filling, layer.getString());
+		assertArrayEquals("STRING array", strings, layer.getStringArray());
+	}
+
+	@Test
+	public void testFrameView() throws Exception {
+		// Fixed frame size: the view uses the received frame with precomputed offsets
+		ForteDataBufferLayer fixed = makeLayer(types(ForteDataType.LREAL, ForteDataType.BOOL, ForteDataType.INT, ForteDataType.DATE_AND_TIME),
+				Arrays.asList(1, 1, 1, 1));
+		for (int i = 0; i < 2; i++) {
+			fixed.reset();
+			fixed.put(2.5 + i);
+			fixed.put(i == 0);
+			fixed.put(-300);
+			fixed.putDateAndTimeMillis(123456789L);
+			fixed.sendData();
+			ForteFrameView view = fixed.recvFrame();
+			assertEquals("Number of values", 4, view.size());
+			assertEquals("Values are only decoded on access", -300, view.getInt(2));
+			assertEquals("LREAL", 2.5 + i, view.getDouble(0), TEST_TOLERANCE);
+			assertEquals("BOOL", i == 0, view.getBool(1));
+			assertEquals("DATE_AND_TIME", 123456789L, view.getDateAndTimeMillis(3));
+			assertFalse(view.isArray(0));
+			assertFalse(view.isFloat(0));
+		}
+		// Variable frame size: the frame is scanned
+		ForteDataBufferLayer variable = makeLayer(types(ForteDataType.STRING, ForteDataType.LREAL, ForteDataType.BOOL, ForteDataType.STRING, ForteDataType.REAL),
+				Arrays.asList(1, 3, 3, 2, 1));
+		double[] doubles = {1, -2, 3};
+		variable.put("status");
+		variable.put(doubles);
+		variable.put(new boolean[] {false, true, true});
+		variable.put(new String[] {"a", "bc"});
+		variable.put(0.5f);
+		variable.sendData();
+		ForteFrameView view = variable.recvFrame();
+		assertEquals("Number of values", 5, view.size());
+		assertEquals("REAL after arrays", 0.5f, view.getFloat(4), TEST_TOLERANCE);
+		assertEquals("Array length", 3, view.getArrayLength(1));
+		double[] dst = new double[4];
+		assertEquals("Copied elements", 3, view.getDoubleArray(1, dst));
+		assertArrayEquals("LREAL array", doubles, Arrays.copyOf(dst, 3), TEST_TOLERANCE);
+		assertFalse("BOOL array element", view.getBool(2, 0));
+		assertTrue("BOOL array element", view.getBool(2, 2));
+		assertEquals("STRING array element", "bc", view.getString(3, 1));
+		assertEquals("STRING", "status", view.getString(0));
+		try {
+			view.getDouble(1);
+			fail("Arrays are accessed by element");
+		} catch (NoSuchElementException e) {
+			// expected
+		}
+		try {
+			view.getFloat(5);
+			fail("Position is not in the frame");
+		} catch (NoSuchElementException e) {
+			// expected
+		}
+	}
+
+	private static String repeat(char c, int count) {
+		char[] chars = new char[count];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+
+	@Test
+	public void testArrayRoundTrip() throws Exception {
+		double[] doubles = {1, 2, 3, 4, 5};
+		int[] ints = {-1, 2, 70000};
+		long[] longs = {Long.MIN_VALUE, 0, Long.MAX_VALUE};
+		ForteDataBufferLayer layer = makeLayer(types(ForteDataType.LREAL, ForteDataType.DINT, ForteDataType.LINT),
+				Arrays.asList(doubles.length, ints.length, longs.length));
+		layer.put(doubles);
+		layer.put(ints);
+		layer.put(longs);
+		layer.sendData();
+		assertEquals("DINT array elements are sent without header bytes", layer.capacity(), echo.available());
+		layer.recvData();
+		assertTrue(layer.isDoubleArray());
+		assertArrayEquals("LREAL array", doubles, layer.getDoubleArray(), TEST_TOLERANCE);
+		assertTrue(layer.isIntArray());
+		assertArrayEquals("DINT array", ints, layer.getIntArray());
+		assertTrue(layer.isLongArray());
+		assertArrayEquals("LINT array", longs, layer.getLongArray());
+	}
+
+	@Test
+	public void testLargeArraysAreConvertedInBulk() throws Exception {
+		double[] doubles = new double[8760];
+		float[] floats = new float[96];
+		int[] shorts = new int[96];
+		for (int i = 0; i < doubles.length; i++) {
+			doubles[i] = i * 0.25;
+		}
+		for (int i = 0; i < floats.length; i++) {
+			floats[i] = -i * 0.5f;
+			shorts[i] = i - 48;
+		}
+		ForteDataBufferLayer layer = makeLayer(types(ForteDataType.LREAL, ForteDataType.REAL, ForteDataType.INT),
+				Arrays.asList(doubles.length, floats.length, shorts.length));
+		layer.put(doubles);
+		layer.put(floats);
+		layer.put(shorts);
+		layer.sendData();
+		echo.resetReadCount();
+		layer.recvData();
+		assertTrue("Each array is read at once", echo.getReadCount() < 20);
+		assertArrayEquals("LREAL array", doubles, layer.getDoubleArray(), TEST_TOLERANCE);
+		assertArrayEquals("REAL array", floats, layer.getFloatArray(), TEST_TOLERANCE);
+		assertArrayEquals("INT array", shorts, layer.getIntArray());
+	}
+
+	@Test
+	public void testArrayLengthHeaderIsUnsigned() throws Exception {
+		boolean[] bools = new boolean[40000];
+		bools[bools.length - 1] = true;
+		ForteDataBufferLayer layer = makeLayer(types(ForteDataType.BOOL), Arrays.asList(bools.length));
+		layer.put(bools);
+		layer.sendData();
+		layer.recvData();
+		assertArrayEquals("BOOL array", bools, layer.getBoolArray());
+	}
+
+	@Test
+	public void testDestinationArrayGetters() throws Exception {
+		ForteDataBufferLayer layer = makeLayer(types(ForteDataType.LREAL, ForteDataType.DINT, ForteDataType.BOOL), Arrays.asList(3, 2, 2));
+		double[] doubles = new double[4];
+		int[] ints = new int[2];
+		boolean[] bools = new boolean[1];
+		double[] previous = null;
+		for (int i = 0; i < 2; i++) {
+			layer.reset();
+			layer.put(new double[] {i, i + 1, i + 2});
+			layer.put(new int[] {-i, i});
+			layer.put(new boolean[] {true, i == 0});
+			layer.sendData();
+			layer.recvData();
+			assertEquals("Number of LREAL elements", 3, layer.getDoubleArray(doubles));
+			assertArrayEquals("LREAL array", new double[] {i, i + 1, i + 2, 0}, doubles, TEST_TOLERANCE);
+			assertEquals("Number of DINT elements", 2, layer.getIntArray(ints));
+			assertArrayEquals("DINT array", new int[] {-i, i}, ints);
+			try {
+				layer.getBoolArray(bools);
+				fail("Destination array is too short");
+			} catch (InputMismatchException e) {
+				// Position is not incremented
+			}
+			assertArrayEquals("BOOL array", new boolean[] {true, i == 0}, layer.getBoolArray());
+			layer.rewind();
+			double[] copy = layer.getDoubleArray();
+			if (previous != null) {
+				assertEquals("Returned arrays are not overwritten by recvData()", 0, previous[0], TEST_TOLERANCE);
+			}
+			previous = copy;
+		}
+	}
+
+	@Test
+	public void testFixedSizeFrameIsReadByValue() throws Exception {
+		ForteDataBufferLayer layer = makeLayer(types(ForteDataType.LREAL, ForteDataType.DINT, ForteDataType.BOOL), Arrays.asList(1, 1, 1));
+		assertTrue("Fixed frame size", layer.getPlan().hasFixedFrameSize());
+		for (int i = 0; i < 2; i++) {
+			layer.reset();
+			layer.put(0.5 * i);
+			layer.put(i);
+			layer.put(true);
+			layer.sendData();
+			echo.resetReadCount();
+			layer.recvData();
+			// The first type ID, then each value up to the type ID of the next value (the BOOL consists of its type ID only)
+			assertEquals("Reads from the layer below", 3, echo.getReadCount());
+			assertEquals("LREAL", 0.5 * i, layer.getDouble(), TEST_TOLERANCE);
+			assertEquals("DINT", i, layer.getInt());
+			assertTrue("BOOL", layer.getBool());
+		}
+		echo.sendData(new byte[] {RESPONSEID});
+		layer.recvData();
+		assertEquals("Response consumed", 0, echo.available());
+	}
+
+	@Test
+	public void testFallbackForUnplannedTypeID() throws Exception {
+		ForteDataBufferLayer layer = makeLayer(types(ForteDataType.INT), Arrays.asList(1));
+		// FORTE sends a DINT where an INT is expected
+		echo.sendData(new byte[] {DINTID, 0, 1, 0, 0});
+		layer.recvData();
+		assertEquals("Decoded according to received type ID", 65536, layer.getInt());
+	}
+
+	@Test
+	public void testResponse() throws Exception {
+		ForteDataBufferLayer layer = makeLayer(types(ForteDataType.NONE), Arrays.asList(1));
+		layer.sendData();
+		assertEquals("Response ID", RESPONSEID, echo.readByte());
+		echo.sendData(new byte[] {RESPONSEID});
+		layer.recvData();
+		assertEquals("Response consumed", 0, echo.available());
+	}
+
+	private ForteDataBufferLayer makeLayer(List<Enum<?>> types, List<Integer> sizes) {
+		ForteDataBufferLayer layer = new ForteDataBufferLayer();
+		layer.setBelow(echo);
+		layer.initialise(types, sizes);
+		return layer;
+	}
+
+	private static List<Enum<?>> types(ForteDataType... types) {
+		return new ArrayList<Enum<?>>(Arrays.asList(types));
+	}
+
+	/**
+	 * Bottom layer that returns all bytes sent to it when reading.
+	 */
+	public static class ByteEcho extends AbstractCommunicationLayer {
+
+		private static final long serialVersionUID = 1L;
+
+		ByteBuffer mBytes = ByteBuffer.allocate(1 << 18);
+
+		private int mReadCount = 0;
+
+		public ByteEcho() {
+			mBytes.flip();
+		}
+
+		public int available() {
+			return mBytes.remaining();
+		}
+
+		public int getReadCount() {
+			return mReadCount;
+		}
+
+		public void resetReadCount() {
+			mReadCount = 0;
+		}
+
+		@Override
+		public void sendData(byte[] data, int off, int len) throws IOException {
+			mBytes.compact();
+			mBytes.put(data, off, len);
+			mBytes.flip();
+		}
+
+		@Override
+		public void recvData() throws IOException {
+			// Nothing to do, the bytes are available as soon as they are sent
+		}
+
+		@Override
+		public byte readByte() throws IOException {
+			mReadCount++;
+			return mBytes.get();
+		}
+
+		@Override
+		public long readLong() throws IOException {
+			mReadCount++;
+			return mBytes.getLong();
+		}
+
+		@Override
+		public double readDouble() throws IOException {
+			mReadCount++;
+			return mBytes.getDouble();
+		}
+
+		@Override
+		public float readFloat() throws IOException {
+			mReadCount++;
+			return mBytes.getFloat();
+		}
+
+		@Override
+		public void readFully(byte[] b, int off, int len) throws IOException {
+			mReadCount++;
+			mBytes.get(b, off, len);
+		}
+	}
+}
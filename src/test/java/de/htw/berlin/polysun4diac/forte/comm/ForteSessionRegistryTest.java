@@ -0,0 +1,78 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.htw.berlin.polysun4diac.forte.datatypes.ForteDataType;
+
+/**
+ * JUnit test cases for reusing connections via the ForteSessionRegistry.
+ * A plain server socket stands in for the FORTE SERVER function block.
+ */
+public class ForteSessionRegistryTest {
+
+	/** IP address **/
+	private static final String IP = "localhost";
+	/** Port of the server */
+	private static final int PORT = 61509;
+
+	ServerSocket server;
+	CommLayerParams params;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new ServerSocket(PORT);
+		params = new CommLayerParams(InetAddress.getByName(IP), PORT);
+		params.addInputOutput(ForteDataType.LREAL);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		ForteSessionRegistry.closeAll();
+		server.close();
+	}
+
+	@Test
+	public void reuseTest() throws Exception {
+		IForteSocket socket = ForteSessionRegistry.acquire(params);
+		Socket accepted = server.accept();
+		socket.put(1.0);
+		socket.sendData();
+		ForteSessionRegistry.release(params, socket);
+		assertEquals("Idle sockets", 1, ForteSessionRegistry.getNumIdle());
+		CommLayerParams other = new CommLayerParams(InetAddress.getByName(IP), PORT);
+		other.addInputOutput(ForteDataType.REAL);
+		assertNotEquals("Layout is part of the key", params.getSessionKey(), other.getSessionKey());
+		IForteSocket reused = ForteSessionRegistry.acquire(params);
+		assertSame("Connection reused", socket, reused);
+		assertEquals("Idle sockets", 0, ForteSessionRegistry.getNumIdle());
+		accepted.close();
+	}
+
+	@Test
+	public void healthCheckTest() throws Exception {
+		IForteSocket socket = ForteSessionRegistry.acquire(params);
+		Socket accepted = server.accept();
+		assertTrue("Healthy", socket.isHealthy());
+		accepted.getOutputStream().write(5); // Data the plugin did not read
+		Thread.sleep(50);
+		assertFalse("Unread data", socket.isHealthy());
+		ForteSessionRegistry.release(params, socket);
+		IForteSocket replaced = ForteSessionRegistry.acquire(params);
+		Socket accepted2 = server.accept();
+		assertNotSame("Stale connection replaced", socket, replaced);
+		assertFalse("Stale connection closed", socket.isConnected());
+		accepted2.close();
+		Thread.sleep(50);
+		assertFalse("Closed by peer", replaced.isHealthy());
+		replaced.disconnect();
+		accepted.close();
+	}
+}
@@ -0,0 +1,143 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import static org.junit.Assert.*;
+
+import java.io.EOFException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.htw.berlin.polysun4diac.forte.datatypes.ForteDataType;
+
+/**
+ * JUnit test cases for the in-process loopback layers.
+ * Both sockets run on the test thread, with the peer socket standing in for the FORTE CSIFB.
+ */
+public class LoopbackTest {
+
+	/** Testing tolerance for doubles and floats */
+	private static final float TEST_TOLERANCE = 0.0f;
+	/** Port of the parameters (not used by the loopback layers) */
+	private static final int PORT = 61508;
+	/** Double array to test sending and receiving */
+	private static final double[] DARRAY = {1, 2, 3, 4, 5};
+	/** Number of exchanges of the throughput measurement */
+	private static final int NUM_ROUNDS = 100000;
+	/** Number of exchanges before the measurement (JIT warm-up) */
+	private static final int NUM_WARMUP_ROUNDS = 20000;
+	/** Upper bound of the mean time per exchange in ns, far above the in-process copies but below a round trip through the TCP/IP stack */
+	private static final long MAX_NANOS_PER_EXCHANGE = 10000;
+
+	LoopbackCommLayer endpoint;
+	IForteSocket socket;
+	IForteSocket peer;
+
+	@Before
+	public void setUp() throws Exception {
+		endpoint = new LoopbackCommLayer();
+		CommLayerParams params = new CommLayerParams(PORT);
+		params.addInput(ForteDataType.LREAL);
+		params.addInput(ForteDataType.REAL);
+		params.addOutput(ForteDataType.LREAL, DARRAY.length);
+		socket = params.makeSocket(endpoint);
+		CommLayerParams peerParams = new CommLayerParams(PORT);
+		peerParams.addInput(ForteDataType.LREAL, DARRAY.length);
+		peerParams.addOutput(ForteDataType.LREAL);
+		peerParams.addOutput(ForteDataType.REAL);
+		peer = peerParams.makeSocket(endpoint.getPeer());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		socket.disconnect();
+		peer.disconnect();
+	}
+
+	@Test
+	public void exchangeTest() throws Exception {
+		assertTrue("Connected", socket.isConnected());
+		for (int i = 0; i < 3; i++) {
+			socket.put(5.0 + i);
+			socket.put(5.5f);
+			socket.sendData();
+			peer.recvData();
+			assertEquals("LREAL sent", 5.0 + i, peer.getDouble(), TEST_TOLERANCE);
+			assertEquals("REAL sent", 5.5f, peer.getFloat(), TEST_TOLERANCE);
+			peer.put(DARRAY);
+			peer.sendData();
+			socket.recvData();
+			assertArrayEquals("LREAL array received", DARRAY, socket.getDoubleArray(), TEST_TOLERANCE);
+		}
+	}
+
+	@Test
+	public void closeTest() throws Exception {
+		socket.put(1.0);
+		socket.put(1.0f);
+		socket.sendData();
+		socket.disconnect();
+		peer.recvData(); // Bytes sent before closing can still be read
+		assertEquals("LREAL sent", 1.0, peer.getDouble(), TEST_TOLERANCE);
+		try {
+			peer.recvData();
+			fail("Reading from a closed connection");
+		} catch (EOFException e) {
+			// Expected
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void layoutMismatchTest() throws Exception {
+		// FORTE sends an INT where the layout specifies a DINT, so the frame is shorter than the layout
+		LoopbackCommLayer receiver = new LoopbackCommLayer();
+		CommLayerParams params = new CommLayerParams(PORT);
+		params.addOutput(ForteDataType.DINT);
+		params.addOutput(ForteDataType.REAL);
+		IForteSocket buffered = params.makeSocket(receiver);
+		CommLayerParams senderParams = new CommLayerParams(PORT);
+		senderParams.addInput(ForteDataType.INT);
+		senderParams.addInput(ForteDataType.REAL);
+		IForteSocket sender = senderParams.makeSocket(receiver.getPeer());
+		try {
+			assertTrue("Frame buffering", params.isFrameBuffering());
+			for (int i = 0; i < 3; i++) {
+				sender.put(7 + i);
+				sender.put(1.5f * i);
+				sender.sendData();
+			}
+			for (int i = 0; i < 3; i++) {
+				buffered.recvData(); // Must neither block nor read into the next frame
+				assertEquals("INT received", 7 + i, buffered.getInt());
+				assertEquals("REAL received", 1.5f * i, buffered.getFloat(), TEST_TOLERANCE);
+			}
+		} finally {
+			buffered.disconnect();
+			sender.disconnect();
+		}
+	}
+
+	@Test
+	public void throughputTest() throws Exception {
+		double[] received = new double[DARRAY.length];
+		long start = 0;
+		for (int i = 0; i < NUM_WARMUP_ROUNDS + NUM_ROUNDS; i++) {
+			if (i == NUM_WARMUP_ROUNDS) {
+				start = System.nanoTime();
+			}
+			socket.put((double) i);
+			socket.put(0.5f);
+			socket.sendData();
+			peer.recvData();
+			peer.getDouble();
+			peer.getFloat();
+			peer.put(DARRAY);
+			peer.sendData();
+			socket.recvData();
+			socket.getDoubleArray(received);
+		}
+		long elapsed = System.nanoTime() - start;
+		assertArrayEquals("LREAL array received", DARRAY, received, TEST_TOLERANCE);
+		assertTrue("Mean time per exchange", elapsed / NUM_ROUNDS < MAX_NANOS_PER_EXCHANGE);
+	}
+}
@@ -0,0 +1,117 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test cases for TCP communication using the NIOclientCommLayer and the NIOserverCommLayer.
+ * The layers are created by IPcommunicationLayers with the NIO transport and echo each other in a multi-threaded environment.
+ */
+public class NIOTest {
+
+	/** Data to be sent */
+	private static final byte B = 1;
+	/** Data to be sent */
+	private static final long L = 2;
+	/** Data to be sent */
+	private static final double D = 3.5;
+	/** Data to be sent */
+	private static final float F = 4.5f;
+	/** Number of bytes of the values */
+	private static final int TOT_BYTES = 21;
+	/** Number of bytes of the payload that exceeds the send and receive buffers */
+	private static final int LARGE_BYTES = 200000;
+	/** IP address **/
+	private static final String IP = "localhost";
+
+	private static final float TEST_TOLERANCE = 0.0f;
+
+	CommLayerParams params;
+	IPcommunicationLayer client;
+	Thread echo;
+	AtomicReference<Throwable> echoError = new AtomicReference<Throwable>();
+
+	@Before
+	public void setUp() throws Exception {
+		params = new CommLayerParams(InetAddress.getByName(IP), 61502);
+		params.setTransportType(ForteTransportType.NIO);
+		params.setSocketSendBufferSize(16384);
+		final CommLayerParams serverParams = new CommLayerParams(InetAddress.getByName(IP), 61502);
+		serverParams.setTransportType(ForteTransportType.NIO);
+		serverParams.setServiceType(ForteServiceType.SERVER);
+		echo = new Thread() {
+			@Override
+			public void run() {
+				IPcommunicationLayer server = new IPcommunicationLayer();
+				try {
+					server.openConnection(serverParams);
+					assertTrue("NIO server layer", server.getBelow() instanceof NIOserverCommLayer);
+					server.sendData(readValues(server).array());
+					byte[] large = new byte[LARGE_BYTES];
+					server.readFully(large, 0, large.length);
+					server.sendData(large);
+					server.closeConnection();
+				} catch (Throwable e) {
+					echoError.set(e);
+				}
+			}
+		};
+		echo.start();
+		client = new IPcommunicationLayer();
+		Thread.sleep(200); // Give echo time to open connection
+		client.openConnection(params);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		client.closeConnection();
+	}
+
+	@Test
+	public void echoTest() throws Throwable {
+		assertTrue("NIO client layer", client.getBelow() instanceof NIOclientCommLayer);
+		client.sendData(populateByteBuffer(B, L, D, F).array());
+		readValues(client);
+		byte[] large = new byte[LARGE_BYTES];
+		for (int i = 0; i < large.length; i++) {
+			large[i] = (byte) i;
+		}
+		client.sendData(large);
+		byte[] received = new byte[LARGE_BYTES];
+		client.readFully(received, 0, received.length);
+		assertArrayEquals("Payload larger than the buffers", large, received);
+		echo.join(5000);
+		if (echoError.get() != null) {
+			throw echoError.get();
+		}
+	}
+
+	private static ByteBuffer populateByteBuffer(byte b, long l, double d, float f) {
+		ByteBuffer bb = ByteBuffer.allocate(TOT_BYTES);
+		bb.put(b);
+		bb.putLong(l);
+		bb.putDouble(d);
+		bb.putFloat(f);
+		return bb;
+	}
+
+	private static ByteBuffer readValues(AbstractCommunicationLayer layer) throws IOException {
+		byte b = layer.readByte();
+		assertEquals("Byte", B, b);
+		long l = layer.readLong();
+		assertEquals("Long", L, l);
+		double d = layer.readDouble();
+		assertEquals("Double", D, d, TEST_TOLERANCE);
+		float f = layer.readFloat();
+		assertEquals("Float", F, f, TEST_TOLERANCE);
+		return populateByteBuffer(b, l, d, f);
+	}
+}
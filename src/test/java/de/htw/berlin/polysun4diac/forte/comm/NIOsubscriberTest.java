@@ -0,0 +1,116 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.htw.berlin.polysun4diac.forte.datatypes.ForteDataType;
+
+/**
+ * JUnit test cases for UDP communication using the NIOsubscriberCommLayer and the NIOpublisherCommLayer.
+ * FORTE frames are published by a socket-based or a channel-based publisher and decoded in place from the subscriber's datagram buffer.
+ */
+public class NIOsubscriberTest {
+
+	/** IP address **/
+	private static final String IP = "239.192.0.3";
+	/** Port number */
+	private static final int PORT = 61505;
+	/** Number of frames to be published */
+	private static final int NUM_FRAMES = 20;
+
+	private static final double TEST_TOLERANCE = 0.0;
+
+	IForteSocket subscriber;
+	IForteSocket publisher;
+
+	@Before
+	public void setUp() throws Exception {
+		CommLayerParams subParams = makeParams(ForteServiceType.SUBSCRIBER);
+		subParams.setTransportType(ForteTransportType.NIO);
+		subscriber = subParams.makeIPSocket();
+		assertFalse("Datagrams are decoded in place", subParams.isFrameBuffering());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		subscriber.disconnect();
+		if (publisher != null) {
+			publisher.disconnect();
+		}
+	}
+
+	@Test
+	public void publishSubscribeTest() throws Exception {
+		publisher = makeParams(ForteServiceType.PUBLISHER).makeIPSocket();
+		publishFrames();
+	}
+
+	@Test
+	public void connectedPublisherTest() throws Exception {
+		CommLayerParams pubParams = makeParams(ForteServiceType.PUBLISHER);
+		pubParams.setTransportType(ForteTransportType.NIO);
+		publisher = pubParams.makeIPSocket();
+		publishFrames();
+	}
+
+	@Test
+	public void conflatingSubscriberTest() throws Exception {
+		CommLayerParams subParams = makeParams(ForteServiceType.SUBSCRIBER, PORT + 1);
+		subParams.setConflating(true);
+		IForteSocket conflating = subParams.makeIPSocket();
+		try {
+			CommLayerParams pubParams = makeParams(ForteServiceType.PUBLISHER, PORT + 1);
+			pubParams.setTransportType(ForteTransportType.NIO);
+			publisher = pubParams.makeIPSocket();
+			for (int i = 0; i < NUM_FRAMES; i++) { // Publish faster than the frames are consumed
+				publisher.put(i + 0.5);
+				publisher.put(i);
+				publisher.put(true);
+				publisher.sendData();
+			}
+			Thread.sleep(100); // Give the datagrams time to arrive
+			conflating.recvData();
+			assertEquals("Newest LREAL", NUM_FRAMES - 0.5, conflating.getDouble(), TEST_TOLERANCE);
+			assertEquals("Newest DINT", NUM_FRAMES - 1, conflating.getInt());
+			NIOsubscriberCommLayer layer = (NIOsubscriberCommLayer) ((AbstractCommunicationLayer) conflating).getBelow().getBelow();
+			assertEquals("Received datagrams", NUM_FRAMES, layer.getNumReceived());
+			assertEquals("Conflated datagrams", NUM_FRAMES - 1, layer.getNumConflated());
+		} finally {
+			conflating.disconnect();
+		}
+	}
+
+	private void publishFrames() throws Exception {
+		for (int i = 0; i < NUM_FRAMES; i++) {
+			publisher.put(i + 0.5);
+			publisher.put(i);
+			publisher.put(i % 2 == 0);
+			publisher.sendData();
+			subscriber.recvData();
+			assertEquals("LREAL", i + 0.5, subscriber.getDouble(), TEST_TOLERANCE);
+			assertEquals("DINT", i, subscriber.getInt());
+			assertEquals("BOOL", i % 2 == 0, subscriber.getBool());
+		}
+	}
+
+	private static CommLayerParams makeParams(ForteServiceType type) throws Exception {
+		return makeParams(type, PORT);
+	}
+
+	private static CommLayerParams makeParams(ForteServiceType type, int port) throws Exception {
+		CommLayerParams params = new CommLayerParams(InetAddress.getByName(IP), port);
+		params.setServiceType(type);
+		params.addInput(ForteDataType.LREAL);
+		params.addInput(ForteDataType.DINT);
+		params.addInput(ForteDataType.BOOL);
+		params.addOutput(ForteDataType.LREAL);
+		params.addOutput(ForteDataType.DINT);
+		params.addOutput(ForteDataType.BOOL);
+		return params;
+	}
+}
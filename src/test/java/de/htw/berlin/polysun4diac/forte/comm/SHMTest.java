@@ -0,0 +1,179 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * JUnit test cases for the shared memory transport.
+ * A SERVER layer running on its own thread stands in for the FORTE runtime and echoes the frames it receives.
+ */
+public class SHMTest {
+
+	/** IP address **/
+	private static final String IP = "localhost";
+	/** Port of the echo server */
+	private static final int PORT = 61507;
+	/** Number of exchanges */
+	private static final int NUM_ROUNDS = 400;
+	/** Number of bytes of each frame (the frames of all rounds exceed the capacity of the rings) */
+	private static final int FRAME_BYTES = 10000;
+	/** Port of the server that nobody connects to */
+	private static final int TIMEOUT_PORT = 61516;
+	/** Connect timeout of the echo server in ms */
+	private static final int CONNECT_TIMEOUT = 5000;
+	/** Connect timeout of the server that nobody connects to in ms */
+	private static final int SHORT_TIMEOUT = 300;
+	/** Time before the client attaches to the file of the echo server in ms */
+	private static final long LATE_ATTACH_MS = 2500;
+
+	IPcommunicationLayer client = new IPcommunicationLayer();
+	Thread echo;
+	AtomicReference<Throwable> echoError = new AtomicReference<Throwable>();
+
+	@After
+	public void tearDown() throws Exception {
+		client.closeConnection();
+		if (echo != null) {
+			echo.join(5000);
+		}
+	}
+
+	@Test
+	public void sharedMemoryTest() throws Throwable {
+		String path = new File(System.getProperty("java.io.tmpdir"), "forte_shm_test.shm").getPath();
+		startEcho(ForteTransportType.SHM, path);
+		CommLayerParams params = makeParams(ForteTransportType.SHM, path);
+		client.openConnection(params);
+		assertTrue("Shared memory layer", client.getBelow() instanceof SHMringCommLayer);
+		exchange();
+		assertEquals("Long value", 0x0102030405060708L, client.readLong());
+		assertEquals("Float value", 1.5f, client.readFloat(), 0);
+		client.closeConnection();
+		echo.join(5000);
+		assertFalse("File removed by the creator", new File(path).exists());
+		if (echoError.get() != null) {
+			throw echoError.get();
+		}
+	}
+
+	@Test
+	public void fallbackTest() throws Throwable {
+		String path = new File(System.getProperty("java.io.tmpdir"), "forte_shm_missing.shm").getPath();
+		new File(path).delete();
+		startEcho(ForteTransportType.SOCKET, path);
+		CommLayerParams params = makeParams(ForteTransportType.SHM, path);
+		client.openConnection(params);
+		assertTrue("Falls back to TCP", client.getBelow() instanceof TCPclientCommLayer);
+		assertTrue("Reason for the fallback", client.getFallbackCause() instanceof FileNotFoundException);
+		exchange();
+	}
+
+	@Test
+	public void lateAttachTest() throws Throwable {
+		String path = new File(System.getProperty("java.io.tmpdir"), "forte_shm_late.shm").getPath();
+		startEcho(ForteTransportType.SHM, path);
+		Thread.sleep(LATE_ATTACH_MS); // The server waits for the connect timeout
+		client.openConnection(makeParams(ForteTransportType.SHM, path));
+		assertTrue("Shared memory layer", client.getBelow() instanceof SHMringCommLayer);
+		assertNull("No fallback", client.getFallbackCause());
+		exchange();
+	}
+
+	@Test(timeout = 10000)
+	public void attachTimeoutTest() throws Exception {
+		String path = new File(System.getProperty("java.io.tmpdir"), "forte_shm_timeout.shm").getPath();
+		CommLayerParams params = new CommLayerParams(InetAddress.getByName(IP), TIMEOUT_PORT);
+		params.setTransportType(ForteTransportType.SHM);
+		params.setShmPath(path);
+		params.setServiceType(ForteServiceType.SERVER);
+		params.setConnectTimeout(SHORT_TIMEOUT);
+		IPcommunicationLayer server = new IPcommunicationLayer();
+		try {
+			server.openConnection(params);
+			fail("Nobody connects");
+		} catch (SocketTimeoutException e) {
+			assertTrue("Reason for the fallback", server.getFallbackCause() instanceof SocketTimeoutException);
+			assertSame("Reported with the error of the fallback", server.getFallbackCause(), e.getSuppressed()[0]);
+		} finally {
+			server.closeConnection();
+		}
+		assertFalse("File removed", new File(path).exists());
+	}
+
+	/**
+	 * Sends frames to the echo server and checks the echoed frames.
+	 */
+	private void exchange() throws Throwable {
+		byte[] frame = new byte[FRAME_BYTES];
+		byte[] received = new byte[FRAME_BYTES];
+		for (int r = 0; r < NUM_ROUNDS; r++) {
+			for (int i = 0; i < frame.length; i++) {
+				frame[i] = (byte) (i * 31 + r);
+			}
+			client.sendData(frame);
+			client.readFully(received, 0, received.length);
+			assertArrayEquals("Echo", frame, received);
+		}
+		client.sendData(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 0x3F, (byte) 0xC0, 0, 0 }); // Long and float values
+		if (echoError.get() != null) {
+			throw echoError.get();
+		}
+	}
+
+	/**
+	 * Starts the echo server.
+	 * @param transport transport type of the server
+	 * @param path path of the shared memory file
+	 */
+	private void startEcho(ForteTransportType transport, String path) throws Exception {
+		final CommLayerParams serverParams = makeParams(transport, path);
+		serverParams.setServiceType(ForteServiceType.SERVER);
+		serverParams.setConnectTimeout(CONNECT_TIMEOUT);
+		echo = new Thread() {
+			@Override
+			public void run() {
+				IPcommunicationLayer server = new IPcommunicationLayer();
+				try {
+					server.openConnection(serverParams);
+					byte[] frame = new byte[FRAME_BYTES];
+					for (int r = 0; r < NUM_ROUNDS; r++) {
+						server.readFully(frame, 0, frame.length);
+						server.sendData(frame);
+					}
+					byte[] values = new byte[12];
+					server.readFully(values, 0, values.length);
+					server.sendData(values, 0, 8); // Split the values across frames
+					server.sendData(values, 8, 4);
+					server.readByte(); // Wait for the client to close the connection
+				} catch (Throwable e) {
+					if (!(e instanceof java.io.EOFException)) {
+						echoError.set(e);
+					}
+				} finally {
+					try {
+						server.closeConnection();
+					} catch (Exception e) {
+						echoError.compareAndSet(null, e);
+					}
+				}
+			}
+		};
+		echo.start();
+		Thread.sleep(200); // Give echo time to open connection
+	}
+
+	private static CommLayerParams makeParams(ForteTransportType transport, String path) throws Exception {
+		CommLayerParams params = new CommLayerParams(InetAddress.getByName(IP), PORT);
+		params.setTransportType(transport);
+		params.setShmPath(path);
+		return params;
+	}
+}
@@ -0,0 +1,163 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test cases for TCP communication of several connections via the shared NIOselectorLoop.
+ * Each connection is served by an echo server running on its own thread.
+ */
+public class SelectorTest {
+
+	/** IP address **/
+	private static final String IP = "localhost";
+	/** First port of the echo servers */
+	private static final int PORT = 61503;
+	/** Number of connections */
+	private static final int NUM_CONNECTIONS = 2;
+	/** Number of exchanges per connection */
+	private static final int NUM_ROUNDS = 50;
+	/** Number of bytes of a frame that exceeds the socket buffers */
+	private static final int LARGE_BYTES = 1 << 22;
+	/** Time the echo servers wait before reading the large frame (in ms) */
+	private static final long ECHO_DELAY_MS = 300;
+	/** Port of the peer of the connection whose callback fails */
+	private static final int FAULTY_PORT = 61515;
+
+	IPcommunicationLayer[] clients = new IPcommunicationLayer[NUM_CONNECTIONS];
+	Thread[] echos = new Thread[NUM_CONNECTIONS];
+	AtomicReference<Throwable> echoError = new AtomicReference<Throwable>();
+
+	@Before
+	public void setUp() throws Exception {
+		for (int i = 0; i < NUM_CONNECTIONS; i++) {
+			final CommLayerParams serverParams = new CommLayerParams(InetAddress.getByName(IP), PORT + i);
+			serverParams.setServiceType(ForteServiceType.SERVER);
+			echos[i] = new Thread() {
+				@Override
+				public void run() {
+					IPcommunicationLayer server = new IPcommunicationLayer();
+					try {
+						server.openConnection(serverParams);
+						byte[] frame = new byte[Long.SIZE / Byte.SIZE];
+						for (int r = 0; r < NUM_ROUNDS; r++) {
+							server.readFully(frame, 0, frame.length);
+							server.sendData(frame);
+						}
+						Thread.sleep(ECHO_DELAY_MS);
+						byte[] large = new byte[LARGE_BYTES];
+						server.readFully(large, 0, large.length);
+						server.sendData(large);
+						server.closeConnection();
+					} catch (Throwable e) {
+						echoError.set(e);
+					}
+				}
+			};
+			echos[i].start();
+		}
+		Thread.sleep(200); // Give echos time to open connections
+		for (int i = 0; i < NUM_CONNECTIONS; i++) {
+			CommLayerParams params = new CommLayerParams(InetAddress.getByName(IP), PORT + i);
+			params.setTransportType(ForteTransportType.SELECTOR);
+			clients[i] = new IPcommunicationLayer();
+			clients[i].openConnection(params);
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (IPcommunicationLayer client : clients) {
+			client.closeConnection();
+		}
+	}
+
+	@Test
+	public void overlappingExchangesTest() throws Throwable {
+		assertTrue("Selector layer", clients[0].getBelow() instanceof NIOselectorCommLayer);
+		for (int r = 0; r < NUM_ROUNDS; r++) {
+			// Send to all connections before awaiting any of the responses
+			for (int i = 0; i < NUM_CONNECTIONS; i++) {
+				sendLong(clients[i], r * NUM_CONNECTIONS + i);
+			}
+			for (int i = 0; i < NUM_CONNECTIONS; i++) {
+				assertEquals("Echo", r * NUM_CONNECTIONS + i, clients[i].readLong());
+			}
+		}
+		byte[] large = new byte[LARGE_BYTES];
+		for (int i = 0; i < large.length; i++) {
+			large[i] = (byte) (i * 31);
+		}
+		long start = System.currentTimeMillis();
+		for (IPcommunicationLayer client : clients) {
+			client.sendData(large);
+		}
+		assertTrue("Sending does not wait for the peer to read", System.currentTimeMillis() - start < ECHO_DELAY_MS);
+		for (IPcommunicationLayer client : clients) {
+			byte[] received = new byte[LARGE_BYTES];
+			client.readFully(received, 0, received.length);
+			assertArrayEquals("Frame larger than the socket buffers", large, received);
+		}
+		for (Thread echo : echos) {
+			echo.join(5000);
+		}
+		if (echoError.get() != null) {
+			throw echoError.get();
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void faultyConnectionTest() throws Exception {
+		ServerSocket server = new ServerSocket(FAULTY_PORT, 1, InetAddress.getByName(IP));
+		NIOselectorCommLayer faulty = new NIOselectorCommLayer() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			void onReadable(ByteBuffer readBuffer) throws IOException {
+				throw new IllegalStateException("Failing callback");
+			}
+		};
+		try {
+			faulty.openConnection(new CommLayerParams(InetAddress.getByName(IP), FAULTY_PORT));
+			Socket peer = server.accept();
+			try {
+				OutputStream out = peer.getOutputStream();
+				out.write(new byte[Long.SIZE / Byte.SIZE]);
+				out.flush();
+				try {
+					faulty.readLong();
+					fail("The connection is closed by the failing callback");
+				} catch (IOException e) {
+					assertTrue("Cause of the error", e.getCause() instanceof IllegalStateException);
+				}
+			} finally {
+				peer.close();
+			}
+		} finally {
+			faulty.closeConnection();
+			server.close();
+		}
+		// The I/O thread keeps serving the other connections
+		sendLong(clients[0], 42);
+		assertEquals("Echo", 42, clients[0].readLong());
+	}
+
+	private static void sendLong(ICommunicationLayer layer, long value) throws IOException {
+		byte[] frame = new byte[Long.SIZE / Byte.SIZE];
+		for (int i = 0; i < frame.length; i++) {
+			frame[i] = (byte) (value >> (Long.SIZE - Byte.SIZE * (i + 1)));
+		}
+		layer.sendData(frame);
+	}
+}
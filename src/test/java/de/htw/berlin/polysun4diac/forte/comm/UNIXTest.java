@@ -0,0 +1,143 @@
+package de.htw.berlin.polysun4diac.forte.comm;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * JUnit test cases for communication via Unix domain sockets using the UNIXclientCommLayer and the UNIXserverCommLayer.
+ * The server layer acts as a stand-in for a FORTE runtime on the same host and echoes the frames sent by the client.
+ * The round-trip times are compared to those of the loopback TCP connection.
+ */
+public class UNIXTest {
+
+	/** IP address **/
+	private static final String IP = "localhost";
+	/** Port number (used for the TCP connection and the default socket path) */
+	private static final int PORT = 61506;
+	/** Number of round trips */
+	private static final int NUM_ROUNDS = 4000;
+	/** Number of round trips before the time is measured (warm-up) */
+	private static final int NUM_WARMUP_ROUNDS = 2000;
+	/** Number of bytes of the payload that exceeds the socket buffers */
+	private static final int LARGE_BYTES = 200000;
+	/** Tolerated ratio of the round-trip times of the Unix domain socket and the loopback TCP connection (timing noise) */
+	private static final double TIMING_TOLERANCE = 1.5;
+	/** Connect timeout in ms */
+	private static final int TIMEOUT = 300;
+
+	@Test
+	public void echoTest() throws Throwable {
+		assumeTrue(UNIXcommunicationLayer.isSupported());
+		CommLayerParams params = makeParams(ForteTransportType.UNIX);
+		params.setUnixSocketPath(new File(System.getProperty("java.io.tmpdir"), "forte_unixtest.sock").getPath());
+		params.setConnectTimeout(5000); // Connecting and accepting are bounded by a selector
+		long unixNanos = measureRoundTrips(params);
+		assertFalse("Socket file deleted", new File(params.getUnixSocketPath()).exists());
+		long tcpNanos = measureRoundTrips(makeParams(ForteTransportType.NIO));
+		assertTrue("Unix domain socket not slower than loopback TCP", unixNanos <= TIMING_TOLERANCE * tcpNanos);
+	}
+
+	@Test(timeout = 10000)
+	public void acceptTimeoutTest() throws Exception {
+		assumeTrue(UNIXcommunicationLayer.isSupported());
+		CommLayerParams params = makeParams(ForteTransportType.UNIX);
+		params.setServiceType(ForteServiceType.SERVER);
+		params.setUnixSocketPath(new File(System.getProperty("java.io.tmpdir"), "forte_unixtimeout.sock").getPath());
+		params.setConnectTimeout(TIMEOUT);
+		IPcommunicationLayer server = new IPcommunicationLayer();
+		long start = System.currentTimeMillis();
+		try {
+			server.openConnection(params);
+			fail("No client connects");
+		} catch (SocketTimeoutException e) {
+			assertTrue("Waited for the timeout", System.currentTimeMillis() - start >= TIMEOUT);
+		} finally {
+			server.closeConnection();
+		}
+		assertFalse("Socket file deleted", new File(params.getUnixSocketPath()).exists());
+	}
+
+	/**
+	 * Starts an echo server with the parameters, connects to it and measures the round trips.
+	 * @return total time of the round trips after the warm-up in ns
+	 */
+	private static long measureRoundTrips(CommLayerParams params) throws Throwable {
+		final CommLayerParams serverParams = makeParams(params.getTransportType());
+		serverParams.setServiceType(ForteServiceType.SERVER);
+		serverParams.setUnixSocketPath(params.getUnixSocketPath());
+		serverParams.setConnectTimeout(params.getConnectTimeout());
+		final AtomicReference<Throwable> echoError = new AtomicReference<Throwable>();
+		Thread echo = new Thread() {
+			@Override
+			public void run() {
+				IPcommunicationLayer server = new IPcommunicationLayer();
+				try {
+					server.openConnection(serverParams);
+					byte[] frame = new byte[Long.SIZE / Byte.SIZE];
+					for (int r = 0; r < NUM_ROUNDS; r++) {
+						server.readFully(frame, 0, frame.length);
+						server.sendData(frame);
+					}
+					byte[] large = new byte[LARGE_BYTES];
+					server.readFully(large, 0, large.length);
+					server.sendData(large);
+					server.closeConnection();
+				} catch (Throwable e) {
+					echoError.set(e);
+				}
+			}
+		};
+		echo.start();
+		Thread.sleep(200); // Give echo time to open connection
+		IPcommunicationLayer client = new IPcommunicationLayer();
+		client.openConnection(params);
+		long start = System.nanoTime();
+		try {
+			for (int r = 0; r < NUM_ROUNDS; r++) {
+				if (r == NUM_WARMUP_ROUNDS) {
+					start = System.nanoTime();
+				}
+				sendLong(client, r);
+				assertEquals("Echo", r, client.readLong());
+			}
+			long elapsed = System.nanoTime() - start;
+			byte[] large = new byte[LARGE_BYTES];
+			for (int i = 0; i < large.length; i++) {
+				large[i] = (byte) i;
+			}
+			client.sendData(large);
+			byte[] received = new byte[LARGE_BYTES];
+			client.readFully(received, 0, received.length);
+			assertArrayEquals("Payload larger than the buffers", large, received);
+			echo.join(5000);
+			if (echoError.get() != null) {
+				throw echoError.get();
+			}
+			return elapsed;
+		} finally {
+			client.closeConnection();
+		}
+	}
+
+	private static CommLayerParams makeParams(ForteTransportType transport) throws IOException {
+		CommLayerParams params = new CommLayerParams(InetAddress.getByName(IP), PORT);
+		params.setTransportType(transport);
+		return params;
+	}
+
+	private static void sendLong(ICommunicationLayer layer, long value) throws IOException {
+		byte[] frame = new byte[Long.SIZE / Byte.SIZE];
+		for (int i = 0; i < frame.length; i++) {
+			frame[i] = (byte) (value >> (Long.SIZE - Byte.SIZE * (i + 1)));
+		}
+		layer.sendData(frame);
+	}
+}
@@ -56,7 +56,14 @@ public class DateAndTimeTest {
 		assertEquals("toString() output", CHECKTIME, dt3.toString());
 	}
 	
-	
+	@Test
+	public void testStringParsing() throws Exception {
+		long start = new DateAndTime(2017, 0, 1, 0, 0, 0, 0).getForteSimulationStart();
+		assertEquals("Parsed String", start, new DateAndTime(CHECKTIME).getForteSimulationStart());
+		assertEquals("Leniently parsed String", start, new DateAndTime("1.1.2017 0:00:00").getForteSimulationStart());
+		dt3.setSimulationTimeS(3600 * 24 * 40 + 61);
+		assertEquals("toString() after setSimulationTimeS()", "10.02.2017 00:01:01", dt3.toString());
+	}
 	
 	private void setSimulationTimes() {
 		dt2.setSimulationTimeS(-10);
@@ -7,6 +7,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
 import org.junit.Before;
@@ -43,8 +44,22 @@ public class BatteryActorTest {
 	private static final String PORT_KEY = "Port number";
 	/** Key for the option to wait for a response from FORTE or not */
 	protected static final String WAITFORRSP_KEY = "Wait for response";
+	/** Key for the option to keep the connection to FORTE open for the next simulation */
+	protected static final String KEEPSESSION_KEY = "Keep connection between simulations";
+	/** Integer indicating to close the connection to FORTE at the end of the simulation */
+	protected static final int DONTKEEPSESSION = 0;
 	/** Integer indicating not to wait for a response from FORTE */
 	protected static final int DONTWAITFORRSP = 0;
+	/** Key for the option to receive the data from FORTE in the background */
+	protected static final String PREFETCH_KEY = "Prefetch received data";
+	/** Integer indicating not to receive the data from FORTE in the background */
+	protected static final int DONTPREFETCH = 0;
+	/** Key for the maximum time in milliseconds to wait for the control signals from FORTE in each time step */
+	protected static final String RECVDEADLINE_KEY = "Receive deadline (ms)";
+	/** Integer indicating to wait for the control signals from FORTE without a deadline */
+	protected static final int NODEADLINE = 0;
+	/** Receive deadline used in the tests in ms */
+	private static final int DEADLINE = 100;
 	/** Precision for assertions of double/float data */
 	private static double PRECISION = 0.000001;
 	private static final String CSIGNAL1 = "Set charging power";
@@ -65,11 +80,22 @@ public class BatteryActorTest {
 	 */
 	private PolysunSettings createPolysunSettings(String host, int port, int waitForRsp, 
 			int timestampSetting, boolean controlChargingpower, boolean controlControlmode) {
+		return createPolysunSettings(host, port, waitForRsp, timestampSetting, controlChargingpower, controlControlmode, DONTPREFETCH, NODEADLINE);
+	}
+	
+	/**
+	 * Returns a PolysunSetting object with the specified prefetch option and receive deadline.
+	 */
+	private PolysunSettings createPolysunSettings(String host, int port, int waitForRsp, 
+			int timestampSetting, boolean controlChargingpower, boolean controlControlmode, int prefetch, int deadline) {
 		List<PropertyValue> properties = new ArrayList<>();
 		// Host name and port number
 		properties.add(new PropertyValue(HOST_KEY, host));
 		properties.add(new PropertyValue(PORT_KEY, port, "")); // Port number
 		properties.add(new PropertyValue(WAITFORRSP_KEY, waitForRsp, ""));
+		properties.add(new PropertyValue(KEEPSESSION_KEY, DONTKEEPSESSION, ""));
+		properties.add(new PropertyValue(PREFETCH_KEY, prefetch, ""));
+		properties.add(new PropertyValue(RECVDEADLINE_KEY, deadline, ""));
 		
 		List<Sensor> sensors = new ArrayList<>();
 		
@@ -147,7 +173,7 @@ public class BatteryActorTest {
 	@Test
 	public void testGetConfiguration() throws PluginControllerException {
 		PluginControllerConfiguration configuration = controller.getConfiguration(null);
-		assertEquals("Wrong number of configured properties", 3, configuration.getProperties().size());
+		assertEquals("Wrong number of configured properties", 6, configuration.getProperties().size());
 		assertEquals("Wrong number of generic properties", 0, configuration.getNumGenericProperties());
 		assertEquals("Wrong number of configured sensors", 0, configuration.getSensors().size());
 		assertEquals("Wrong number of generic sensors", 0, configuration.getNumGenericSensors());
@@ -249,6 +275,55 @@ public class BatteryActorTest {
 		controller.terminateSimulation(null);
 	}
 	
+	@Test
+	public void testControlPrefetch() throws Exception {
+		float[] sensors = new float[0];
+		float[] controlSignals = new float[2];
+		float[] logValues = new float[3];
+		int simulationTime = 0;
+		controller.build(createPolysunSettings(DEF_TCP_ADDRESS, DEF_PORT_NUMBER, DONTWAITFORRSP, 0, true, true, 1, NODEADLINE), null);
+		echo.start();
+		Thread.sleep(THREAD_SLEEP_TIME); // Give echo time to open connection
+		controller.initialiseSimulation(null);
+		echo.join(); // The frame is received before control() is called
+		controller.control(simulationTime, true, sensors, controlSignals, logValues, false, null);
+		assertEquals("Wrong value received 1", 5, controlSignals[0], PRECISION);
+		assertEquals("Wrong value received 2", 1.0f,  controlSignals[1], PRECISION);
+		controlSignals = new float[2];
+		echo.run(); // Send the next frame
+		controller.control(simulationTime + 1, true, sensors, controlSignals, logValues, false, null);
+		assertEquals("Wrong value received 1", 5, controlSignals[0], PRECISION);
+		assertEquals("Wrong value received 2", 1.0f,  controlSignals[1], PRECISION);
+		controller.terminateSimulation(null);
+	}
+	
+	@Test
+	public void testControlDeadline() throws Exception {
+		float[] sensors = new float[0];
+		float[] controlSignals = new float[2];
+		float[] logValues = new float[3];
+		int simulationTime = 0;
+		controller.build(createPolysunSettings(DEF_TCP_ADDRESS, DEF_PORT_NUMBER, DONTWAITFORRSP, 0, true, true, DONTPREFETCH, DEADLINE), null);
+		echo.start();
+		Thread.sleep(THREAD_SLEEP_TIME); // Give echo time to open connection
+		controller.initialiseSimulation(null);
+		controller.control(simulationTime, true, sensors, controlSignals, logValues, false, null);
+		echo.join();
+		assertEquals("Wrong value received 1", 5, controlSignals[0], PRECISION);
+		assertEquals("Missed deadlines", 0, ((AbstractSingleComponentController) controller).getNumMissedDeadlines());
+		// FORTE does not respond in the next time step
+		controlSignals = new float[2];
+		long start = System.nanoTime();
+		controller.control(simulationTime + 1, true, sensors, controlSignals, logValues, false, null);
+		assertTrue("Deadline bounds the wait", System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(10 * DEADLINE));
+		assertEquals("Value held 1", 5, controlSignals[0], PRECISION);
+		assertEquals("Value held 2", 1.0f,  controlSignals[1], PRECISION);
+		assertEquals("Missed deadlines", 1, ((AbstractSingleComponentController) controller).getNumMissedDeadlines());
+		controller.terminateSimulation(null);
+		assertEquals("Missed deadlines reported after the simulation", 1, ((AbstractSingleComponentController) controller).getNumMissedDeadlines());
+		assertEquals("No late frames", 0, ((AbstractSingleComponentController) controller).getNumLateFrames());
+	}
+	
 	public class BatteryEchoSensor extends IForteSocketEcho {
 		
 		public BatteryEchoSensor() {
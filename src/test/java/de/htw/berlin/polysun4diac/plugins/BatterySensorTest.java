@@ -26,7 +26,11 @@ import com.velasolaris.plugin.controller.spi.PluginControllerException;
 import com.velasolaris.plugin.controller.spi.PolysunSettings;
 import com.velasolaris.plugin.controller.spi.PolysunSettings.PropertyValue;
 
+import de.htw.berlin.polysun4diac.forte.comm.CommLayerParams;
+import de.htw.berlin.polysun4diac.forte.comm.ForteServiceType;
+import de.htw.berlin.polysun4diac.forte.comm.IForteSocket;
 import de.htw.berlin.polysun4diac.forte.datatypes.DateAndTime;
+import de.htw.berlin.polysun4diac.forte.datatypes.ForteDataType;
 
 /**
  * JUnit tests for the BatterySensorController.
@@ -46,6 +50,24 @@ public class BatterySensorTest {
 	private static final String SIMULATIONSTART_KEY = "Beginning of simulation";
 	/** Key for the option to wait for a response from FORTE or not */
 	private static final String WAITFORRSP_KEY = "Wait for response";
+	/** Key for the option to keep the connection to FORTE open for the next simulation */
+	private static final String KEEPSESSION_KEY = "Keep connection between simulations";
+	/** Key for the minimum absolute change of the SoC that is sent to FORTE */
+	private static final String DEADBAND_SOC_KEY = "Absolute deadband (State of charge)";
+	/** Key for the minimum absolute change of the battery transfer that is sent to FORTE */
+	private static final String DEADBAND_TRANSFER_KEY = "Absolute deadband (Battery transfer)";
+	/** Key for the minimum relative change of a sensor value that is sent to FORTE */
+	private static final String DEADBAND_REL_KEY = "Relative deadband";
+	/** Key for the maximum simulation time in s without sending the sensor values to FORTE */
+	private static final String MAXSILENCE_KEY = "Maximum silence (s)";
+	/** Value of the deadbands that disables the deadband */
+	private static final float NODEADBAND = 0;
+	/** Default value of {@link #MAXSILENCE_KEY} */
+	private static final int DEFMAXSILENCE = 3600;
+	/** Port of the deadband test */
+	private static final int DEADBAND_PORT = 61517;
+	/** Integer indicating to close the connection to FORTE at the end of the simulation */
+	private static final int DONTKEEPSESSION = 0;
 	/** Precision for assertions of double/float data */
 	private static double PRECISION = 0.000001;
 	private static final String SENSOR1 = "State of charge";
@@ -66,6 +88,14 @@ public class BatterySensorTest {
 	 */
 	private PolysunSettings createPolysunSettings(String host, int port,
 			int timestampSetting, int waitForRsp, boolean measuredSoc, boolean measuredBatteryTransfer, boolean sendTimestamp) {
+		return createPolysunSettings(host, port, timestampSetting, waitForRsp, measuredSoc, measuredBatteryTransfer, sendTimestamp, NODEADBAND, NODEADBAND);
+	}
+
+	/**
+	 * Returns a PolysunSetting object with the absolute deadbands of both sensors.
+	 */
+	private PolysunSettings createPolysunSettings(String host, int port, int timestampSetting, int waitForRsp, boolean measuredSoc,
+			boolean measuredBatteryTransfer, boolean sendTimestamp, float deadbandSoc, float deadbandTransfer) {
 		List<PropertyValue> properties = new ArrayList<>();
 		// Host name and port number
 		properties.add(new PropertyValue(HOST_KEY, host));
@@ -79,6 +109,11 @@ public class BatterySensorTest {
 			properties.add(new PropertyValue(SIMULATIONSTART_KEY, defaultStart));
 		}
 		properties.add(new PropertyValue(WAITFORRSP_KEY, waitForRsp, ""));
+		properties.add(new PropertyValue(KEEPSESSION_KEY, DONTKEEPSESSION, ""));
+		properties.add(new PropertyValue(DEADBAND_SOC_KEY, deadbandSoc, ""));
+		properties.add(new PropertyValue(DEADBAND_TRANSFER_KEY, deadbandTransfer, "W"));
+		properties.add(new PropertyValue(DEADBAND_REL_KEY, NODEADBAND, "%"));
+		properties.add(new PropertyValue(MAXSILENCE_KEY, DEFMAXSILENCE, ""));
 		
 		List<Sensor> sensors = new ArrayList<>();
 		sensors.add(new Sensor(SENSOR1, "", true, false, measuredSoc)); // Sensor 1
@@ -154,7 +189,7 @@ public class BatterySensorTest {
 	@Test
 	public void testGetConfiguration() throws PluginControllerException {
 		PluginControllerConfiguration configuration = controller.getConfiguration(null);
-		assertEquals("Wrong number of configured properties", 5, configuration.getProperties().size());
+		assertEquals("Wrong number of configured properties", 10, configuration.getProperties().size());
 		assertEquals("Wrong number of generic properties", 0, configuration.getNumGenericProperties());
 		assertEquals("Wrong number of configured sensors", 2, configuration.getSensors().size());
 		assertEquals("Wrong number of generic sensors", 0, configuration.getNumGenericSensors());
@@ -256,4 +291,33 @@ public class BatterySensorTest {
 		assertEquals("Wrong value sent 2", sensors[1] * (-1), echo.getReceivedData()[1], PRECISION);
 		controller.terminateSimulation(null);
 	}
+	
+	@Test
+	public void testDeadband() throws Exception {
+		controller.build(createPolysunSettings(DEF_TCP_ADDRESS, DEADBAND_PORT, 0, 0, true, true, true, 0.01f, 50f), null);
+		controller.initialiseSimulation(null);
+		// Stand-in for the SERVER function block on FORTE
+		CommLayerParams params = new CommLayerParams(DEF_TCP_ADDRESS, DEADBAND_PORT);
+		params.setServiceType(ForteServiceType.SERVER);
+		params.addOutput(ForteDataType.LREAL);
+		params.addOutput(ForteDataType.LREAL);
+		IForteSocket forte = params.makeIPSocket(); // The controller connects in the background
+		try {
+			float[][] values = new float[][] { { 0.5f, 1000f }, { 0.52f, 1000f }, { 0.52f, 1030f }, { 0.52f, 1100f }, { 0.525f, 1100f } };
+			for (int i = 0; i < values.length; i++) {
+				controller.control(900 * i, true, values[i], new float[0], new float[0], false, null);
+			}
+			// Each sensor has its own deadband: the change of the SoC by 0.02 is sent, the change of the power by 30 W is not
+			float[][] expected = new float[][] { { 0.5f, 1000f }, { 0.52f, 1000f }, { 0.52f, 1100f } };
+			for (float[] value : expected) {
+				forte.recvData();
+				assertEquals("SoC sent", value[0], forte.getDouble(), PRECISION);
+				assertEquals("Battery transfer sent", value[1] * (-1), forte.getDouble(), PRECISION);
+			}
+			assertEquals("Suppressed time steps", values.length - expected.length, ((AbstractSensorController) controller).getNumSuppressed());
+		} finally {
+			controller.terminateSimulation(null);
+			forte.disconnect();
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,164 @@
+package de.htw.berlin.polysun4diac.plugins;
+
+import static de.htw.berlin.polysun4diac.CommonFunctionsAndConstants.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.velasolaris.plugin.controller.spi.IPluginController;
+import com.velasolaris.plugin.controller.spi.PluginControllerConfiguration;
+import com.velasolaris.plugin.controller.spi.PluginControllerException;
+import com.velasolaris.plugin.controller.spi.PolysunSettings;
+import com.velasolaris.plugin.controller.spi.PluginControllerConfiguration.ControlSignal;
+import com.velasolaris.plugin.controller.spi.PluginControllerConfiguration.Log;
+import com.velasolaris.plugin.controller.spi.PluginControllerConfiguration.Sensor;
+import com.velasolaris.plugin.controller.spi.PolysunSettings.PropertyValue;
+
+import de.htw.berlin.polysun4diac.forte.comm.CommLayerParams;
+import de.htw.berlin.polysun4diac.forte.comm.IForteSocket;
+import de.htw.berlin.polysun4diac.forte.datatypes.ForteDataType;
+
+/**
+ * JUnit tests for the FleetActorController.
+ * Plain CLIENT sockets stand in for the FORTE runtimes of the fleet.
+ */
+public class FleetActorTest {
+
+	/** Key for the host parameter. */
+	private static final String HOST_KEY = "Host name";
+	/** Key for the port parameter. */
+	private static final String PORT_KEY = "Port number";
+	/** Key for the number of FORTE runtimes to wait for before the first time step */
+	private static final String NUMCLIENTS_KEY = "Number of FORTE runtimes";
+	/** Key for the aggregation of the values received from the FORTE runtimes */
+	private static final String AGGREGATION_KEY = "Aggregation";
+	/** Integer indicating to sum up the received values */
+	private static final int SUM = 0;
+	/** Integer indicating to average the received values */
+	private static final int MEAN = 1;
+	/** Port of the fleet server */
+	private static final int PORT = 61512;
+	/** Number of simulated FORTE runtimes */
+	private static final int NUM_RUNTIMES = 3;
+	/** Precision for assertions of float data */
+	private static final float PRECISION = 0.0001f;
+	private static final String NAME = "Fleet Actor";
+
+	private IPluginController controller;
+	private List<IForteSocket> runtimes;
+
+	/**
+	 * Returns a PolysunSetting object as it would be returned by Polysun. This
+	 * object must correspond to the configuration by
+	 * {@link FleetActorController#getConfiguration(java.util.Map)}.
+	 */
+	private PolysunSettings createPolysunSettings(int numClients, int aggregation, boolean used) {
+		List<PropertyValue> properties = new ArrayList<>();
+		properties.add(new PropertyValue(HOST_KEY, DEF_TCP_ADDRESS));
+		properties.add(new PropertyValue(PORT_KEY, PORT, ""));
+		properties.add(new PropertyValue(NUMCLIENTS_KEY, numClients, ""));
+		properties.add(new PropertyValue(AGGREGATION_KEY, aggregation, ""));
+
+		List<Sensor> sensors = new ArrayList<>();
+
+		List<ControlSignal> controlSignals = new ArrayList<>();
+		if (used) {
+			controlSignals.add(new ControlSignal("Power", "W", true, false, true));
+			controlSignals.add(new ControlSignal("State", "", true, false, true));
+		}
+
+		List<Log> logs = new ArrayList<>();
+		logs.add(new Log("Connected FORTE runtimes"));
+
+		return new PolysunSettings(properties, sensors, controlSignals, logs);
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		controller = new FleetActorController();
+		runtimes = new ArrayList<>();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (IForteSocket runtime : runtimes) {
+			runtime.disconnect();
+		}
+		controller.terminateSimulation(null);
+	}
+
+	@Test
+	public void testGetConfiguration() throws PluginControllerException {
+		PluginControllerConfiguration configuration = controller.getConfiguration(null);
+		assertEquals("Wrong number of configured properties", 4, configuration.getProperties().size());
+		assertEquals("Wrong number of configured sensors", 0, configuration.getSensors().size());
+		assertEquals("Wrong number of generic controlSignals", MAX_NUM_GENERIC_SIGNALS, configuration.getNumGenericControlSignals());
+		assertEquals("Wrong number of logs", 1, configuration.getLogs().size());
+		assertEquals(NAME, controller.getName());
+	}
+
+	@Test
+	public void testControl() throws Exception {
+		controller.build(createPolysunSettings(NUM_RUNTIMES, SUM, true), null);
+		controller.initialiseSimulation(null);
+		for (int i = 0; i < NUM_RUNTIMES; i++) {
+			runtimes.add(connectRuntime());
+		}
+		float[] controlSignals = new float[2];
+		float[] logValues = new float[1];
+		for (int step = 0; step < 3; step++) {
+			for (int i = 0; i < NUM_RUNTIMES; i++) {
+				send(runtimes.get(i), 100f * (i + 1) + step, i);
+			}
+			controller.control(step, true, new float[0], controlSignals, logValues, false, null);
+			assertEquals("Sum of the runtimes", 600f + NUM_RUNTIMES * step, controlSignals[0], PRECISION);
+			assertEquals("Sum of the runtimes", 3f, controlSignals[1], PRECISION);
+			assertEquals("Connected runtimes", NUM_RUNTIMES, logValues[0], PRECISION);
+		}
+		// One runtime leaves and another one joins
+		runtimes.remove(0).disconnect();
+		runtimes.add(connectRuntime());
+		Thread.sleep(50);
+		for (IForteSocket runtime : runtimes) {
+			send(runtime, 10f, 1);
+		}
+		controller.control(3, true, new float[0], controlSignals, logValues, false, null);
+		assertEquals("Sum of the runtimes", 10f * NUM_RUNTIMES, controlSignals[0], PRECISION);
+		assertEquals("Connected runtimes", NUM_RUNTIMES, logValues[0], PRECISION);
+	}
+
+	@Test
+	public void testMean() throws Exception {
+		controller.build(createPolysunSettings(2, MEAN, true), null);
+		controller.initialiseSimulation(null);
+		runtimes.add(connectRuntime());
+		runtimes.add(connectRuntime());
+		send(runtimes.get(0), 1f, 0);
+		send(runtimes.get(1), 3f, 1);
+		float[] controlSignals = new float[2];
+		controller.control(0, true, new float[0], controlSignals, new float[1], false, null);
+		assertEquals("Mean of the runtimes", 2f, controlSignals[0], PRECISION);
+		assertEquals("Mean of the runtimes", 0.5f, controlSignals[1], PRECISION);
+	}
+
+	/**
+	 * @return a socket connected to the fleet server, standing in for a FORTE CLIENT function block
+	 */
+	private IForteSocket connectRuntime() throws Exception {
+		CommLayerParams params = new CommLayerParams(DEF_TCP_ADDRESS, PORT);
+		params.addInput(ForteDataType.REAL);
+		params.addInput(ForteDataType.REAL);
+		return params.makeIPSocket();
+	}
+
+	private static void send(IForteSocket runtime, float power, float state) throws Exception {
+		runtime.put(power);
+		runtime.put(state);
+		runtime.sendData();
+	}
+}
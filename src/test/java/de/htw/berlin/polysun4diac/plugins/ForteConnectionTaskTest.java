@@ -0,0 +1,80 @@
+package de.htw.berlin.polysun4diac.plugins;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.junit.Test;
+
+import de.htw.berlin.polysun4diac.forte.comm.CommLayerParams;
+import de.htw.berlin.polysun4diac.forte.comm.ForteServiceType;
+import de.htw.berlin.polysun4diac.forte.comm.IForteSocket;
+import de.htw.berlin.polysun4diac.forte.datatypes.ForteDataType;
+
+/**
+ * JUnit test cases for establishing connections to FORTE in the background.
+ */
+public class ForteConnectionTaskTest {
+
+	/** IP address **/
+	private static final String IP = "localhost";
+	/** Port of the client test */
+	private static final int CLIENT_PORT = 61510;
+	/** Port of the server test */
+	private static final int SERVER_PORT = 61511;
+	/** Connect timeout of the server test in milliseconds */
+	private static final int TIMEOUT = 100;
+
+	@Test
+	public void retryTest() throws Exception {
+		CommLayerParams params = new CommLayerParams(InetAddress.getByName(IP), CLIENT_PORT);
+		params.addInputOutput(ForteDataType.LREAL);
+		ForteConnectionTask task = new ForteConnectionTask("retryTest", params, false);
+		task.start(); // The first attempt is refused
+		Thread.sleep(50);
+		ServerSocket server = new ServerSocket(CLIENT_PORT);
+		IForteSocket socket = task.await();
+		Socket accepted = server.accept();
+		assertTrue("Connected by a retry", socket.isConnected());
+		socket.disconnect();
+		accepted.close();
+		server.close();
+	}
+
+	@Test
+	public void timeoutTest() throws Exception {
+		CommLayerParams params = new CommLayerParams(InetAddress.getByName(IP), SERVER_PORT);
+		params.setServiceType(ForteServiceType.SERVER);
+		params.setConnectTimeout(TIMEOUT);
+		params.addInputOutput(ForteDataType.LREAL);
+		ForteConnectionTask task = new ForteConnectionTask("timeoutTest", params, false);
+		long start = System.currentTimeMillis();
+		task.start();
+		try {
+			task.await();
+			fail("FORTE never connects");
+		} catch (IOException e) {
+			// Expected
+		}
+		assertTrue("All attempts made", System.currentTimeMillis() - start >= ForteConnectionTask.MAXATTEMPTS * TIMEOUT);
+		new ServerSocket(SERVER_PORT).close(); // The server sockets of the failed attempts have been closed
+	}
+
+	@Test
+	public void cancelTest() throws Exception {
+		CommLayerParams params = new CommLayerParams(InetAddress.getByName(IP), CLIENT_PORT);
+		params.addInputOutput(ForteDataType.LREAL);
+		ForteConnectionTask task = new ForteConnectionTask("cancelTest", params, false);
+		task.start();
+		task.cancel();
+		try {
+			task.await();
+			fail("Cancelled");
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+}
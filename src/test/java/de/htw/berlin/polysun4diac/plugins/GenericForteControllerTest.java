@@ -30,7 +30,11 @@ import com.velasolaris.plugin.controller.spi.PluginControllerConfiguration.Senso
 import com.velasolaris.plugin.controller.spi.PluginControllerConfiguration.AbstractProperty.Type;
 import com.velasolaris.plugin.controller.spi.PolysunSettings.PropertyValue;
 
+import de.htw.berlin.polysun4diac.forte.comm.CommLayerParams;
+import de.htw.berlin.polysun4diac.forte.comm.ForteServiceType;
+import de.htw.berlin.polysun4diac.forte.comm.IForteSocket;
 import de.htw.berlin.polysun4diac.forte.datatypes.DateAndTime;
+import de.htw.berlin.polysun4diac.forte.datatypes.ForteDataType;
 
 /**
  * JUnit tests for the GenericSensorController.
@@ -50,15 +54,30 @@ public class GenericForteControllerTest {
 	private static final String SIMULATIONSTART_KEY = "Beginning of simulation";
 	/** Key for the option to wait for a response from FORTE or not */
 	protected static final String WAITFORRSP_KEY = "Wait for response";
+	/** Key for the option to keep the connection to FORTE open for the next simulation */
+	protected static final String KEEPSESSION_KEY = "Keep connection between simulations";
+	/** Integer indicating to close the connection to FORTE at the end of the simulation */
+	protected static final int DONTKEEPSESSION = 0;
 	/** Key for the property specifying the IEC 61499 service type. */
 	protected static final String SERVICETYPE_KEY = "Communication service type";
 	/** Integer indicating not to wait for a response from FORTE */
 	protected static final int DONTWAITFORRSP = 0;
+	/** Key for the option to decode only the newest datagram received by a SUBSCRIBER */
+	private static final String CONFLATE_KEY = "Receive latest value only";
+	/** Key for the option to receive a valid-until time stamp from FORTE */
+	private static final String LOOKAHEAD_KEY = "Valid-until lookahead";
+	/** Integer indicating that FORTE does not send a valid-until time stamp */
+	private static final int NOLOOKAHEAD = 0;
+	/** Integer indicating that FORTE sends a valid-until time stamp */
+	private static final int LOOKAHEAD = 1;
+	/** Port of the lookahead test */
+	private static final int LOOKAHEAD_PORT = 61513;
 	/** Index of the CLIENT service type in the {@link #SERVICETYPE_KEY} property. */
 	protected static final int CLIENT_IDX = 0;
 	/** Index of the SERVER service type in the {@link #SERVICETYPE_KEY} property. */
 	protected static final int SERVER_IDX = 1;
 	/** Precision for assertions of double/float data */
+	private static final float PRECISION = 0.0001f;
 	private static final String NAME = "Generic 4diac Controller";
 	
 	@BeforeClass
@@ -73,6 +92,15 @@ public class GenericForteControllerTest {
 	 * {@link BatterySensorController#getConfiguration(Map)}.
 	 */
 	private PolysunSettings createPolysunSettings(String host, int port, int timestampSetting, int waitForRsp, int serviceType, boolean sendTimestamp) {
+		return createPolysunSettings(host, port, timestampSetting, waitForRsp, serviceType, sendTimestamp, NOLOOKAHEAD, false);
+	}
+
+	/**
+	 * Returns a PolysunSetting object with the valid-until lookahead option.
+	 * If used is true, one sensor and one control signal are used.
+	 */
+	private PolysunSettings createPolysunSettings(String host, int port, int timestampSetting, int waitForRsp, int serviceType, boolean sendTimestamp,
+			int lookahead, boolean used) {
 		List<PropertyValue> properties = new ArrayList<>();
 		properties.add(new PropertyValue(HOST_KEY, host));
 		properties.add(new PropertyValue(PORT_KEY, port, ""));
@@ -85,11 +113,18 @@ public class GenericForteControllerTest {
 			properties.add(new PropertyValue(SIMULATIONSTART_KEY, defaultStart));
 		}
 		properties.add(new PropertyValue(WAITFORRSP_KEY, waitForRsp, ""));
+		properties.add(new PropertyValue(KEEPSESSION_KEY, DONTKEEPSESSION, ""));
 		properties.add(new PropertyValue(SERVICETYPE_KEY, serviceType, ""));
+		properties.add(new PropertyValue(CONFLATE_KEY, 0, ""));
+		properties.add(new PropertyValue(LOOKAHEAD_KEY, lookahead, ""));
 		
 		List<Sensor> sensors = new ArrayList<>();
 		
 		List<ControlSignal> controlSignals = new ArrayList<>();
+		if (used) {
+			sensors.add(new Sensor("Sensor", "", true, false, true));
+			controlSignals.add(new ControlSignal("Control signal", "", true, false, true));
+		}
 		
 		List<Log> logs = new ArrayList<>();
 
@@ -150,7 +185,7 @@ public class GenericForteControllerTest {
 	@Test
 	public void testGetConfiguration() throws PluginControllerException {
 		PluginControllerConfiguration configuration = controller.getConfiguration(null);
-		assertEquals("Wrong number of configured properties", 6, configuration.getProperties().size());
+		assertEquals("Wrong number of configured properties", 9, configuration.getProperties().size());
 		assertEquals("Wrong number of generic properties", 0, configuration.getNumGenericProperties());
 		assertEquals("Wrong number of configured sensors", 0, configuration.getSensors().size());
 		assertEquals("Wrong number of generic sensors", MAX_NUM_GENERIC_SENSORS, configuration.getNumGenericSensors());
@@ -187,7 +222,7 @@ public class GenericForteControllerTest {
 	public void testGetPropertiesToHide() {
 		List<String> propertiesToHide = controller
 				.getPropertiesToHide(createPolysunSettingsDefaultConfiguration(), null);
-		assertEquals("Wrong number of propreties to hide", 1, propertiesToHide.size());
+		assertEquals("Wrong number of propreties to hide", 2, propertiesToHide.size());
 	}
 
 	@Test
@@ -212,4 +247,68 @@ public class GenericForteControllerTest {
 		assertEquals("Wrong control signal index returned", -1,
 				((AbstractPluginController) controller).getControlSignalIndex("XXX"));
 	}
+
+	@Test
+	public void testLookahead() throws Exception {
+		PolysunSettings settings = createPolysunSettings(DEF_TCP_ADDRESS, LOOKAHEAD_PORT, 1, DONTWAITFORRSP, CLIENT_IDX, true, LOOKAHEAD, true);
+		long start = new DateAndTime(settings.getPropertyValue(SIMULATIONSTART_KEY).getString()).getForteSimulationStart();
+		controller.build(settings, null);
+		controller.initialiseSimulation(null);
+		// Stand-in for the SERVER function block on FORTE
+		CommLayerParams params = new CommLayerParams(DEF_TCP_ADDRESS, LOOKAHEAD_PORT);
+		params.setServiceType(ForteServiceType.SERVER);
+		params.addInput(ForteDataType.REAL);
+		params.addInput(ForteDataType.DATE_AND_TIME);
+		params.addOutput(ForteDataType.REAL);
+		params.addOutput(ForteDataType.DATE_AND_TIME);
+		IForteSocket forte = params.makeIPSocket(); // The controller connects in the background
+		try {
+			float[] controlSignals = new float[1];
+			// The response in the pre-run at the end of the year is valid beyond the start of the main simulation
+			int preRunTime = NUM_SECONDS_PER_YEAR - 3600;
+			respond(forte, 9f, DateAndTime.toForteTime(start, NUM_SECONDS_PER_YEAR));
+			controller.control(preRunTime, true, new float[] { 0f }, controlSignals, new float[0], true, null);
+			assertEquals("Response of FORTE in the pre-run", 9f, controlSignals[0], PRECISION);
+			forte.recvData();
+			assertEquals("Sensor sent to FORTE", 0f, forte.getFloat(), PRECISION);
+			assertEquals("Time stamp sent to FORTE", DateAndTime.toForteTime(start, preRunTime), forte.getDateAndTimeMillis());
+			// The main simulation restarts at time 0, so the response of the pre-run is not held
+			respond(forte, 5f, DateAndTime.toForteTime(start, 3600));
+			controller.control(0, true, new float[] { 1f }, controlSignals, new float[0], false, null);
+			assertEquals("Response of FORTE", 5f, controlSignals[0], PRECISION);
+			forte.recvData();
+			assertEquals("Sensor sent to FORTE", 1f, forte.getFloat(), PRECISION);
+			assertEquals("Time stamp sent to FORTE", DateAndTime.toForteTime(start, 0), forte.getDateAndTimeMillis());
+			// The response is valid for one hour, so no data is exchanged
+			for (int simulationTime = 900; simulationTime < 3600; simulationTime += 900) {
+				controlSignals[0] = 0f;
+				controller.control(simulationTime, true, new float[] { 2f }, controlSignals, new float[0], false, null);
+				assertEquals("Held response", 5f, controlSignals[0], PRECISION);
+			}
+			assertEquals("Skipped exchanges", 3, ((GenericForteController) controller).getNumSkippedExchanges());
+			respond(forte, 7f, DateAndTime.toForteTime(start, 3600)); // Not later than the current time
+			controller.control(3600, true, new float[] { 3f }, controlSignals, new float[0], false, null);
+			assertEquals("Response of FORTE", 7f, controlSignals[0], PRECISION);
+			forte.recvData();
+			assertEquals("Sensor sent to FORTE", 3f, forte.getFloat(), PRECISION);
+			assertEquals("Time stamp sent to FORTE", DateAndTime.toForteTime(start, 3600), forte.getDateAndTimeMillis());
+			respond(forte, 8f, DateAndTime.toForteTime(start, 0));
+			controller.control(4500, true, new float[] { 4f }, controlSignals, new float[0], false, null);
+			assertEquals("Response of FORTE", 8f, controlSignals[0], PRECISION);
+			forte.recvData();
+			assertEquals("Sensor sent to FORTE", 4f, forte.getFloat(), PRECISION);
+		} finally {
+			controller.terminateSimulation(null);
+			forte.disconnect();
+		}
+	}
+
+	/**
+	 * Buffers the response of the FORTE stand-in before the controller sends its request.
+	 */
+	private static void respond(IForteSocket forte, float controlSignal, long validUntil) throws Exception {
+		forte.put(controlSignal);
+		forte.putDateAndTimeMillis(validUntil);
+		forte.sendData();
+	}
 }
\ No newline at end of file
@@ -30,7 +30,11 @@ import com.velasolaris.plugin.controller.spi.PluginControllerConfiguration.Senso
 import com.velasolaris.plugin.controller.spi.PluginControllerConfiguration.AbstractProperty.Type;
 import com.velasolaris.plugin.controller.spi.PolysunSettings.PropertyValue;
 
+import de.htw.berlin.polysun4diac.forte.comm.CommLayerParams;
+import de.htw.berlin.polysun4diac.forte.comm.ForteServiceType;
+import de.htw.berlin.polysun4diac.forte.comm.IForteSocket;
 import de.htw.berlin.polysun4diac.forte.datatypes.DateAndTime;
+import de.htw.berlin.polysun4diac.forte.datatypes.ForteDataType;
 
 /**
  * JUnit tests for the GenericSensorController.
@@ -50,9 +54,28 @@ public class GenericSensorTest {
 	private static final String SIMULATIONSTART_KEY = "Beginning of simulation";
 	/** Key for the option to wait for a response from FORTE or not */
 	protected static final String WAITFORRSP_KEY = "Wait for response";
+	/** Key for the option to keep the connection to FORTE open for the next simulation */
+	protected static final String KEEPSESSION_KEY = "Keep connection between simulations";
+	/** Key for the minimum absolute changes of the sensor values that are sent to FORTE */
+	private static final String DEADBANDS_ABS_KEY = "Absolute deadbands";
+	/** Key for the minimum relative change of a sensor value that is sent to FORTE */
+	private static final String DEADBAND_REL_KEY = "Relative deadband";
+	/** Key for the maximum simulation time in s without sending the sensor values to FORTE */
+	private static final String MAXSILENCE_KEY = "Maximum silence (s)";
+	/** Value of the deadbands that disables the deadband */
+	private static final float NODEADBAND = 0;
+	/** Value of {@link #DEADBANDS_ABS_KEY} that disables the absolute deadbands */
+	private static final String NODEADBANDS = "";
+	/** Default value of {@link #MAXSILENCE_KEY} */
+	private static final int DEFMAXSILENCE = 3600;
+	/** Port of the deadband test */
+	private static final int DEADBAND_PORT = 61514;
+	/** Integer indicating to close the connection to FORTE at the end of the simulation */
+	protected static final int DONTKEEPSESSION = 0;
 	/** Integer indicating not to wait for a response from FORTE */
 	protected static final int DONTWAITFORRSP = 0;
 	/** Precision for assertions of double/float data */
+	private static final float PRECISION = 0.0001f;
 	private static final String NAME = "Generic Sensor";
 	
 	@BeforeClass
@@ -67,6 +90,14 @@ public class GenericSensorTest {
 	 * {@link BatterySensorController#getConfiguration(Map)}.
 	 */
 	private PolysunSettings createPolysunSettings(String host, int port, int timestampSetting, int waitForRsp, boolean sendTimestamp) {
+		return createPolysunSettings(host, port, timestampSetting, waitForRsp, sendTimestamp, NODEADBANDS, NODEADBAND, DEFMAXSILENCE, false);
+	}
+
+	/**
+	 * Returns a PolysunSetting object with the deadband options. If used is true, one sensor is used.
+	 */
+	private PolysunSettings createPolysunSettings(String host, int port, int timestampSetting, int waitForRsp, boolean sendTimestamp,
+			String deadbandsAbs, float deadbandRel, int maxSilence, boolean used) {
 		List<PropertyValue> properties = new ArrayList<>();
 		properties.add(new PropertyValue(HOST_KEY, host));
 		properties.add(new PropertyValue(PORT_KEY, port, ""));
@@ -79,8 +110,15 @@ public class GenericSensorTest {
 			properties.add(new PropertyValue(SIMULATIONSTART_KEY, defaultStart));
 		}
 		properties.add(new PropertyValue(WAITFORRSP_KEY, waitForRsp, ""));
+		properties.add(new PropertyValue(KEEPSESSION_KEY, DONTKEEPSESSION, ""));
+		properties.add(new PropertyValue(DEADBANDS_ABS_KEY, deadbandsAbs));
+		properties.add(new PropertyValue(DEADBAND_REL_KEY, deadbandRel, "%"));
+		properties.add(new PropertyValue(MAXSILENCE_KEY, maxSilence, ""));
 		
 		List<Sensor> sensors = new ArrayList<>();
+		if (used) {
+			sensors.add(new Sensor("Sensor", "", true, false, true));
+		}
 		
 		List<ControlSignal> controlSignals = new ArrayList<>();
 		
@@ -143,7 +181,7 @@ public class GenericSensorTest {
 	@Test
 	public void testGetConfiguration() throws PluginControllerException {
 		PluginControllerConfiguration configuration = controller.getConfiguration(null);
-		assertEquals("Wrong number of configured properties", 5, configuration.getProperties().size());
+		assertEquals("Wrong number of configured properties", 9, configuration.getProperties().size());
 		assertEquals("Wrong number of generic properties", 0, configuration.getNumGenericProperties());
 		assertEquals("Wrong number of configured sensors", 0, configuration.getSensors().size());
 		assertEquals("Wrong number of generic sensors", MAX_NUM_GENERIC_SENSORS, configuration.getNumGenericSensors());
@@ -205,4 +243,37 @@ public class GenericSensorTest {
 		assertEquals("Wrong control signal index returned", -1,
 				((AbstractPluginController) controller).getControlSignalIndex("XXX"));
 	}
+
+	@Test
+	public void testDeadband() throws Exception {
+		controller.build(createPolysunSettings(DEF_TCP_ADDRESS, DEADBAND_PORT, 0, DONTWAITFORRSP, true, "1", 10f, 3600, true), null);
+		controller.initialiseSimulation(null);
+		// Stand-in for the SERVER function block on FORTE
+		CommLayerParams params = new CommLayerParams(DEF_TCP_ADDRESS, DEADBAND_PORT);
+		params.setServiceType(ForteServiceType.SERVER);
+		params.addOutput(ForteDataType.REAL);
+		IForteSocket forte = params.makeIPSocket(); // The controller connects in the background
+		try {
+			float[] values = new float[] { 100f, 105f, 111f, 111f, 111f, 111f, 111f, 0f, 0.5f, 2f };
+			for (int i = 0; i < values.length; i++) {
+				controller.control(900 * i, true, new float[] { values[i] }, new float[0], new float[0], false, null);
+			}
+			// 105 is within 10 %, 111 is repeated until the heartbeat after one hour and 0.5 is within the absolute deadband
+			float[] expected = new float[] { 100f, 111f, 111f, 0f, 2f };
+			for (float value : expected) {
+				forte.recvData();
+				assertEquals("Sensor value sent", value, forte.getFloat(), PRECISION);
+			}
+			assertEquals("Suppressed time steps", values.length - expected.length, ((AbstractSensorController) controller).getNumSuppressed());
+		} finally {
+			controller.terminateSimulation(null);
+			forte.disconnect();
+		}
+	}
+	
+	@Test(expected = PluginControllerException.class)
+	public void testDeadbandCountMismatch() throws Exception {
+		controller.build(createPolysunSettings(DEF_TCP_ADDRESS, DEADBAND_PORT, 0, DONTWAITFORRSP, true, "1; 2", 10f, 3600, true), null);
+		controller.initialiseSimulation(null); // Two deadbands for one sensor
+	}
 }
\ No newline at end of file
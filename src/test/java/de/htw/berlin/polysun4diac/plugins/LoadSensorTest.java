@@ -46,6 +46,20 @@ public class LoadSensorTest {
 	private static final String SIMULATIONSTART_KEY = "Beginning of simulation";
 	/** Key for the option to wait for a response from FORTE or not */
 	private static final String WAITFORRSP_KEY = "Wait for response";
+	/** Key for the option to keep the connection to FORTE open for the next simulation */
+	private static final String KEEPSESSION_KEY = "Keep connection between simulations";
+	/** Key for the minimum absolute change of the electricity consumption that is sent to FORTE */
+	private static final String DEADBAND_ABS_KEY = "Absolute deadband (Electricity consumption)";
+	/** Key for the minimum relative change of a sensor value that is sent to FORTE */
+	private static final String DEADBAND_REL_KEY = "Relative deadband";
+	/** Key for the maximum simulation time in s without sending the sensor values to FORTE */
+	private static final String MAXSILENCE_KEY = "Maximum silence (s)";
+	/** Value of the deadbands that disables the deadband */
+	private static final float NODEADBAND = 0;
+	/** Default value of {@link #MAXSILENCE_KEY} */
+	private static final int DEFMAXSILENCE = 3600;
+	/** Integer indicating to close the connection to FORTE at the end of the simulation */
+	private static final int DONTKEEPSESSION = 0;
 	/** Precision for assertions of double/float data */
 	private static double PRECISION = 0.000001;
 	private static final String SENSOR1 = "Electricity consumption";
@@ -78,6 +92,10 @@ public class LoadSensorTest {
 			properties.add(new PropertyValue(SIMULATIONSTART_KEY, defaultStart));
 		}
 		properties.add(new PropertyValue(WAITFORRSP_KEY, waitForRsp, ""));
+		properties.add(new PropertyValue(KEEPSESSION_KEY, DONTKEEPSESSION, ""));
+		properties.add(new PropertyValue(DEADBAND_ABS_KEY, NODEADBAND, "W"));
+		properties.add(new PropertyValue(DEADBAND_REL_KEY, NODEADBAND, "%"));
+		properties.add(new PropertyValue(MAXSILENCE_KEY, DEFMAXSILENCE, ""));
 		
 		List<Sensor> sensors = new ArrayList<>();
 		sensors.add(new Sensor(SENSOR1, "W", true, true, measuredLoad)); // Sensor 1
@@ -152,7 +170,7 @@ public class LoadSensorTest {
 	@Test
 	public void testGetConfiguration() throws PluginControllerException {
 		PluginControllerConfiguration configuration = controller.getConfiguration(null);
-		assertEquals("Wrong number of configured properties", 5, configuration.getProperties().size());
+		assertEquals("Wrong number of configured properties", 9, configuration.getProperties().size());
 		assertEquals("Wrong number of generic properties", 0, configuration.getNumGenericProperties());
 		assertEquals("Wrong number of configured sensors", 1, configuration.getSensors().size());
 		assertEquals("Wrong number of generic sensors", 0, configuration.getNumGenericSensors());
@@ -43,8 +43,20 @@ public class PVActorTest {
 	private static final String PORT_KEY = "Port number";
 	/** Key for the option to wait for a response from FORTE or not */
 	protected static final String WAITFORRSP_KEY = "Wait for response";
+	/** Key for the option to keep the connection to FORTE open for the next simulation */
+	protected static final String KEEPSESSION_KEY = "Keep connection between simulations";
+	/** Integer indicating to close the connection to FORTE at the end of the simulation */
+	protected static final int DONTKEEPSESSION = 0;
 	/** Integer indicating not to wait for a response from FORTE */
 	protected static final int DONTWAITFORRSP = 0;
+	/** Key for the option to receive the data from FORTE in the background */
+	protected static final String PREFETCH_KEY = "Prefetch received data";
+	/** Integer indicating not to receive the data from FORTE in the background */
+	protected static final int DONTPREFETCH = 0;
+	/** Key for the maximum time in milliseconds to wait for the control signals from FORTE in each time step */
+	protected static final String RECVDEADLINE_KEY = "Receive deadline (ms)";
+	/** Integer indicating to wait for the control signals from FORTE without a deadline */
+	protected static final int NODEADLINE = 0;
 	/** Precision for assertions of double/float data */
 	private static double PRECISION = 0.000001;
 	private static final String CSIGNAL1 = "Derating factor";
@@ -68,6 +80,9 @@ public class PVActorTest {
 		properties.add(new PropertyValue(HOST_KEY, host));
 		properties.add(new PropertyValue(PORT_KEY, port, ""));
 		properties.add(new PropertyValue(WAITFORRSP_KEY, waitForRsp, ""));
+		properties.add(new PropertyValue(KEEPSESSION_KEY, DONTKEEPSESSION, ""));
+		properties.add(new PropertyValue(PREFETCH_KEY, DONTPREFETCH, ""));
+		properties.add(new PropertyValue(RECVDEADLINE_KEY, NODEADLINE, ""));
 		
 		List<Sensor> sensors = new ArrayList<>();
 		
@@ -145,7 +160,7 @@ public class PVActorTest {
 	@Test
 	public void testGetConfiguration() throws PluginControllerException {
 		PluginControllerConfiguration configuration = controller.getConfiguration(null);
-		assertEquals("Wrong number of configured properties", 3, configuration.getProperties().size());
+		assertEquals("Wrong number of configured properties", 6, configuration.getProperties().size());
 		assertEquals("Wrong number of generic properties", 0, configuration.getNumGenericProperties());
 		assertEquals("Wrong number of configured sensors", 0, configuration.getSensors().size());
 		assertEquals("Wrong number of generic sensors", 0, configuration.getNumGenericSensors());
@@ -61,6 +61,14 @@ public class SGReadyHeatPumpTest {
 	private static final String TEMP_HYSTERESIS_KEY = "Temperature hysteresis";
 	/** Key for the option to wait for a response from FORTE or not */
 	protected static final String WAITFORRSP_KEY = "Wait for response";
+	/** Key for the option to keep the connection to FORTE open for the next simulation */
+	protected static final String KEEPSESSION_KEY = "Keep connection between simulations";
+	/** Integer indicating to close the connection to FORTE at the end of the simulation */
+	protected static final int DONTKEEPSESSION = 0;
+	/** Key for the maximum time in milliseconds to wait for the control signals from FORTE in each time step */
+	protected static final String RECVDEADLINE_KEY = "Receive deadline (ms)";
+	/** Integer indicating to wait for the control signals from FORTE without a deadline */
+	protected static final int NODEADLINE = 0;
 	/** Integer indicating not to wait for a response from FORTE */
 	protected static final int DONTWAITFORRSP = 0;
 	/** Default value for {@link #TEMP_HYSTERESIS_KEY} */
@@ -147,11 +155,13 @@ public class SGReadyHeatPumpTest {
 		properties.add(new PropertyValue(HOST_KEY, host));
 		properties.add(new PropertyValue(PORT_KEY, port, ""));
 		properties.add(new PropertyValue(WAITFORRSP_KEY, waitForRsp, ""));
+		properties.add(new PropertyValue(KEEPSESSION_KEY, DONTKEEPSESSION, ""));
 		properties.add(new PropertyValue(TEMP_THRESHOLD3_KEY, lowTempThreshold, "C"));
 		properties.add(new PropertyValue(HEATING_ELEMENT3_KEY, lowHeater, ""));
 		properties.add(new PropertyValue(TEMP_THRESHOLD4_KEY, highTempThreshold, "C"));
 		properties.add(new PropertyValue(HEATING_ELEMENT4_KEY, highHeater, ""));
 		properties.add(new PropertyValue(TEMP_HYSTERESIS_KEY, tempHysteresis, "K"));
+		properties.add(new PropertyValue(RECVDEADLINE_KEY, NODEADLINE, ""));
 
 		List<Sensor> sensors = new ArrayList<>();
 		sensors.add(new Sensor(SENSOR1, "C", true, true, true));
@@ -303,7 +313,7 @@ public class SGReadyHeatPumpTest {
 	@Test
 	public void testGetConfiguration() throws PluginControllerException {
 		PluginControllerConfiguration configuration = controller.getConfiguration(null);
-		assertEquals("Wrong number of configured properties", 8, configuration.getProperties().size());
+		assertEquals("Wrong number of configured properties", 10, configuration.getProperties().size());
 		assertEquals("Wrong number of generic properties", 0, configuration.getNumGenericProperties());
 		assertEquals("Wrong number of configured sensors", 1, configuration.getSensors().size());
 		assertEquals("Wrong number of generic sensors", 0, configuration.getNumGenericSensors());